@@ -0,0 +1,37 @@
+#!/bin/sh
+#
+# Converts a CSV file to a TrackMate XML file with the command-line converter,
+# without launching Fiji. All arguments are passed to CsvToTrackMate, run it
+# with --help for the list.
+#
+# Build the runnable jar first with: mvn -Pcli package
+# The jar can be set with the TRACKMATE_CSV_JAR environment variable, and
+# extra JVM options with JAVA_OPTS (for instance JAVA_OPTS=-Xmx16g).
+#
+# JVM startup can be cut further with an application class-data sharing
+# (AppCDS) archive, on Java 13 and later. Create it once with a typical
+# conversion:
+#
+#   ./csv-to-trackmate.sh --create-cds-archive --csvFilePath=... (etc.)
+#
+# The archive is stored next to the jar and used by all the following runs.
+# It must be recreated if the jar or the Java version change.
+
+JAR="${TRACKMATE_CSV_JAR:-$(ls "$(dirname "$0")"/../target/*-cli.jar 2>/dev/null | head -n 1)}"
+if [ ! -f "$JAR" ]; then
+	echo "Could not find the importer jar. Build it with 'mvn -Pcli package'," >&2
+	echo "or set the TRACKMATE_CSV_JAR environment variable." >&2
+	exit 2
+fi
+ARCHIVE="${JAR%.jar}.jsa"
+
+CDS_OPTS=""
+if [ "$1" = "--create-cds-archive" ]; then
+	shift
+	CDS_OPTS="-XX:ArchiveClassesAtExit=$ARCHIVE"
+elif [ -f "$ARCHIVE" ]; then
+	CDS_OPTS="-XX:SharedArchiveFile=$ARCHIVE -Xshare:auto"
+fi
+
+exec java $CDS_OPTS -Djava.awt.headless=true $JAVA_OPTS \
+	-cp "$JAR" fiji.plugin.trackmate.importer.csv.CsvToTrackMate "$@"
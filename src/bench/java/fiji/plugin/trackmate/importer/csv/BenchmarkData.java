@@ -0,0 +1,146 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Layout;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Workload;
+
+/**
+ * The input of the import benchmarks: a TrackMate-like CSV file written once
+ * per trial by the {@link CSVWorkloadGenerator}, and the same values as
+ * primitive arrays, read back from the file.
+ */
+@State( Scope.Benchmark )
+public class BenchmarkData
+{
+
+	/**
+	 * The header of the Z column of the TrackMate layout. 2D workloads still
+	 * have this column, filled with 0, as the detector importer requires one.
+	 */
+	public static final String Z_HEADER = "POSITION_Z";
+
+	@Param( { "10000", "100000" } )
+	public int nRows;
+
+	@Param( { "0", "24" } )
+	public int nExtraColumns;
+
+	@Param( { "2", "3" } )
+	public int nDims;
+
+	@Param( { "1", "50" } )
+	public int trackLength;
+
+	public File csvFile;
+
+	public Workload workload;
+
+	public int[] track;
+
+	public int[] frame;
+
+	public double[] x;
+
+	public double[] y;
+
+	public double[] z;
+
+	@Setup( Level.Trial )
+	public void setup() throws IOException
+	{
+		csvFile = File.createTempFile( "TrackMateCSVImporterBenchmark", ".csv" );
+		csvFile.deleteOnExit();
+		workload = CSVWorkloadGenerator.builder()
+				.layout( Layout.TRACKMATE )
+				.rows( nRows )
+				.nDims( nDims )
+				.trackLength( trackLength )
+				.extraColumns( nExtraColumns )
+				.create()
+				.write( csvFile );
+
+		track = new int[ nRows ];
+		frame = new int[ nRows ];
+		x = new double[ nRows ];
+		y = new double[ nRows ];
+		z = new double[ nRows ];
+		final CSVDialect dialect = CSVDialect.sniff( csvFile.getAbsolutePath() );
+		try (Reader in = dialect.newReader( new FileInputStream( csvFile ) );
+				CSVParser records = dialect.getFormat().builder().setHeader().get().parse( in ))
+		{
+			int i = 0;
+			for ( final CSVRecord record : records )
+			{
+				track[ i ] = Integer.parseInt( record.get( workload.getTrackCol() ) );
+				frame[ i ] = Integer.parseInt( record.get( workload.getFrameCol() ) );
+				x[ i ] = dialect.parseDouble( record.get( workload.getXCol() ) );
+				y[ i ] = dialect.parseDouble( record.get( workload.getYCol() ) );
+				z[ i ] = dialect.parseDouble( record.get( Z_HEADER ) );
+				i++;
+			}
+		}
+	}
+
+	@TearDown( Level.Trial )
+	public void tearDown()
+	{
+		csvFile.delete();
+	}
+
+	/**
+	 * Returns the header of the specified column.
+	 */
+	public String header( final int col )
+	{
+		return workload.getHeaders()[ col ];
+	}
+
+	/**
+	 * Returns an importer configured for the benchmark file. The track column
+	 * is used only if the tracks have more than one spot.
+	 */
+	public TrackMateImporter importer()
+	{
+		final TrackMateImporter.Builder builder = workload.configure( TrackMateImporter.builder() )
+				.csvFilePath( csvFile.getAbsolutePath() )
+				.logger( Logger.VOID_LOGGER );
+		if ( trackLength == 1 )
+			builder.trackCol( -1 );
+		return builder.create();
+	}
+}
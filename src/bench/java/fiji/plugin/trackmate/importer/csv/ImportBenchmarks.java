@@ -0,0 +1,52 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs all the benchmarks of the import pipeline.
+ * <p>
+ * The arguments are passed to JMH. For instance, to run with the GC and
+ * allocation profiler on a single size:
+ *
+ * <pre>
+ * mvn -Pbenchmarks test-compile exec:exec -Dbenchmark.args="-prof gc -p nRows=100000"
+ * </pre>
+ */
+public class ImportBenchmarks
+{
+
+	public static void main( final String[] args ) throws RunnerException, CommandLineOptionException
+	{
+		final Options options = new OptionsBuilder()
+				.parent( new CommandLineOptions( args ) )
+				.include( ImportBenchmarks.class.getPackage().getName() + "\\..*Benchmark" )
+				.build();
+		new Runner( options ).run();
+	}
+}
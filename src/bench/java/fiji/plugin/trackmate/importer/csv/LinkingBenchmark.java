@@ -0,0 +1,98 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+
+/**
+ * Linking the spots of each track in the model.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class LinkingBenchmark
+{
+
+	/**
+	 * A fresh model without edges, and the tracks to link in it. Rebuilt
+	 * before each invocation, since linking modifies the model.
+	 */
+	@State( Scope.Thread )
+	public static class Tracks
+	{
+
+		private Model model;
+
+		private Map< Integer, List< Spot > > tracks;
+
+		private TrackMateImporter importer;
+
+		@Setup( Level.Invocation )
+		public void setup( final BenchmarkData data )
+		{
+			final Map< Integer, Set< Spot > > spots = new HashMap<>();
+			tracks = new HashMap<>();
+			for ( int i = 0; i < data.nRows; i++ )
+			{
+				final Spot spot = new Spot( data.x[ i ], data.y[ i ], data.z[ i ], 1., 1., null );
+				final int t = data.frame[ i ];
+				spot.putFeature( Spot.FRAME, ( double ) t );
+				spots.computeIfAbsent( Integer.valueOf( t ), k -> new HashSet<>() ).add( spot );
+				tracks.computeIfAbsent( Integer.valueOf( data.track[ i ] ), k -> new ArrayList<>() ).add( spot );
+			}
+			model = new Model();
+			model.setSpots( SpotCollection.fromMap( spots ), false );
+			importer = data.importer();
+		}
+	}
+
+	@Benchmark
+	public Model linkTracks( final Tracks tracks )
+	{
+		tracks.importer.linkTracks( tracks.model, tracks.tracks );
+		return tracks.model;
+	}
+}
@@ -0,0 +1,74 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Reading the CSV metadata and the header of the file. The header is read as
+ * the importers do: the dialect is sniffed, then the file is decoded with its
+ * charset.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 3, time = 1 )
+@Measurement( iterations = 5, time = 1 )
+@Fork( 1 )
+public class MetadataBenchmark
+{
+
+	@Benchmark
+	public CSVMetadata metadata( final BenchmarkData data ) throws IOException
+	{
+		return CSVMetadata.parse( data.csvFile.getAbsolutePath() );
+	}
+
+	@Benchmark
+	public Map< String, Integer > header( final BenchmarkData data ) throws IOException
+	{
+		final CSVDialect dialect = CSVDialect.sniff( data.csvFile.getAbsolutePath() );
+		final CSVFormat csvFormat = dialect.getFormat()
+				.builder()
+				.setHeader()
+				.setCommentMarker( '#' )
+				.get();
+		try (Reader in = dialect.newReader( new FileInputStream( data.csvFile ) );
+				CSVParser records = csvFormat.parse( in ))
+		{
+			return records.getHeaderMap();
+		}
+	}
+}
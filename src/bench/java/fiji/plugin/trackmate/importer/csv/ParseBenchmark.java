@@ -0,0 +1,80 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.CSVImporter;
+
+/**
+ * Parsing the records of the CSV file, with the detector importer and with
+ * the full importer. The latter also builds the spot collection and links
+ * the tracks.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class ParseBenchmark
+{
+
+	@Benchmark
+	public Map< Integer, List< Spot > > csvImporter( final BenchmarkData data, final RowCounter counter )
+	{
+		final CSVImporter importer = new CSVImporter( data.csvFile.getAbsolutePath(), 1.,
+				data.header( data.workload.getXCol() ),
+				data.header( data.workload.getYCol() ),
+				BenchmarkData.Z_HEADER,
+				data.header( data.workload.getFrameCol() ),
+				data.header( data.workload.getQualityCol() ),
+				null, null,
+				0., 0., 0. );
+		if ( !importer.checkInput() || !importer.process() )
+			throw new IllegalStateException( importer.getErrorMessage() );
+		counter.rows += data.nRows;
+		return importer.getResult();
+	}
+
+	@Benchmark
+	public Model trackMateImporter( final BenchmarkData data, final RowCounter counter )
+	{
+		final TrackMateImporter importer = data.importer();
+		final Model model = importer.getModel( 1., "pixel", "frame" );
+		if ( null == model )
+			throw new IllegalStateException( importer.getErrorMessage() );
+		counter.rows += data.nRows;
+		return model;
+	}
+}
@@ -0,0 +1,86 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+
+/**
+ * Building spots from parsed values, then the spot collection and the model
+ * from the spots.
+ */
+@BenchmarkMode( Mode.Throughput )
+@OutputTimeUnit( TimeUnit.SECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class SpotCollectionBenchmark
+{
+
+	@Benchmark
+	public Map< Integer, Set< Spot > > spots( final BenchmarkData data, final RowCounter counter )
+	{
+		final Map< Integer, Set< Spot > > spots = buildSpots( data );
+		counter.rows += data.nRows;
+		return spots;
+	}
+
+	@Benchmark
+	public Model spotCollection( final BenchmarkData data, final RowCounter counter )
+	{
+		final SpotCollection sc = SpotCollection.fromMap( buildSpots( data ) );
+		sc.setVisible( true );
+		final Model model = new Model();
+		model.setSpots( sc, false );
+		counter.rows += data.nRows;
+		return model;
+	}
+
+	static Map< Integer, Set< Spot > > buildSpots( final BenchmarkData data )
+	{
+		final Map< Integer, Set< Spot > > spots = new HashMap<>();
+		for ( int i = 0; i < data.nRows; i++ )
+		{
+			final Spot spot = new Spot( data.x[ i ], data.y[ i ], data.z[ i ], 1., 1., null );
+			final int t = data.frame[ i ];
+			spot.putFeature( Spot.FRAME, ( double ) t );
+			spot.putFeature( Spot.POSITION_T, ( double ) t );
+			spots.computeIfAbsent( Integer.valueOf( t ), k -> new HashSet<>() ).add( spot );
+		}
+		return spots;
+	}
+}
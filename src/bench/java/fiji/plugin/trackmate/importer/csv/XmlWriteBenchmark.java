@@ -0,0 +1,87 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.io.TmXmlWriter;
+
+/**
+ * Writing the imported model to a TrackMate XML file.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 3, time = 2 )
+@Measurement( iterations = 5, time = 2 )
+@Fork( 1 )
+public class XmlWriteBenchmark
+{
+
+	@State( Scope.Benchmark )
+	public static class ImportedModel
+	{
+
+		private Model model;
+
+		private File xmlFile;
+
+		@Setup( Level.Trial )
+		public void setup( final BenchmarkData data ) throws IOException
+		{
+			model = data.importer().getModel( 1., "pixel", "frame" );
+			xmlFile = File.createTempFile( "TrackMateCSVImporterBenchmark", ".xml" );
+			xmlFile.deleteOnExit();
+		}
+
+		@TearDown( Level.Trial )
+		public void tearDown()
+		{
+			xmlFile.delete();
+		}
+	}
+
+	@Benchmark
+	public File writeXml( final ImportedModel imported ) throws IOException
+	{
+		final TmXmlWriter writer = new TmXmlWriter( imported.xmlFile, Logger.VOID_LOGGER );
+		writer.appendModel( imported.model );
+		writer.writeToFile();
+		return imported.xmlFile;
+	}
+}
@@ -21,8 +21,9 @@
  */
 package fiji.plugin.trackmate.detection;
 
-import java.io.FileNotFoundException;
-import java.io.FileReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.Reader;
 import java.util.ArrayList;
@@ -33,13 +34,29 @@ import java.util.Map;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.scijava.Cancelable;
 
 import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.importer.csv.CSVDialect;
+import fiji.plugin.trackmate.importer.csv.CountingInputStream;
+import fiji.plugin.trackmate.importer.csv.ImportEvents;
+import fiji.plugin.trackmate.importer.csv.ImportEvents.Type;
+import fiji.plugin.trackmate.importer.csv.ImportStats;
+import fiji.plugin.trackmate.importer.csv.ImportStats.Phase;
+import fiji.plugin.trackmate.importer.csv.MalformedRowReport;
+import fiji.plugin.trackmate.importer.csv.NamePool;
+import fiji.plugin.trackmate.importer.csv.RowChunk;
+import fiji.plugin.trackmate.importer.csv.SpotIDBlock;
 import net.imglib2.algorithm.OutputAlgorithm;
 
-public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot > > >
+public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot > > >, Cancelable
 {
 
+	/**
+	 * Number of records parsed between two checks for cancellation.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
 	private final String filePath;
 
 	private String errorMessage;
@@ -68,6 +85,18 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 
 	private Map< Integer, List< Spot > > spots;
 
+	private MalformedRowReport malformedRows;
+
+	private long maxMalformedRows = -1;
+
+	private double maxMalformedFraction = -1.;
+
+	private ImportStats stats;
+
+	private volatile boolean isCanceled;
+
+	private String cancelReason;
+
 	public CSVImporter( final String filePath,
 			final double radius,
 			final String xColumnName, final String yColumnName, final String zColumnName, final String frameColumnName,
@@ -88,6 +117,24 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 		this.zOrigin = zOrigin;
 	}
 
+	/**
+	 * Sets the error budget of the import. The import is aborted as soon as
+	 * the number or the fraction of malformed rows exceeds it.
+	 *
+	 * @param maxMalformedRows
+	 *            the maximal number of malformed rows. Negative values, the
+	 *            default, mean no limit.
+	 * @param maxMalformedFraction
+	 *            the maximal fraction of malformed rows, from 0 to 1, checked
+	 *            once enough rows have been parsed. Negative values, the
+	 *            default, mean no limit.
+	 */
+	public void setMalformedRowBudget( final long maxMalformedRows, final double maxMalformedFraction )
+	{
+		this.maxMalformedRows = maxMalformedRows;
+		this.maxMalformedFraction = maxMalformedFraction;
+	}
+
 	@Override
 	public boolean checkInput()
 	{
@@ -101,13 +148,18 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 		 * Open and parse file.
 		 */
 
+		final CountingInputStream counter;
+		final CSVDialect dialect;
 		Reader in;
 		CSVParser records;
+		final ImportEvents.Event openEvent = Type.FILE_OPEN.begin();
 		try
 		{
-			in = new FileReader( filePath );
+			dialect = CSVDialect.sniff( filePath );
+			counter = new CountingInputStream( new FileInputStream( filePath ) );
+			in = dialect.newReader( counter );
 		}
-		catch ( final FileNotFoundException e )
+		catch ( final IOException e )
 		{
 			e.printStackTrace();
 			errorMessage = e.getMessage();
@@ -116,7 +168,7 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 
 		try
 		{
-			final CSVFormat csvFormat = CSVFormat.EXCEL
+			final CSVFormat csvFormat = dialect.getFormat()
 					.builder()
 					.setHeader()
 					.setCommentMarker( '#' )
@@ -125,11 +177,13 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 		}
 		catch ( final IOException e )
 		{
+			close( in );
 			e.printStackTrace();
 			errorMessage = e.getMessage();
 			return false;
 		}
 
+		openEvent.commit( filePath, new File( filePath ).length() );
 		final Map< String, Integer > headerMap = records.getHeaderMap();
 
 		/*
@@ -185,65 +239,89 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 		 */
 
 		spots = new HashMap<>();
+		malformedRows = new MalformedRowReport();
+		malformedRows.setColumnNames( records.getHeaderNames().toArray( new String[] {} ) );
+		malformedRows.setBudget( maxMalformedRows, maxMalformedFraction );
+		stats = new ImportStats();
 
 		/*
 		 * Iterate over records.
 		 */
 
+		final RowChunk chunk = new RowChunk( CHUNK_SIZE );
+		final NamePool names = new NamePool();
+		long bytesParsed = 0;
+		ImportStats.Timer timer = stats.start( Phase.PARSE );
+		ImportEvents.Event chunkEvent = Type.PARSE_CHUNK.begin();
+		long nRecords = 0;
+		int maxID = -1;
 		for ( final CSVRecord record : records )
 		{
+			if ( ++nRecords % CHUNK_SIZE == 0 && isCanceled() )
+			{
+				// Free the partial data right away.
+				spots = null;
+				close( records );
+				errorMessage = "Import canceled after " + nRecords + " records: " + getCancelReason();
+				return false;
+			}
+			// Index of the column being parsed, to report malformed values.
+			int col = -1;
 			try
 			{
-				final double x = Double.parseDouble( record.get( xcol ) ) + xOrigin;
-				final double y = Double.parseDouble( record.get( ycol ) ) + yOrigin;
-				final double z = Double.parseDouble( record.get( zcol ) ) + zOrigin;
+				final double x = dialect.parseDouble( record.get( col = xcol ) ) + xOrigin;
+				final double y = dialect.parseDouble( record.get( col = ycol ) ) + yOrigin;
+				final double z = dialect.parseDouble( record.get( col = zcol ) ) + zOrigin;
 				// 1-based to 0-based.
-				final int t = Integer.parseInt( record.get( framecol ) ) - 1;
+				final int t = Integer.parseInt( record.get( col = framecol ) ) - 1;
 
 				double q = 1.;
 				if ( null != qualitycol )
-					q = Double.parseDouble( record.get( qualitycol ) );
+					q = dialect.parseDouble( record.get( col = qualitycol ) );
 
 				String name = null;
 				if ( null != namecol )
-					name = record.get( namecol );
-
-				final Spot spot;
-				if ( null != idcol )
-				{
-					// Hijack spot IDs: we force ID to match ID provided.
-					final int id = Integer.parseInt( record.get( idcol ) );
-					spot = new Spot( id );
-					spot.putFeature( Spot.POSITION_X, x );
-					spot.putFeature( Spot.POSITION_Y, y );
-					spot.putFeature( Spot.POSITION_Z, z );
-					spot.putFeature( Spot.FRAME, ( double ) t );
-					spot.putFeature( Spot.QUALITY, q );
-					spot.putFeature( Spot.RADIUS, radius );
-					spot.setName( name );
-				}
-				else
-				{
-					spot = new Spot( x, y, z, radius, q, name );
-				}
-
-				List< Spot > list = spots.get( Integer.valueOf( t ) );
-				if ( null == list )
-				{
-					list = new ArrayList<>();
-					spots.put( Integer.valueOf( t ), list );
-				}
-				list.add( spot );
+					name = names.intern( record.get( col = namecol ) );
 
+				final int id = ( null != idcol ) ? Integer.parseInt( record.get( col = idcol ) ) : -1;
+				chunk.add( x, y, z, t, q, radius, name, id, -1 );
+				if ( id > maxID )
+					maxID = id;
 			}
 			catch ( final NumberFormatException nfe )
 			{
-				nfe.printStackTrace();
-				System.out.println( "Could not parse line " + record.getRecordNumber() + ". Malformed number, skipping.\n" + nfe.getMessage() );
+				final boolean integer = col == framecol.intValue() || ( null != idcol && col == idcol.intValue() );
+				malformedRows.add( record.getRecordNumber(), col, record.get( col ), integer );
+				if ( malformedRows.isBudgetExceeded( nRecords ) )
+					return budgetExceeded( records, nRecords );
+				continue;
+			}
+			catch ( final ArrayIndexOutOfBoundsException e )
+			{
+				malformedRows.add( record.getRecordNumber(), col, MalformedRowReport.Cause.MISSING_COLUMN, null );
+				if ( malformedRows.isBudgetExceeded( nRecords ) )
+					return budgetExceeded( records, nRecords );
 				continue;
 			}
 
+			if ( chunk.isFull() )
+			{
+				timer.stop( chunk.size(), counter.getCount() - bytesParsed );
+				chunkEvent.commit( filePath, bytesParsed, counter.getCount(), chunk.size() );
+				bytesParsed = counter.getCount();
+				buildSpots( chunk, null != idcol );
+				timer = stats.start( Phase.PARSE );
+				chunkEvent = Type.PARSE_CHUNK.begin();
+			}
 		}
+		timer.stop( chunk.size(), counter.getCount() - bytesParsed );
+		chunkEvent.commit( filePath, bytesParsed, counter.getCount(), chunk.size() );
+		buildSpots( chunk, null != idcol );
+		close( records );
+		// Keep the ID counter past the imported IDs.
+		if ( null != idcol )
+			SpotIDBlock.reserveUpTo( maxID );
+		errorMessage = null;
 
 		/*
 		 * Return.
@@ -252,18 +330,115 @@ public class CSVImporter implements OutputAlgorithm< Map< Integer, List< Spot >
 		return true;
 	}
 
+	private boolean budgetExceeded( final CSVParser records, final long nRecords )
+	{
+		// Free the partial data right away.
+		spots = null;
+		close( records );
+		errorMessage = String.format( "Import aborted after %d records: too many malformed rows.\n", nRecords ) + malformedRows.toString();
+		return false;
+	}
+
+	/**
+	 * Creates the spots of a chunk of parsed rows, adds them to the spot map
+	 * and clears the chunk.
+	 */
+	private void buildSpots( final RowChunk chunk, final boolean importID )
+	{
+		final ImportStats.Timer timer = stats.start( Phase.SPOT_BUILD );
+		for ( int i = 0; i < chunk.size(); i++ )
+		{
+			final int t = chunk.frame( i );
+			final Spot spot;
+			if ( importID )
+			{
+				// Hijack spot IDs: we force ID to match ID provided.
+				spot = new Spot( chunk.id( i ) );
+				spot.putFeature( Spot.POSITION_X, chunk.x( i ) );
+				spot.putFeature( Spot.POSITION_Y, chunk.y( i ) );
+				spot.putFeature( Spot.POSITION_Z, chunk.z( i ) );
+				spot.putFeature( Spot.FRAME, ( double ) t );
+				spot.putFeature( Spot.QUALITY, chunk.quality( i ) );
+				spot.putFeature( Spot.RADIUS, chunk.radius( i ) );
+				spot.setName( chunk.name( i ) );
+			}
+			else
+			{
+				spot = new Spot( chunk.x( i ), chunk.y( i ), chunk.z( i ), chunk.radius( i ), chunk.quality( i ), chunk.name( i ) );
+			}
+
+			List< Spot > list = spots.get( Integer.valueOf( t ) );
+			if ( null == list )
+			{
+				list = new ArrayList<>();
+				spots.put( Integer.valueOf( t ), list );
+			}
+			list.add( spot );
+		}
+		timer.stop( chunk.size(), 0 );
+		chunk.clear();
+	}
+
 	@Override
 	public String getErrorMessage()
 	{
 		return errorMessage;
 	}
 
+	@Override
+	public boolean isCanceled()
+	{
+		return isCanceled;
+	}
+
+	@Override
+	public void cancel( final String reason )
+	{
+		cancelReason = reason;
+		isCanceled = true;
+	}
+
+	@Override
+	public String getCancelReason()
+	{
+		return cancelReason;
+	}
+
+	private static void close( final Closeable closeable )
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch ( final IOException e )
+		{
+			e.printStackTrace();
+		}
+	}
+
 	@Override
 	public Map< Integer, List< Spot > > getResult()
 	{
 		return spots;
 	}
 
+	/**
+	 * Returns the per-phase metrics of the last call to {@link #process()}.
+	 */
+	public ImportStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * Returns the report on the rows that could not be parsed in the last
+	 * call to {@link #process()}.
+	 */
+	public MalformedRowReport getMalformedRows()
+	{
+		return malformedRows;
+	}
+
 	/*
 	 * MAIN METHOD
 	 */
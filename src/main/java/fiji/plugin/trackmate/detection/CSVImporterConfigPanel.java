@@ -24,6 +24,8 @@ package fiji.plugin.trackmate.detection;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_FILE_PATH;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_FRAME_COLUMN_NAME;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_ID_COLUMN_NAME;
+import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_MAX_MALFORMED_FRACTION;
+import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_MAX_MALFORMED_ROWS;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_NAME_COLUMN_NAME;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_QUALITY_COLUMN_NAME;
 import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_X_COLUMN_NAME;
@@ -42,10 +44,7 @@ import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.FileDialog;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.FilenameFilter;
-import java.io.Reader;
 import java.text.DecimalFormat;
 import java.text.NumberFormat;
 import java.util.ArrayList;
@@ -71,12 +70,12 @@ import javax.swing.SwingConstants;
 import javax.swing.UIManager;
 import javax.swing.UnsupportedLookAndFeelException;
 
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
-
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.gui.components.ConfigurationPanel;
+import fiji.plugin.trackmate.importer.csv.CSVHeaderInspector;
+import fiji.plugin.trackmate.importer.csv.ColumnComboBoxModel;
+import fiji.plugin.trackmate.importer.csv.HeaderIndex;
 
 public class CSVImporterConfigPanel extends ConfigurationPanel
 {
@@ -109,12 +108,19 @@ public class CSVImporterConfigPanel extends ConfigurationPanel
 
 	private File file;
 
+	private final CSVHeaderInspector inspector = new CSVHeaderInspector();
+
 	private final JFormattedTextField textFieldXOrigin;
 
 	private final JFormattedTextField textFieldYOrigin;
 
 	private final JFormattedTextField textFieldZOrigin;
 
+	/**
+	 * The error budget settings, not edited in this panel but kept.
+	 */
+	private final Map< String, Object > budget = new HashMap<>();
+
 	public CSVImporterConfigPanel( final Settings setting, final Model model )
 	{
 		// Compute origin in physical coordinates.
@@ -196,6 +202,8 @@ public class CSVImporterConfigPanel extends ConfigurationPanel
 		comboBoxes.add( comboBoxQualityCol );
 		comboBoxes.add( comboBoxNameCol );
 		comboBoxes.add( comboBoxIDCol );
+		for ( final JComboBox< String > comboBox : comboBoxes )
+			ColumnComboBoxModel.install( comboBox );
 
 		final JLabel lblDisplayRadius = new JLabel( "Display radius:" );
 		lblDisplayRadius.setFont( FONT );
@@ -423,7 +431,9 @@ public class CSVImporterConfigPanel extends ConfigurationPanel
 
 	@Override
 	public void clean()
-	{}
+	{
+		inspector.cancel();
+	}
 
 	@Override
 	public Map< String, Object > getSettings()
@@ -462,6 +472,7 @@ public class CSVImporterConfigPanel extends ConfigurationPanel
 		textFieldZOrigin.validate();
 		map.put( KEY_Z_ORIGIN, textFieldZOrigin.getValue() );
 
+		map.putAll( budget );
 		return map;
 	}
 
@@ -471,135 +482,113 @@ public class CSVImporterConfigPanel extends ConfigurationPanel
 		final String filePath = ( String ) settings.get( KEY_FILE_PATH );
 		textFieldFilePath.setText( filePath );
 
+		budget.clear();
+		for ( final String key : new String[] { KEY_MAX_MALFORMED_ROWS, KEY_MAX_MALFORMED_FRACTION } )
+			if ( null != settings.get( key ) )
+				budget.put( key, settings.get( key ) );
+
 		if ( null != textFieldFilePath.getText() && !textFieldFilePath.getText().isEmpty() )
 			readHeaders();
 	}
 
+	/**
+	 * Reads the header of the CSV file in the background, and fills the column
+	 * lists when it is read.
+	 */
 	private void readHeaders()
 	{
 		final String filePath = textFieldFilePath.getText();
-
-		/*
-		 * Open and parse file.
-		 */
-
-		Reader in;
-		CSVParser records;
-		try
-		{
-			in = new FileReader( filePath );
-		}
-		catch ( final FileNotFoundException e )
-		{
-			e.printStackTrace();
-			e.getMessage();
-			return;
-		}
-
-		try
-		{
-			final CSVFormat csvFormat = CSVFormat.EXCEL
-					.builder()
-					.setHeader()
-					.setCommentMarker( '#' )
-					.get();
-			records = csvFormat.parse( in );
-		}
-		catch ( final Exception e )
-		{
-			e.printStackTrace();
-			lblMessage.setText( "<html>" + e.getMessage() + "</html>" );
+		inspector.inspect( new File( filePath ), this::setHeaders, ( message ) -> {
+			lblMessage.setText( "<html>" + message.replace( "\n", "<br>" ) + "</html>" );
 			clearComboBoxes();
-			return;
-		}
-
-		final Map< String, Integer > headerMap = records.getHeaderMap();
+		} );
+	}
 
-		// Iterate in column orders.
-		final ArrayList< String > headers = new ArrayList<>( headerMap.keySet() );
+	private void setHeaders( final CSVHeaderInspector.Header header )
+	{
+		// Column names as they are in the file, in column order.
+		final HeaderIndex index = header.getIndex();
 
-		if ( headers.isEmpty() )
+		if ( index.size() == 0 )
 		{
 			lblMessage.setText( "Could not read the header of the CSV file." );
 			return;
 		}
 
-		final String[] mandatory = headers.toArray( new String[] {} );
-		comboBoxXCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		comboBoxYCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		comboBoxZCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		comboBoxFrameCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
+		ColumnComboBoxModel.setModel( comboBoxXCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( comboBoxYCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( comboBoxZCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( comboBoxFrameCol, new ColumnComboBoxModel( index, null ) );
 
 		// Try to be clever and guess from header names.
 		int tcol = -1;
 		int xcol = -1;
 		int ycol = -1;
 		int zcol = -1;
-		for ( int i = 0; i < mandatory.length; i++ )
+		for ( int i = 0; i < index.size(); i++ )
 		{
-			final String current = mandatory[ i ];
+			final String current = index.getName( i );
+			final String key = index.getKey( i );
 
-			if ( current.toLowerCase().startsWith( "x" ) )
+			if ( key.startsWith( "x" ) )
 			{
-				if ( xcol < 0 || ( current.length() < mandatory[ xcol ].length() ) )
+				if ( xcol < 0 || ( current.length() < index.getName( xcol ).length() ) )
 					xcol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "y" ) )
+			if ( key.startsWith( "y" ) )
 			{
-				if ( ycol < 0 || ( current.length() < mandatory[ ycol ].length() ) )
+				if ( ycol < 0 || ( current.length() < index.getName( ycol ).length() ) )
 					ycol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "z" ) )
+			if ( key.startsWith( "z" ) )
 			{
-				if ( zcol < 0 || ( current.length() < mandatory[ zcol ].length() ) )
+				if ( zcol < 0 || ( current.length() < index.getName( zcol ).length() ) )
 					zcol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "frame" )
-					|| current.toLowerCase().startsWith( "time" )
-					|| current.toLowerCase().startsWith( "t" ) )
+			if ( key.startsWith( "frame" )
+					|| key.startsWith( "time" )
+					|| key.startsWith( "t" ) )
 			{
 				if (tcol < 0 || current.equals( "frame" ) )
 					tcol = i;
 			}
 		}
 		if ( tcol < 0 )
-			tcol = 0 % ( mandatory.length - 1 );
+			tcol = 0 % ( index.size() - 1 );
 		if ( xcol < 0 )
-			xcol = 1 % ( mandatory.length - 1 );
+			xcol = 1 % ( index.size() - 1 );
 		if ( ycol < 0 )
-			ycol = 2 % ( mandatory.length - 1 );
+			ycol = 2 % ( index.size() - 1 );
 		if ( zcol < 0 )
-			zcol = 3 % ( mandatory.length - 1 );
+			zcol = 3 % ( index.size() - 1 );
 
 		comboBoxXCol.setSelectedIndex( xcol );
 		comboBoxYCol.setSelectedIndex( ycol );
 		comboBoxZCol.setSelectedIndex( zcol );
 		comboBoxFrameCol.setSelectedIndex( tcol );
 
-		// Add a NONE for non mandatory columns
-		headers.add( NONE_COLUMN );
-		final String[] nonMandatory = headers.toArray( new String[] {} );
-		comboBoxQualityCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-		comboBoxNameCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-		comboBoxIDCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-
-		int idcol = headers.indexOf( NONE_COLUMN );
-		int qualitycol = headers.indexOf( NONE_COLUMN );
-		int namecol = headers.indexOf( NONE_COLUMN );
-		for ( int i = 0; i < nonMandatory.length; i++ )
+		// Add a NONE for non mandatory columns, at the end of the list.
+		ColumnComboBoxModel.setModel( comboBoxQualityCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+		ColumnComboBoxModel.setModel( comboBoxNameCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+		ColumnComboBoxModel.setModel( comboBoxIDCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+
+		int idcol = index.size();
+		int qualitycol = index.size();
+		int namecol = index.size();
+		for ( int i = 0; i < index.size(); i++ )
 		{
-			final String current = nonMandatory[ i ];
+			final String key = index.getKey( i );
 
-			if ( current.toLowerCase().startsWith( "id" ) )
+			if ( key.startsWith( "id" ) )
 				idcol = i;
 
-			if ( current.toLowerCase().startsWith( "name" ) )
+			if ( key.startsWith( "name" ) )
 				namecol = i;
 
-			if ( current.toLowerCase().startsWith( "q" ) )
+			if ( key.startsWith( "q" ) )
 				qualitycol = i;
 		}
 
@@ -24,16 +24,21 @@ package fiji.plugin.trackmate.detection;
 import static fiji.plugin.trackmate.util.TMUtils.checkMapKeys;
 import static fiji.plugin.trackmate.util.TMUtils.checkParameter;
 
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import javax.swing.ImageIcon;
 
+import org.scijava.Cancelable;
 import org.scijava.plugin.Plugin;
 
+import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
 import fiji.plugin.trackmate.Spot;
@@ -189,6 +194,27 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 	 */
 	public static final String KEY_Z_ORIGIN = "Z_ORIGIN";
 
+	/**
+	 * The key for the maximal number of malformed rows. Expected values are
+	 * {@link Integer}s. The detection fails as soon as the file has more rows
+	 * that cannot be parsed. Negative values mean no limit.
+	 * <p>
+	 * This setting is not mandatory. The default value is used if it is
+	 * missing.
+	 */
+	public static final String KEY_MAX_MALFORMED_ROWS = "MAX_MALFORMED_ROWS";
+
+	/**
+	 * The key for the maximal fraction of malformed rows. Expected values are
+	 * {@link Double}s from 0 to 1. The detection fails as soon as the
+	 * fraction of rows that cannot be parsed is larger, once enough rows have
+	 * been read. Negative values mean no limit.
+	 * <p>
+	 * This setting is not mandatory. The default value is used if it is
+	 * missing.
+	 */
+	public static final String KEY_MAX_MALFORMED_FRACTION = "MAX_MALFORMED_FRACTION";
+
 	/**
 	 * The default file path.
 	 */
@@ -228,6 +254,34 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 
 	public static final Double DEFAULT_RADIUS = Double.valueOf( 1. );
 
+	/**
+	 * By default, there is no limit on the number of malformed rows.
+	 */
+	public static final Integer DEFAULT_MAX_MALFORMED_ROWS = Integer.valueOf( -1 );
+
+	/**
+	 * By default, the detection fails if most rows cannot be parsed, as with
+	 * a wrong column: the file is then not read to its end.
+	 */
+	public static final Double DEFAULT_MAX_MALFORMED_FRACTION = Double.valueOf( 0.5 );
+
+	/**
+	 * The spots of the last parsed file. TrackMate creates one detector per
+	 * frame, and the file is parsed once for all of them. Shared with the
+	 * copies of this factory.
+	 */
+	private final ParseCache cache;
+
+	public CSVImporterDetectorFactory()
+	{
+		this( new ParseCache() );
+	}
+
+	private CSVImporterDetectorFactory( final ParseCache cache )
+	{
+		this.cache = cache;
+	}
+
 	@Override
 	public String getInfoText()
 	{
@@ -283,20 +337,70 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 		map.put( KEY_Z_ORIGIN, DEFAULT_Z_ORIGIN );
 		map.put( KEY_RADIUS_COLUMN_NAME, null );
 		map.put( KEY_RADIUS, DEFAULT_RADIUS );
+		map.put( KEY_MAX_MALFORMED_ROWS, DEFAULT_MAX_MALFORMED_ROWS );
+		map.put( KEY_MAX_MALFORMED_FRACTION, DEFAULT_MAX_MALFORMED_FRACTION );
 		return map;
 	}
 
 	@Override
 	public CSVImporterDetectorFactory< T > copy()
 	{
-		return new CSVImporterDetectorFactory<>();
+		return new CSVImporterDetectorFactory<>( cache );
 	}
 
 	/*
 	 * PRIVATE CLASSES
 	 */
 
-	private class DummySpotDetector implements SpotDetector< T >
+	/**
+	 * The spots of the last parsed file, handed out frame by frame. Each frame
+	 * is handed out once: a detector that asks for a frame again, as when the
+	 * detection is run a second time, gets a fresh parse and new spots. The
+	 * parse is also redone if the settings or the file changed.
+	 */
+	private static final class ParseCache
+	{
+
+		private Map< String, Object > settings;
+
+		private long length;
+
+		private long lastModified;
+
+		private Map< Integer, List< Spot > > spots;
+
+		private final Set< Integer > taken = new HashSet<>();
+
+		/**
+		 * Returns the spots of a frame from the last parse, or
+		 * <code>null</code> if the file must be parsed again.
+		 */
+		private List< Spot > take( final Map< String, Object > settings, final int frame )
+		{
+			if ( null == spots || !settings.equals( this.settings ) )
+				return null;
+			final File file = new File( ( String ) settings.get( KEY_FILE_PATH ) );
+			if ( file.length() != length || file.lastModified() != lastModified )
+				return null;
+			if ( !taken.add( Integer.valueOf( frame ) ) )
+				return null;
+			// Drop the spots handed out, so that the cache shrinks as the
+			// detection goes.
+			final List< Spot > s = spots.remove( Integer.valueOf( frame ) );
+			return ( null == s ) ? Collections.emptyList() : s;
+		}
+
+		private void put( final Map< String, Object > settings, final long length, final long lastModified, final Map< Integer, List< Spot > > spots )
+		{
+			this.settings = new HashMap<>( settings );
+			this.length = length;
+			this.lastModified = lastModified;
+			this.spots = spots;
+			taken.clear();
+		}
+	}
+
+	private class DummySpotDetector implements SpotDetector< T >, Cancelable
 	{
 
 		private final int frame;
@@ -305,10 +409,16 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 
 		private String errorMessage;
 
-		private Map< Integer, List< Spot > > spots;
+		private List< Spot > spots;
 
 		private long processingTime;
 
+		private volatile CSVImporter importer;
+
+		private volatile boolean isCanceled;
+
+		private String cancelReason;
+
 		public DummySpotDetector( final Map< String, Object > settings, final int frame )
 		{
 			this.settings = settings;
@@ -318,10 +428,7 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 		@Override
 		public List< Spot > getResult()
 		{
-			List< Spot > s = spots.get( Integer.valueOf( frame ) );
-			if ( null == s )
-				s = Collections.emptyList();
-			return s;
+			return spots;
 		}
 
 		@Override
@@ -336,6 +443,10 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 			ok = ok & checkParameter( settings, KEY_Z_COLUMN_NAME, String.class, errorHolder );
 			ok = ok & checkParameter( settings, KEY_FRAME_COLUMN_NAME, String.class, errorHolder );
 			ok = ok & checkParameter( settings, KEY_RADIUS, Double.class, errorHolder );
+			if ( settings.containsKey( KEY_MAX_MALFORMED_ROWS ) )
+				ok = ok & checkParameter( settings, KEY_MAX_MALFORMED_ROWS, Integer.class, errorHolder );
+			if ( settings.containsKey( KEY_MAX_MALFORMED_FRACTION ) )
+				ok = ok & checkParameter( settings, KEY_MAX_MALFORMED_FRACTION, Double.class, errorHolder );
 			final List< String > mandatoryKeys = new ArrayList<>();
 			mandatoryKeys.add( KEY_FILE_PATH );
 			mandatoryKeys.add( KEY_RADIUS );
@@ -350,6 +461,8 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 			optionalKeys.add( KEY_ID_COLUMN_NAME );
 			optionalKeys.add( KEY_NAME_COLUMN_NAME );
 			optionalKeys.add( KEY_QUALITY_COLUMN_NAME );
+			optionalKeys.add( KEY_MAX_MALFORMED_ROWS );
+			optionalKeys.add( KEY_MAX_MALFORMED_FRACTION );
 			ok = ok & checkMapKeys( settings, mandatoryKeys, optionalKeys, errorHolder );
 			if ( !ok )
 				errorMessage = errorHolder.toString();
@@ -359,6 +472,29 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 
 		@Override
 		public boolean process()
+		{
+			final long start = System.currentTimeMillis();
+			// Detectors of other frames wait for the parse, then reuse it.
+			synchronized ( cache )
+			{
+				List< Spot > s = cache.take( settings, frame );
+				if ( null == s )
+				{
+					if ( !parse() )
+						return false;
+					s = cache.take( settings, frame );
+				}
+				this.spots = s;
+			}
+			final long end = System.currentTimeMillis();
+			this.processingTime = end - start;
+			return true;
+		}
+
+		/**
+		 * Parses the whole file and stores its spots in the cache.
+		 */
+		private boolean parse()
 		{
 			final String filePath = ( String ) settings.get( KEY_FILE_PATH );
 			final double radius = ( Double ) settings.get( KEY_RADIUS );
@@ -377,16 +513,29 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 					xColumnName, yColumnName, zColumnName, frameColumnName,
 					qualityColumn, nameColumn, idColumn,
 					xOrigin, yOrigin, zOrigin );
-
-			final long start = System.currentTimeMillis();
+			final Object maxRows = settings.get( KEY_MAX_MALFORMED_ROWS );
+			final Object maxFraction = settings.get( KEY_MAX_MALFORMED_FRACTION );
+			importer.setMalformedRowBudget(
+					( null == maxRows ) ? DEFAULT_MAX_MALFORMED_ROWS.longValue() : ( ( Number ) maxRows ).longValue(),
+					( null == maxFraction ) ? DEFAULT_MAX_MALFORMED_FRACTION.doubleValue() : ( ( Number ) maxFraction ).doubleValue() );
+			this.importer = importer;
+			if ( isCanceled() )
+				importer.cancel( getCancelReason() );
+
+			// Read before parsing, so that a file changed meanwhile is parsed
+			// again next time.
+			final File file = new File( filePath );
+			final long length = file.length();
+			final long lastModified = file.lastModified();
 			if ( !importer.checkInput() || !importer.process() )
 			{
 				this.errorMessage = importer.getErrorMessage();
 				return false;
 			}
-			this.spots = importer.getResult();
-			final long end = System.currentTimeMillis();
-			this.processingTime = end - start;
+			// Not an error: the rows are skipped, and the report says why.
+			if ( !importer.getMalformedRows().isEmpty() )
+				Logger.IJ_LOGGER.log( importer.getMalformedRows().toString() + '\n' );
+			cache.put( settings, length, lastModified, importer.getResult() );
 			return true;
 		}
 
@@ -401,5 +550,27 @@ public class CSVImporterDetectorFactory< T extends RealType< T > & NativeType< T
 		{
 			return processingTime;
 		}
+
+		@Override
+		public boolean isCanceled()
+		{
+			return isCanceled;
+		}
+
+		@Override
+		public void cancel( final String reason )
+		{
+			cancelReason = reason;
+			isCanceled = true;
+			final CSVImporter current = importer;
+			if ( null != current )
+				current.cancel( reason );
+		}
+
+		@Override
+		public String getCancelReason()
+		{
+			return cancelReason;
+		}
 	}
 }
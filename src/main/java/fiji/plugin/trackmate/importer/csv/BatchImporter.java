@@ -0,0 +1,203 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many imports at once, for batch conversions of CSV files that mostly
+ * wait on their storage.
+ * <p>
+ * Each import runs on its own thread, so that the image metadata probes, CSV
+ * reads and XML writes of all the imports overlap. On Java 21 and later these
+ * are virtual threads, and thousands of imports can be in flight without
+ * using as many OS threads. On older Java versions they are platform threads
+ * from a cached pool, and the number of imports submitted at once should be
+ * bounded by the caller.
+ * <p>
+ * The CPU-bound phases of the imports, building the spots, the model and
+ * the XML document, only run while holding one of <code>cpuThreads</code>
+ * permits, by default as many as processors. The CSV reads do not hold a
+ * permit. The shards of sharded imports are parsed on one pool of as many
+ * threads, shared by all the imports.
+ */
+public class BatchImporter implements AutoCloseable
+{
+
+	private final ExecutorService executor;
+
+	private final CpuPermits cpuPermits;
+
+	private final boolean virtualThreads;
+
+	private BatchImporter( final int cpuThreads )
+	{
+		this.cpuPermits = new CpuPermits( cpuThreads );
+		final ExecutorService virtual = newVirtualThreadExecutor( "TrackMate CSV batch import " );
+		this.virtualThreads = ( null != virtual );
+		if ( virtualThreads )
+		{
+			this.executor = virtual;
+		}
+		else
+		{
+			final AtomicInteger threadCounter = new AtomicInteger();
+			this.executor = Executors.newCachedThreadPool( r -> {
+				final Thread thread = new Thread( r, "TrackMate CSV batch import " + threadCounter.getAndIncrement() );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+	}
+
+	/**
+	 * Submits an import of the specified importer to the specified file.
+	 *
+	 * @return a future that completes with the result of
+	 *         {@link TrackMateImporter#saveTo(File)} when the file is saved.
+	 */
+	public CompletableFuture< Boolean > submit( final TrackMateImporter importer, final File targetFile )
+	{
+		return CompletableFuture.supplyAsync( () -> Boolean.valueOf( importer.saveTo( targetFile, cpuPermits ) ), executor );
+	}
+
+	/**
+	 * Runs all the specified imports and waits for them to complete.
+	 *
+	 * @param jobs
+	 *            the importers and the files they save to.
+	 * @return the importers that failed. Their error message says why.
+	 */
+	public List< TrackMateImporter > run( final Map< TrackMateImporter, File > jobs ) throws InterruptedException
+	{
+		final List< TrackMateImporter > importers = new ArrayList<>( jobs.keySet() );
+		final List< CompletableFuture< Boolean > > futures = new ArrayList<>( importers.size() );
+		for ( final TrackMateImporter importer : importers )
+			futures.add( submit( importer, jobs.get( importer ) ) );
+
+		final List< TrackMateImporter > failed = new ArrayList<>();
+		for ( int i = 0; i < importers.size(); i++ )
+		{
+			try
+			{
+				if ( !futures.get( i ).get().booleanValue() )
+					failed.add( importers.get( i ) );
+			}
+			catch ( final ExecutionException e )
+			{
+				failed.add( importers.get( i ) );
+			}
+		}
+		return failed;
+	}
+
+	/**
+	 * Returns <code>true</code> if the imports run on virtual threads.
+	 */
+	public boolean isVirtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	/**
+	 * Waits for the submitted imports to complete and releases the threads.
+	 */
+	@Override
+	public void close()
+	{
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination( Long.MAX_VALUE, TimeUnit.DAYS );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		cpuPermits.shutdown();
+	}
+
+	/**
+	 * Returns an executor that starts a new virtual thread per task, or
+	 * <code>null</code> if virtual threads are not available. The Java 21 API
+	 * is called reflectively, as the importer is built for Java 8.
+	 */
+	private static ExecutorService newVirtualThreadExecutor( final String namePrefix )
+	{
+		try
+		{
+			final Class< ? > builderClass = Class.forName( "java.lang.Thread$Builder" );
+			Object builder = Thread.class.getMethod( "ofVirtual" ).invoke( null );
+			builder = builderClass.getMethod( "name", String.class, long.class ).invoke( builder, namePrefix, Long.valueOf( 0 ) );
+			final ThreadFactory factory = ( ThreadFactory ) builderClass.getMethod( "factory" ).invoke( builder );
+			final Method newExecutor = Executors.class.getMethod( "newThreadPerTaskExecutor", ThreadFactory.class );
+			return ( ExecutorService ) newExecutor.invoke( null, factory );
+		}
+		catch ( final ReflectiveOperationException | RuntimeException e )
+		{
+			// Before Java 21, or preview features not enabled.
+			return null;
+		}
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private int cpuThreads = Runtime.getRuntime().availableProcessors();
+
+		private Builder()
+		{}
+
+		/**
+		 * The number of model builds that run at once. Defaults to the number
+		 * of processors.
+		 */
+		public Builder cpuThreads( final int cpuThreads )
+		{
+			this.cpuThreads = cpuThreads;
+			return this;
+		}
+
+		public BatchImporter create()
+		{
+			if ( cpuThreads < 1 )
+				throw new IllegalArgumentException( "The number of CPU threads must be at least 1, was " + cpuThreads + "." );
+			return new BatchImporter( cpuThreads );
+		}
+	}
+}
@@ -0,0 +1,551 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+
+/**
+ * The dialect of a CSV file: delimiter, quoting, decimal separator and
+ * charset, worked out from the first bytes of the file.
+ * <p>
+ * The sniffer reads at most {@link #SAMPLE_SIZE} bytes. A byte order mark
+ * gives the charset. Without one, the sample is read as UTF-8 if it is valid
+ * UTF-8, and as windows-1252 otherwise. The delimiter is the candidate that
+ * splits the header and the sampled rows in the same number of fields, more
+ * than one. The decimal separator is a comma if the delimiter is not, and if
+ * more sampled values are written with a decimal comma than with a decimal
+ * point.
+ * <p>
+ * The sniffer only sees the head of the file, so its guesses are checked as
+ * the file is read: quotes are always handled, and a file read as UTF-8
+ * without a byte order mark is read as windows-1252 from the first byte that
+ * is not valid UTF-8. Each file of a sharded import is sniffed on its own.
+ */
+public final class CSVDialect
+{
+
+	/**
+	 * Maximal number of bytes read to sniff the dialect.
+	 */
+	public static final int SAMPLE_SIZE = 64 * 1024;
+
+	/**
+	 * Maximal number of lines examined to sniff the dialect.
+	 */
+	private static final int MAX_LINES = 64;
+
+	/**
+	 * Candidate delimiters, by order of preference on ties.
+	 */
+	private static final char[] DELIMITERS = new char[] { ',', ';', '\t', '|' };
+
+	private static final Charset WINDOWS_1252 = Charset.isSupported( "windows-1252" ) ? Charset.forName( "windows-1252" ) : StandardCharsets.ISO_8859_1;
+
+	/**
+	 * The dialect the importers used before sniffing: comma-separated, with
+	 * quotes, a decimal point and the platform charset.
+	 */
+	public static final CSVDialect DEFAULT = new CSVDialect( ',', true, '.', Charset.defaultCharset(), 0 );
+
+	private final char delimiter;
+
+	private final boolean quoted;
+
+	private final char decimalSeparator;
+
+	private final Charset charset;
+
+	private final int bomLength;
+
+	private CSVDialect( final char delimiter, final boolean quoted, final char decimalSeparator, final Charset charset, final int bomLength )
+	{
+		this.delimiter = delimiter;
+		this.quoted = quoted;
+		this.decimalSeparator = decimalSeparator;
+		this.charset = charset;
+		this.bomLength = bomLength;
+	}
+
+	/**
+	 * Sniffs the dialect of the specified CSV file from its first bytes.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public static CSVDialect sniff( final String csvFilePath ) throws IOException
+	{
+		try (final FileChannel channel = FileChannel.open( Paths.get( csvFilePath ), StandardOpenOption.READ ))
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate( ( int ) Math.min( SAMPLE_SIZE, channel.size() ) );
+			while ( buffer.hasRemaining() )
+				if ( channel.read( buffer ) < 0 )
+					break;
+			return sniff( buffer.array(), buffer.position(), buffer.position() >= channel.size() );
+		}
+	}
+
+	/**
+	 * Sniffs the dialect of a sample of the start of a CSV file.
+	 *
+	 * @param bytes
+	 *            the sample.
+	 * @param length
+	 *            the number of bytes of the sample.
+	 * @param complete
+	 *            whether the sample is the whole file. If not, its last line
+	 *            may be truncated and is not examined.
+	 */
+	static CSVDialect sniff( final byte[] bytes, final int length, final boolean complete )
+	{
+		/*
+		 * Charset.
+		 */
+
+		final Charset charset;
+		final int bomLength;
+		if ( length >= 3 && ( bytes[ 0 ] & 0xFF ) == 0xEF && ( bytes[ 1 ] & 0xFF ) == 0xBB && ( bytes[ 2 ] & 0xFF ) == 0xBF )
+		{
+			charset = StandardCharsets.UTF_8;
+			bomLength = 3;
+		}
+		else if ( length >= 2 && ( bytes[ 0 ] & 0xFF ) == 0xFF && ( bytes[ 1 ] & 0xFF ) == 0xFE )
+		{
+			charset = StandardCharsets.UTF_16LE;
+			bomLength = 2;
+		}
+		else if ( length >= 2 && ( bytes[ 0 ] & 0xFF ) == 0xFE && ( bytes[ 1 ] & 0xFF ) == 0xFF )
+		{
+			charset = StandardCharsets.UTF_16BE;
+			bomLength = 2;
+		}
+		else
+		{
+			charset = isUTF8( bytes, length, complete ) ? StandardCharsets.UTF_8 : WINDOWS_1252;
+			bomLength = 0;
+		}
+
+		/*
+		 * Lines that are not comments nor empty.
+		 */
+
+		final String text = new String( bytes, bomLength, length - bomLength, charset );
+		final List< String > lines = new ArrayList<>();
+		int start = 0;
+		while ( start < text.length() && lines.size() < MAX_LINES )
+		{
+			int end = text.indexOf( '\n', start );
+			if ( end < 0 )
+			{
+				if ( !complete )
+					break;
+				end = text.length();
+			}
+			final String line = text.substring( start, ( end > start && text.charAt( end - 1 ) == '\r' ) ? end - 1 : end );
+			if ( !line.isEmpty() && line.charAt( 0 ) != '#' )
+				lines.add( line );
+			start = end + 1;
+		}
+		final boolean quoted = text.indexOf( '"' ) >= 0;
+		if ( lines.isEmpty() )
+			return new CSVDialect( ',', quoted, '.', charset, bomLength );
+
+		/*
+		 * Delimiter: the one that splits most lines like the header.
+		 */
+
+		char delimiter = ',';
+		int bestScore = 0;
+		int bestFields = 1;
+		for ( final char candidate : DELIMITERS )
+		{
+			final int nFields = countFields( lines.get( 0 ), candidate );
+			if ( nFields < 2 )
+				continue;
+			int score = 0;
+			for ( int i = 1; i < lines.size(); i++ )
+				if ( countFields( lines.get( i ), candidate ) == nFields )
+					score++;
+			if ( score > bestScore || ( score == bestScore && nFields > bestFields ) )
+			{
+				delimiter = candidate;
+				bestScore = score;
+				bestFields = nFields;
+			}
+		}
+
+		/*
+		 * Decimal separator.
+		 */
+
+		char decimalSeparator = '.';
+		if ( delimiter != ',' )
+		{
+			int nCommas = 0;
+			int nPoints = 0;
+			for ( int i = 1; i < lines.size(); i++ )
+			{
+				for ( final String field : split( lines.get( i ), delimiter ) )
+				{
+					final char separator = decimalSeparatorOf( field );
+					if ( separator == ',' )
+						nCommas++;
+					else if ( separator == '.' )
+						nPoints++;
+				}
+			}
+			if ( nCommas > nPoints )
+				decimalSeparator = ',';
+		}
+		return new CSVDialect( delimiter, quoted, decimalSeparator, charset, bomLength );
+	}
+
+	/**
+	 * Returns <code>true</code> if the sample is valid UTF-8, ignoring a
+	 * sequence truncated at the end of an incomplete sample.
+	 */
+	private static boolean isUTF8( final byte[] bytes, final int length, final boolean complete )
+	{
+		int i = 0;
+		while ( i < length )
+		{
+			final int b = bytes[ i ] & 0xFF;
+			final int n;
+			if ( b < 0x80 )
+				n = 0;
+			else if ( b >= 0xC2 && b <= 0xDF )
+				n = 1;
+			else if ( b >= 0xE0 && b <= 0xEF )
+				n = 2;
+			else if ( b >= 0xF0 && b <= 0xF4 )
+				n = 3;
+			else
+				return false;
+			if ( i + n >= length )
+				return !complete;
+			for ( int k = 1; k <= n; k++ )
+				if ( ( bytes[ i + k ] & 0xC0 ) != 0x80 )
+					return false;
+			i += n + 1;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the fields of a line, honoring quotes.
+	 */
+	private static List< String > split( final String line, final char delimiter )
+	{
+		final List< String > fields = new ArrayList<>();
+		final StringBuilder field = new StringBuilder();
+		boolean inQuotes = false;
+		for ( int i = 0; i < line.length(); i++ )
+		{
+			final char c = line.charAt( i );
+			if ( c == '"' )
+				inQuotes = !inQuotes;
+			else if ( c == delimiter && !inQuotes )
+			{
+				fields.add( field.toString() );
+				field.setLength( 0 );
+			}
+			else
+				field.append( c );
+		}
+		fields.add( field.toString() );
+		return fields;
+	}
+
+	private static int countFields( final String line, final char delimiter )
+	{
+		int n = 1;
+		boolean inQuotes = false;
+		for ( int i = 0; i < line.length(); i++ )
+		{
+			final char c = line.charAt( i );
+			if ( c == '"' )
+				inQuotes = !inQuotes;
+			else if ( c == delimiter && !inQuotes )
+				n++;
+		}
+		return n;
+	}
+
+	/**
+	 * Returns the decimal separator of a value made of digits with a single
+	 * comma or point between them, and an optional sign and exponent, or 0 if
+	 * the value is not such a number.
+	 */
+	private static char decimalSeparatorOf( final String field )
+	{
+		final String str = field.trim();
+		int i = 0;
+		if ( i < str.length() && ( str.charAt( i ) == '-' || str.charAt( i ) == '+' ) )
+			i++;
+		final int intStart = i;
+		while ( i < str.length() && Character.isDigit( str.charAt( i ) ) )
+			i++;
+		if ( i == intStart || i >= str.length() )
+			return 0;
+		final char separator = str.charAt( i );
+		if ( separator != ',' && separator != '.' )
+			return 0;
+		final int fractionStart = ++i;
+		while ( i < str.length() && Character.isDigit( str.charAt( i ) ) )
+			i++;
+		if ( i == fractionStart )
+			return 0;
+		if ( i < str.length() && ( str.charAt( i ) == 'e' || str.charAt( i ) == 'E' ) )
+		{
+			i++;
+			if ( i < str.length() && ( str.charAt( i ) == '-' || str.charAt( i ) == '+' ) )
+				i++;
+			while ( i < str.length() && Character.isDigit( str.charAt( i ) ) )
+				i++;
+		}
+		return ( i == str.length() ) ? separator : 0;
+	}
+
+	/**
+	 * Returns the CSV format of this dialect, without header nor comment
+	 * marker. Quotes are handled even if the sample had none, since a value
+	 * may be quoted after the sample.
+	 */
+	public CSVFormat getFormat()
+	{
+		return CSVFormat.EXCEL
+				.builder()
+				.setDelimiter( delimiter )
+				.get();
+	}
+
+	/**
+	 * Returns a reader of the specified stream of the CSV file, decoded with
+	 * the charset of this dialect and without the byte order mark. If the
+	 * charset is UTF-8 guessed from a sample, the stream is read as
+	 * windows-1252 from the first byte that is not valid UTF-8.
+	 *
+	 * @param in
+	 *            the stream, at the start of the file.
+	 */
+	public Reader newReader( final InputStream in ) throws IOException
+	{
+		for ( int i = 0; i < bomLength; i++ )
+			in.read();
+		if ( bomLength == 0 && charset.equals( StandardCharsets.UTF_8 ) )
+			return new FallbackReader( in, charset, WINDOWS_1252 );
+		return new InputStreamReader( in, charset );
+	}
+
+	/**
+	 * Parses a decimal number written with the decimal separator of this
+	 * dialect.
+	 *
+	 * @throws NumberFormatException
+	 *             if the value is not a number.
+	 */
+	public double parseDouble( final String value )
+	{
+		return Double.parseDouble( ( decimalSeparator == '.' ) ? value : value.replace( decimalSeparator, '.' ) );
+	}
+
+	public char getDelimiter()
+	{
+		return delimiter;
+	}
+
+	/**
+	 * Returns <code>true</code> if the sample had quotes. Quotes are handled
+	 * anyway, this only tells whether to expect them.
+	 */
+	public boolean isQuoted()
+	{
+		return quoted;
+	}
+
+	public char getDecimalSeparator()
+	{
+		return decimalSeparator;
+	}
+
+	public Charset getCharset()
+	{
+		return charset;
+	}
+
+	/**
+	 * Returns the number of bytes of the byte order mark, 0 if there is none.
+	 */
+	public int getBOMLength()
+	{
+		return bomLength;
+	}
+
+	/**
+	 * Returns <code>true</code> if the charset of this dialect is a superset
+	 * of ASCII, so that lines, delimiters and numbers can be found directly in
+	 * the bytes of the file.
+	 */
+	public boolean isASCIICompatible()
+	{
+		return !charset.name().startsWith( "UTF-16" );
+	}
+
+	/**
+	 * Decodes a stream with a charset that reports malformed input, and
+	 * switches to a fallback charset from the first malformed byte.
+	 */
+	private static final class FallbackReader extends Reader
+	{
+
+		private static final int BUFFER_SIZE = 8192;
+
+		private final InputStream in;
+
+		private final Charset fallback;
+
+		private CharsetDecoder decoder;
+
+		private boolean fellBack;
+
+		/**
+		 * The bytes read and not decoded yet, ready to be read.
+		 */
+		private final ByteBuffer bytes = ByteBuffer.allocate( BUFFER_SIZE );
+
+		/**
+		 * The chars decoded and not returned yet, ready to be read.
+		 */
+		private final CharBuffer chars = CharBuffer.allocate( BUFFER_SIZE );
+
+		private boolean eof;
+
+		private boolean done;
+
+		private FallbackReader( final InputStream in, final Charset charset, final Charset fallback )
+		{
+			this.in = in;
+			this.fallback = fallback;
+			this.decoder = charset.newDecoder()
+					.onMalformedInput( CodingErrorAction.REPORT )
+					.onUnmappableCharacter( CodingErrorAction.REPORT );
+			bytes.flip();
+			chars.flip();
+		}
+
+		@Override
+		public int read( final char[] cbuf, final int off, final int len ) throws IOException
+		{
+			if ( len == 0 )
+				return 0;
+			if ( !chars.hasRemaining() && !decode() )
+				return -1;
+			final int n = Math.min( len, chars.remaining() );
+			chars.get( cbuf, off, n );
+			return n;
+		}
+
+		/**
+		 * Decodes more chars.
+		 *
+		 * @return <code>false</code> at the end of the stream.
+		 */
+		private boolean decode() throws IOException
+		{
+			chars.clear();
+			while ( chars.position() == 0 && !done )
+			{
+				final CoderResult result = decoder.decode( bytes, chars, eof );
+				if ( result.isError() )
+				{
+					if ( fellBack )
+						result.throwException();
+					// The malformed bytes are left in the buffer, for the
+					// fallback decoder to start from.
+					decoder = fallback.newDecoder()
+							.onMalformedInput( CodingErrorAction.REPLACE )
+							.onUnmappableCharacter( CodingErrorAction.REPLACE );
+					fellBack = true;
+				}
+				else if ( result.isUnderflow() )
+				{
+					if ( eof )
+					{
+						decoder.flush( chars );
+						done = true;
+					}
+					else
+					{
+						fill();
+					}
+				}
+			}
+			chars.flip();
+			return chars.hasRemaining();
+		}
+
+		private void fill() throws IOException
+		{
+			bytes.compact();
+			final int n = in.read( bytes.array(), bytes.position(), bytes.remaining() );
+			if ( n < 0 )
+				eof = true;
+			else
+				bytes.position( bytes.position() + n );
+			bytes.flip();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			in.close();
+		}
+	}
+
+	@Override
+	public String toString()
+	{
+		final String name = ( delimiter == '\t' ) ? "tab" : "'" + delimiter + "'";
+		return String.format( "%s-separated, decimal %s, %s%s, %s",
+				name,
+				( decimalSeparator == ',' ) ? "comma" : "point",
+				charset.name(),
+				( bomLength > 0 ) ? " with BOM" : "",
+				quoted ? "quoted" : "no quotes sampled" );
+	}
+}
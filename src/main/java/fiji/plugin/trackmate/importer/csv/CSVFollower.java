@@ -0,0 +1,628 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.SpotCollection;
+
+/**
+ * Follows a CSV file that is still being written, and adds the spots of the
+ * rows appended to it to a live {@link Model}.
+ * <p>
+ * The file is polled at a fixed interval. At each poll, only the bytes
+ * appended since the last read are parsed. Incomplete records at the end of
+ * the file are left for the next poll. A line break inside a quoted field does
+ * not end its record, so a record whose quoted field spans several lines is
+ * parsed once all its lines are written. The dialect of the file is sniffed
+ * from its first lines, once it has a header and a row, and only charsets that
+ * are a superset of ASCII are supported. Following stops if the file is
+ * truncated or has a record longer than {@link #MAX_LINE_SIZE}. All the spots
+ * and links parsed in one poll are added to the model within a single update,
+ * so that views listening to the model are refreshed once per poll. If a track
+ * column is specified, each new spot is linked to the last spot received for
+ * its track.
+ * <p>
+ * Polling is used rather than a file watch service, because the latter does
+ * not report modifications made on network shares reliably.
+ */
+public class CSVFollower
+{
+
+	/**
+	 * Number of bytes read from the file in one go, unless a line is longer.
+	 */
+	private static final int CHUNK_SIZE = 8 * 1024 * 1024;
+
+	/**
+	 * Maximal length of a record, in bytes.
+	 */
+	public static final int MAX_LINE_SIZE = 256 * 1024 * 1024;
+
+	private final String csvFilePath;
+
+	private final Model model;
+
+	private final Logger logger;
+
+	private final int xCol;
+
+	private final int yCol;
+
+	private final int zCol;
+
+	private final int radiusCol;
+
+	private final int frameCol;
+
+	private final int qualityCol;
+
+	private final int nameCol;
+
+	private final int trackCol;
+
+	private final double radius;
+
+	private final double frameInterval;
+
+	private final long pollInterval;
+
+	/**
+	 * The dialect of the file, sniffed at the first poll that sees a header
+	 * and a row if not set.
+	 */
+	private CSVDialect dialect;
+
+	private CSVFormat csvFormat;
+
+	/**
+	 * Number of bytes read in one go, grown for lines longer than
+	 * {@link #CHUNK_SIZE}.
+	 */
+	private int readSize = CHUNK_SIZE;
+
+	private final Map< Integer, Spot > trackEnds = new HashMap<>();
+
+	private ScheduledExecutorService executor;
+
+	private FileChannel channel;
+
+	private volatile long offset;
+
+	private boolean headerRead;
+
+	private long nSpots;
+
+	private long nMalformed;
+
+	private CSVFollower(
+			final String csvFilePath,
+			final Model model,
+			final int xCol,
+			final int yCol,
+			final int zCol,
+			final int radiusCol,
+			final int frameCol,
+			final int qualityCol,
+			final int nameCol,
+			final int trackCol,
+			final double radius,
+			final double frameInterval,
+			final long pollInterval,
+			final CSVDialect dialect,
+			final Logger logger )
+	{
+		this.csvFilePath = csvFilePath;
+		this.model = model;
+		this.xCol = xCol;
+		this.yCol = yCol;
+		this.zCol = zCol;
+		this.radiusCol = radiusCol;
+		this.frameCol = frameCol;
+		this.qualityCol = qualityCol;
+		this.nameCol = nameCol;
+		this.trackCol = trackCol;
+		this.radius = radius;
+		this.frameInterval = frameInterval;
+		this.pollInterval = pollInterval;
+		this.logger = logger;
+		if ( null != dialect )
+			setDialect( dialect );
+	}
+
+	private void setDialect( final CSVDialect dialect )
+	{
+		this.dialect = dialect;
+		this.csvFormat = dialect.getFormat()
+				.builder()
+				.setCommentMarker( '#' )
+				.get();
+	}
+
+	/**
+	 * Starts following the CSV file. The rows already present in the file are
+	 * imported at the first poll.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be opened.
+	 */
+	public synchronized void start() throws IOException
+	{
+		if ( null != executor )
+			return;
+
+		channel = FileChannel.open( Paths.get( csvFilePath ), StandardOpenOption.READ );
+		executor = Executors.newSingleThreadScheduledExecutor( r -> {
+			final Thread thread = new Thread( r, "TrackMate CSV follower thread" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		executor.scheduleWithFixedDelay( this::poll, 0, pollInterval, TimeUnit.MILLISECONDS );
+		logger.log( "Following CSV file " + csvFilePath + '\n' );
+	}
+
+	/**
+	 * Stops following the CSV file. Rows appended after the last poll are not
+	 * imported.
+	 */
+	public synchronized void stop()
+	{
+		if ( null == executor )
+			return;
+
+		executor.shutdown();
+		try
+		{
+			executor.awaitTermination( 10 * pollInterval + 1000, TimeUnit.MILLISECONDS );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+		}
+		executor = null;
+		close();
+	}
+
+	/**
+	 * Stops following the CSV file from the poll thread, which cannot wait
+	 * for its own termination.
+	 */
+	private synchronized void abort()
+	{
+		if ( null == executor )
+			return;
+
+		executor.shutdown();
+		executor = null;
+		close();
+	}
+
+	private void close()
+	{
+		try
+		{
+			channel.close();
+		}
+		catch ( final IOException e )
+		{
+			logger.error( "Problem closing the CSV file:\n" + e.getMessage() + '\n' );
+		}
+		logger.log( String.format( "Stopped following CSV file. Imported %d spots, skipped %d malformed rows.\n", nSpots, nMalformed ) );
+	}
+
+	public synchronized boolean isRunning()
+	{
+		return null != executor;
+	}
+
+	/**
+	 * Returns the number of bytes of the CSV file processed so far.
+	 */
+	public long getOffset()
+	{
+		return offset;
+	}
+
+	public Model getModel()
+	{
+		return model;
+	}
+
+	private void poll()
+	{
+		try
+		{
+			long size = channel.size();
+			if ( size < offset )
+			{
+				logger.error( "The CSV file " + csvFilePath + " was truncated. Stopping.\n" );
+				abort();
+				return;
+			}
+			while ( size > offset )
+			{
+				final int n = ( int ) Math.min( readSize, size - offset );
+				final ByteBuffer buffer = ByteBuffer.allocate( n );
+				while ( buffer.hasRemaining() )
+					if ( channel.read( buffer, offset + buffer.position() ) < 0 )
+						break;
+
+				// Only process complete records.
+				final byte[] bytes = buffer.array();
+				final int end = recordsEnd( bytes, buffer.position() );
+				if ( end == 0 )
+				{
+					// An incomplete line, unless it fills the whole read.
+					if ( buffer.position() < readSize )
+						return;
+					if ( readSize >= MAX_LINE_SIZE )
+					{
+						logger.error( String.format( "The CSV file %s has a record longer than %d MB. Stopping.\n", csvFilePath, MAX_LINE_SIZE / ( 1024 * 1024 ) ) );
+						abort();
+						return;
+					}
+					readSize = ( int ) Math.min( 2L * readSize, MAX_LINE_SIZE );
+					continue;
+				}
+
+				int start = 0;
+				if ( offset == 0 )
+				{
+					if ( null == dialect && !sniff( bytes, end ) )
+						return;
+					start = dialect.getBOMLength();
+				}
+				process( new String( bytes, start, end - start, dialect.getCharset() ) );
+				offset += end;
+				size = channel.size();
+			}
+		}
+		catch ( final IOException e )
+		{
+			logger.error( "Problem reading the CSV file:\n" + e.getMessage() + '\n' );
+		}
+		catch ( final RuntimeException e )
+		{
+			// Do not let an exception kill the scheduled task silently.
+			logger.error( "Problem importing the CSV file:\n" + e.getMessage() + '\n' );
+		}
+	}
+
+	/**
+	 * Returns the end of the last complete record in the specified bytes,
+	 * just after its line feed, or 0 if there is none. Line feeds inside
+	 * quoted fields do not end a record. The bytes must start at the
+	 * beginning of a record, outside of quotes.
+	 */
+	static int recordsEnd( final byte[] bytes, final int length )
+	{
+		boolean quoted = false;
+		int end = 0;
+		for ( int i = 0; i < length; i++ )
+		{
+			final byte b = bytes[ i ];
+			// An escaped quote toggles twice.
+			if ( b == '"' )
+				quoted = !quoted;
+			else if ( b == '\n' && !quoted )
+				end = i + 1;
+		}
+		return end;
+	}
+
+	/**
+	 * Sniffs the dialect of the file from its first complete lines.
+	 *
+	 * @return <code>false</code> if there is no row after the header yet, or
+	 *         if the file cannot be followed.
+	 */
+	private boolean sniff( final byte[] bytes, final int end )
+	{
+		int nLines = 0;
+		for ( int i = 0; i < end && nLines < 2; i++ )
+			if ( bytes[ i ] == '\n' )
+				nLines++;
+		if ( nLines < 2 )
+			return false;
+
+		final CSVDialect sniffed = CSVDialect.sniff( bytes, end, true );
+		if ( !sniffed.isASCIICompatible() )
+		{
+			logger.error( "Cannot follow a CSV file in " + sniffed.getCharset() + ", only in a charset compatible with ASCII. Stopping.\n" );
+			abort();
+			return false;
+		}
+		setDialect( sniffed );
+		logger.log( "Following records, " + sniffed + ".\n" );
+		return true;
+	}
+
+	private void process( final String lines ) throws IOException
+	{
+		final boolean importZ = zCol >= 0;
+		final boolean importQuality = qualityCol >= 0;
+		final boolean importRadius = radiusCol >= 0;
+		final boolean importName = nameCol >= 0;
+		final boolean importTrack = trackCol >= 0;
+
+		int nNewSpots = 0;
+		model.beginUpdate();
+		try (final CSVParser records = csvFormat.parse( new StringReader( lines ) ))
+		{
+			for ( final CSVRecord record : records )
+			{
+				if ( !headerRead )
+				{
+					headerRead = true;
+					continue;
+				}
+
+				try
+				{
+					final double x = dialect.parseDouble( record.get( xCol ) );
+					final double y = dialect.parseDouble( record.get( yCol ) );
+					final double z = ( importZ ) ? dialect.parseDouble( record.get( zCol ) ) : 0.;
+					final int t = Integer.parseInt( record.get( frameCol ) );
+					final double q = ( importQuality ) ? dialect.parseDouble( record.get( qualityCol ) ) : 1.;
+					final double r = ( importRadius ) ? dialect.parseDouble( record.get( radiusCol ) ) : radius;
+					final String name = ( importName ) ? record.get( nameCol ) : null;
+
+					final Spot spot = new Spot( x, y, z, r, q, name );
+					spot.putFeature( Spot.FRAME, ( double ) t );
+					spot.putFeature( Spot.POSITION_T, frameInterval * t );
+					spot.putFeature( SpotCollection.VISIBILITY, SpotCollection.ONE );
+					model.addSpotTo( spot, Integer.valueOf( t ) );
+					nNewSpots++;
+
+					if ( importTrack )
+					{
+						// Link to the last spot of the track, in time order.
+						final Integer trackID = Integer.valueOf( record.get( trackCol ) );
+						final Spot previous = trackEnds.get( trackID );
+						if ( null != previous )
+						{
+							final int tp = previous.getFeature( Spot.FRAME ).intValue();
+							if ( tp < t )
+								model.addEdge( previous, spot, previous.squareDistanceTo( spot ) );
+							else if ( tp > t )
+								model.addEdge( spot, previous, spot.squareDistanceTo( previous ) );
+						}
+						if ( null == previous || previous.getFeature( Spot.FRAME ).intValue() <= t )
+							trackEnds.put( trackID, spot );
+					}
+				}
+				catch ( final NumberFormatException | ArrayIndexOutOfBoundsException e )
+				{
+					nMalformed++;
+				}
+			}
+		}
+		finally
+		{
+			model.endUpdate();
+		}
+		nSpots += nNewSpots;
+		if ( nNewSpots > 0 )
+			logger.setStatus( String.format( "Imported %d new spots, %d in total.\n", nNewSpots, nSpots ) );
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private static class Values
+		{
+			private String csvFilePath;
+
+			private Model model;
+
+			private int xCol = -1;
+
+			private int yCol = -1;
+
+			private int zCol = -1;
+
+			private int frameCol = -1;
+
+			private int qualityCol = -1;
+
+			private int nameCol = -1;
+
+			private int trackCol = -1;
+
+			private int radiusCol = -1;
+
+			private double radius = 1.;
+
+			private double frameInterval = 1.;
+
+			private long pollInterval = 200;
+
+			private CSVDialect dialect;
+
+			private Logger logger = Logger.DEFAULT_LOGGER;
+		}
+
+		private final Values values;
+
+		private Builder()
+		{
+			this.values = new Values();
+		}
+
+		public Builder csvFilePath( final String csvFilePath )
+		{
+			values.csvFilePath = csvFilePath;
+			return this;
+		}
+
+		/**
+		 * Sets the model to add spots to. If not set, a new model is created.
+		 */
+		public Builder model( final Model model )
+		{
+			values.model = model;
+			return this;
+		}
+
+		public Builder xCol( final int xCol )
+		{
+			values.xCol = xCol;
+			return this;
+		}
+
+		public Builder yCol( final int yCol )
+		{
+			values.yCol = yCol;
+			return this;
+		}
+
+		public Builder zCol( final int zCol )
+		{
+			values.zCol = zCol;
+			return this;
+		}
+
+		public Builder frameCol( final int frameCol )
+		{
+			values.frameCol = frameCol;
+			return this;
+		}
+
+		public Builder qualityCol( final int qualityCol )
+		{
+			values.qualityCol = qualityCol;
+			return this;
+		}
+
+		public Builder trackCol( final int trackCol )
+		{
+			values.trackCol = trackCol;
+			return this;
+		}
+
+		public Builder nameCol( final int nameCol )
+		{
+			values.nameCol = nameCol;
+			return this;
+		}
+
+		public Builder radiusCol( final int radiusCol )
+		{
+			values.radiusCol = radiusCol;
+			return this;
+		}
+
+		public Builder radius( final double radius )
+		{
+			values.radius = radius;
+			return this;
+		}
+
+		public Builder frameInterval( final double frameInterval )
+		{
+			values.frameInterval = frameInterval;
+			return this;
+		}
+
+		/**
+		 * Sets the interval between two polls of the CSV file, in
+		 * milliseconds. Must be strictly positive. The default is 200 ms.
+		 */
+		public Builder pollInterval( final long pollInterval )
+		{
+			values.pollInterval = pollInterval;
+			return this;
+		}
+
+		/**
+		 * Sets the dialect of the CSV file: delimiter, quoting, decimal
+		 * separator and charset. By default it is sniffed from the first
+		 * lines of the file.
+		 */
+		public Builder dialect( final CSVDialect dialect )
+		{
+			values.dialect = dialect;
+			return this;
+		}
+
+		public Builder logger( final Logger logger )
+		{
+			values.logger = logger;
+			return this;
+		}
+
+		public CSVFollower create()
+		{
+			if ( values.pollInterval <= 0 )
+				throw new IllegalArgumentException( "The poll interval must be strictly positive, was " + values.pollInterval + " ms." );
+
+			final Model model;
+			if ( null == values.model )
+			{
+				model = new Model();
+				model.setLogger( values.logger );
+			}
+			else
+			{
+				model = values.model;
+			}
+			return new CSVFollower(
+					values.csvFilePath,
+					model,
+					values.xCol,
+					values.yCol,
+					values.zCol,
+					values.radiusCol,
+					values.frameCol,
+					values.qualityCol,
+					values.nameCol,
+					values.trackCol,
+					values.radius,
+					values.frameInterval,
+					values.pollInterval,
+					values.dialect,
+					values.logger );
+		}
+	}
+}
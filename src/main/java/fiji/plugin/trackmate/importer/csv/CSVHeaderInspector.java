@@ -0,0 +1,339 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import javax.swing.SwingUtilities;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+
+/**
+ * Reads the header and the metadata of CSV files in the background, for the
+ * GUIs.
+ * <p>
+ * Only the head of the file is read, up to the end of the header line, and
+ * the file is read with an interruptible channel so that an inspection
+ * stuck on a slow share can be canceled. Results are cached per file, and
+ * reused as long as the file keeps the same size and modification time.
+ * <p>
+ * Each GUI uses its own inspector. Starting an inspection cancels the one
+ * the same inspector was running, and the callbacks of a canceled inspection
+ * are never called.
+ */
+public class CSVHeaderInspector
+{
+
+	/**
+	 * Size of the first read. Enough for the metadata and header of most
+	 * files.
+	 */
+	private static final int INITIAL_READ_SIZE = 16 * 1024;
+
+	/**
+	 * Maximal number of bytes read to find the end of the header line.
+	 */
+	private static final int MAX_READ_SIZE = 1024 * 1024;
+
+	private static final int CACHE_SIZE = 32;
+
+	private static final Map< String, Header > CACHE = new LinkedHashMap< String, Header >( 16, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< String, Header > eldest )
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	private static final ExecutorService EXECUTOR = Executors.newCachedThreadPool( r -> {
+		final Thread thread = new Thread( r, "TrackMate CSV header inspector" );
+		thread.setDaemon( true );
+		return thread;
+	} );
+
+	/**
+	 * Incremented by each inspection and cancellation, so that the results of
+	 * outdated inspections are dropped.
+	 */
+	private final AtomicLong generation = new AtomicLong();
+
+	private Future< ? > current;
+
+	/**
+	 * Inspects the specified file in the background, canceling the current
+	 * inspection. The callbacks are called on the event dispatch thread.
+	 *
+	 * @param file
+	 *            the CSV file.
+	 * @param onSuccess
+	 *            called with the header and metadata of the file.
+	 * @param onError
+	 *            called with an error message if the file cannot be read.
+	 */
+	public synchronized void inspect( final File file, final Consumer< Header > onSuccess, final Consumer< String > onError )
+	{
+		cancel();
+		final long id = generation.get();
+		current = EXECUTOR.submit( () -> {
+			try
+			{
+				final Header header = read( file );
+				SwingUtilities.invokeLater( () -> {
+					if ( generation.get() == id )
+						onSuccess.accept( header );
+				} );
+			}
+			catch ( final ClosedByInterruptException e )
+			{
+				// Canceled.
+			}
+			catch ( final IOException | RuntimeException e )
+			{
+				final String message = ( e instanceof NoSuchFileException )
+						? "Could not find CSV file: " + file
+						: "Could not read the header of CSV file " + file + ":\n" + e.getMessage();
+				SwingUtilities.invokeLater( () -> {
+					if ( generation.get() == id )
+						onError.accept( message );
+				} );
+			}
+		} );
+	}
+
+	/**
+	 * Cancels the current inspection, if any. Its callbacks will not be
+	 * called.
+	 */
+	public synchronized void cancel()
+	{
+		generation.incrementAndGet();
+		if ( null != current )
+		{
+			current.cancel( true );
+			current = null;
+		}
+	}
+
+	/**
+	 * Reads the header and metadata of the specified file, from the cache if
+	 * the file did not change since it was last read.
+	 */
+	public static Header read( final File file ) throws IOException
+	{
+		final String key = file.getAbsolutePath();
+		final long lastModified = file.lastModified();
+		final long length = file.length();
+		synchronized ( CACHE )
+		{
+			final Header cached = CACHE.get( key );
+			if ( null != cached && cached.lastModified == lastModified && cached.length == length )
+				return cached;
+		}
+
+		final CSVDialect dialect = CSVDialect.sniff( file.getPath() );
+		final String head = readHead( file, dialect );
+		final CSVMetadata metadata = CSVMetadata.parse( new BufferedReader( new StringReader( head ) ) );
+		final CSVFormat csvFormat = dialect.getFormat()
+				.builder()
+				.setHeader()
+				.setCommentMarker( '#' )
+				.get();
+		final Map< String, Integer > headerMap;
+		try (final CSVParser parser = csvFormat.parse( new StringReader( head ) ))
+		{
+			final Map< String, Integer > map = parser.getHeaderMap();
+			headerMap = ( null == map ) ? Collections.emptyMap() : map;
+		}
+
+		final Header header = new Header( headerMap, metadata, dialect, lastModified, length );
+		synchronized ( CACHE )
+		{
+			CACHE.put( key, header );
+		}
+		return header;
+	}
+
+	/**
+	 * Reads the head of the file, up to the end of the first line that is not
+	 * a comment or empty, without the byte order mark.
+	 */
+	private static String readHead( final File file, final CSVDialect dialect ) throws IOException
+	{
+		final Charset charset = dialect.getCharset();
+		final int bom = dialect.getBOMLength();
+		try (final FileChannel channel = FileChannel.open( file.toPath(), StandardOpenOption.READ ))
+		{
+			ByteBuffer buffer = ByteBuffer.allocate( INITIAL_READ_SIZE );
+			int scanned = bom;
+			boolean lineStart = true;
+			boolean skippedLine = false;
+			while ( true )
+			{
+				final int n = channel.read( buffer );
+				final int limit = buffer.position();
+				final byte[] bytes = buffer.array();
+				if ( !dialect.isASCIICompatible() )
+				{
+					// Line breaks are not single bytes. Only the header is
+					// parsed, so a truncated line after it does no harm.
+					if ( n >= 0 && buffer.hasRemaining() )
+						continue;
+					return new String( bytes, bom, ( limit - bom ) & ~1, charset );
+				}
+				for ( int i = scanned; i < limit; i++ )
+				{
+					final byte b = bytes[ i ];
+					if ( lineStart )
+					{
+						lineStart = false;
+						skippedLine = ( b == '#' || b == '\n' || b == '\r' );
+					}
+					if ( b == '\n' )
+					{
+						if ( !skippedLine )
+							return new String( bytes, bom, i + 1 - bom, charset );
+						lineStart = true;
+					}
+				}
+				scanned = limit;
+
+				if ( n < 0 || limit >= MAX_READ_SIZE )
+					return new String( bytes, bom, limit - bom, charset );
+				if ( !buffer.hasRemaining() )
+				{
+					final ByteBuffer larger = ByteBuffer.allocate( Math.min( MAX_READ_SIZE, 4 * buffer.capacity() ) );
+					buffer.flip();
+					larger.put( buffer );
+					buffer = larger;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The header and metadata of a CSV file.
+	 */
+	public static final class Header
+	{
+
+		private final Map< String, Integer > headerMap;
+
+		private final List< String > headers;
+
+		private final CSVMetadata metadata;
+
+		private final CSVDialect dialect;
+
+		private final HeaderIndex index;
+
+		private final HeaderIndex cleanIndex;
+
+		private final long lastModified;
+
+		private final long length;
+
+		private Header( final Map< String, Integer > headerMap, final CSVMetadata metadata, final CSVDialect dialect, final long lastModified, final long length )
+		{
+			this.dialect = dialect;
+			this.headerMap = Collections.unmodifiableMap( new LinkedHashMap<>( headerMap ) );
+			this.headers = Collections.unmodifiableList( new ArrayList<>( headerMap.keySet() ) );
+			this.metadata = metadata;
+			this.index = HeaderIndex.create( headerMap, false );
+			this.cleanIndex = HeaderIndex.create( headerMap, true );
+			this.lastModified = lastModified;
+			this.length = length;
+		}
+
+		/**
+		 * Returns the map from column names, as they are in the file, to
+		 * column indices.
+		 */
+		public Map< String, Integer > getHeaderMap()
+		{
+			return headerMap;
+		}
+
+		/**
+		 * Returns the column names, in column order.
+		 */
+		public List< String > getHeaders()
+		{
+			return headers;
+		}
+
+		/**
+		 * Returns the index of the column names, as they are in the file.
+		 */
+		public HeaderIndex getIndex()
+		{
+			return index;
+		}
+
+		/**
+		 * Returns the index of the column names, without control and
+		 * invisible characters and without blank names.
+		 */
+		public HeaderIndex getCleanIndex()
+		{
+			return cleanIndex;
+		}
+
+		/**
+		 * Returns the metadata found in the comments before the header.
+		 */
+		public CSVMetadata getMetadata()
+		{
+			return metadata;
+		}
+
+		/**
+		 * Returns the dialect sniffed from the start of the file.
+		 */
+		public CSVDialect getDialect()
+		{
+			return dialect;
+		}
+	}
+}
@@ -22,9 +22,10 @@
 package fiji.plugin.trackmate.importer.csv;
 
 import java.io.BufferedReader;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -56,35 +57,57 @@ public class CSVMetadata
 	private static class CSVMetadataBuilder
 	{
 
-		public CSVMetadata parse( final String filePath ) throws FileNotFoundException, IOException
+		public CSVMetadata parse( final String filePath, final CSVDialect dialect ) throws FileNotFoundException, IOException
+		{
+			try (InputStream in = new FileInputStream( filePath );
+					BufferedReader br = new BufferedReader( dialect.newReader( in ) ))
+			{
+				return parse( br );
+			}
+		}
+
+		public CSVMetadata parse( final BufferedReader br ) throws IOException
 		{
 			final Map< String, String > map = new HashMap<>();
-			try (BufferedReader br = new BufferedReader( new FileReader( filePath ) ))
+			for ( String line; ( line = br.readLine() ) != null; )
 			{
-				for ( String line; ( line = br.readLine() ) != null; )
-				{
-					final String str = line.trim().toLowerCase();
-					if ( !str.startsWith( "#" ) )
-						break;
+				final String str = line.trim().toLowerCase();
+				if ( !str.startsWith( "#" ) )
+					break;
 
-					final String[] split = str.split( "," );
-					if ( split.length < 2 )
-						continue;
+				final String[] split = str.split( "," );
+				if ( split.length < 2 )
+					continue;
 
-					final String key = split[ 0 ].replace( '#', ' ' ).trim();
-					final String value = split[ 1 ];
-					map.put( key, value );
-				}
+				final String key = split[ 0 ].replace( '#', ' ' ).trim();
+				final String value = split[ 1 ];
+				map.put( key, value );
 			}
-			finally
-			{}
-
 			return new CSVMetadata( map );
 		}
 	}
 
 	public static CSVMetadata parse( final String filePath ) throws FileNotFoundException, IOException
 	{
-		return new CSVMetadataBuilder().parse( filePath );
+		return parse( filePath, CSVDialect.sniff( filePath ) );
+	}
+
+	/**
+	 * Parses the metadata of the specified file, decoded with the charset of
+	 * the specified dialect.
+	 */
+	public static CSVMetadata parse( final String filePath, final CSVDialect dialect ) throws FileNotFoundException, IOException
+	{
+		return new CSVMetadataBuilder().parse( filePath, dialect );
+	}
+
+	/**
+	 * Parses the metadata from the comment lines at the start of the
+	 * specified reader. The reader is left after the first line that is not
+	 * a comment.
+	 */
+	public static CSVMetadata parse( final BufferedReader reader ) throws IOException
+	{
+		return new CSVMetadataBuilder().parse( reader );
 	}
 }
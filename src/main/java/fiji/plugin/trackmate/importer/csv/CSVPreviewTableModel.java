@@ -0,0 +1,449 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import javax.swing.SwingUtilities;
+import javax.swing.table.AbstractTableModel;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * A table model that shows the content of a CSV file of any size, reading
+ * only the rows that are displayed.
+ * <p>
+ * A background thread indexes the file, storing the byte offset of one row
+ * every {@link #PAGE_SIZE}. The rows become visible in the table as the
+ * indexing progresses. When the table asks for a row that is not in memory,
+ * the page of rows that contains it is read in the background, and the table
+ * is refreshed when it is ready. Only the last {@link #MAX_CACHED_PAGES}
+ * pages read are kept.
+ * <p>
+ * Rows are indexed by line, so quoted values that span several lines are not
+ * shown properly, and files in a charset that is not a superset of ASCII are
+ * not shown at all.
+ */
+public class CSVPreviewTableModel extends AbstractTableModel implements Closeable
+{
+
+	private static final long serialVersionUID = 1L;
+
+	/**
+	 * Number of rows per page, and between two offsets of the index.
+	 */
+	public static final int PAGE_SIZE = 256;
+
+	/**
+	 * Maximal number of pages kept in memory.
+	 */
+	public static final int MAX_CACHED_PAGES = 16;
+
+	/**
+	 * Maximal number of rows shown. Above that, the table would be taller
+	 * than what Swing can represent.
+	 */
+	public static final int MAX_ROWS = 100_000_000;
+
+	/**
+	 * Minimal time between two notifications of new rows to the table, in
+	 * milliseconds.
+	 */
+	private static final long PUBLISH_INTERVAL = 200;
+
+	private static final String LOADING = "...";
+
+	private final String[] columnNames;
+
+	private final CSVFormat csvFormat;
+
+	private final Charset charset;
+
+	/**
+	 * Whether lines can be found in the bytes of the file.
+	 */
+	private final boolean indexable;
+
+	private final FileChannel channel;
+
+	private final ExecutorService indexer;
+
+	/**
+	 * Reads the pages, one at a time as they share the channel position.
+	 */
+	private final ExecutorService loader;
+
+	private final Future< ? > indexing;
+
+	/**
+	 * Byte offset of every {@link #PAGE_SIZE}th row. Written by the indexing
+	 * thread, read by the page loader under the same lock.
+	 */
+	private long[] pageOffsets = new long[ 1024 ];
+
+	/**
+	 * Number of rows indexed so far, written by the indexing thread.
+	 */
+	private volatile int nIndexedRows;
+
+	/**
+	 * Number of rows shown in the table. Only accessed on the EDT.
+	 */
+	private int nRows;
+
+	/**
+	 * Pages in memory, in access order. Only accessed on the EDT.
+	 */
+	private final Map< Integer, String[][] > pages = new LinkedHashMap< Integer, String[][] >( 2 * MAX_CACHED_PAGES, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< Integer, String[][] > eldest )
+		{
+			return size() > MAX_CACHED_PAGES;
+		}
+	};
+
+	/**
+	 * Pages being read.
+	 */
+	private final Set< Integer > pendingPages = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * The page of the last row requested by the table. Pages far from it are
+	 * not read anymore when their turn comes.
+	 */
+	private volatile int lastRequestedPage;
+
+	private volatile boolean closed;
+
+	/**
+	 * Role of the columns in the import, such as "X" or "Frame".
+	 */
+	private Map< Integer, String > roles = Collections.emptyMap();
+
+	/**
+	 * Creates a model for the specified file, and starts indexing it.
+	 *
+	 * @param file
+	 *            the CSV file.
+	 * @param headers
+	 *            the column names, in order.
+	 * @param dialect
+	 *            the dialect of the file.
+	 */
+	public CSVPreviewTableModel( final File file, final List< String > headers, final CSVDialect dialect ) throws IOException
+	{
+		this.columnNames = headers.toArray( new String[ 0 ] );
+		this.csvFormat = dialect.getFormat();
+		this.charset = dialect.getCharset();
+		this.indexable = dialect.isASCIICompatible();
+		this.channel = FileChannel.open( file.toPath(), StandardOpenOption.READ );
+		final ThreadFactory threadFactory = r -> {
+			final Thread thread = new Thread( r, "TrackMate CSV preview " + file.getName() );
+			thread.setDaemon( true );
+			return thread;
+		};
+		this.indexer = Executors.newSingleThreadExecutor( threadFactory );
+		this.loader = Executors.newSingleThreadExecutor( threadFactory );
+		this.indexing = indexer.submit( this::index );
+	}
+
+	/**
+	 * Sets the role of the columns in the import, for display.
+	 *
+	 * @param roles
+	 *            map from column index to role name. Columns not in the map
+	 *            are not imported.
+	 */
+	public void setRoles( final Map< Integer, String > roles )
+	{
+		this.roles = new HashMap<>( roles );
+		fireTableRowsUpdated( 0, Math.max( 0, nRows - 1 ) );
+	}
+
+	/**
+	 * Returns the role of the specified column in the import, or
+	 * <code>null</code> if it is not imported.
+	 */
+	public String getRole( final int column )
+	{
+		return roles.get( column );
+	}
+
+	/**
+	 * Returns <code>true</code> if the whole file was indexed.
+	 */
+	public boolean isIndexed()
+	{
+		return indexing.isDone();
+	}
+
+	@Override
+	public int getRowCount()
+	{
+		return nRows;
+	}
+
+	@Override
+	public int getColumnCount()
+	{
+		return columnNames.length;
+	}
+
+	@Override
+	public String getColumnName( final int column )
+	{
+		return columnNames[ column ];
+	}
+
+	@Override
+	public Object getValueAt( final int row, final int column )
+	{
+		final int page = row / PAGE_SIZE;
+		lastRequestedPage = page;
+		final String[][] values = pages.get( page );
+		if ( null == values )
+		{
+			requestPage( page );
+			return LOADING;
+		}
+		final int i = row - page * PAGE_SIZE;
+		if ( i >= values.length )
+		{
+			// Page read before it was fully indexed.
+			pages.remove( page );
+			requestPage( page );
+			return LOADING;
+		}
+		if ( column >= values[ i ].length )
+			return "";
+		return values[ i ][ column ];
+	}
+
+	/**
+	 * Stops indexing and reading pages, and closes the file.
+	 */
+	@Override
+	public void close()
+	{
+		closed = true;
+		indexer.shutdownNow();
+		loader.shutdownNow();
+		try
+		{
+			channel.close();
+		}
+		catch ( final IOException e )
+		{
+			// Nothing to do.
+		}
+	}
+
+	private void requestPage( final int page )
+	{
+		if ( closed || !pendingPages.add( page ) )
+			return;
+
+		loader.submit( () -> {
+			if ( closed || Math.abs( page - lastRequestedPage ) > MAX_CACHED_PAGES / 2 )
+			{
+				// Scrolled away meanwhile.
+				pendingPages.remove( page );
+				return;
+			}
+			try
+			{
+				final String[][] values = readPage( page );
+				SwingUtilities.invokeLater( () -> {
+					pendingPages.remove( page );
+					pages.put( page, values );
+					final int first = page * PAGE_SIZE;
+					final int last = Math.min( nRows, first + PAGE_SIZE ) - 1;
+					if ( last >= first )
+						fireTableRowsUpdated( first, last );
+				} );
+			}
+			catch ( final IOException e )
+			{
+				pendingPages.remove( page );
+			}
+		} );
+	}
+
+	private String[][] readPage( final int page ) throws IOException
+	{
+		final long offset;
+		synchronized ( this )
+		{
+			offset = pageOffsets[ page ];
+		}
+
+		final int nPageRows = Math.min( PAGE_SIZE, nIndexedRows - page * PAGE_SIZE );
+		final String[][] values = new String[ Math.max( 0, nPageRows ) ][];
+		final BufferedReader reader = new BufferedReader( new InputStreamReader(
+				Channels.newInputStream( channel.position( offset ) ), charset ) );
+		int i = 0;
+		String line;
+		while ( i < values.length && null != ( line = reader.readLine() ) )
+		{
+			if ( line.isEmpty() || line.charAt( 0 ) == '#' )
+				continue;
+			values[ i++ ] = parseLine( line );
+		}
+		for ( ; i < values.length; i++ )
+			values[ i ] = new String[ 0 ];
+		return values;
+	}
+
+	private String[] parseLine( final String line )
+	{
+		try (final CSVParser parser = CSVParser.parse( line, csvFormat ))
+		{
+			final List< CSVRecord > records = parser.getRecords();
+			if ( records.isEmpty() )
+				return new String[ 0 ];
+			final CSVRecord record = records.get( 0 );
+			final String[] values = new String[ record.size() ];
+			for ( int i = 0; i < values.length; i++ )
+				values[ i ] = record.get( i );
+			return values;
+		}
+		catch ( final IOException | RuntimeException e )
+		{
+			// Malformed line, show it raw.
+			return new String[] { line };
+		}
+	}
+
+	/**
+	 * Indexes the file, storing the offset of every {@link #PAGE_SIZE}th row.
+	 * The header, comments and empty lines are skipped.
+	 */
+	private void index()
+	{
+		if ( !indexable )
+			return;
+
+		final ByteBuffer buffer = ByteBuffer.allocate( 1024 * 1024 );
+		long position = 0;
+		boolean headerSeen = false;
+		boolean lineStart = true;
+		int nRowsIndexed = 0;
+		long lastPublish = System.currentTimeMillis();
+		try
+		{
+			while ( !closed && nRowsIndexed < MAX_ROWS )
+			{
+				buffer.clear();
+				final int n = channel.read( buffer, position );
+				if ( n < 0 )
+					break;
+
+				final byte[] bytes = buffer.array();
+				for ( int i = 0; i < n && nRowsIndexed < MAX_ROWS; i++ )
+				{
+					final byte b = bytes[ i ];
+					if ( lineStart )
+					{
+						lineStart = false;
+						if ( b != '#' && b != '\n' && b != '\r' )
+						{
+							if ( !headerSeen )
+							{
+								headerSeen = true;
+							}
+							else
+							{
+								if ( nRowsIndexed % PAGE_SIZE == 0 )
+									addPageOffset( nRowsIndexed / PAGE_SIZE, position + i );
+								nRowsIndexed++;
+							}
+						}
+					}
+					if ( b == '\n' )
+						lineStart = true;
+				}
+				position += n;
+				nIndexedRows = nRowsIndexed;
+
+				final long now = System.currentTimeMillis();
+				if ( now - lastPublish > PUBLISH_INTERVAL )
+				{
+					lastPublish = now;
+					publish();
+				}
+			}
+		}
+		catch ( final IOException e )
+		{
+			// Closed or unreadable, show what was indexed.
+		}
+		publish();
+	}
+
+	private synchronized void addPageOffset( final int page, final long offset )
+	{
+		if ( page >= pageOffsets.length )
+			pageOffsets = Arrays.copyOf( pageOffsets, 2 * pageOffsets.length );
+		pageOffsets[ page ] = offset;
+	}
+
+	/**
+	 * Notifies the table of the rows indexed since the last call.
+	 */
+	private void publish()
+	{
+		SwingUtilities.invokeLater( () -> {
+			final int indexed = nIndexedRows;
+			if ( closed || indexed <= nRows )
+				return;
+			final int first = nRows;
+			nRows = indexed;
+			fireTableRowsInserted( first, indexed - 1 );
+		} );
+	}
+}
@@ -0,0 +1,713 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.scijava.Cancelable;
+
+/**
+ * Scans a CSV file and returns statistics on its content, without building
+ * any spot or model. This is a dry run of an import, fast enough to profile
+ * files of several gigabytes in seconds.
+ * <p>
+ * The file is split in byte ranges that are scanned in parallel, each on its
+ * own thread with a {@link FileChannel} positional read. Rows are parsed
+ * directly from the bytes, and only the columns needed for the statistics are
+ * parsed. Numbers are parsed without creating strings, except for the rare
+ * values that need full precision.
+ * <p>
+ * Like the importers, the scanner sniffs the delimiter and decimal separator
+ * of the file with {@link CSVDialect}, expects one header line, and skips
+ * empty lines and lines starting with <code>#</code>. Unlike them, it expects
+ * that quoted values do not span several lines, and only reads files whose
+ * charset is a superset of ASCII. Fields are split on the delimiter without
+ * looking for quotes inside them, and only a field that starts with a quote
+ * is parsed as quoted, even if the sniffed sample had none.
+ */
+public class CSVScanner implements Cancelable
+{
+
+	/**
+	 * Initial size of the read buffer of each thread. Grown if a single line
+	 * is larger.
+	 */
+	private static final int BUFFER_SIZE = 4 * 1024 * 1024;
+
+	/**
+	 * Minimal size of a byte range scanned by one task.
+	 */
+	private static final long MIN_RANGE_SIZE = 1024 * 1024;
+
+	private static final double[] POW10 = new double[ 23 ];
+	static
+	{
+		POW10[ 0 ] = 1.;
+		for ( int i = 1; i < POW10.length; i++ )
+			POW10[ i ] = POW10[ i - 1 ] * 10.;
+	}
+
+	private static final int NONE = 0;
+
+	private static final int X = 1;
+
+	private static final int Y = 2;
+
+	private static final int Z = 3;
+
+	private static final int FRAME = 4;
+
+	private static final int TRACK = 5;
+
+	private final String csvFilePath;
+
+	private final int xCol;
+
+	private final int yCol;
+
+	private final int zCol;
+
+	private final int frameCol;
+
+	private final int trackCol;
+
+	private final int nThreads;
+
+	/**
+	 * The role of each column, one of {@link #NONE}, {@link #X}, ...
+	 */
+	private final int[] roles;
+
+	/**
+	 * The dialect of the file, sniffed by {@link #scan()} before the ranges
+	 * are scanned.
+	 */
+	private byte delimiter = ',';
+
+	private byte decimalSeparator = '.';
+
+	private volatile boolean isCanceled;
+
+	private String cancelReason;
+
+	private CSVScanner( final String csvFilePath, final int xCol, final int yCol, final int zCol, final int frameCol, final int trackCol, final int nThreads )
+	{
+		this.csvFilePath = csvFilePath;
+		this.xCol = xCol;
+		this.yCol = yCol;
+		this.zCol = zCol;
+		this.frameCol = frameCol;
+		this.trackCol = trackCol;
+		this.nThreads = nThreads;
+
+		final int maxCol = Math.max( Math.max( Math.max( xCol, yCol ), Math.max( zCol, frameCol ) ), trackCol );
+		this.roles = new int[ maxCol + 1 ];
+		setRole( xCol, X );
+		setRole( yCol, Y );
+		setRole( zCol, Z );
+		setRole( frameCol, FRAME );
+		setRole( trackCol, TRACK );
+	}
+
+	private void setRole( final int col, final int role )
+	{
+		if ( col >= 0 )
+			roles[ col ] = role;
+	}
+
+	/**
+	 * Scans the file.
+	 *
+	 * @return the report, or <code>null</code> if the scan was canceled.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public ScanReport scan() throws IOException
+	{
+		final long start = System.currentTimeMillis();
+		final CSVDialect dialect = CSVDialect.sniff( csvFilePath );
+		if ( !dialect.isASCIICompatible() )
+			throw new IOException( "Cannot scan a file in " + dialect.getCharset() + ", only in a charset compatible with ASCII." );
+		delimiter = ( byte ) dialect.getDelimiter();
+		decimalSeparator = ( byte ) dialect.getDecimalSeparator();
+
+		final ExecutorService executor = Executors.newFixedThreadPool( nThreads, r -> {
+			final Thread thread = new Thread( r, "TrackMate CSV scanner thread" );
+			thread.setDaemon( true );
+			return thread;
+		} );
+		try (final FileChannel channel = FileChannel.open( Paths.get( csvFilePath ), StandardOpenOption.READ ))
+		{
+			final long size = channel.size();
+			final long dataStart = findDataStart( channel );
+
+			// A few ranges per thread, to balance the load.
+			final long dataSize = size - dataStart;
+			final int nRanges = ( int ) Math.max( 1, Math.min( 4L * nThreads, dataSize / MIN_RANGE_SIZE ) );
+			final List< Future< Partial > > futures = new ArrayList<>( nRanges );
+			for ( int i = 0; i < nRanges; i++ )
+			{
+				final long from = dataStart + dataSize * i / nRanges;
+				final long to = dataStart + dataSize * ( i + 1 ) / nRanges;
+				final boolean first = ( i == 0 );
+				futures.add( executor.submit( () -> scanRange( channel, from, to, first ) ) );
+			}
+
+			final Partial total = new Partial();
+			for ( final Future< Partial > future : futures )
+				total.merge( future.get() );
+
+			if ( isCanceled() )
+				return null;
+
+			final long end = System.currentTimeMillis();
+			final double[] min = total.min.clone();
+			final double[] max = total.max.clone();
+			if ( zCol < 0 )
+			{
+				min[ 2 ] = 0.;
+				max[ 2 ] = 0.;
+			}
+			return new ScanReport( csvFilePath, size, total.rows, total.malformed, min, max,
+					total.frames, total.tracks, end - start, nThreads );
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			cancel( "Interrupted." );
+			return null;
+		}
+		catch ( final ExecutionException e )
+		{
+			final Throwable cause = e.getCause();
+			if ( cause instanceof IOException )
+				throw ( IOException ) cause;
+			throw new IOException( "Problem scanning " + csvFilePath, cause );
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Returns the position of the first byte after the header line, skipping
+	 * comments and empty lines before it.
+	 */
+	private static long findDataStart( final FileChannel channel ) throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.allocate( 64 * 1024 );
+		long pos = 0;
+		boolean lineStart = true;
+		boolean inSkippedLine = false;
+		while ( true )
+		{
+			buffer.clear();
+			final int n = channel.read( buffer, pos );
+			if ( n <= 0 )
+				return pos;
+			for ( int i = 0; i < n; i++ )
+			{
+				final byte b = buffer.get( i );
+				if ( lineStart )
+				{
+					lineStart = false;
+					inSkippedLine = ( b == '#' || b == '\n' || b == '\r' );
+				}
+				if ( b == '\n' )
+				{
+					if ( !inSkippedLine )
+						return pos + i + 1;
+					lineStart = true;
+				}
+			}
+			pos += n;
+		}
+	}
+
+	/**
+	 * Scans the lines that start in the specified byte range. The line that
+	 * straddles the start of the range belongs to the previous range, and the
+	 * last line is read to its end even if it goes past the end of the range.
+	 */
+	private Partial scanRange( final FileChannel channel, final long from, final long to, final boolean first ) throws IOException
+	{
+		final Partial partial = new Partial();
+		byte[] buf = new byte[ ( int ) Math.min( BUFFER_SIZE, to - from + 64 * 1024 ) ];
+		// Read from the byte before the range, to know if it starts a line.
+		long bufPos = first ? from : from - 1;
+		boolean skipping = !first;
+		int len = 0;
+		int lineStart = 0;
+		boolean eof = false;
+		while ( !isCanceled() )
+		{
+			if ( len < buf.length )
+			{
+				final int n = channel.read( ByteBuffer.wrap( buf, len, buf.length - len ), bufPos + len );
+				if ( n < 0 )
+					eof = true;
+				else
+					len += n;
+			}
+
+			int i = lineStart;
+			while ( i < len )
+			{
+				if ( buf[ i ] != '\n' )
+				{
+					i++;
+					continue;
+				}
+				if ( skipping )
+					skipping = false;
+				else if ( bufPos + lineStart >= to )
+					return partial;
+				else
+					scanLine( buf, lineStart, i, partial );
+				lineStart = ++i;
+			}
+
+			if ( eof )
+			{
+				// Last line without a line break.
+				if ( !skipping && lineStart < len && bufPos + lineStart < to )
+					scanLine( buf, lineStart, len, partial );
+				return partial;
+			}
+
+			if ( lineStart == 0 && len == buf.length )
+			{
+				// A line longer than the buffer.
+				buf = Arrays.copyOf( buf, 2 * buf.length );
+			}
+			else
+			{
+				System.arraycopy( buf, lineStart, buf, 0, len - lineStart );
+				bufPos += lineStart;
+				len -= lineStart;
+				lineStart = 0;
+			}
+		}
+		return partial;
+	}
+
+	/**
+	 * Parses the needed columns of one line, from <code>start</code>
+	 * included to <code>end</code> excluded, without the line break.
+	 */
+	private void scanLine( final byte[] buf, final int start, int end, final Partial partial )
+	{
+		if ( end > start && buf[ end - 1 ] == '\r' )
+			end--;
+		if ( end == start || buf[ start ] == '#' )
+			return;
+
+		partial.rows++;
+		double x = Double.NaN;
+		double y = Double.NaN;
+		double z = 0.;
+		long frame = Long.MIN_VALUE;
+		long track = Long.MIN_VALUE;
+		int found = 0;
+		int col = 0;
+		int pos = start;
+		while ( col < roles.length )
+		{
+			// Field bounds, without the quotes if quoted. Most fields are
+			// not, and are only scanned for the delimiter.
+			int fieldStart = pos;
+			int fieldEnd;
+			int next;
+			if ( pos < end && buf[ pos ] == '"' )
+			{
+				fieldStart = pos + 1;
+				int q = fieldStart;
+				while ( q < end && !( buf[ q ] == '"' && ( q + 1 >= end || buf[ q + 1 ] != '"' ) ) )
+					q += ( buf[ q ] == '"' ) ? 2 : 1;
+				fieldEnd = Math.min( q, end );
+				next = fieldEnd + 1;
+				while ( next < end && buf[ next ] != delimiter )
+					next++;
+			}
+			else
+			{
+				next = pos;
+				while ( next < end && buf[ next ] != delimiter )
+					next++;
+				fieldEnd = next;
+			}
+
+			switch ( roles[ col ] )
+			{
+			case X:
+				x = parseDouble( buf, fieldStart, fieldEnd, decimalSeparator );
+				found++;
+				break;
+			case Y:
+				y = parseDouble( buf, fieldStart, fieldEnd, decimalSeparator );
+				found++;
+				break;
+			case Z:
+				z = parseDouble( buf, fieldStart, fieldEnd, decimalSeparator );
+				found++;
+				break;
+			case FRAME:
+				frame = parseInt( buf, fieldStart, fieldEnd );
+				found++;
+				break;
+			case TRACK:
+				track = parseInt( buf, fieldStart, fieldEnd );
+				found++;
+				break;
+			default:
+				break;
+			}
+
+			col++;
+			if ( next >= end )
+				break;
+			pos = next + 1;
+		}
+
+		final int expected = ( xCol >= 0 ? 1 : 0 ) + ( yCol >= 0 ? 1 : 0 ) + ( zCol >= 0 ? 1 : 0 ) + ( frameCol >= 0 ? 1 : 0 ) + ( trackCol >= 0 ? 1 : 0 );
+		if ( found < expected
+				|| ( xCol >= 0 && !Double.isFinite( x ) )
+				|| ( yCol >= 0 && !Double.isFinite( y ) )
+				|| ( zCol >= 0 && !Double.isFinite( z ) )
+				|| ( frameCol >= 0 && frame == Long.MIN_VALUE )
+				|| ( trackCol >= 0 && track == Long.MIN_VALUE ) )
+		{
+			partial.malformed++;
+			return;
+		}
+
+		if ( xCol >= 0 )
+		{
+			partial.min[ 0 ] = Math.min( partial.min[ 0 ], x );
+			partial.max[ 0 ] = Math.max( partial.max[ 0 ], x );
+		}
+		if ( yCol >= 0 )
+		{
+			partial.min[ 1 ] = Math.min( partial.min[ 1 ], y );
+			partial.max[ 1 ] = Math.max( partial.max[ 1 ], y );
+		}
+		if ( zCol >= 0 )
+		{
+			partial.min[ 2 ] = Math.min( partial.min[ 2 ], z );
+			partial.max[ 2 ] = Math.max( partial.max[ 2 ], z );
+		}
+		if ( frameCol >= 0 )
+			partial.frames.increment( ( int ) frame );
+		if ( trackCol >= 0 )
+			partial.tracks.increment( ( int ) track );
+	}
+
+	/**
+	 * Parses a decimal number from bytes. Numbers with at most 15 significant
+	 * digits and a small exponent are computed exactly from their digits.
+	 * Other values are handed to {@link Double#parseDouble(String)}.
+	 *
+	 * @return the number, or {@link Double#NaN} if it cannot be parsed.
+	 */
+	static double parseDouble( final byte[] buf, final int start, final int end )
+	{
+		return parseDouble( buf, start, end, ( byte ) '.' );
+	}
+
+	/**
+	 * Parses a decimal number from bytes, written with the specified decimal
+	 * separator.
+	 *
+	 * @return the number, or {@link Double#NaN} if it cannot be parsed.
+	 */
+	static double parseDouble( final byte[] buf, int start, int end, final byte decimalSeparator )
+	{
+		while ( start < end && buf[ start ] == ' ' )
+			start++;
+		while ( end > start && buf[ end - 1 ] == ' ' )
+			end--;
+		if ( start == end )
+			return Double.NaN;
+
+		int i = start;
+		boolean negative = false;
+		if ( buf[ i ] == '-' || buf[ i ] == '+' )
+		{
+			negative = buf[ i ] == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean any = false;
+		while ( i < end && buf[ i ] >= '0' && buf[ i ] <= '9' )
+		{
+			if ( digits < 18 )
+			{
+				mantissa = 10 * mantissa + ( buf[ i ] - '0' );
+				if ( mantissa > 0 )
+					digits++;
+			}
+			else
+			{
+				exponent++;
+			}
+			any = true;
+			i++;
+		}
+		if ( i < end && buf[ i ] == decimalSeparator )
+		{
+			i++;
+			while ( i < end && buf[ i ] >= '0' && buf[ i ] <= '9' )
+			{
+				if ( digits < 18 )
+				{
+					mantissa = 10 * mantissa + ( buf[ i ] - '0' );
+					if ( mantissa > 0 )
+						digits++;
+					exponent--;
+				}
+				any = true;
+				i++;
+			}
+		}
+		if ( any && i < end && ( buf[ i ] == 'e' || buf[ i ] == 'E' ) )
+		{
+			i++;
+			boolean negativeExponent = false;
+			if ( i < end && ( buf[ i ] == '-' || buf[ i ] == '+' ) )
+			{
+				negativeExponent = buf[ i ] == '-';
+				i++;
+			}
+			int e = 0;
+			boolean anyExponent = false;
+			while ( i < end && buf[ i ] >= '0' && buf[ i ] <= '9' && e < 10000 )
+			{
+				e = 10 * e + ( buf[ i ] - '0' );
+				anyExponent = true;
+				i++;
+			}
+			if ( !anyExponent )
+				return parseDoubleSlow( buf, start, end, decimalSeparator );
+			exponent += negativeExponent ? -e : e;
+		}
+		if ( !any || i != end || digits > 15 || exponent > 22 || exponent < -22 )
+			return parseDoubleSlow( buf, start, end, decimalSeparator );
+
+		final double value = ( exponent >= 0 ) ? mantissa * POW10[ exponent ] : mantissa / POW10[ -exponent ];
+		return negative ? -value : value;
+	}
+
+	private static double parseDoubleSlow( final byte[] buf, final int start, final int end, final byte decimalSeparator )
+	{
+		final String str = new String( buf, start, end - start, StandardCharsets.ISO_8859_1 );
+		try
+		{
+			return Double.parseDouble( ( decimalSeparator == '.' ) ? str : str.replace( ( char ) decimalSeparator, '.' ) );
+		}
+		catch ( final NumberFormatException e )
+		{
+			return Double.NaN;
+		}
+	}
+
+	/**
+	 * Parses an int from bytes, like {@link Integer#parseInt(String)}.
+	 *
+	 * @return the int, or {@link Long#MIN_VALUE} if it cannot be parsed, or
+	 *         if it is {@link Integer#MIN_VALUE}.
+	 */
+	static long parseInt( final byte[] buf, final int start, final int end )
+	{
+		int i = start;
+		boolean negative = false;
+		if ( i < end && ( buf[ i ] == '-' || buf[ i ] == '+' ) )
+		{
+			negative = buf[ i ] == '-';
+			i++;
+		}
+		// Leading zeros do not count in the length.
+		while ( end - i > 1 && buf[ i ] == '0' )
+			i++;
+		if ( i == end || end - i > 10 )
+			return Long.MIN_VALUE;
+		long value = 0;
+		for ( ; i < end; i++ )
+		{
+			final int d = buf[ i ] - '0';
+			if ( d < 0 || d > 9 )
+				return Long.MIN_VALUE;
+			value = 10 * value + d;
+		}
+		if ( negative )
+			value = -value;
+		if ( value <= Integer.MIN_VALUE || value > Integer.MAX_VALUE )
+			return Long.MIN_VALUE;
+		return value;
+	}
+
+	/**
+	 * The statistics of one byte range.
+	 */
+	private static final class Partial
+	{
+
+		private long rows;
+
+		private long malformed;
+
+		private final double[] min = new double[] { Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY };
+
+		private final double[] max = new double[] { Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY };
+
+		private final IntCounter frames = new IntCounter();
+
+		private final IntCounter tracks = new IntCounter();
+
+		private void merge( final Partial other )
+		{
+			rows += other.rows;
+			malformed += other.malformed;
+			for ( int d = 0; d < 3; d++ )
+			{
+				min[ d ] = Math.min( min[ d ], other.min[ d ] );
+				max[ d ] = Math.max( max[ d ], other.max[ d ] );
+			}
+			frames.addAll( other.frames );
+			tracks.addAll( other.tracks );
+		}
+	}
+
+	@Override
+	public boolean isCanceled()
+	{
+		return isCanceled;
+	}
+
+	@Override
+	public void cancel( final String reason )
+	{
+		cancelReason = reason;
+		isCanceled = true;
+	}
+
+	@Override
+	public String getCancelReason()
+	{
+		return cancelReason;
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private String csvFilePath;
+
+		private int xCol = -1;
+
+		private int yCol = -1;
+
+		private int zCol = -1;
+
+		private int frameCol = -1;
+
+		private int trackCol = -1;
+
+		private int nThreads = Runtime.getRuntime().availableProcessors();
+
+		private Builder()
+		{}
+
+		public Builder csvFilePath( final String csvFilePath )
+		{
+			this.csvFilePath = csvFilePath;
+			return this;
+		}
+
+		public Builder xCol( final int xCol )
+		{
+			this.xCol = xCol;
+			return this;
+		}
+
+		public Builder yCol( final int yCol )
+		{
+			this.yCol = yCol;
+			return this;
+		}
+
+		public Builder zCol( final int zCol )
+		{
+			this.zCol = zCol;
+			return this;
+		}
+
+		public Builder frameCol( final int frameCol )
+		{
+			this.frameCol = frameCol;
+			return this;
+		}
+
+		public Builder trackCol( final int trackCol )
+		{
+			this.trackCol = trackCol;
+			return this;
+		}
+
+		/**
+		 * The number of threads to scan with. Defaults to the number of
+		 * processors.
+		 */
+		public Builder nThreads( final int nThreads )
+		{
+			this.nThreads = nThreads;
+			return this;
+		}
+
+		public CSVScanner create()
+		{
+			if ( null == csvFilePath )
+				throw new IllegalArgumentException( "The CSV file path is not set." );
+			if ( nThreads < 1 )
+				throw new IllegalArgumentException( "The number of threads must be at least 1, was " + nThreads + "." );
+			return new CSVScanner( csvFilePath, xCol, yCol, zCol, frameCol, trackCol, Math.max( 1, nThreads ) );
+		}
+	}
+}
@@ -0,0 +1,329 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.awt.Component;
+import java.awt.event.ActionListener;
+import java.awt.event.KeyAdapter;
+import java.awt.event.KeyEvent;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.swing.AbstractListModel;
+import javax.swing.ComboBoxEditor;
+import javax.swing.ComboBoxModel;
+import javax.swing.JComboBox;
+import javax.swing.JList;
+import javax.swing.SwingUtilities;
+import javax.swing.event.PopupMenuEvent;
+import javax.swing.event.PopupMenuListener;
+import javax.swing.plaf.basic.ComboPopup;
+import javax.swing.text.JTextComponent;
+
+/**
+ * A combo-box model to choose a column of a CSV file, backed by a
+ * {@link HeaderIndex}.
+ * <p>
+ * The model does not copy the column names: all the column choosers of a
+ * GUI can share the same index, and creating a model is instantaneous even
+ * for files with thousands of columns. The list can be filtered by a text
+ * typed by the user, and the filtered list is only computed when the combo
+ * box asks for it. Optional columns get an extra 'none' item at the end of
+ * the list, that is never filtered out.
+ * <p>
+ * Use {@link #install(JComboBox)} once on a combo box to let the user
+ * filter its list by typing in it.
+ */
+public class ColumnComboBoxModel extends AbstractListModel< String > implements ComboBoxModel< String >
+{
+
+	private static final long serialVersionUID = 1L;
+
+	private final HeaderIndex index;
+
+	private final String none;
+
+	private String filter = "";
+
+	/**
+	 * Positions in the index of the columns matching the filter. Is
+	 * <code>null</code> when there is no filter, and must be recomputed when
+	 * {@link #dirty}.
+	 */
+	private int[] filtered;
+
+	private boolean dirty;
+
+	private Object selected;
+
+	/**
+	 * Creates a model to choose a column of the specified index.
+	 *
+	 * @param index
+	 *            the column index.
+	 * @param none
+	 *            the item to add at the end of the list for optional
+	 *            columns, or <code>null</code> for mandatory columns.
+	 */
+	public ColumnComboBoxModel( final HeaderIndex index, final String none )
+	{
+		this.index = index;
+		this.none = none;
+	}
+
+	/**
+	 * Returns the column index this model is backed by.
+	 */
+	public HeaderIndex getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Only lists the columns whose name contains the specified text, ignoring
+	 * case. An empty text lists all the columns.
+	 */
+	public void setFilter( final String text )
+	{
+		final String key = ( null == text ) ? "" : text.trim().toLowerCase( Locale.ROOT );
+		if ( key.equals( filter ) )
+			return;
+		filter = key;
+		filtered = null;
+		dirty = !key.isEmpty();
+		fireContentsChanged( this, 0, Integer.MAX_VALUE );
+	}
+
+	@Override
+	public int getSize()
+	{
+		final int size = ( null == filteredPositions() ) ? index.size() : filtered.length;
+		return ( null == none ) ? size : size + 1;
+	}
+
+	@Override
+	public String getElementAt( final int i )
+	{
+		final int[] positions = filteredPositions();
+		final int size = ( null == positions ) ? index.size() : positions.length;
+		if ( i == size && null != none )
+			return none;
+		return index.getName( ( null == positions ) ? i : positions[ i ] );
+	}
+
+	/**
+	 * Selects the specified item. Items that are not exactly a column name
+	 * nor the 'none' item are ignored. The text typed by the user is matched
+	 * to a column by the editor set by {@link #install(JComboBox)}.
+	 */
+	@Override
+	public void setSelectedItem( final Object item )
+	{
+		if ( null == item )
+			selected = null;
+		else if ( ( null != none && none.equals( item ) ) || index.indexOf( item ) >= 0 )
+			selected = item;
+		// Also refresh the editor when the item was ignored.
+		fireContentsChanged( this, -1, -1 );
+	}
+
+	/**
+	 * Returns the item best matching a text typed by the user: the 'none'
+	 * item if the text is it, or else the column determined by
+	 * {@link HeaderIndex#find(String)}. Returns <code>null</code> if no column
+	 * matches.
+	 */
+	public String match( final String text )
+	{
+		if ( null != none && none.equals( text ) )
+			return none;
+		final int position = index.find( text );
+		return ( position < 0 ) ? null : index.getName( position );
+	}
+
+	@Override
+	public Object getSelectedItem()
+	{
+		return selected;
+	}
+
+	private int[] filteredPositions()
+	{
+		if ( dirty )
+		{
+			final int[] positions = new int[ index.size() ];
+			int n = 0;
+			for ( int i = 0; i < index.size(); i++ )
+				if ( index.getKey( i ).contains( filter ) )
+					positions[ n++ ] = i;
+			filtered = Arrays.copyOf( positions, n );
+			dirty = false;
+		}
+		return filtered;
+	}
+
+	/**
+	 * Sets a new model on the specified combo box. The combo box and its list
+	 * are sized after the longest column name rather than after all their
+	 * items, which would be slow for files with many columns.
+	 */
+	@SuppressWarnings( "unchecked" )
+	public static void setModel( final JComboBox< String > comboBox, final ColumnComboBoxModel model )
+	{
+		final String prototype = model.index.getPrototype();
+		comboBox.setPrototypeDisplayValue( prototype );
+		final Object popup = comboBox.getUI().getAccessibleChild( comboBox, 0 );
+		if ( popup instanceof ComboPopup )
+		{
+			final JList< Object > list = ( ( ComboPopup ) popup ).getList();
+			list.setPrototypeCellValue( prototype );
+		}
+		comboBox.setModel( model );
+	}
+
+	/**
+	 * Makes the specified combo box editable, and filters its list with the
+	 * text typed in it when its model is a {@link ColumnComboBoxModel}.
+	 * Pressing enter or leaving the combo box selects the column best
+	 * matching the text.
+	 */
+	public static void install( final JComboBox< String > comboBox )
+	{
+		comboBox.setEditor( new MatchingEditor( comboBox, comboBox.getEditor() ) );
+		comboBox.setEditable( true );
+		final Component editor = comboBox.getEditor().getEditorComponent();
+		if ( !( editor instanceof JTextComponent ) )
+			return;
+
+		final JTextComponent text = ( JTextComponent ) editor;
+		final boolean[] refreshing = new boolean[] { false };
+		text.addKeyListener( new KeyAdapter()
+		{
+			@Override
+			public void keyReleased( final KeyEvent e )
+			{
+				if ( !( comboBox.getModel() instanceof ColumnComboBoxModel )
+						|| e.isActionKey()
+						|| e.getKeyChar() == KeyEvent.CHAR_UNDEFINED
+						|| e.getKeyCode() == KeyEvent.VK_ENTER
+						|| e.getKeyCode() == KeyEvent.VK_ESCAPE )
+					return;
+
+				// Changing the list resets the editor, so restore the text.
+				final String typed = text.getText();
+				final int caret = text.getCaretPosition();
+				( ( ColumnComboBoxModel ) comboBox.getModel() ).setFilter( typed );
+				text.setText( typed );
+				text.setCaretPosition( Math.min( caret, typed.length() ) );
+
+				// Resize the popup to the filtered list.
+				if ( comboBox.isShowing() )
+				{
+					refreshing[ 0 ] = true;
+					comboBox.hidePopup();
+					comboBox.showPopup();
+					refreshing[ 0 ] = false;
+				}
+			}
+		} );
+		comboBox.addPopupMenuListener( new PopupMenuListener()
+		{
+			@Override
+			public void popupMenuWillBecomeVisible( final PopupMenuEvent e )
+			{}
+
+			@Override
+			public void popupMenuWillBecomeInvisible( final PopupMenuEvent e )
+			{
+				if ( refreshing[ 0 ] || !( comboBox.getModel() instanceof ColumnComboBoxModel ) )
+					return;
+
+				// Later, so that the typed text is committed first.
+				final ColumnComboBoxModel model = ( ColumnComboBoxModel ) comboBox.getModel();
+				SwingUtilities.invokeLater( () -> model.setFilter( "" ) );
+			}
+
+			@Override
+			public void popupMenuCanceled( final PopupMenuEvent e )
+			{}
+		} );
+	}
+
+	/**
+	 * An editor that commits the column best matching the typed text, rather
+	 * than the text itself, so that only the text typed by the user is
+	 * matched loosely.
+	 */
+	private static final class MatchingEditor implements ComboBoxEditor
+	{
+
+		private final JComboBox< String > comboBox;
+
+		private final ComboBoxEditor editor;
+
+		private MatchingEditor( final JComboBox< String > comboBox, final ComboBoxEditor editor )
+		{
+			this.comboBox = comboBox;
+			this.editor = editor;
+		}
+
+		@Override
+		public Object getItem()
+		{
+			final Object item = editor.getItem();
+			if ( null == item || !( comboBox.getModel() instanceof ColumnComboBoxModel ) )
+				return item;
+			final String match = ( ( ColumnComboBoxModel ) comboBox.getModel() ).match( item.toString() );
+			return ( null == match ) ? item : match;
+		}
+
+		@Override
+		public Component getEditorComponent()
+		{
+			return editor.getEditorComponent();
+		}
+
+		@Override
+		public void setItem( final Object item )
+		{
+			editor.setItem( item );
+		}
+
+		@Override
+		public void selectAll()
+		{
+			editor.selectAll();
+		}
+
+		@Override
+		public void addActionListener( final ActionListener l )
+		{
+			editor.addActionListener( l );
+		}
+
+		@Override
+		public void removeActionListener( final ActionListener l )
+		{
+			editor.removeActionListener( l );
+		}
+	}
+}
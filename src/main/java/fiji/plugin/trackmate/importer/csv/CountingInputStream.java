@@ -0,0 +1,91 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that counts the bytes read through it, so that the progress
+ * of an import can be reported against the file size.
+ */
+public class CountingInputStream extends FilterInputStream
+{
+
+	private volatile long count;
+
+	private long mark;
+
+	public CountingInputStream( final InputStream in )
+	{
+		super( in );
+	}
+
+	/**
+	 * Returns the number of bytes read so far.
+	 */
+	public long getCount()
+	{
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		final int b = super.read();
+		if ( b >= 0 )
+			count++;
+		return b;
+	}
+
+	@Override
+	public int read( final byte[] b, final int off, final int len ) throws IOException
+	{
+		final int n = super.read( b, off, len );
+		if ( n > 0 )
+			count += n;
+		return n;
+	}
+
+	@Override
+	public long skip( final long n ) throws IOException
+	{
+		final long skipped = super.skip( n );
+		count += skipped;
+		return skipped;
+	}
+
+	@Override
+	public synchronized void mark( final int readlimit )
+	{
+		super.mark( readlimit );
+		mark = count;
+	}
+
+	@Override
+	public synchronized void reset() throws IOException
+	{
+		super.reset();
+		count = mark;
+	}
+}
@@ -0,0 +1,100 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounds the CPU-bound phases of concurrent imports: building the spots,
+ * building the model and writing the XML file. Reading the CSV files happens
+ * outside of the permits, so that imports waiting on their storage do not
+ * hold a processor.
+ * <p>
+ * The permits also own the pool that parses the shards of sharded imports, so
+ * that many sharded imports in flight share as many threads as permits
+ * instead of starting one pool each.
+ */
+class CpuPermits
+{
+
+	private final Semaphore semaphore;
+
+	private final int size;
+
+	private ExecutorService shardExecutor;
+
+	CpuPermits( final int size )
+	{
+		this.size = size;
+		this.semaphore = new Semaphore( size );
+	}
+
+	/**
+	 * Returns the number of permits, that is how many CPU-bound phases run at
+	 * once.
+	 */
+	int size()
+	{
+		return size;
+	}
+
+	void acquire() throws InterruptedException
+	{
+		semaphore.acquire();
+	}
+
+	void release()
+	{
+		semaphore.release();
+	}
+
+	/**
+	 * Returns the pool shared by the imports to parse their shards, with as
+	 * many daemon threads as permits. It is created on first use.
+	 */
+	synchronized ExecutorService shardExecutor()
+	{
+		if ( null == shardExecutor )
+		{
+			final AtomicInteger threadCounter = new AtomicInteger();
+			shardExecutor = Executors.newFixedThreadPool( size, r -> {
+				final Thread thread = new Thread( r, "TrackMate CSV importer shard thread " + threadCounter.getAndIncrement() );
+				thread.setDaemon( true );
+				return thread;
+			} );
+		}
+		return shardExecutor;
+	}
+
+	/**
+	 * Releases the threads of the shard pool, once no import uses it.
+	 */
+	synchronized void shutdown()
+	{
+		if ( null != shardExecutor )
+			shardExecutor.shutdown();
+		shardExecutor = null;
+	}
+}
@@ -0,0 +1,469 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.awt.Color;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+
+import fiji.plugin.trackmate.Logger;
+
+/**
+ * Command-line entry point of the importer, converting a CSV file to a
+ * TrackMate XML file. It is the plain Java counterpart of the
+ * <code>CsvToTrackMate.py</code> script, and does not need Fiji, Jython nor a
+ * SciJava context: only the importer jar and its dependencies on the class
+ * path.
+ *
+ * <pre>
+ * java -cp trackmate-csv-importer-cli.jar fiji.plugin.trackmate.importer.csv.CsvToTrackMate \
+ * 	--csvFilePath=/path/to/MyCsvFile.csv \
+ * 	--imageFilePath=/path/to/MyImage.tif \
+ * 	--targetFilePath=/path/to/TrackMateFile.xml \
+ * 	--xCol=POSITION_X --yCol=POSITION_Y --frameCol=FRAME --radius=2
+ * </pre>
+ *
+ * Columns can be specified by their 0-based index or by their name in the
+ * CSV header. Options can be written as <code>--name=value</code> or
+ * <code>--name value</code>. Run with <code>--help</code> for the list.
+ * <p>
+ * The exit code is 0 on success, 1 if the import failed and 2 if the
+ * arguments are invalid.
+ */
+public class CsvToTrackMate
+{
+
+	private static final String[] COLUMN_OPTIONS = new String[] {
+			"xCol", "yCol", "zCol", "frameCol", "idCol", "qualityCol", "nameCol", "trackCol", "radiusCol", "parentCol", "timeCol" };
+
+	/**
+	 * Option names and their help, in the order they are printed.
+	 */
+	private static final Map< String, String > OPTIONS = new LinkedHashMap<>();
+	static
+	{
+		OPTIONS.put( "csvFilePath", "The path to the CSV file to import, or a glob pattern on the file name to import several files with the same header into one model. Mandatory." );
+		OPTIONS.put( "imageFilePath", "The path to the image file. Mandatory." );
+		OPTIONS.put( "targetFilePath", "The path to the TrackMate XML file to create. Mandatory." );
+		OPTIONS.put( "xCol", "The column of the spot X positions. Mandatory." );
+		OPTIONS.put( "yCol", "The column of the spot Y positions. Mandatory." );
+		OPTIONS.put( "zCol", "The column of the spot Z positions." );
+		OPTIONS.put( "frameCol", "The column of the spot frames. Mandatory, unless --timeCol is set." );
+		OPTIONS.put( "timeCol", "The column of the spot timestamps, converted to frames, instead of --frameCol." );
+		OPTIONS.put( "frameBinning", "INTERVAL (default) to bin the timestamps with the frame interval, DISTINCT to number their distinct values." );
+		OPTIONS.put( "timeInterval", "The frame interval used to bin the timestamps. Defaults to the one of the image." );
+		OPTIONS.put( "timeScale", "The factor converting the timestamps to the time unit of the image, such as 0.001 for milliseconds to seconds." );
+		OPTIONS.put( "idCol", "The column of the spot IDs." );
+		OPTIONS.put( "qualityCol", "The column of the spot quality values." );
+		OPTIONS.put( "nameCol", "The column of the spot names." );
+		OPTIONS.put( "trackCol", "The column of the spot track indices." );
+		OPTIONS.put( "radiusCol", "The column of the spot radiuses." );
+		OPTIONS.put( "parentCol", "The column of the ID of the parent of each spot, to import lineages. Needs --idCol." );
+		OPTIONS.put( "edgeFilePath", "The path to a CSV file of links between spot IDs, to import lineages. Needs --idCol." );
+		OPTIONS.put( "edgeSourceCol", "The column of the source spot IDs in the edge file." );
+		OPTIONS.put( "edgeTargetCol", "The column of the target spot IDs in the edge file." );
+		OPTIONS.put( "featureCols", "Comma-separated extra numeric columns to import as spot features, named after their header." );
+		OPTIONS.put( "radius", "The radius of all spots, if there is no radius column." );
+		OPTIONS.put( "declareAllFeatures", "If true (default), all the available features are declared." );
+		OPTIONS.put( "maxMalformedRows", "The number of malformed rows above which the import fails." );
+		OPTIONS.put( "maxMalformedFraction", "The fraction of malformed rows above which the import fails." );
+		OPTIONS.put( "trackIDPolicy", "STITCH (default) to merge the tracks with the same ID in several files, NAMESPACE to keep them apart." );
+		OPTIONS.put( "shardThreads", "The maximal number of files parsed at once. Defaults to the number of processors." );
+		OPTIONS.put( "quiet", "If true, only errors are printed." );
+		OPTIONS.put( "help", "Prints this help." );
+	}
+
+	public static void main( final String[] args )
+	{
+		System.exit( run( args, System.out, System.err ) );
+	}
+
+	/**
+	 * Runs the conversion with the specified arguments.
+	 *
+	 * @return the exit code.
+	 */
+	public static int run( final String[] args, final PrintStream out, final PrintStream err )
+	{
+		final Map< String, String > options;
+		try
+		{
+			options = parseArguments( args );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			err.println( e.getMessage() );
+			printUsage( err );
+			return 2;
+		}
+
+		if ( options.containsKey( "help" ) )
+		{
+			printUsage( out );
+			return 0;
+		}
+
+		final TrackMateImporter importer;
+		try
+		{
+			final boolean quiet = parseBoolean( options, "quiet", false );
+			importer = createImporter( options, new StreamLogger( quiet ? null : out, err ) );
+		}
+		catch ( final IllegalArgumentException e )
+		{
+			err.println( e.getMessage() );
+			return 2;
+		}
+
+		final boolean ok = importer.saveTo( new File( options.get( "targetFilePath" ) ) );
+		if ( !ok )
+		{
+			err.println( importer.getErrorMessage() );
+			return 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Creates an importer configured with the specified options, with the same
+	 * names and values as on the command line.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if an option is missing or invalid.
+	 */
+	static TrackMateImporter createImporter( final Map< String, String > options, final Logger logger )
+	{
+		for ( final String name : options.keySet() )
+			if ( !OPTIONS.containsKey( name ) )
+				throw new IllegalArgumentException( "Unknown option: " + name );
+
+		for ( final String mandatory : new String[] { "csvFilePath", "imageFilePath", "targetFilePath", "xCol", "yCol" } )
+			if ( !options.containsKey( mandatory ) )
+				throw new IllegalArgumentException( "Missing mandatory option --" + mandatory + "." );
+		if ( options.containsKey( "frameCol" ) == options.containsKey( "timeCol" ) )
+			throw new IllegalArgumentException( "Please specify either --frameCol or --timeCol." );
+		if ( !options.containsKey( "radius" ) && !options.containsKey( "radiusCol" ) )
+			throw new IllegalArgumentException( "Please specify at least --radius or --radiusCol." );
+
+		// A glob pattern imports several files, whose header is the one of the first.
+		final String csvFileGlob = options.get( "csvFilePath" );
+		final boolean sharded = csvFileGlob.indexOf( '*' ) >= 0 || csvFileGlob.indexOf( '?' ) >= 0;
+		final String csvFilePath = sharded ? TrackMateImporter.listFiles( csvFileGlob ).get( 0 ) : csvFileGlob;
+		final Map< String, Integer > columns = resolveColumns( csvFilePath, options, Arrays.asList( COLUMN_OPTIONS ) );
+
+		final TrackMateImporter.Builder builder = TrackMateImporter.builder()
+				.csvFilePath( csvFilePath )
+				.imageFilePath( options.get( "imageFilePath" ) )
+				.logger( logger )
+				.declareAllFeatures( parseBoolean( options, "declareAllFeatures", true ) )
+				.xCol( columns.get( "xCol" ) )
+				.yCol( columns.get( "yCol" ) );
+
+		if ( columns.containsKey( "frameCol" ) )
+			builder.frameCol( columns.get( "frameCol" ) );
+		if ( columns.containsKey( "timeCol" ) )
+			builder.timeCol( columns.get( "timeCol" ) );
+		if ( options.containsKey( "frameBinning" ) )
+		{
+			try
+			{
+				builder.frameBinning( TrackMateImporter.FrameBinning.valueOf( options.get( "frameBinning" ).toUpperCase() ) );
+			}
+			catch ( final IllegalArgumentException e )
+			{
+				throw new IllegalArgumentException( "Invalid value for --frameBinning: " + options.get( "frameBinning" ) );
+			}
+		}
+		if ( options.containsKey( "timeInterval" ) )
+			builder.timeInterval( parseDouble( options, "timeInterval" ) );
+		if ( options.containsKey( "timeScale" ) )
+			builder.timeScale( parseDouble( options, "timeScale" ) );
+
+		if ( columns.containsKey( "zCol" ) )
+			builder.zCol( columns.get( "zCol" ) );
+		if ( columns.containsKey( "idCol" ) )
+			builder.idCol( columns.get( "idCol" ) );
+		if ( columns.containsKey( "qualityCol" ) )
+			builder.qualityCol( columns.get( "qualityCol" ) );
+		if ( columns.containsKey( "nameCol" ) )
+			builder.nameCol( columns.get( "nameCol" ) );
+		if ( columns.containsKey( "trackCol" ) )
+			builder.trackCol( columns.get( "trackCol" ) );
+		if ( columns.containsKey( "radiusCol" ) )
+			builder.radiusCol( columns.get( "radiusCol" ) );
+		if ( columns.containsKey( "parentCol" ) )
+			builder.parentCol( columns.get( "parentCol" ) );
+		if ( options.containsKey( "edgeFilePath" ) )
+		{
+			final String edgeFilePath = options.get( "edgeFilePath" );
+			if ( !options.containsKey( "edgeSourceCol" ) || !options.containsKey( "edgeTargetCol" ) )
+				throw new IllegalArgumentException( "Please specify --edgeSourceCol and --edgeTargetCol with --edgeFilePath." );
+			final Map< String, String > edgeOptions = new HashMap<>();
+			edgeOptions.put( "edgeSourceCol", options.get( "edgeSourceCol" ) );
+			edgeOptions.put( "edgeTargetCol", options.get( "edgeTargetCol" ) );
+			final Map< String, Integer > edgeColumns = resolveColumns( edgeFilePath, edgeOptions, edgeOptions.keySet() );
+			builder.edgeFile( edgeFilePath, edgeColumns.get( "edgeSourceCol" ), edgeColumns.get( "edgeTargetCol" ) );
+		}
+		if ( options.containsKey( "featureCols" ) )
+			builder.featureColumns( resolveFeatureColumns( csvFilePath, options.get( "featureCols" ) ) );
+		if ( options.containsKey( "radius" ) )
+			builder.radius( parseDouble( options, "radius" ) );
+		if ( options.containsKey( "maxMalformedRows" ) )
+			builder.maxMalformedRows( ( long ) parseDouble( options, "maxMalformedRows" ) );
+		if ( options.containsKey( "maxMalformedFraction" ) )
+			builder.maxMalformedFraction( parseDouble( options, "maxMalformedFraction" ) );
+		if ( sharded )
+			builder.csvFileGlob( csvFileGlob );
+		if ( options.containsKey( "trackIDPolicy" ) )
+		{
+			try
+			{
+				builder.trackIDPolicy( TrackMateImporter.TrackIDPolicy.valueOf( options.get( "trackIDPolicy" ).toUpperCase() ) );
+			}
+			catch ( final IllegalArgumentException e )
+			{
+				throw new IllegalArgumentException( "Invalid value for --trackIDPolicy: " + options.get( "trackIDPolicy" ) );
+			}
+		}
+		if ( options.containsKey( "shardThreads" ) )
+			builder.shardThreads( ( int ) parseDouble( options, "shardThreads" ) );
+
+		return builder.create();
+	}
+
+	/**
+	 * Returns the index of the columns specified by the column options.
+	 * Columns given by name are looked up in the header of the CSV file, which
+	 * is only read if needed.
+	 */
+	private static Map< String, Integer > resolveColumns( final String csvFilePath, final Map< String, String > options, final Collection< String > columnOptions )
+	{
+		final Map< String, Integer > columns = new HashMap<>();
+		Map< String, Integer > headerMap = null;
+		for ( final String option : columnOptions )
+		{
+			final String value = options.get( option );
+			if ( null == value )
+				continue;
+
+			try
+			{
+				columns.put( option, Integer.valueOf( value ) );
+				continue;
+			}
+			catch ( final NumberFormatException e )
+			{
+				// Not an index, try it as a column name.
+			}
+
+			if ( null == headerMap )
+				headerMap = readHeaders( csvFilePath );
+			final Integer col = headerMap.get( value.trim() );
+			if ( null == col )
+				throw new IllegalArgumentException( "Column '" + value + "' for --" + option
+						+ " is not in the header of the CSV file. Columns are: " + headerMap.keySet() );
+			columns.put( option, col );
+		}
+		return columns;
+	}
+
+	/**
+	 * Returns the extra feature columns specified by a comma-separated list of
+	 * column indices or names. The features are named after the column
+	 * headers.
+	 */
+	private static List< FeatureColumn > resolveFeatureColumns( final String csvFilePath, final String value )
+	{
+		final Map< String, Integer > headerMap = readHeaders( csvFilePath );
+		final Map< Integer, String > headers = new HashMap<>();
+		headerMap.forEach( ( name, col ) -> headers.put( col, name ) );
+
+		final List< FeatureColumn > featureColumns = new ArrayList<>();
+		for ( final String token : value.split( "," ) )
+		{
+			final String column = token.trim();
+			if ( column.isEmpty() )
+				continue;
+
+			Integer col;
+			try
+			{
+				col = Integer.valueOf( column );
+			}
+			catch ( final NumberFormatException e )
+			{
+				col = headerMap.get( column );
+			}
+			if ( null == col || !headers.containsKey( col ) )
+				throw new IllegalArgumentException( "Column '" + column + "' for --featureCols"
+						+ " is not in the header of the CSV file. Columns are: " + headerMap.keySet() );
+			featureColumns.add( FeatureColumn.fromHeader( col.intValue(), headers.get( col ) ) );
+		}
+		return featureColumns;
+	}
+
+	/**
+	 * Reads the header of the CSV file the way the importer GUI does, removing
+	 * control and invisible characters from the column names.
+	 */
+	private static Map< String, Integer > readHeaders( final String csvFilePath )
+	{
+		try
+		{
+			final CSVDialect dialect = CSVDialect.sniff( csvFilePath );
+			final CSVFormat csvFormat = dialect.getFormat()
+					.builder()
+					.setHeader()
+					.setCommentMarker( '#' )
+					.get();
+			try (final Reader in = dialect.newReader( new FileInputStream( csvFilePath ) );
+					final CSVParser records = csvFormat.parse( in ))
+			{
+				final Map< String, Integer > uncleanHeaderMap = records.getHeaderMap();
+				final Map< String, Integer > headerMap = new LinkedHashMap<>( uncleanHeaderMap.size() );
+				for ( final String uncleanKey : uncleanHeaderMap.keySet() )
+				{
+					final String cleanKey = uncleanKey.trim().replaceAll( "\\p{C}", "" );
+					headerMap.put( cleanKey, uncleanHeaderMap.get( uncleanKey ) );
+				}
+				return headerMap;
+			}
+		}
+		catch ( final IOException e )
+		{
+			throw new IllegalArgumentException( "Could not read the header of the CSV file " + csvFilePath + ":\n" + e.getMessage() );
+		}
+	}
+
+	static Map< String, String > parseArguments( final String[] args )
+	{
+		final Map< String, String > options = new HashMap<>();
+		for ( int i = 0; i < args.length; i++ )
+		{
+			final String arg = args[ i ];
+			if ( !arg.startsWith( "--" ) )
+				throw new IllegalArgumentException( "Unexpected argument: " + arg );
+
+			final int eq = arg.indexOf( '=' );
+			final String name = ( eq < 0 ) ? arg.substring( 2 ) : arg.substring( 2, eq );
+			if ( !OPTIONS.containsKey( name ) )
+				throw new IllegalArgumentException( "Unknown option: --" + name );
+
+			final String value;
+			if ( eq >= 0 )
+				value = arg.substring( eq + 1 );
+			else if ( i + 1 < args.length && !args[ i + 1 ].startsWith( "--" ) )
+				value = args[ ++i ];
+			else
+				value = "true"; // A flag.
+			options.put( name, value );
+		}
+		return options;
+	}
+
+	private static double parseDouble( final Map< String, String > options, final String name )
+	{
+		try
+		{
+			return Double.parseDouble( options.get( name ) );
+		}
+		catch ( final NumberFormatException e )
+		{
+			throw new IllegalArgumentException( "Invalid number for --" + name + ": " + options.get( name ) );
+		}
+	}
+
+	private static boolean parseBoolean( final Map< String, String > options, final String name, final boolean defaultValue )
+	{
+		final String value = options.get( name );
+		if ( null == value )
+			return defaultValue;
+		if ( value.equalsIgnoreCase( "true" ) )
+			return true;
+		if ( value.equalsIgnoreCase( "false" ) )
+			return false;
+		throw new IllegalArgumentException( "Invalid boolean for --" + name + ": " + value );
+	}
+
+	private static void printUsage( final PrintStream out )
+	{
+		out.println( "Usage: CsvToTrackMate --csvFilePath=FILE --imageFilePath=FILE --targetFilePath=FILE \\" );
+		out.println( "           --xCol=COL --yCol=COL (--frameCol=COL | --timeCol=COL) (--radius=R | --radiusCol=COL) [options]" );
+		out.println( "Columns (COL) are given by their 0-based index or by their header name." );
+		out.println();
+		for ( final String option : OPTIONS.keySet() )
+			out.println( String.format( "  --%-22s %s", option, OPTIONS.get( option ) ) );
+	}
+
+	/**
+	 * A logger that prints to standard streams. Messages go to the output
+	 * stream, or are discarded if it is <code>null</code>; errors always go to
+	 * the error stream.
+	 */
+	private static final class StreamLogger extends Logger
+	{
+
+		private final PrintStream out;
+
+		private final PrintStream err;
+
+		private StreamLogger( final PrintStream out, final PrintStream err )
+		{
+			this.out = out;
+			this.err = err;
+		}
+
+		@Override
+		public void log( final String message, final Color color )
+		{
+			if ( null != out )
+				out.print( message );
+		}
+
+		@Override
+		public void error( final String message )
+		{
+			err.print( message );
+		}
+
+		@Override
+		public void setStatus( final String status )
+		{}
+
+		@Override
+		public void setProgress( final double val )
+		{}
+	}
+}
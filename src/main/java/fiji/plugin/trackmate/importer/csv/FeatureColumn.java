@@ -0,0 +1,139 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.Locale;
+
+import fiji.plugin.trackmate.Dimension;
+
+/**
+ * An extra numeric column of a CSV file, imported as a spot feature.
+ * <p>
+ * The values of the column are parsed with the mandatory columns, and the
+ * feature is declared in the feature model of the imported model, with the
+ * name, short name, dimension and integer flag given here.
+ */
+public final class FeatureColumn
+{
+
+	private final int column;
+
+	private final String feature;
+
+	private final String name;
+
+	private final String shortName;
+
+	private final Dimension dimension;
+
+	private final boolean isInt;
+
+	/**
+	 * Creates an extra feature column.
+	 *
+	 * @param column
+	 *            the index of the column in the CSV file.
+	 * @param feature
+	 *            the feature key, for instance
+	 *            <code>LOCALIZATION_UNCERTAINTY</code>. It must not be a key of
+	 *            {@link fiji.plugin.trackmate.Spot#FEATURES}, nor of the spot
+	 *            analyzers when all features are declared.
+	 * @param name
+	 *            the feature name, for instance
+	 *            <code>Localization uncertainty</code>.
+	 * @param shortName
+	 *            the feature short name, for instance <code>Loc. uncert.</code>.
+	 * @param dimension
+	 *            the feature dimension.
+	 * @param isInt
+	 *            whether the feature takes integer values.
+	 */
+	public FeatureColumn( final int column, final String feature, final String name, final String shortName, final Dimension dimension, final boolean isInt )
+	{
+		if ( column < 0 )
+			throw new IllegalArgumentException( "The column index of feature " + feature + " is negative: " + column );
+		if ( null == feature || feature.isEmpty() )
+			throw new IllegalArgumentException( "The feature key of column " + column + " is empty." );
+		this.column = column;
+		this.feature = feature;
+		this.name = ( null == name ) ? feature : name;
+		this.shortName = ( null == shortName ) ? this.name : shortName;
+		this.dimension = ( null == dimension ) ? Dimension.NONE : dimension;
+		this.isInt = isInt;
+	}
+
+	/**
+	 * Creates an extra feature column named after its header. The feature key
+	 * is the header in upper case, with other characters than letters and
+	 * digits replaced by underscores. The feature has no dimension and takes
+	 * real values.
+	 *
+	 * @param column
+	 *            the index of the column in the CSV file.
+	 * @param header
+	 *            the header of the column.
+	 */
+	public static FeatureColumn fromHeader( final int column, final String header )
+	{
+		final String name = header.trim();
+		String feature = name.toUpperCase( Locale.ROOT ).replaceAll( "[^A-Z0-9]+", "_" );
+		if ( feature.isEmpty() || feature.equals( "_" ) )
+			feature = "COLUMN_" + column;
+		return new FeatureColumn( column, feature, name, name, Dimension.NONE, false );
+	}
+
+	public int getColumn()
+	{
+		return column;
+	}
+
+	public String getFeature()
+	{
+		return feature;
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	public String getShortName()
+	{
+		return shortName;
+	}
+
+	public Dimension getDimension()
+	{
+		return dimension;
+	}
+
+	public boolean isInt()
+	{
+		return isInt;
+	}
+
+	@Override
+	public String toString()
+	{
+		return feature + " (column " + column + ", " + name + ", " + shortName + ", " + dimension + ( isInt ? ", int" : "" ) + ")";
+	}
+}
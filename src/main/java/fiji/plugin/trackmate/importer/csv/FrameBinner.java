@@ -0,0 +1,199 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.scijava.Cancelable;
+
+/**
+ * Converts the timestamps of a time column to frames, in the parse loop.
+ * <p>
+ * With a frame interval, the frame of a timestamp is its scaled value divided
+ * by the interval, rounded: a multiplication and a rounding per row. With the
+ * distinct timestamps of the files, the frame of a timestamp is its rank
+ * among them, found by binary search. The distinct timestamps are collected
+ * in a first pass over the time column only, into a primitive array that is
+ * sorted and deduplicated whenever it fills up, so that its size follows the
+ * number of distinct timestamps rather than the number of rows.
+ */
+final class FrameBinner
+{
+
+	private static final int INITIAL_CAPACITY = 1 << 16;
+
+	/**
+	 * Number of records read between two checks for cancellation.
+	 */
+	private static final int CHECK_INTERVAL = 1024;
+
+	/**
+	 * Frames per unit of timestamp, with a frame interval.
+	 */
+	private final double framesPerTime;
+
+	/**
+	 * The sorted distinct timestamps, or <code>null</code> with a frame
+	 * interval.
+	 */
+	private final double[] times;
+
+	private FrameBinner( final double framesPerTime, final double[] times )
+	{
+		this.framesPerTime = framesPerTime;
+		this.times = times;
+	}
+
+	/**
+	 * Bins timestamps with a fixed frame interval. Frame 0 is at time 0.
+	 *
+	 * @param frameInterval
+	 *            the frame interval, in the time unit of the model.
+	 * @param timeScale
+	 *            the factor that converts the timestamps to the time unit of
+	 *            the model.
+	 * @throws IllegalArgumentException
+	 *             if the frame interval or the scale is not strictly
+	 *             positive.
+	 */
+	static FrameBinner interval( final double frameInterval, final double timeScale )
+	{
+		if ( !( frameInterval > 0. ) || Double.isInfinite( frameInterval ) )
+			throw new IllegalArgumentException( "The frame interval must be strictly positive to bin timestamps: " + frameInterval );
+		if ( !( timeScale > 0. ) || Double.isInfinite( timeScale ) )
+			throw new IllegalArgumentException( "The time scale must be strictly positive: " + timeScale );
+		return new FrameBinner( timeScale / frameInterval, null );
+	}
+
+	/**
+	 * Bins timestamps by their rank among the specified ones.
+	 *
+	 * @param times
+	 *            the sorted distinct timestamps, as returned by
+	 *            {@link #distinctTimes(List, List, int, Cancelable)}.
+	 */
+	static FrameBinner distinct( final double[] times )
+	{
+		return new FrameBinner( Double.NaN, times );
+	}
+
+	/**
+	 * Returns the frame of the specified timestamp, or a negative value if it
+	 * has none: not finite, before time 0, after the last frame, or not among
+	 * the distinct timestamps.
+	 */
+	int frame( final double time )
+	{
+		if ( null != times )
+			return Arrays.binarySearch( times, time + 0. );
+
+		final double frame = Math.rint( time * framesPerTime );
+		return ( frame >= 0. && frame <= Integer.MAX_VALUE ) ? ( int ) frame : -1;
+	}
+
+	/**
+	 * Returns the number of distinct timestamps, or -1 with a frame interval.
+	 */
+	int nFrames()
+	{
+		return ( null == times ) ? -1 : times.length;
+	}
+
+	/**
+	 * Reads the time column of the specified CSV files and returns their
+	 * distinct finite timestamps, sorted. Values that cannot be parsed are
+	 * skipped here, and reported by the import.
+	 *
+	 * @param dialects
+	 *            the dialect of each file.
+	 * @return the sorted distinct timestamps, or <code>null</code> if the
+	 *         import was canceled meanwhile.
+	 */
+	static double[] distinctTimes( final List< String > paths, final List< CSVDialect > dialects, final int timeCol, final Cancelable cancelable ) throws IOException
+	{
+		double[] times = new double[ INITIAL_CAPACITY ];
+		int n = 0;
+		long nRecords = 0;
+		for ( int i = 0; i < paths.size(); i++ )
+		{
+			final String path = paths.get( i );
+			final CSVDialect dialect = dialects.get( i );
+			final CSVFormat csvFormat = dialect.getFormat()
+					.builder()
+					.setHeader()
+					.setCommentMarker( '#' )
+					.get();
+			try (final CSVParser records = csvFormat.parse( dialect.newReader( new FileInputStream( path ) ) ))
+			{
+				for ( final CSVRecord record : records )
+				{
+					if ( ++nRecords % CHECK_INTERVAL == 0 && cancelable.isCanceled() )
+						return null;
+
+					final double time;
+					try
+					{
+						// Adding 0 turns -0 into 0, which would sort apart.
+						time = dialect.parseDouble( record.get( timeCol ) ) + 0.;
+					}
+					catch ( final NumberFormatException | ArrayIndexOutOfBoundsException e )
+					{
+						continue;
+					}
+					if ( !Double.isFinite( time ) )
+						continue;
+
+					if ( n == times.length )
+					{
+						n = sortDistinct( times, n );
+						if ( n > times.length / 2 )
+							times = Arrays.copyOf( times, 2 * times.length );
+					}
+					times[ n++ ] = time;
+				}
+			}
+		}
+		return Arrays.copyOf( times, sortDistinct( times, n ) );
+	}
+
+	/**
+	 * Sorts the first values of the array and moves the distinct ones to its
+	 * head.
+	 *
+	 * @return the number of distinct values.
+	 */
+	private static int sortDistinct( final double[] values, final int n )
+	{
+		Arrays.sort( values, 0, n );
+		int nDistinct = 0;
+		for ( int i = 0; i < n; i++ )
+			if ( nDistinct == 0 || values[ i ] != values[ nDistinct - 1 ] )
+				values[ nDistinct++ ] = values[ i ];
+		return nDistinct;
+	}
+}
@@ -0,0 +1,214 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The column names of a CSV file, normalized once so that the column
+ * choosers of the GUIs can match and filter them without processing each
+ * name again.
+ * <p>
+ * Columns are kept in column order. Each has a position in the index, its
+ * name, its index in the CSV file and a lower-case key used for matching.
+ * Indices are immutable and can be shared by several column choosers.
+ */
+public final class HeaderIndex
+{
+
+	/**
+	 * Max length of the prototype value used to size the column choosers.
+	 */
+	private static final int MAX_PROTOTYPE_LENGTH = 32;
+
+	/**
+	 * Control and invisible chars.
+	 */
+	private static final Pattern INVISIBLE = Pattern.compile( "\\p{C}" );
+
+	private final String[] names;
+
+	private final String[] keys;
+
+	private final int[] columns;
+
+	private final Map< String, Integer > positions;
+
+	private final Map< String, Integer > keyPositions;
+
+	private final Map< String, Integer > columnMap;
+
+	private final String prototype;
+
+	private HeaderIndex( final List< String > names, final List< Integer > columns )
+	{
+		final int n = names.size();
+		this.names = names.toArray( new String[ n ] );
+		this.keys = new String[ n ];
+		this.columns = new int[ n ];
+		this.positions = new HashMap<>( 2 * n );
+		this.keyPositions = new HashMap<>( 2 * n );
+		final Map< String, Integer > map = new LinkedHashMap<>( 2 * n );
+		String longest = "";
+		for ( int i = 0; i < n; i++ )
+		{
+			final String name = this.names[ i ];
+			keys[ i ] = name.toLowerCase( Locale.ROOT );
+			this.columns[ i ] = columns.get( i ).intValue();
+			positions.put( name, Integer.valueOf( i ) );
+			keyPositions.putIfAbsent( keys[ i ], Integer.valueOf( i ) );
+			map.put( name, columns.get( i ) );
+			if ( name.length() > longest.length() )
+				longest = name;
+		}
+		this.columnMap = Collections.unmodifiableMap( map );
+		this.prototype = ( longest.length() > MAX_PROTOTYPE_LENGTH )
+				? longest.substring( 0, MAX_PROTOTYPE_LENGTH )
+				: longest;
+	}
+
+	/**
+	 * Creates an index of the specified columns.
+	 *
+	 * @param headerMap
+	 *            the map from column names to column indices, as returned by
+	 *            the CSV parser.
+	 * @param clean
+	 *            if <code>true</code>, control and invisible characters are
+	 *            removed from the column names, and columns with a blank
+	 *            name are skipped. Columns whose cleaned name is already
+	 *            used by a previous column are skipped too.
+	 * @return a new index.
+	 */
+	public static HeaderIndex create( final Map< String, Integer > headerMap, final boolean clean )
+	{
+		final List< Map.Entry< String, Integer > > entries = new ArrayList<>( headerMap.entrySet() );
+		entries.sort( Map.Entry.comparingByValue() );
+
+		final List< String > names = new ArrayList<>( entries.size() );
+		final List< Integer > columns = new ArrayList<>( entries.size() );
+		final Map< String, Boolean > seen = new HashMap<>( 2 * entries.size() );
+		for ( final Map.Entry< String, Integer > entry : entries )
+		{
+			String name = entry.getKey();
+			if ( clean )
+			{
+				// Remove control and invisible chars.
+				name = INVISIBLE.matcher( name.trim() ).replaceAll( "" );
+				if ( name.trim().isEmpty() )
+					continue;
+			}
+			if ( null != seen.put( name, Boolean.TRUE ) )
+				continue;
+			names.add( name );
+			columns.add( entry.getValue() );
+		}
+		return new HeaderIndex( names, columns );
+	}
+
+	/**
+	 * Returns the number of columns in this index.
+	 */
+	public int size()
+	{
+		return names.length;
+	}
+
+	/**
+	 * Returns the name of the column at the specified position.
+	 */
+	public String getName( final int position )
+	{
+		return names[ position ];
+	}
+
+	/**
+	 * Returns the lower-case name of the column at the specified position.
+	 */
+	public String getKey( final int position )
+	{
+		return keys[ position ];
+	}
+
+	/**
+	 * Returns the index in the CSV file of the column at the specified
+	 * position.
+	 */
+	public int getColumn( final int position )
+	{
+		return columns[ position ];
+	}
+
+	/**
+	 * Returns the position of the column with the specified name, or -1 if
+	 * there is no such column.
+	 */
+	public int indexOf( final Object name )
+	{
+		final Integer position = positions.get( name );
+		return ( null == position ) ? -1 : position.intValue();
+	}
+
+	/**
+	 * Returns the position of the column best matching the specified text,
+	 * ignoring case: the first column with this name, or else the first
+	 * column whose name contains it. Returns -1 if no column matches.
+	 */
+	public int find( final String text )
+	{
+		final String key = text.trim().toLowerCase( Locale.ROOT );
+		if ( key.isEmpty() )
+			return -1;
+		final Integer position = keyPositions.get( key );
+		if ( null != position )
+			return position.intValue();
+		for ( int i = 0; i < keys.length; i++ )
+			if ( keys[ i ].contains( key ) )
+				return i;
+		return -1;
+	}
+
+	/**
+	 * Returns the map from column names to column indices in the CSV file,
+	 * in column order.
+	 */
+	public Map< String, Integer > getColumnMap()
+	{
+		return columnMap;
+	}
+
+	/**
+	 * Returns the longest column name, truncated, to use as prototype display
+	 * value in column choosers.
+	 */
+	public String getPrototype()
+	{
+		return prototype;
+	}
+}
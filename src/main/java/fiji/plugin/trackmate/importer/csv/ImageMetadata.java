@@ -0,0 +1,152 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import loci.common.DebugTools;
+import loci.formats.FormatException;
+import loci.formats.meta.IMetadata;
+import loci.plugins.in.ImportProcess;
+import loci.plugins.in.ImporterOptions;
+import ome.units.UNITS;
+import ome.units.quantity.Length;
+import ome.units.quantity.Time;
+
+/**
+ * The image metadata the importer needs, read with Bio-Formats.
+ * <p>
+ * Opening a file with Bio-Formats costs much more than reading a small CSV
+ * file, so the metadata of the last files read are cached. An entry is reused
+ * as long as the file keeps the same size and modification time.
+ */
+final class ImageMetadata
+{
+
+	/**
+	 * Maximal number of files in the cache.
+	 */
+	private static final int CACHE_SIZE = 64;
+
+	private static final Map< String, ImageMetadata > CACHE = new LinkedHashMap< String, ImageMetadata >( 16, 0.75f, true )
+	{
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		protected boolean removeEldestEntry( final Map.Entry< String, ImageMetadata > eldest )
+		{
+			return size() > CACHE_SIZE;
+		}
+	};
+
+	final int width;
+
+	final int height;
+
+	final int nSlices;
+
+	final int nFrames;
+
+	final double dx;
+
+	final double dy;
+
+	final double dz;
+
+	final double dt;
+
+	final String spaceUnit;
+
+	final String timeUnit;
+
+	private final long lastModified;
+
+	private final long length;
+
+	private ImageMetadata( final IMetadata metadata, final int series, final long lastModified, final long length )
+	{
+		final Length pixelsPhysicalSizeX = metadata.getPixelsPhysicalSizeX( series );
+		final Length pixelsPhysicalSizeY = metadata.getPixelsPhysicalSizeY( series );
+		final Length pixelsPhysicalSizeZ = metadata.getPixelsPhysicalSizeZ( series );
+		final Time timeIncrement = metadata.getPixelsTimeIncrement( series );
+
+		this.width = metadata.getPixelsSizeX( series ).getValue().intValue();
+		this.height = metadata.getPixelsSizeY( series ).getValue().intValue();
+		this.nSlices = metadata.getPixelsSizeZ( series ).getValue().intValue();
+		this.nFrames = metadata.getPixelsSizeT( series ).getValue().intValue();
+		this.dx = Optional.ofNullable( pixelsPhysicalSizeX )
+				.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
+				.value().doubleValue();
+		this.dy = Optional.ofNullable( pixelsPhysicalSizeY )
+				.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
+				.value().doubleValue();
+		this.dz = Optional.ofNullable( pixelsPhysicalSizeZ )
+				.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
+				.value().doubleValue();
+		this.dt = ( null == timeIncrement ) ? 1. : timeIncrement.value().doubleValue();
+		this.spaceUnit = ( null == pixelsPhysicalSizeX ) ? "pixels" : pixelsPhysicalSizeX.unit().getSymbol();
+		this.timeUnit = ( null == timeIncrement ) ? "frame" : timeIncrement.unit().getSymbol();
+		this.lastModified = lastModified;
+		this.length = length;
+	}
+
+	/**
+	 * Returns the metadata of the specified series of an image file, from the
+	 * cache if the file did not change since it was last read.
+	 *
+	 * @return the metadata, or <code>null</code> if Bio-Formats could not
+	 *         prepare the import.
+	 */
+	static ImageMetadata read( final String imageFilePath, final int series ) throws IOException, FormatException
+	{
+		final File file = new File( imageFilePath );
+		final long lastModified = file.lastModified();
+		final long length = file.length();
+		final String key = file.getAbsolutePath() + '#' + series;
+		synchronized ( CACHE )
+		{
+			final ImageMetadata cached = CACHE.get( key );
+			if ( null != cached && cached.lastModified == lastModified && cached.length == length )
+				return cached;
+		}
+
+		DebugTools.setRootLevel( "ERROR" );
+		final ImporterOptions options = new ImporterOptions();
+		options.setId( imageFilePath );
+		options.setQuiet( true );
+		options.setWindowless( true );
+		final ImportProcess process = new ImportProcess( options );
+		if ( !process.execute() )
+			return null;
+
+		final ImageMetadata metadata = new ImageMetadata( process.getOMEMetadata(), series, lastModified, length );
+		synchronized ( CACHE )
+		{
+			CACHE.put( key, metadata );
+		}
+		return metadata;
+	}
+}
@@ -0,0 +1,347 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.lang.annotation.Annotation;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Java Flight Recorder events emitted by the importers, so that a recording
+ * shows where an import spends its time: opening the file, parsing each chunk
+ * of rows, building the spot collection, linking tracks, probing image
+ * metadata and writing the TrackMate file.
+ * <p>
+ * The events are created at runtime with <code>jdk.jfr.EventFactory</code>,
+ * through reflection, because this plugin still targets Java 8. On a JVM
+ * without JFR, or when no recording is running, {@link Type#begin()} returns
+ * a shared no-op event, and the cost of an event is a single check of a
+ * boolean. Events are emitted per chunk of rows and per batch of tracks,
+ * never per row.
+ * <p>
+ * All events are in the "TrackMate / CSV Importer" category and are named
+ * <code>fiji.plugin.trackmate.importer.csv.</code> followed by the type name,
+ * for instance <code>fiji.plugin.trackmate.importer.csv.ParseChunk</code>.
+ */
+public final class ImportEvents
+{
+
+	public enum Type
+	{
+		FILE_OPEN( "FileOpen", "CSV File Open", "bytes" ),
+		PARSE_CHUNK( "ParseChunk", "CSV Parse Chunk", "startByte", "endByte", "rows" ),
+		COLLECTION_BUILD( "CollectionBuild", "Spot Collection Build", "spots", "frames" ),
+		LINK_BATCH( "LinkBatch", "Track Link Batch", "tracks", "edges" ),
+		METADATA_PROBE( "MetadataProbe", "Metadata Probe" ),
+		XML_WRITE( "XmlWrite", "TrackMate XML Write", "spots" );
+
+		private final String name;
+
+		private final String label;
+
+		private final String[] fields;
+
+		private volatile Factory factory;
+
+		private Type( final String name, final String label, final String... fields )
+		{
+			this.name = name;
+			this.label = label;
+			this.fields = fields;
+		}
+
+		/**
+		 * Starts timing an event of this type. Returns a no-op event if JFR
+		 * is not available or if this event type is not enabled.
+		 */
+		public Event begin()
+		{
+			final Factory f = factory();
+			if ( null == f || !f.isEnabled() )
+				return NO_EVENT;
+			return f.begin( fields.length );
+		}
+
+		private Factory factory()
+		{
+			if ( !JFR_AVAILABLE )
+				return null;
+			Factory f = factory;
+			if ( null == f )
+			{
+				synchronized ( this )
+				{
+					f = factory;
+					if ( null == f )
+					{
+						f = Factory.create( this );
+						factory = f;
+					}
+				}
+			}
+			return f.isValid() ? f : null;
+		}
+	}
+
+	/**
+	 * An event being timed. Commit it once the work is done, with the path
+	 * of the file and the values of the fields of its type, in order. Missing
+	 * values are left at 0 and extra values are ignored.
+	 */
+	public static class Event
+	{
+
+		private Event()
+		{}
+
+		public void commit( final String path )
+		{}
+
+		public void commit( final String path, final long v0 )
+		{}
+
+		public void commit( final String path, final long v0, final long v1 )
+		{}
+
+		public void commit( final String path, final long v0, final long v1, final long v2 )
+		{}
+	}
+
+	private static final Event NO_EVENT = new Event();
+
+	private static final boolean JFR_AVAILABLE = isJfrAvailable();
+
+	private ImportEvents()
+	{}
+
+	private static boolean isJfrAvailable()
+	{
+		try
+		{
+			Class.forName( "jdk.jfr.EventFactory" );
+			return true;
+		}
+		catch ( final ClassNotFoundException | LinkageError e )
+		{
+			return false;
+		}
+	}
+
+	/*
+	 * JFR IMPLEMENTATION.
+	 */
+
+	/**
+	 * Wraps a <code>jdk.jfr.EventFactory</code> for one event type. An
+	 * invalid factory is kept if the creation failed, so that it is not
+	 * attempted again.
+	 */
+	private static final class Factory
+	{
+
+		private final Object eventFactory;
+
+		private final Object eventType;
+
+		private Factory( final Object eventFactory, final Object eventType )
+		{
+			this.eventFactory = eventFactory;
+			this.eventType = eventType;
+		}
+
+		private boolean isValid()
+		{
+			return null != eventFactory;
+		}
+
+		private boolean isEnabled()
+		{
+			try
+			{
+				return ( boolean ) Handles.IS_ENABLED.invoke( eventType );
+			}
+			catch ( final Throwable e )
+			{
+				return false;
+			}
+		}
+
+		private Event begin( final int nFields )
+		{
+			try
+			{
+				final Object event = Handles.NEW_EVENT.invoke( eventFactory );
+				Handles.BEGIN.invoke( event );
+				return new JfrEvent( event, nFields );
+			}
+			catch ( final Throwable e )
+			{
+				return NO_EVENT;
+			}
+		}
+
+		@SuppressWarnings( "unchecked" )
+		private static Factory create( final Type type )
+		{
+			try
+			{
+				final Class< ? > annotationElementClass = Class.forName( "jdk.jfr.AnnotationElement" );
+				final Class< ? > valueDescriptorClass = Class.forName( "jdk.jfr.ValueDescriptor" );
+				final Constructor< ? > newAnnotation = annotationElementClass.getConstructor( Class.class, Object.class );
+				final Constructor< ? > newValue = valueDescriptorClass.getConstructor( Class.class, String.class, List.class );
+				final Class< ? extends Annotation > name = ( Class< ? extends Annotation > ) Class.forName( "jdk.jfr.Name" );
+				final Class< ? extends Annotation > label = ( Class< ? extends Annotation > ) Class.forName( "jdk.jfr.Label" );
+				final Class< ? extends Annotation > category = ( Class< ? extends Annotation > ) Class.forName( "jdk.jfr.Category" );
+
+				final List< Object > annotations = new ArrayList<>();
+				annotations.add( newAnnotation.newInstance( name, ImportEvents.class.getPackage().getName() + '.' + type.name ) );
+				annotations.add( newAnnotation.newInstance( label, type.label ) );
+				annotations.add( newAnnotation.newInstance( category, new String[] { "TrackMate", "CSV Importer" } ) );
+
+				final List< Object > fields = new ArrayList<>();
+				fields.add( newValue.newInstance( String.class, "path", Collections.singletonList( newAnnotation.newInstance( label, "Path" ) ) ) );
+				for ( final String field : type.fields )
+					fields.add( newValue.newInstance( long.class, field, Collections.singletonList( newAnnotation.newInstance( label, field ) ) ) );
+
+				final Class< ? > eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+				final Object eventFactory = eventFactoryClass.getMethod( "create", List.class, List.class ).invoke( null, annotations, fields );
+				final Object eventType = eventFactoryClass.getMethod( "getEventType" ).invoke( eventFactory );
+				return new Factory( eventFactory, eventType );
+			}
+			catch ( final ReflectiveOperationException | RuntimeException | LinkageError e )
+			{
+				return new Factory( null, null );
+			}
+		}
+	}
+
+	private static final class JfrEvent extends Event
+	{
+
+		private final Object event;
+
+		private final int nFields;
+
+		private JfrEvent( final Object event, final int nFields )
+		{
+			this.event = event;
+			this.nFields = nFields;
+		}
+
+		@Override
+		public void commit( final String path )
+		{
+			commit( path, 0, 0, 0 );
+		}
+
+		@Override
+		public void commit( final String path, final long v0 )
+		{
+			commit( path, v0, 0, 0 );
+		}
+
+		@Override
+		public void commit( final String path, final long v0, final long v1 )
+		{
+			commit( path, v0, v1, 0 );
+		}
+
+		@Override
+		public void commit( final String path, final long v0, final long v1, final long v2 )
+		{
+			try
+			{
+				Handles.END.invoke( event );
+				if ( !( boolean ) Handles.SHOULD_COMMIT.invoke( event ) )
+					return;
+				Handles.SET.invoke( event, 0, path );
+				if ( nFields > 0 )
+					Handles.SET.invoke( event, 1, Long.valueOf( v0 ) );
+				if ( nFields > 1 )
+					Handles.SET.invoke( event, 2, Long.valueOf( v1 ) );
+				if ( nFields > 2 )
+					Handles.SET.invoke( event, 3, Long.valueOf( v2 ) );
+				Handles.COMMIT.invoke( event );
+			}
+			catch ( final Throwable e )
+			{
+				// Never fail an import because of a recording.
+			}
+		}
+	}
+
+	/**
+	 * Method handles on <code>jdk.jfr.Event</code> and
+	 * <code>jdk.jfr.EventType</code>, only loaded when JFR is available.
+	 */
+	private static final class Handles
+	{
+
+		private static final MethodHandle NEW_EVENT;
+
+		private static final MethodHandle IS_ENABLED;
+
+		private static final MethodHandle BEGIN;
+
+		private static final MethodHandle END;
+
+		private static final MethodHandle SHOULD_COMMIT;
+
+		private static final MethodHandle SET;
+
+		private static final MethodHandle COMMIT;
+
+		static
+		{
+			try
+			{
+				final MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+				final Class< ? > eventClass = Class.forName( "jdk.jfr.Event" );
+				final Class< ? > eventTypeClass = Class.forName( "jdk.jfr.EventType" );
+				final Class< ? > eventFactoryClass = Class.forName( "jdk.jfr.EventFactory" );
+				NEW_EVENT = lookup.findVirtual( eventFactoryClass, "newEvent", MethodType.methodType( eventClass ) )
+						.asType( MethodType.methodType( Object.class, Object.class ) );
+				IS_ENABLED = lookup.findVirtual( eventTypeClass, "isEnabled", MethodType.methodType( boolean.class ) )
+						.asType( MethodType.methodType( boolean.class, Object.class ) );
+				BEGIN = lookup.findVirtual( eventClass, "begin", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+				END = lookup.findVirtual( eventClass, "end", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+				SHOULD_COMMIT = lookup.findVirtual( eventClass, "shouldCommit", MethodType.methodType( boolean.class ) )
+						.asType( MethodType.methodType( boolean.class, Object.class ) );
+				SET = lookup.findVirtual( eventClass, "set", MethodType.methodType( void.class, int.class, Object.class ) )
+						.asType( MethodType.methodType( void.class, Object.class, int.class, Object.class ) );
+				COMMIT = lookup.findVirtual( eventClass, "commit", MethodType.methodType( void.class ) )
+						.asType( MethodType.methodType( void.class, Object.class ) );
+			}
+			catch ( final ReflectiveOperationException e )
+			{
+				throw new ExceptionInInitializerError( e );
+			}
+		}
+	}
+}
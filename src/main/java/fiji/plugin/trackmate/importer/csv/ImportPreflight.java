@@ -0,0 +1,672 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+
+/**
+ * Estimates, before an import, how many spots, frames and tracks a CSV file
+ * holds and how much heap the resulting model will need, from a sample of the
+ * head of the file and from its size.
+ * <p>
+ * Only the first {@link #DEFAULT_SAMPLE_ROWS} rows, or the first
+ * {@link #DEFAULT_SAMPLE_BYTES} bytes, are parsed, plus the last
+ * {@link #TAIL_SAMPLE_BYTES} bytes to check that the frames are still sorted
+ * at the end of the file and to find the last frame. The preflight takes the
+ * same time whatever the size of the file. The counts are extrapolated from
+ * the mean size of a row in the sample, and are exact if the sample reached
+ * the end of the file. The heap estimate uses the typical footprint of a spot,
+ * an edge and a feature value in a TrackMate model, and is compared with the
+ * heap still available to the JVM.
+ * <p>
+ * The report is advisory: the importers log it, and the GUI asks for a
+ * confirmation when the model is not expected to fit, but nothing stops an
+ * import based on these estimates.
+ * <p>
+ * For a file split in several shards with the same layout, only the first one
+ * is sampled, and the counts are extrapolated to the size of all of them.
+ */
+public class ImportPreflight
+{
+
+	public static final int DEFAULT_SAMPLE_ROWS = 10_000;
+
+	public static final long DEFAULT_SAMPLE_BYTES = 8 * 1024 * 1024;
+
+	/**
+	 * Size of the sample at the end of the file.
+	 */
+	public static final long TAIL_SAMPLE_BYTES = 256 * 1024;
+
+	/**
+	 * Approximate footprint of a spot in a model, with its 7 base features,
+	 * its entry in the spot collection and its vertex in the track graph.
+	 */
+	static final long BYTES_PER_SPOT = 900;
+
+	/**
+	 * Approximate footprint of an edge in the track graph.
+	 */
+	static final long BYTES_PER_EDGE = 250;
+
+	/**
+	 * Approximate footprint of one feature value in the feature map of a spot
+	 * or an edge.
+	 */
+	static final long BYTES_PER_FEATURE = 64;
+
+	/**
+	 * Number of spot and edge features added by the feature analyzers, when
+	 * all of them are declared or only the minimal set.
+	 */
+	private static final int ALL_SPOT_FEATURES = 40;
+
+	private static final int MINIMAL_SPOT_FEATURES = 1;
+
+	private static final int ALL_EDGE_FEATURES = 10;
+
+	private static final int MINIMAL_EDGE_FEATURES = 8;
+
+	/**
+	 * The import is considered safe if the estimate takes less than this
+	 * fraction of the available heap.
+	 */
+	private static final double SAFE_FRACTION = 0.6;
+
+	/**
+	 * What to do with a file given its estimated footprint.
+	 */
+	public enum Strategy
+	{
+		FULL_IMPORT( "The model fits in memory. Import the whole file." ),
+		SKIP_FEATURES( "The model fits in memory, but not with all its features. Do not compute all features, or compute them after the GUI is shown and save early." ),
+		CONVERT_HEADLESS( "The model does not fit in the current heap. Convert the file to a TrackMate file headless, with a larger heap (-Xmx), then open it." ),
+		FILTER_OR_SUBSAMPLE( "The model is much larger than the available heap. Import a subset of the frames or of the rows, or split the file." );
+
+		private final String advice;
+
+		private Strategy( final String advice )
+		{
+			this.advice = advice;
+		}
+
+		public String getAdvice()
+		{
+			return advice;
+		}
+	}
+
+	private final String csvFilePath;
+
+	/**
+	 * The other shards of the file, or an empty list.
+	 */
+	private final List< String > otherShards;
+
+	private final int frameCol;
+
+	private final int trackCol;
+
+	private final int nameCol;
+
+	private final boolean declareAllFeatures;
+
+	private final int extraSpotFeatures;
+
+	private final int sampleRows;
+
+	private final long sampleBytes;
+
+	private ImportPreflight( final String csvFilePath, final List< String > otherShards, final int frameCol, final int trackCol, final int nameCol, final boolean declareAllFeatures, final int extraSpotFeatures, final int sampleRows, final long sampleBytes )
+	{
+		this.csvFilePath = csvFilePath;
+		this.otherShards = otherShards;
+		this.frameCol = frameCol;
+		this.trackCol = trackCol;
+		this.nameCol = nameCol;
+		this.declareAllFeatures = declareAllFeatures;
+		this.extraSpotFeatures = extraSpotFeatures;
+		this.sampleRows = sampleRows;
+		this.sampleBytes = sampleBytes;
+	}
+
+	/**
+	 * Samples the file and returns the estimates.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	public Report run() throws IOException
+	{
+		final File file = new File( csvFilePath );
+		final long firstFileSize = file.length();
+		long fileSize = firstFileSize;
+		for ( final String shard : otherShards )
+			fileSize += new File( shard ).length();
+		final int nFiles = 1 + otherShards.size();
+
+		long rows = 0;
+		long malformed = 0;
+		long nameChars = 0;
+		final NamePool names = new NamePool();
+		int minFrame = Integer.MAX_VALUE;
+		int maxFrame = Integer.MIN_VALUE;
+		int lastFrame = Integer.MIN_VALUE;
+		boolean sortedByFrame = true;
+		final Set< Integer > frames = new HashSet<>();
+		final Set< Integer > tracks = new HashSet<>();
+		int trackRuns = 0;
+		int lastTrack = Integer.MIN_VALUE;
+		final boolean headOnly;
+		final boolean endReached;
+		final long headerBytes;
+		final long sampledBytes;
+
+		final CSVDialect dialect = CSVDialect.sniff( csvFilePath );
+		final CountingInputStream counter = new CountingInputStream( new FileInputStream( file ) );
+		final CSVFormat csvFormat = dialect.getFormat()
+				.builder()
+				.setHeader()
+				.setCommentMarker( '#' )
+				.get();
+		try (final CSVParser records = csvFormat.parse( dialect.newReader( counter ) ))
+		{
+			headerBytes = headerBytes( records, dialect );
+			boolean more = false;
+			for ( final CSVRecord record : records )
+			{
+				if ( rows >= sampleRows || counter.getCount() >= sampleBytes )
+				{
+					more = true;
+					break;
+				}
+				rows++;
+				try
+				{
+					if ( frameCol >= 0 )
+					{
+						final int frame = Integer.parseInt( record.get( frameCol ) );
+						frames.add( Integer.valueOf( frame ) );
+						minFrame = Math.min( minFrame, frame );
+						maxFrame = Math.max( maxFrame, frame );
+						if ( frame < lastFrame )
+							sortedByFrame = false;
+						lastFrame = frame;
+					}
+					if ( trackCol >= 0 )
+					{
+						final int track = Integer.parseInt( record.get( trackCol ) );
+						tracks.add( Integer.valueOf( track ) );
+						if ( track != lastTrack )
+							trackRuns++;
+						lastTrack = track;
+					}
+					if ( nameCol >= 0 )
+					{
+						final String name = record.get( nameCol );
+						nameChars += name.length();
+						names.intern( name );
+					}
+				}
+				catch ( final NumberFormatException | ArrayIndexOutOfBoundsException e )
+				{
+					malformed++;
+				}
+			}
+			headOnly = more;
+			endReached = !more && nFiles == 1;
+			// Includes the read-ahead of the reader, at most a few kB.
+			sampledBytes = counter.getCount();
+		}
+
+		/*
+		 * Sample the tail of the first file, where the frames of a file
+		 * sorted in its head may not be sorted anymore.
+		 */
+
+		int lastFileFrame = Integer.MIN_VALUE;
+		if ( headOnly && frameCol >= 0 && dialect.isASCIICompatible() )
+		{
+			final long tailStart = Math.max( sampledBytes, firstFileSize - TAIL_SAMPLE_BYTES );
+			final CSVFormat tailFormat = dialect.getFormat()
+					.builder()
+					.setCommentMarker( '#' )
+					.get();
+			try (final InputStream in = new BufferedInputStream( new FileInputStream( file ) ))
+			{
+				long skipped = 0;
+				while ( skipped < tailStart )
+				{
+					final long n = in.skip( tailStart - skipped );
+					if ( n <= 0 )
+						break;
+					skipped += n;
+				}
+				// Skip the partial line.
+				int b;
+				while ( ( b = in.read() ) >= 0 && b != '\n' )
+				{}
+
+				int lastTailFrame = Integer.MIN_VALUE;
+				final CSVParser tail = tailFormat.parse( new InputStreamReader( in, dialect.getCharset() ) );
+				for ( final CSVRecord record : tail )
+				{
+					try
+					{
+						final int frame = Integer.parseInt( record.get( frameCol ) );
+						if ( frame < lastTailFrame || frame < maxFrame )
+							sortedByFrame = false;
+						lastTailFrame = frame;
+						minFrame = Math.min( minFrame, frame );
+						maxFrame = Math.max( maxFrame, frame );
+						lastFileFrame = Math.max( lastFileFrame, frame );
+					}
+					catch ( final NumberFormatException | ArrayIndexOutOfBoundsException e )
+					{
+						// The partial first record, or a malformed row.
+					}
+				}
+			}
+		}
+
+		/*
+		 * Extrapolate.
+		 */
+
+		final long estimatedRows;
+		if ( endReached || rows == 0 )
+			estimatedRows = rows;
+		else
+			estimatedRows = Math.round( ( double ) ( fileSize - nFiles * headerBytes ) * rows / Math.max( 1, sampledBytes - headerBytes ) );
+		final double scale = ( rows == 0 ) ? 1. : ( double ) estimatedRows / rows;
+
+		final long estimatedFrames;
+		if ( frames.isEmpty() )
+			estimatedFrames = 0;
+		else if ( endReached || !sortedByFrame )
+			// Unsorted files show most frames in their head and tail.
+			estimatedFrames = maxFrame - minFrame + 1;
+		else if ( nFiles == 1 && lastFileFrame != Integer.MIN_VALUE )
+			// Sorted files end with their last frame.
+			estimatedFrames = lastFileFrame - minFrame + 1;
+		else
+			estimatedFrames = Math.round( ( maxFrame - minFrame + 1 ) * scale );
+
+		final long estimatedTracks;
+		if ( tracks.isEmpty() )
+			estimatedTracks = 0;
+		else if ( endReached )
+			estimatedTracks = tracks.size();
+		else if ( trackRuns == tracks.size() )
+			// Rows grouped by track: the sample holds whole tracks.
+			estimatedTracks = Math.round( tracks.size() * scale );
+		else
+			// Rows interleaved: the sample holds the tracks of its frames.
+			estimatedTracks = Math.min( estimatedRows,
+					Math.round( tracks.size() * ( double ) estimatedFrames / Math.max( 1, frames.size() ) ) );
+		final long estimatedEdges = Math.max( 0, ( trackCol >= 0 ) ? estimatedRows - estimatedTracks : 0 );
+
+		/*
+		 * Footprint.
+		 */
+
+		final double meanNameChars = ( rows == 0 ) ? 0. : ( double ) nameChars / rows;
+		// Repeated names are shared, so only the names not seen before cost a
+		// String, about 40 bytes plus its characters.
+		final double newNameFraction = ( names.getLookups() == 0 ) ? 1. : 1. - ( double ) names.getShared() / names.getLookups();
+		final long bytesPerSpot = BYTES_PER_SPOT + ( ( nameCol >= 0 ) ? Math.round( newNameFraction * ( 40 + meanNameChars ) ) : 0 );
+		final long modelBytes = estimatedRows * bytesPerSpot + estimatedEdges * BYTES_PER_EDGE;
+		final int nSpotFeatures = ( declareAllFeatures ? ALL_SPOT_FEATURES : MINIMAL_SPOT_FEATURES ) + extraSpotFeatures;
+		final int nEdgeFeatures = declareAllFeatures ? ALL_EDGE_FEATURES : MINIMAL_EDGE_FEATURES;
+		final long featureBytes = estimatedRows * nSpotFeatures * BYTES_PER_FEATURE
+				+ estimatedEdges * nEdgeFeatures * BYTES_PER_FEATURE;
+
+		final Runtime runtime = Runtime.getRuntime();
+		final long maxHeap = runtime.maxMemory();
+		final long availableHeap = maxHeap - ( runtime.totalMemory() - runtime.freeMemory() );
+
+		final Strategy strategy;
+		if ( modelBytes + featureBytes < SAFE_FRACTION * availableHeap )
+			strategy = Strategy.FULL_IMPORT;
+		else if ( modelBytes < SAFE_FRACTION * availableHeap )
+			strategy = Strategy.SKIP_FEATURES;
+		else if ( modelBytes < 4 * availableHeap )
+			strategy = Strategy.CONVERT_HEADLESS;
+		else
+			strategy = Strategy.FILTER_OR_SUBSAMPLE;
+
+		return new Report( csvFilePath, nFiles, fileSize, rows, malformed, endReached, estimatedRows, estimatedFrames,
+				estimatedTracks, estimatedEdges, modelBytes, featureBytes, maxHeap, availableHeap, strategy );
+	}
+
+	/**
+	 * Returns the number of bytes of the header line in the charset of the
+	 * file, with its byte order mark and assuming a one-character line
+	 * terminator.
+	 */
+	private static long headerBytes( final CSVParser records, final CSVDialect dialect )
+	{
+		final String line = String.join( String.valueOf( dialect.getDelimiter() ), records.getHeaderNames() ) + '\n';
+		return dialect.getBOMLength() + line.getBytes( dialect.getCharset() ).length;
+	}
+
+	/**
+	 * The estimates of a preflight.
+	 */
+	public static final class Report
+	{
+
+		private final String csvFilePath;
+
+		private final int nFiles;
+
+		private final long fileSize;
+
+		private final long sampledRows;
+
+		private final long sampledMalformedRows;
+
+		private final boolean exact;
+
+		private final long rows;
+
+		private final long frames;
+
+		private final long tracks;
+
+		private final long edges;
+
+		private final long modelBytes;
+
+		private final long featureBytes;
+
+		private final long maxHeap;
+
+		private final long availableHeap;
+
+		private final Strategy strategy;
+
+		private Report( final String csvFilePath, final int nFiles, final long fileSize, final long sampledRows, final long sampledMalformedRows, final boolean exact, final long rows, final long frames, final long tracks, final long edges, final long modelBytes, final long featureBytes, final long maxHeap, final long availableHeap, final Strategy strategy )
+		{
+			this.csvFilePath = csvFilePath;
+			this.nFiles = nFiles;
+			this.fileSize = fileSize;
+			this.sampledRows = sampledRows;
+			this.sampledMalformedRows = sampledMalformedRows;
+			this.exact = exact;
+			this.rows = rows;
+			this.frames = frames;
+			this.tracks = tracks;
+			this.edges = edges;
+			this.modelBytes = modelBytes;
+			this.featureBytes = featureBytes;
+			this.maxHeap = maxHeap;
+			this.availableHeap = availableHeap;
+			this.strategy = strategy;
+		}
+
+		/**
+		 * Returns the number of files of the import, the first one being
+		 * sampled.
+		 */
+		public int getNFiles()
+		{
+			return nFiles;
+		}
+
+		/**
+		 * Returns the total size of the files of the import.
+		 */
+		public long getFileSize()
+		{
+			return fileSize;
+		}
+
+		public long getSampledRows()
+		{
+			return sampledRows;
+		}
+
+		public long getSampledMalformedRows()
+		{
+			return sampledMalformedRows;
+		}
+
+		/**
+		 * Returns <code>true</code> if the whole file was sampled, in which
+		 * case the counts are exact.
+		 */
+		public boolean isExact()
+		{
+			return exact;
+		}
+
+		public long getRows()
+		{
+			return rows;
+		}
+
+		public long getFrames()
+		{
+			return frames;
+		}
+
+		public long getTracks()
+		{
+			return tracks;
+		}
+
+		public long getEdges()
+		{
+			return edges;
+		}
+
+		/**
+		 * Returns the estimated heap taken by the spots and edges, without
+		 * computed features.
+		 */
+		public long getModelBytes()
+		{
+			return modelBytes;
+		}
+
+		/**
+		 * Returns the estimated heap taken by the computed features.
+		 */
+		public long getFeatureBytes()
+		{
+			return featureBytes;
+		}
+
+		public long getMaxHeap()
+		{
+			return maxHeap;
+		}
+
+		/**
+		 * Returns the heap that was available when the preflight ran.
+		 */
+		public long getAvailableHeap()
+		{
+			return availableHeap;
+		}
+
+		public Strategy getStrategy()
+		{
+			return strategy;
+		}
+
+		/**
+		 * Returns <code>true</code> if the model and its features are
+		 * expected to fit comfortably in the available heap.
+		 */
+		public boolean fits()
+		{
+			return strategy == Strategy.FULL_IMPORT;
+		}
+
+		@Override
+		public String toString()
+		{
+			final String approx = exact ? "" : "~";
+			final StringBuilder str = new StringBuilder();
+			str.append( "Preflight of " + csvFilePath + ( nFiles > 1 ? " and " + ( nFiles - 1 ) + " other shards" : "" ) + ":\n" );
+			str.append( String.format( " - %s: %.1f MB, %d rows sampled (%d malformed)%s.\n",
+					nFiles > 1 ? "total size" : "file size", fileSize / 1e6, sampledRows, sampledMalformedRows, exact ? ", whole file" : "" ) );
+			str.append( String.format( " - %s%d spots in %s%d frames", approx, rows, approx, frames ) );
+			if ( tracks > 0 )
+				str.append( String.format( ", %s%d tracks and %s%d edges", approx, tracks, approx, edges ) );
+			str.append( ".\n" );
+			str.append( String.format( " - estimated heap: %.1f MB for the model, %.1f MB for the features.\n",
+					modelBytes / 1e6, featureBytes / 1e6 ) );
+			str.append( String.format( " - available heap: %.1f MB of %.1f MB.\n",
+					availableHeap / 1e6, maxHeap / 1e6 ) );
+			str.append( " - " + strategy.getAdvice() + '\n' );
+			return str.toString();
+		}
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private String csvFilePath;
+
+		private final List< String > otherShards = new ArrayList<>();
+
+		private int frameCol = -1;
+
+		private int trackCol = -1;
+
+		private int nameCol = -1;
+
+		private boolean declareAllFeatures = true;
+
+		private int extraSpotFeatures = 0;
+
+		private int sampleRows = DEFAULT_SAMPLE_ROWS;
+
+		private long sampleBytes = DEFAULT_SAMPLE_BYTES;
+
+		private Builder()
+		{}
+
+		public Builder csvFilePath( final String csvFilePath )
+		{
+			this.csvFilePath = csvFilePath;
+			otherShards.clear();
+			return this;
+		}
+
+		/**
+		 * Sets several CSV files with the same header, such as a large file
+		 * split in shards. The first one is sampled, and the estimates are
+		 * extrapolated to the total size of all of them. Replaces the
+		 * {@link #csvFilePath(String)}.
+		 */
+		public Builder csvFilePaths( final List< String > csvFilePaths )
+		{
+			if ( csvFilePaths.isEmpty() )
+				throw new IllegalArgumentException( "The list of CSV files is empty." );
+			this.csvFilePath = csvFilePaths.get( 0 );
+			otherShards.clear();
+			otherShards.addAll( csvFilePaths.subList( 1, csvFilePaths.size() ) );
+			return this;
+		}
+
+		public Builder frameCol( final int frameCol )
+		{
+			this.frameCol = frameCol;
+			return this;
+		}
+
+		public Builder trackCol( final int trackCol )
+		{
+			this.trackCol = trackCol;
+			return this;
+		}
+
+		public Builder nameCol( final int nameCol )
+		{
+			this.nameCol = nameCol;
+			return this;
+		}
+
+		public Builder declareAllFeatures( final boolean declareAllFeatures )
+		{
+			this.declareAllFeatures = declareAllFeatures;
+			return this;
+		}
+
+		/**
+		 * The number of extra spot features imported from the CSV file.
+		 */
+		public Builder extraSpotFeatures( final int extraSpotFeatures )
+		{
+			this.extraSpotFeatures = extraSpotFeatures;
+			return this;
+		}
+
+		/**
+		 * The maximal number of rows to sample.
+		 */
+		public Builder sampleRows( final int sampleRows )
+		{
+			this.sampleRows = sampleRows;
+			return this;
+		}
+
+		/**
+		 * The maximal number of bytes to sample.
+		 */
+		public Builder sampleBytes( final long sampleBytes )
+		{
+			this.sampleBytes = sampleBytes;
+			return this;
+		}
+
+		public ImportPreflight create()
+		{
+			if ( null == csvFilePath )
+				throw new IllegalArgumentException( "The CSV file path is not set." );
+			return new ImportPreflight( csvFilePath, Collections.unmodifiableList( new ArrayList<>( otherShards ) ), frameCol, trackCol, nameCol, declareAllFeatures, extraSpotFeatures, sampleRows, sampleBytes );
+		}
+	}
+}
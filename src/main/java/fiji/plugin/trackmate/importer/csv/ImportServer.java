@@ -0,0 +1,598 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.AclEntry;
+import java.nio.file.attribute.AclEntryPermission;
+import java.nio.file.attribute.AclEntryType;
+import java.nio.file.attribute.AclFileAttributeView;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Phaser;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonSyntaxException;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.importer.csv.ImportStats.Metrics;
+import fiji.plugin.trackmate.importer.csv.ImportStats.Phase;
+
+/**
+ * A long-running import server, that runs conversion jobs in one warm JVM
+ * instead of starting a new one per file. The parsers stay JIT-compiled and
+ * the image metadata read with Bio-Formats stay cached from one job to the
+ * next.
+ * <p>
+ * Jobs are JSON objects, one per line, read from the standard input or from
+ * connections to a local TCP port. Java 8 has no Unix domain sockets, so the
+ * port is protected by a token instead: the server writes a random token to
+ * a file only its user can read, and the first line of each connection must
+ * be this token. Connections without it are closed before any job is read.
+ * A job has the same keys as the options of
+ * {@link CsvToTrackMate}, plus an optional <code>id</code> echoed in the
+ * response:
+ *
+ * <pre>
+ * {"id": "job-1", "csvFilePath": "/data/1.csv", "imageFilePath": "/data/1.tif", "targetFilePath": "/data/1.xml", "xCol": "POSITION_X", "yCol": "POSITION_Y", "frameCol": "FRAME", "radius": 2}
+ * </pre>
+ *
+ * Each job gets one response line, in the order the jobs complete, with its
+ * status (<code>done</code>, <code>failed</code> or <code>invalid</code>),
+ * the error message if any, and the per-phase {@link ImportStats} of the
+ * import. The commands <code>{"command": "status"}</code> and
+ * <code>{"command": "shutdown"}</code> return the server counters and stop
+ * the server after the running jobs.
+ * <p>
+ * Jobs run in a {@link BatchImporter}: their I/O overlaps on virtual
+ * threads when available, and at most <code>nThreads</code> of them parse
+ * at once. At most <code>nThreads + queueCapacity</code> jobs are in flight.
+ * When they are, the server stops reading jobs until one completes, which
+ * pushes back on the client through the pipe or socket buffers.
+ */
+public class ImportServer
+{
+
+	private final int nThreads;
+
+	private final BatchImporter batch;
+
+	/**
+	 * Permits for the jobs in flight.
+	 */
+	private final Semaphore slots;
+
+	private final Gson gson = new Gson();
+
+	private final AtomicLong jobCounter = new AtomicLong();
+
+	private final AtomicInteger inFlight = new AtomicInteger();
+
+	private final AtomicLong done = new AtomicLong();
+
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile boolean shutdown;
+
+	private volatile ServerSocket serverSocket;
+
+	private ImportServer( final int nThreads, final int queueCapacity )
+	{
+		this.nThreads = nThreads;
+		this.slots = new Semaphore( nThreads + queueCapacity );
+		this.batch = BatchImporter.builder()
+				.cpuThreads( nThreads )
+				.create();
+	}
+
+	/**
+	 * Reads jobs from the specified stream, one JSON object per line, and
+	 * writes their responses to the specified stream. Returns when the input
+	 * ends or the server is shut down, after the jobs read are complete.
+	 */
+	public void serve( final InputStream in, final OutputStream out ) throws IOException
+	{
+		serve( new BufferedReader( new InputStreamReader( in, StandardCharsets.UTF_8 ) ),
+				new ResponseWriter( new OutputStreamWriter( out, StandardCharsets.UTF_8 ) ) );
+	}
+
+	private void serve( final BufferedReader reader, final ResponseWriter writer ) throws IOException
+	{
+		// One party for this connection, one per pending job.
+		final Phaser pending = new Phaser( 1 );
+		try
+		{
+			String line;
+			while ( !shutdown && null != ( line = reader.readLine() ) )
+			{
+				if ( line.trim().isEmpty() )
+					continue;
+				handle( line, writer, pending );
+			}
+		}
+		finally
+		{
+			pending.arriveAndAwaitAdvance();
+		}
+	}
+
+	/**
+	 * Accepts connections on the specified port of the loopback interface,
+	 * and serves each of them on its own thread. Blocks until the server is
+	 * shut down.
+	 * <p>
+	 * A random token is written to the specified file, readable and writable
+	 * by the user only, and deleted when the server stops. The first line of
+	 * each connection must be this token.
+	 */
+	public void listen( final int port, final Path tokenFile ) throws IOException
+	{
+		final byte[] token = createToken( tokenFile );
+		try (final ServerSocket socket = new ServerSocket( port, 50, InetAddress.getLoopbackAddress() ))
+		{
+			serverSocket = socket;
+			while ( !shutdown )
+			{
+				final Socket connection;
+				try
+				{
+					connection = socket.accept();
+				}
+				catch ( final IOException e )
+				{
+					if ( shutdown )
+						break;
+					throw e;
+				}
+
+				final Thread thread = new Thread( () -> {
+					try (final Socket s = connection)
+					{
+						final BufferedReader reader = new BufferedReader( new InputStreamReader( s.getInputStream(), StandardCharsets.UTF_8 ) );
+						final ResponseWriter writer = new ResponseWriter( new OutputStreamWriter( s.getOutputStream(), StandardCharsets.UTF_8 ) );
+						final String line = reader.readLine();
+						if ( null == line || !MessageDigest.isEqual( token, line.trim().getBytes( StandardCharsets.UTF_8 ) ) )
+						{
+							final JsonObject response = new JsonObject();
+							response.addProperty( "status", "unauthorized" );
+							response.addProperty( "error", "The first line must be the token of the server." );
+							write( writer, response );
+							return;
+						}
+						serve( reader, writer );
+					}
+					catch ( final IOException e )
+					{
+						System.err.println( "Connection error: " + e.getMessage() );
+					}
+				}, "TrackMate CSV import server connection" );
+				thread.setDaemon( true );
+				thread.start();
+			}
+		}
+		finally
+		{
+			close();
+			Files.deleteIfExists( tokenFile );
+		}
+	}
+
+	/**
+	 * Writes a new random token to the specified file, created readable and
+	 * writable by the user only, and returns it.
+	 */
+	private static byte[] createToken( final Path tokenFile ) throws IOException
+	{
+		final byte[] random = new byte[ 32 ];
+		new SecureRandom().nextBytes( random );
+		final StringBuilder str = new StringBuilder();
+		for ( final byte b : random )
+			str.append( String.format( "%02x", b ) );
+		final byte[] token = str.toString().getBytes( StandardCharsets.UTF_8 );
+
+		// Created anew, so that no one else keeps it open.
+		Files.deleteIfExists( tokenFile );
+		try
+		{
+			Files.createFile( tokenFile, PosixFilePermissions.asFileAttribute( PosixFilePermissions.fromString( "rw-------" ) ) );
+		}
+		catch ( final UnsupportedOperationException e )
+		{
+			// Not a POSIX file system, such as on Windows: an ACL for the owner only.
+			Files.createFile( tokenFile );
+			final AclFileAttributeView view = Files.getFileAttributeView( tokenFile, AclFileAttributeView.class );
+			if ( null == view )
+			{
+				Files.delete( tokenFile );
+				throw new IOException( "Cannot restrict the permissions of the token file " + tokenFile );
+			}
+			view.setAcl( Collections.singletonList( AclEntry.newBuilder()
+					.setType( AclEntryType.ALLOW )
+					.setPrincipal( Files.getOwner( tokenFile ) )
+					.setPermissions( AclEntryPermission.values() )
+					.build() ) );
+		}
+		Files.write( tokenFile, token );
+		return token;
+	}
+
+	/**
+	 * Stops accepting jobs, waits for the jobs in flight to complete,
+	 * and releases the threads.
+	 */
+	public void close()
+	{
+		shutdown = true;
+		final ServerSocket socket = serverSocket;
+		if ( null != socket )
+		{
+			try
+			{
+				socket.close();
+			}
+			catch ( final IOException e )
+			{
+				// Already closed.
+			}
+		}
+		batch.close();
+	}
+
+	private void handle( final String line, final ResponseWriter writer, final Phaser pending ) throws IOException
+	{
+		final JsonObject job;
+		final String id;
+		final String command;
+		try
+		{
+			job = gson.fromJson( line, JsonObject.class );
+			if ( null == job )
+				throw new JsonSyntaxException( "empty job." );
+			id = job.has( "id" ) ? job.get( "id" ).getAsString() : "job-" + jobCounter.incrementAndGet();
+			command = job.has( "command" ) ? job.get( "command" ).getAsString() : "import";
+		}
+		catch ( final JsonSyntaxException | IllegalStateException | UnsupportedOperationException e )
+		{
+			final JsonObject response = new JsonObject();
+			response.addProperty( "status", "invalid" );
+			response.addProperty( "error", "Not a valid job: " + e.getMessage() );
+			write( writer, response );
+			return;
+		}
+
+		final JsonObject response = new JsonObject();
+		response.addProperty( "id", id );
+		switch ( command )
+		{
+		case "status":
+			response.addProperty( "status", "ok" );
+			response.addProperty( "threads", nThreads );
+			response.addProperty( "virtualThreads", batch.isVirtualThreads() );
+			response.addProperty( "inFlight", inFlight.get() );
+			response.addProperty( "done", done.get() );
+			response.addProperty( "failed", failed.get() );
+			write( writer, response );
+			return;
+
+		case "shutdown":
+			shutdown = true;
+			response.addProperty( "status", "ok" );
+			write( writer, response );
+			close();
+			return;
+
+		case "import":
+			break;
+
+		default:
+			response.addProperty( "status", "invalid" );
+			response.addProperty( "error", "Unknown command: " + command );
+			write( writer, response );
+			return;
+		}
+
+		// Blocks while the queue is full. Taken before creating the importer,
+		// which reads the header of the CSV file.
+		try
+		{
+			slots.acquire();
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException( "Interrupted while waiting for a free slot." );
+		}
+
+		final Map< String, String > options = new HashMap<>();
+		final TrackMateImporter importer;
+		try
+		{
+			for ( final Map.Entry< String, JsonElement > entry : job.entrySet() )
+				if ( !entry.getKey().equals( "id" ) && !entry.getKey().equals( "command" ) )
+					options.put( entry.getKey(), entry.getValue().getAsString() );
+			importer = CsvToTrackMate.createImporter( options, Logger.VOID_LOGGER );
+		}
+		catch ( final IllegalArgumentException | IllegalStateException | UnsupportedOperationException e )
+		{
+			slots.release();
+			response.addProperty( "status", "invalid" );
+			response.addProperty( "error", e.getMessage() );
+			write( writer, response );
+			return;
+		}
+
+		pending.register();
+		inFlight.incrementAndGet();
+		try
+		{
+			batch.submit( importer, new File( options.get( "targetFilePath" ) ) )
+					.whenComplete( ( ok, error ) -> complete( importer, ok, error, response, writer, pending ) );
+		}
+		catch ( final RejectedExecutionException e )
+		{
+			inFlight.decrementAndGet();
+			slots.release();
+			pending.arriveAndDeregister();
+			response.addProperty( "status", "invalid" );
+			response.addProperty( "error", "The server is shutting down." );
+			write( writer, response );
+		}
+	}
+
+	private void complete( final TrackMateImporter importer, final Boolean ok, final Throwable error, final JsonObject response, final ResponseWriter writer, final Phaser pending )
+	{
+		try
+		{
+			if ( null != error )
+			{
+				failed.incrementAndGet();
+				response.addProperty( "status", "failed" );
+				response.addProperty( "error", error.toString() );
+			}
+			else if ( ok.booleanValue() )
+			{
+				done.incrementAndGet();
+				response.addProperty( "status", "done" );
+				response.add( "stats", toJson( importer.getStats() ) );
+			}
+			else
+			{
+				failed.incrementAndGet();
+				response.addProperty( "status", "failed" );
+				response.addProperty( "error", importer.getErrorMessage() );
+				response.add( "stats", toJson( importer.getStats() ) );
+			}
+		}
+		finally
+		{
+			inFlight.decrementAndGet();
+			try
+			{
+				write( writer, response );
+			}
+			catch ( final IOException e )
+			{
+				System.err.println( "Could not send the response of job " + response.get( "id" ).getAsString() + ": " + e.getMessage() );
+			}
+			slots.release();
+			pending.arriveAndDeregister();
+		}
+	}
+
+	private void write( final ResponseWriter writer, final JsonObject response ) throws IOException
+	{
+		writer.writeLine( gson.toJson( response ) );
+	}
+
+	/**
+	 * The responses of one connection, written by the jobs as they complete.
+	 * A lock rather than a synchronized block, so that jobs completing on
+	 * virtual threads do not pin their carrier thread while they write.
+	 */
+	private static final class ResponseWriter
+	{
+
+		private final Writer writer;
+
+		private final ReentrantLock lock = new ReentrantLock();
+
+		private ResponseWriter( final Writer writer )
+		{
+			this.writer = writer;
+		}
+
+		private void writeLine( final String line ) throws IOException
+		{
+			lock.lock();
+			try
+			{
+				writer.write( line );
+				writer.write( '\n' );
+				writer.flush();
+			}
+			finally
+			{
+				lock.unlock();
+			}
+		}
+	}
+
+	private static JsonObject toJson( final ImportStats stats )
+	{
+		final JsonObject json = new JsonObject();
+		for ( final Phase phase : Phase.values() )
+		{
+			final Metrics metrics = stats.get( phase );
+			if ( null != metrics )
+				json.add( phase.name(), toJson( metrics ) );
+		}
+		json.add( "TOTAL", toJson( stats.getTotal() ) );
+		json.addProperty( "peakHeap", stats.getPeakHeap() );
+		return json;
+	}
+
+	private static JsonObject toJson( final Metrics metrics )
+	{
+		final JsonObject json = new JsonObject();
+		json.addProperty( "wallMillis", metrics.getWallNanos() / 1e6 );
+		json.addProperty( "cpuMillis", metrics.getCpuNanos() < 0 ? -1. : metrics.getCpuNanos() / 1e6 );
+		json.addProperty( "allocatedBytes", metrics.getAllocatedBytes() );
+		json.addProperty( "rows", metrics.getRows() );
+		json.addProperty( "bytesRead", metrics.getBytesRead() );
+		return json;
+	}
+
+	/**
+	 * Starts a server. With <code>--port=N</code> it listens on this port of
+	 * the loopback interface, and writes its token to the file set with
+	 * <code>--tokenFile=PATH</code>, by default
+	 * <code>.trackmate-csv-import-server.token</code> in the home folder.
+	 * Otherwise it reads jobs from the standard input and writes responses to
+	 * the standard output. The number of threads and the queue capacity are
+	 * set with <code>--threads=N</code> and <code>--queue=N</code>.
+	 */
+	public static void main( final String[] args ) throws IOException
+	{
+		final Builder builder = builder();
+		int port = -1;
+		Path tokenFile = Paths.get( System.getProperty( "user.home" ), ".trackmate-csv-import-server.token" );
+		for ( final String arg : args )
+		{
+			final int eq = arg.indexOf( '=' );
+			final String name = ( eq < 0 ) ? arg : arg.substring( 0, eq );
+			final String value = ( eq < 0 ) ? "" : arg.substring( eq + 1 );
+			try
+			{
+				switch ( name )
+				{
+				case "--port":
+					port = Integer.parseInt( value );
+					break;
+				case "--tokenFile":
+					tokenFile = Paths.get( value );
+					break;
+				case "--threads":
+					builder.nThreads( Integer.parseInt( value ) );
+					break;
+				case "--queue":
+					builder.queueCapacity( Integer.parseInt( value ) );
+					break;
+				default:
+					System.err.println( "Unknown argument: " + arg );
+					System.err.println( "Usage: ImportServer [--port=N [--tokenFile=PATH]] [--threads=N] [--queue=N]" );
+					System.exit( 2 );
+				}
+			}
+			catch ( final NumberFormatException e )
+			{
+				System.err.println( "Invalid number for " + name + ": " + value );
+				System.exit( 2 );
+			}
+		}
+
+		final ImportServer server = builder.create();
+		if ( port >= 0 )
+		{
+			System.err.println( "TrackMate CSV import server listening on port " + port + " of the loopback interface, token in " + tokenFile + "." );
+			server.listen( port, tokenFile );
+		}
+		else
+		{
+			// Keep the standard output for the responses.
+			final PrintStream out = System.out;
+			System.setOut( System.err );
+			server.serve( System.in, out );
+			server.close();
+		}
+	}
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private int nThreads = Runtime.getRuntime().availableProcessors();
+
+		private int queueCapacity = -1;
+
+		private Builder()
+		{}
+
+		/**
+		 * The number of jobs that parse their CSV file at once. Defaults to
+		 * the number of processors.
+		 */
+		public Builder nThreads( final int nThreads )
+		{
+			this.nThreads = nThreads;
+			return this;
+		}
+
+		/**
+		 * The number of jobs in flight on top of the parsing ones, before the
+		 * server stops reading new ones. They wait on their I/O or for a
+		 * parsing permit. Defaults to four times the number of threads.
+		 */
+		public Builder queueCapacity( final int queueCapacity )
+		{
+			this.queueCapacity = queueCapacity;
+			return this;
+		}
+
+		public ImportServer create()
+		{
+			if ( nThreads < 1 )
+				throw new IllegalArgumentException( "The number of threads must be at least 1, was " + nThreads + "." );
+			final int capacity = ( queueCapacity < 0 ) ? 4 * nThreads : queueCapacity;
+			return new ImportServer( nThreads, capacity );
+		}
+	}
+}
@@ -0,0 +1,436 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Per-phase metrics of an import: wall time, CPU time, bytes read, rows
+ * processed, bytes allocated and peak heap.
+ * <p>
+ * A phase is measured between {@link #start(Phase)} and
+ * {@link Timer#stop(long, long)}, and can be measured several times, for
+ * instance once per chunk of rows. The measurements of a phase are summed.
+ * CPU time and allocated bytes are read from the {@link ThreadMXBean} for the
+ * current thread, so a timer must be stopped in the thread that started it.
+ * They are reported as -1 if the JVM does not support them.
+ * <p>
+ * Phases that run in several threads at once, such as the parsing of the
+ * shards, are measured in a {@link Section}. The CPU time, allocated bytes,
+ * rows and bytes read of their timers are summed over the threads, but their
+ * wall time is the elapsed time of the section, measured by the thread that
+ * runs it. Summing the wall times of the threads would count the same
+ * elapsed time once per thread.
+ * <p>
+ * The peak heap is the highest used heap sampled during the import: when a
+ * phase starts and stops, and at each {@link #sampleHeap()}. The heap is
+ * shared by all the imports running in the JVM, so concurrent imports see
+ * each other's usage, but the global peak usages of the memory pools are
+ * never reset, so that the stats of one import do not disturb the others.
+ */
+public class ImportStats
+{
+
+	public enum Phase
+	{
+		METADATA_PROBE( "metadata probe" ),
+		ID_RESERVATION( "ID reservation" ),
+		PARSE( "parse" ),
+		SPOT_BUILD( "spot build" ),
+		COLLECTION_BUILD( "collection build" ),
+		LINKING( "linking" ),
+		FEATURES( "feature computation" ),
+		XML_WRITE( "XML write" );
+
+		private final String name;
+
+		private Phase( final String name )
+		{
+			this.name = name;
+		}
+
+		@Override
+		public String toString()
+		{
+			return name;
+		}
+	}
+
+	private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+	private static final MemoryMXBean MEMORY_MX_BEAN = ManagementFactory.getMemoryMXBean();
+
+	private static final boolean CPU_TIME_SUPPORTED = isCpuTimeSupported();
+
+	private static final boolean ALLOCATION_SUPPORTED = isAllocationSupported();
+
+	private final Map< Phase, Metrics > metrics = new EnumMap<>( Phase.class );
+
+	private final AtomicLong peakHeap = new AtomicLong();
+
+	public ImportStats()
+	{
+		sampleHeap();
+	}
+
+	/**
+	 * Starts measuring the specified phase in the current thread.
+	 */
+	public Timer start( final Phase phase )
+	{
+		return new Timer( phase );
+	}
+
+	/**
+	 * Starts a section whose phases run in several threads at once. Must be
+	 * stopped by the thread that started it, once the other threads are done.
+	 */
+	public Section startSection()
+	{
+		return new Section();
+	}
+
+	/**
+	 * Samples the used heap, to update the peak heap. Cheap enough to be
+	 * called once per chunk of rows.
+	 *
+	 * @return the used heap, in bytes.
+	 */
+	public long sampleHeap()
+	{
+		final long used = MEMORY_MX_BEAN.getHeapMemoryUsage().getUsed();
+		peakHeap.accumulateAndGet( used, Math::max );
+		return used;
+	}
+
+	/**
+	 * Returns the metrics of the specified phase, or <code>null</code> if it
+	 * was never measured.
+	 */
+	public synchronized Metrics get( final Phase phase )
+	{
+		return metrics.get( phase );
+	}
+
+	/**
+	 * Returns the metrics summed over all phases. The rows and bytes are
+	 * those of the phase that processed the most.
+	 */
+	public synchronized Metrics getTotal()
+	{
+		final Metrics total = new Metrics();
+		for ( final Metrics m : metrics.values() )
+		{
+			total.wallNanos += m.wallNanos;
+			total.cpuNanos = ( m.cpuNanos < 0 || total.cpuNanos < 0 ) ? -1 : total.cpuNanos + m.cpuNanos;
+			total.allocatedBytes = ( m.allocatedBytes < 0 || total.allocatedBytes < 0 ) ? -1 : total.allocatedBytes + m.allocatedBytes;
+			total.rows = Math.max( total.rows, m.rows );
+			total.bytesRead = Math.max( total.bytesRead, m.bytesRead );
+			total.peakHeap = Math.max( total.peakHeap, m.peakHeap );
+		}
+		return total;
+	}
+
+	/**
+	 * Returns the peak heap usage seen since these stats were created, in
+	 * bytes.
+	 */
+	public long getPeakHeap()
+	{
+		return peakHeap.get();
+	}
+
+	private synchronized void add( final Phase phase, final long wallNanos, final long cpuNanos, final long allocatedBytes, final long rows, final long bytesRead )
+	{
+		Metrics m = metrics.get( phase );
+		if ( null == m )
+		{
+			m = new Metrics();
+			metrics.put( phase, m );
+		}
+		m.wallNanos += wallNanos;
+		m.cpuNanos = ( cpuNanos < 0 || m.cpuNanos < 0 ) ? -1 : m.cpuNanos + cpuNanos;
+		m.allocatedBytes = ( allocatedBytes < 0 || m.allocatedBytes < 0 ) ? -1 : m.allocatedBytes + allocatedBytes;
+		m.rows += rows;
+		m.bytesRead += bytesRead;
+		sampleHeap();
+		m.peakHeap = Math.max( m.peakHeap, peakHeap.get() );
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		final StringBuilder str = new StringBuilder();
+		str.append( String.format( "%-20s %10s %10s %12s %12s %12s %10s\n",
+				"Phase", "Wall (ms)", "CPU (ms)", "Rows", "Rows/s", "Read (MB)", "Alloc (MB)" ) );
+		for ( final Map.Entry< Phase, Metrics > entry : metrics.entrySet() )
+			append( str, entry.getKey().toString(), entry.getValue() );
+		append( str, "total", getTotal() );
+		str.append( String.format( "Peak heap: %.1f MB.\n", peakHeap.get() / 1e6 ) );
+		return str.toString();
+	}
+
+	private static void append( final StringBuilder str, final String name, final Metrics m )
+	{
+		str.append( String.format( "%-20s %10.1f %10s %12d %12s %12.1f %10s\n",
+				name,
+				m.wallNanos / 1e6,
+				m.cpuNanos < 0 ? "n/a" : String.format( "%.1f", m.cpuNanos / 1e6 ),
+				m.rows,
+				m.rows == 0 ? "" : String.format( "%.0f", m.getRowsPerSecond() ),
+				m.bytesRead / 1e6,
+				m.allocatedBytes < 0 ? "n/a" : String.format( "%.1f", m.allocatedBytes / 1e6 ) ) );
+	}
+
+	private static long cpuTime()
+	{
+		return CPU_TIME_SUPPORTED ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : -1;
+	}
+
+	private static long allocatedBytes()
+	{
+		if ( !ALLOCATION_SUPPORTED )
+			return -1;
+		return ( ( com.sun.management.ThreadMXBean ) THREAD_MX_BEAN ).getThreadAllocatedBytes( Thread.currentThread().getId() );
+	}
+
+	private static boolean isCpuTimeSupported()
+	{
+		try
+		{
+			return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() && THREAD_MX_BEAN.isThreadCpuTimeEnabled();
+		}
+		catch ( final UnsupportedOperationException e )
+		{
+			return false;
+		}
+	}
+
+	private static boolean isAllocationSupported()
+	{
+		try
+		{
+			if ( !( THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean ) )
+				return false;
+			final com.sun.management.ThreadMXBean bean = ( com.sun.management.ThreadMXBean ) THREAD_MX_BEAN;
+			return bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled();
+		}
+		catch ( final NoClassDefFoundError | UnsupportedOperationException e )
+		{
+			return false;
+		}
+	}
+
+	/**
+	 * Measures one run of a phase. Obtained from {@link ImportStats#start(Phase)}.
+	 */
+	public final class Timer
+	{
+
+		private final Phase phase;
+
+		private final Section section;
+
+		private final long wall;
+
+		private final long cpu;
+
+		private final long allocated;
+
+		private Timer( final Phase phase )
+		{
+			this( phase, null );
+		}
+
+		private Timer( final Phase phase, final Section section )
+		{
+			this.phase = phase;
+			this.section = section;
+			sampleHeap();
+			this.allocated = allocatedBytes();
+			this.cpu = cpuTime();
+			this.wall = System.nanoTime();
+		}
+
+		/**
+		 * Stops measuring the phase, without rows or bytes.
+		 */
+		public void stop()
+		{
+			stop( 0, 0 );
+		}
+
+		/**
+		 * Stops measuring the phase, and adds the number of rows processed
+		 * and bytes read during this run to the metrics of the phase.
+		 */
+		public void stop( final long rows, final long bytesRead )
+		{
+			final long wallNanos = System.nanoTime() - wall;
+			final long cpuNanos = ( cpu < 0 ) ? -1 : cpuTime() - cpu;
+			final long allocatedBytes = ( allocated < 0 ) ? -1 : allocatedBytes() - allocated;
+			if ( null == section )
+			{
+				add( phase, wallNanos, cpuNanos, allocatedBytes, rows, bytesRead );
+			}
+			else
+			{
+				add( phase, 0, cpuNanos, allocatedBytes, rows, bytesRead );
+				section.addThreadWall( phase, wallNanos );
+			}
+		}
+	}
+
+	/**
+	 * A part of an import whose phases run in several threads at once.
+	 * Obtained from {@link ImportStats#startSection()}.
+	 * <p>
+	 * When the section stops, its elapsed time is split between its phases
+	 * in proportion to the wall time their timers measured in all the
+	 * threads, and added to their wall time. The wall times of the phases
+	 * then add up to the elapsed time, whatever the number of threads.
+	 */
+	public final class Section
+	{
+
+		private final long start;
+
+		private final Map< Phase, Long > threadWall = new EnumMap<>( Phase.class );
+
+		private Section()
+		{
+			this.start = System.nanoTime();
+		}
+
+		/**
+		 * Starts measuring the specified phase in the current thread, as part
+		 * of this section.
+		 */
+		public Timer start( final Phase phase )
+		{
+			return new Timer( phase, this );
+		}
+
+		private void addThreadWall( final Phase phase, final long wallNanos )
+		{
+			synchronized ( ImportStats.this )
+			{
+				threadWall.merge( phase, Long.valueOf( wallNanos ), Long::sum );
+			}
+		}
+
+		/**
+		 * Stops the section and adds its elapsed time to the wall time of
+		 * its phases.
+		 */
+		public void stop()
+		{
+			final long elapsed = System.nanoTime() - start;
+			synchronized ( ImportStats.this )
+			{
+				long total = 0;
+				for ( final Long wall : threadWall.values() )
+					total += wall.longValue();
+				if ( total == 0 )
+					return;
+				for ( final Map.Entry< Phase, Long > entry : threadWall.entrySet() )
+				{
+					final long wallNanos = ( long ) ( ( double ) elapsed * entry.getValue().longValue() / total );
+					metrics.get( entry.getKey() ).wallNanos += wallNanos;
+				}
+			}
+		}
+	}
+
+	/**
+	 * The metrics of a phase.
+	 */
+	public static final class Metrics
+	{
+
+		private long wallNanos;
+
+		private long cpuNanos;
+
+		private long allocatedBytes;
+
+		private long rows;
+
+		private long bytesRead;
+
+		private long peakHeap;
+
+		private Metrics()
+		{}
+
+		public long getWallNanos()
+		{
+			return wallNanos;
+		}
+
+		/**
+		 * Returns the CPU time of the phase, or -1 if not supported.
+		 */
+		public long getCpuNanos()
+		{
+			return cpuNanos;
+		}
+
+		/**
+		 * Returns the bytes allocated during the phase, or -1 if not
+		 * supported.
+		 */
+		public long getAllocatedBytes()
+		{
+			return allocatedBytes;
+		}
+
+		public long getRows()
+		{
+			return rows;
+		}
+
+		public long getBytesRead()
+		{
+			return bytesRead;
+		}
+
+		/**
+		 * Returns the peak heap usage seen up to the end of the phase, in
+		 * bytes.
+		 */
+		public long getPeakHeap()
+		{
+			return peakHeap;
+		}
+
+		public double getRowsPerSecond()
+		{
+			return ( wallNanos == 0 ) ? 0. : rows * 1e9 / wallNanos;
+		}
+	}
+}
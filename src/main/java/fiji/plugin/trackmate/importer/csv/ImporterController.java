@@ -32,11 +32,11 @@ import static fiji.plugin.trackmate.detection.CSVImporterDetectorFactory.KEY_Z_C
 import static fiji.plugin.trackmate.gui.Icons.TRACKMATE_ICON;
 
 import java.awt.FileDialog;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.Reader;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -45,9 +45,9 @@ import java.util.Map;
 import javax.swing.DefaultComboBoxModel;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
-
-import org.apache.commons.csv.CSVFormat;
-import org.apache.commons.csv.CSVParser;
+import javax.swing.JOptionPane;
+import javax.swing.SwingUtilities;
+import javax.swing.table.DefaultTableModel;
 
 import ij.ImagePlus;
 import ij.io.FileInfo;
@@ -68,17 +68,48 @@ public class ImporterController
 
 	private Map< String, Integer > headerMap;
 
+	private volatile TrackMateToGUIImporter importer;
+
+	private volatile CSVScanner scanner;
+
+	private final CSVHeaderInspector inspector = new CSVHeaderInspector();
+
+	/**
+	 * Actions waiting for the inspection of the CSV file to complete.
+	 */
+	private final List< Runnable > afterInspection = new ArrayList<>();
+
+	private boolean inspecting;
+
+	private CSVPreviewTableModel preview;
+
 	public ImporterController()
 	{
 		this.view = new ImporterPanel();
 		view.btnBrowse.addActionListener( ( e ) -> browse() );
 		view.textFieldFile.addActionListener( ( e ) -> setCSVFile( new File( view.textFieldFile.getText() ) ) );
 		view.btnImport.addActionListener( ( e ) -> doImport() );
+		view.btnScan.addActionListener( ( e ) -> doScan() );
+		view.btnCancel.addActionListener( ( e ) -> cancelImport() );
 		view.comboBoxImp.addActionListener( ( e ) -> checkImage() );
+		for ( final JComboBox< String > comboBox : getColumnComboBoxes() )
+		{
+			ColumnComboBoxModel.install( comboBox );
+			comboBox.addActionListener( ( e ) -> updatePreviewRoles() );
+		}
+		view.chckbxImportTracks.addActionListener( ( e ) -> updatePreviewRoles() );
 		checkImage();
 		final JFrame frame = new JFrame( "TrackMate CSV importer" );
 		frame.setIconImage( ImporterPanel.ICON.getImage() );
 		frame.getContentPane().add( view );
+		frame.addWindowListener( new WindowAdapter()
+		{
+			@Override
+			public void windowClosing( final WindowEvent e )
+			{
+				closePreview();
+			}
+		} );
 		frame.pack();
 		frame.setLocationRelativeTo( null );
 		frame.setVisible( true );
@@ -86,42 +117,42 @@ public class ImporterController
 
 	public void setXColumn( final String xColumnName )
 	{
-		view.comboBoxXCol.setSelectedItem( xColumnName );
+		afterInspection( () -> view.comboBoxXCol.setSelectedItem( xColumnName ) );
 	}
 
 	public void setYColumn( final String yColumnName )
 	{
-		view.comboBoxYCol.setSelectedItem(  yColumnName );
+		afterInspection( () -> view.comboBoxYCol.setSelectedItem(  yColumnName ) );
 	}
 
 	public void setZColumn( final String zColumnName )
 	{
-		view.comboBoxZCol.setSelectedItem( ( zColumnName == null ) ? NONE_COLUMN : zColumnName );
+		afterInspection( () -> view.comboBoxZCol.setSelectedItem( ( zColumnName == null ) ? NONE_COLUMN : zColumnName ) );
 	}
 
 	public void setTrackColumn( final String trackColumnName )
 	{
-		view.comboBoxTrackCol.setSelectedItem(  trackColumnName );
+		afterInspection( () -> view.comboBoxTrackCol.setSelectedItem(  trackColumnName ) );
 	}
 
 	public void setIDColumn( final String idColumnName )
 	{
-		view.comboBoxIDCol.setSelectedItem( ( idColumnName == null ) ? NONE_COLUMN : idColumnName );
+		afterInspection( () -> view.comboBoxIDCol.setSelectedItem( ( idColumnName == null ) ? NONE_COLUMN : idColumnName ) );
 	}
 
 	public void setNameColumn( final String nameColumnName )
 	{
-		view.comboBoxNameCol.setSelectedItem( ( nameColumnName == null ) ? NONE_COLUMN : nameColumnName );
+		afterInspection( () -> view.comboBoxNameCol.setSelectedItem( ( nameColumnName == null ) ? NONE_COLUMN : nameColumnName ) );
 	}
 
 	public void setQualityColumn( final String qualityColumnName )
 	{
-		view.comboBoxQualityCol.setSelectedItem( ( qualityColumnName == null ) ? NONE_COLUMN : qualityColumnName );
+		afterInspection( () -> view.comboBoxQualityCol.setSelectedItem( ( qualityColumnName == null ) ? NONE_COLUMN : qualityColumnName ) );
 	}
 
 	public void setFrameColumn( final String frameColumnName )
 	{
-		view.comboBoxFrameCol.setSelectedItem( frameColumnName );
+		afterInspection( () -> view.comboBoxFrameCol.setSelectedItem( frameColumnName ) );
 	}
 
 	public void setImage( final ImagePlus imp)
@@ -147,9 +178,96 @@ public class ImporterController
 		view.chckbxComputeFeatures.setSelected( doComputeFeatures );
 	}
 
+	public void setDeferFeatureComputation( final boolean doDeferFeatureComputation )
+	{
+		view.chckbxDeferFeatures.setSelected( doDeferFeatureComputation );
+	}
+
+	private void cancelImport()
+	{
+		final CSVScanner currentScanner = scanner;
+		if ( null != currentScanner )
+		{
+			view.btnCancel.setEnabled( false );
+			currentScanner.cancel( "Canceled by the user." );
+		}
+
+		final TrackMateToGUIImporter current = importer;
+		if ( null == current )
+			return;
+
+		view.btnCancel.setEnabled( false );
+		current.cancel( "Canceled by the user." );
+	}
+
+	/**
+	 * Scans the whole CSV file with the selected columns, and logs statistics
+	 * on its content. Nothing is imported.
+	 */
+	private void doScan()
+	{
+		view.btnScan.setEnabled( false );
+		view.btnImport.setEnabled( false );
+		view.btnCancel.setEnabled( true );
+		new Thread( "TrackMate CSV scanner thread" )
+		{
+			@Override
+			public void run()
+			{
+				try
+				{
+					final String filePath = view.textFieldFile.getText();
+					final CSVScanner.Builder builder = CSVScanner.builder()
+							.csvFilePath( filePath )
+							.xCol( getColumn( view.comboBoxXCol ) )
+							.yCol( getColumn( view.comboBoxYCol ) )
+							.zCol( getColumn( view.comboBoxZCol ) )
+							.frameCol( getColumn( view.comboBoxFrameCol ) );
+					if ( view.chckbxImportTracks.isSelected() )
+						builder.trackCol( getColumn( view.comboBoxTrackCol ) );
+
+					final CSVScanner scanner = builder.create();
+					ImporterController.this.scanner = scanner;
+					log( "Scanning " + filePath + '\n' );
+					final ScanReport report = scanner.scan();
+					if ( null == report )
+						log( "Scan canceled.\n" );
+					else
+						log( report.toString() + '\n' );
+				}
+				catch ( final IOException e )
+				{
+					error( "Error scanning CSV file:\n" + e.getMessage() + '\n' );
+				}
+				finally
+				{
+					ImporterController.this.scanner = null;
+					view.btnCancel.setEnabled( false );
+					view.btnScan.setEnabled( csvOk );
+					view.btnImport.setEnabled( csvOk && imageOk );
+				}
+			}
+		}.start();
+	}
+
+	/**
+	 * Returns the index of the column selected in the specified combo box, or
+	 * -1 if none is selected.
+	 */
+	private int getColumn( final JComboBox< String > comboBox )
+	{
+		final Object selected = comboBox.getSelectedItem();
+		if ( selected == NONE_COLUMN )
+			return -1;
+		final Integer col = headerMap.get( selected );
+		return ( null == col ) ? -1 : col.intValue();
+	}
+
 	private void doImport()
 	{
 		view.btnImport.setEnabled( false );
+		view.btnScan.setEnabled( false );
+		view.btnCancel.setEnabled( true );
 		new Thread( "TrackMate CSV importer thread" )
 		{
 			@Override
@@ -185,9 +303,23 @@ public class ImporterController
 					if ( view.comboBoxIDCol.getSelectedItem() != NONE_COLUMN && null != idCol )
 						fieldMap.put( KEY_ID_COLUMN_NAME, idCol );
 
+					if ( !preflight( filePath, fieldMap ) )
+					{
+						log( "Import canceled after preflight.\n" );
+						return;
+					}
+
 					final ImagePlus imp = ( ImagePlus ) view.comboBoxImp.getSelectedItem();
 					final double radius = ( ( Number ) view.ftfRadius.getValue() ).doubleValue();
-					final TrackMateToGUIImporter importer = new TrackMateToGUIImporter( filePath, fieldMap, radius, view.chckbxComputeFeatures.isSelected(), imp, view.getLogger() );
+					final TrackMateToGUIImporter importer = new TrackMateToGUIImporter(
+							filePath,
+							fieldMap,
+							radius,
+							view.chckbxComputeFeatures.isSelected(),
+							view.chckbxDeferFeatures.isSelected(),
+							imp,
+							view.getLogger() );
+					ImporterController.this.importer = importer;
 					if ( !importer.checkInput() || !importer.process() )
 					{
 						error( "Error importing CSV file:\n" + importer.getErrorMessage() );
@@ -197,12 +329,77 @@ public class ImporterController
 				}
 				finally
 				{
+					ImporterController.this.importer = null;
+					view.btnCancel.setEnabled( false );
 					view.btnImport.setEnabled( true );
+					view.btnScan.setEnabled( true );
 				}
 			}
 		}.start();
 	}
 
+	/**
+	 * Estimates the footprint of the import from the head of the file, logs
+	 * it, and asks the user to confirm if the model is not expected to fit in
+	 * the heap.
+	 *
+	 * @return <code>true</code> if the import should proceed.
+	 */
+	private boolean preflight( final String filePath, final Map< String, Integer > fieldMap )
+	{
+		final Integer noCol = Integer.valueOf( -1 );
+		final ImportPreflight.Report report;
+		try
+		{
+			report = ImportPreflight.builder()
+					.csvFilePath( filePath )
+					.frameCol( fieldMap.getOrDefault( KEY_FRAME_COLUMN_NAME, noCol ).intValue() )
+					.trackCol( fieldMap.getOrDefault( KEY_TRACK_COLUMN_NAME, noCol ).intValue() )
+					.nameCol( fieldMap.getOrDefault( KEY_NAME_COLUMN_NAME, noCol ).intValue() )
+					.declareAllFeatures( view.chckbxComputeFeatures.isSelected() )
+					.create()
+					.run();
+		}
+		catch ( final IOException e )
+		{
+			// The import will report the problem.
+			error( "Could not sample the CSV file:\n" + e.getMessage() + '\n' );
+			return true;
+		}
+		log( report.toString() );
+
+		switch ( report.getStrategy() )
+		{
+		case FULL_IMPORT:
+		case SKIP_FEATURES:
+			return true;
+		default:
+			final String message = String.format( "The imported model is estimated to need %.0f MB,\n"
+					+ "but only %.0f MB of memory are available.\n\n%s\n\nImport anyway?",
+					( report.getModelBytes() + report.getFeatureBytes() ) / 1e6,
+					report.getAvailableHeap() / 1e6,
+					report.getStrategy().getAdvice() );
+			// Called from the import thread, the dialog must be shown on the EDT.
+			final int[] answer = new int[] { JOptionPane.NO_OPTION };
+			try
+			{
+				SwingUtilities.invokeAndWait( () -> answer[ 0 ] = JOptionPane.showConfirmDialog( view, message,
+						"TrackMate CSV importer", JOptionPane.YES_NO_OPTION, JOptionPane.WARNING_MESSAGE ) );
+			}
+			catch ( final InterruptedException e )
+			{
+				Thread.currentThread().interrupt();
+				return false;
+			}
+			catch ( final InvocationTargetException e )
+			{
+				error( "Could not ask for a confirmation:\n" + e.getCause() + '\n' );
+				return false;
+			}
+			return answer[ 0 ] == JOptionPane.YES_OPTION;
+		}
+	}
+
 	private final boolean checkImage()
 	{
 		imageOk = false;
@@ -270,6 +467,11 @@ public class ImporterController
 		return file;
 	}
 
+	/**
+	 * Sets the CSV file to import. Its header and metadata are read in the
+	 * background, and the column lists are filled when they are read. The
+	 * column setters called meanwhile are applied after that.
+	 */
 	public void setCSVFile( final File file )
 	{
 		csvOk = false;
@@ -278,102 +480,134 @@ public class ImporterController
 		log( "Inspecting CSV file: " + file + '\n' );
 
 		view.btnImport.setEnabled( false );
-		if ( readHeaders() && readMetadata() )
+		view.btnScan.setEnabled( false );
+		synchronized ( afterInspection )
 		{
-			csvOk = true;
-			if ( imageOk )
-				view.btnImport.setEnabled( true );
+			inspecting = true;
 		}
+		inspector.inspect( file, this::inspected, this::inspectionFailed );
 	}
 
-	private boolean readMetadata()
+	private void inspected( final CSVHeaderInspector.Header header )
 	{
-		final String filePath = view.textFieldFile.getText();
-		csvMetadata = null;
-		try
+		if ( setHeaders( header ) )
 		{
-			csvMetadata = CSVMetadata.parse( filePath );
+			csvMetadata = header.getMetadata();
 			log( "Metadata from CSV file:\n" );
 			log( csvMetadata.toString() + '\n' );
+			csvOk = true;
+			view.btnScan.setEnabled( true );
+			if ( imageOk )
+				view.btnImport.setEnabled( true );
+			showPreview( header );
 		}
-		catch ( final FileNotFoundException e )
+		runAfterInspection( true );
+	}
+
+	/**
+	 * Shows the content of the current CSV file in the preview table.
+	 */
+	private void showPreview( final CSVHeaderInspector.Header header )
+	{
+		closePreview();
+		try
 		{
-			error( "Could not find CSV file:\n" + e.getMessage() + '\n' );
-			e.printStackTrace();
-			return false;
+			preview = new CSVPreviewTableModel( file, header.getHeaders(), header.getDialect() );
+			view.tablePreview.setModel( preview );
+			updatePreviewRoles();
 		}
 		catch ( final IOException e )
 		{
-			e.printStackTrace();
-			error( "Could not browse CSV file:\n" + e.getMessage() + "\n" );
-			return false;
+			error( "Could not preview the CSV file:\n" + e.getMessage() + '\n' );
 		}
-		return true;
 	}
 
-	private boolean readHeaders()
+	private void closePreview()
 	{
-		final String filePath = view.textFieldFile.getText();
+		if ( null != preview )
+			preview.close();
+		preview = null;
+	}
 
-		/*
-		 * Open and parse file.
-		 */
+	/**
+	 * Highlights the columns selected for import in the preview table.
+	 */
+	private void updatePreviewRoles()
+	{
+		if ( null == preview || null == headerMap )
+			return;
 
-		Reader in;
-		CSVParser records;
-		try
+		final Map< Integer, String > roles = new HashMap<>();
+		final String[] names = new String[] { "X", "Y", "Z", "Frame", "Quality", "Name", "ID", "Track" };
+		final List< JComboBox< String > > comboBoxes = getColumnComboBoxes();
+		for ( int i = 0; i < comboBoxes.size(); i++ )
 		{
-			in = new FileReader( filePath );
-		}
-		catch ( final FileNotFoundException e )
-		{
-			error( "Could not find CSV file:\n" + e.getMessage() + '\n' );
-			e.printStackTrace();
-			clearComboBoxes();
-			return false;
+			final JComboBox< String > comboBox = comboBoxes.get( i );
+			if ( comboBox == view.comboBoxTrackCol && !view.chckbxImportTracks.isSelected() )
+				continue;
+			final int col = getColumn( comboBox );
+			if ( col >= 0 )
+				roles.merge( col, names[ i ], ( a, b ) -> a + ", " + b );
 		}
+		preview.setRoles( roles );
+		view.tablePreview.getTableHeader().repaint();
+	}
 
-		try
-		{
-			final CSVFormat csvFormat = CSVFormat.EXCEL
-					.builder()
-					.setHeader()
-					.setCommentMarker( '#' )
-					.get();
-			records = csvFormat.parse( in );
-		}
-		catch ( final Exception e )
+	private void inspectionFailed( final String message )
+	{
+		error( message + '\n' );
+		clearComboBoxes();
+		closePreview();
+		view.tablePreview.setModel( new DefaultTableModel() );
+		runAfterInspection( false );
+	}
+
+	/**
+	 * Runs the specified action now, or after the current inspection of the
+	 * CSV file if there is one.
+	 */
+	private void afterInspection( final Runnable action )
+	{
+		synchronized ( afterInspection )
 		{
-			e.printStackTrace();
-			error( "Could not browse CSV file:\n" + e.getMessage() + "\n" );
-			clearComboBoxes();
-			return false;
+			if ( inspecting )
+			{
+				afterInspection.add( action );
+				return;
+			}
 		}
+		action.run();
+	}
 
-		final Map< String, Integer > uncleanHeaderMap = records.getHeaderMap();
-		this.headerMap = new HashMap<>( uncleanHeaderMap.size() );
-		for ( final String uncleanKey : uncleanHeaderMap.keySet() )
+	private void runAfterInspection( final boolean run )
+	{
+		final List< Runnable > actions;
+		synchronized ( afterInspection )
 		{
-			// Remove control and invisible chars.
-			final String cleanKey = uncleanKey.trim().replaceAll( "\\p{C}", "" );
-			headerMap.put( cleanKey, uncleanHeaderMap.get( uncleanKey ) );
+			inspecting = false;
+			actions = new ArrayList<>( afterInspection );
+			afterInspection.clear();
 		}
+		if ( run )
+			actions.forEach( Runnable::run );
+	}
 
-		// Iterate in column orders.
-		final List< String > headers = new ArrayList<>( headerMap.keySet() );
-		headers.removeIf( ( e ) -> e.trim().isEmpty() );
+	private boolean setHeaders( final CSVHeaderInspector.Header header )
+	{
+		// Names without control and invisible chars, in column order.
+		final HeaderIndex index = header.getCleanIndex();
+		this.headerMap = index.getColumnMap();
 
-		if ( headers.isEmpty() )
+		if ( index.size() == 0 )
 		{
 			error( "Could not read the header of the CSV file.\nIt does not seem present.\n" );
 			return false;
 		}
 
-		final String[] mandatory = headers.toArray( new String[] {} );
-		view.comboBoxXCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		view.comboBoxYCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		view.comboBoxFrameCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
-		view.comboBoxTrackCol.setModel( new DefaultComboBoxModel<>( mandatory ) );
+		ColumnComboBoxModel.setModel( view.comboBoxXCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( view.comboBoxYCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( view.comboBoxFrameCol, new ColumnComboBoxModel( index, null ) );
+		ColumnComboBoxModel.setModel( view.comboBoxTrackCol, new ColumnComboBoxModel( index, null ) );
 
 		// Try to be clever and guess from header names.
 		int tcol = -1;
@@ -381,31 +615,32 @@ public class ImporterController
 		int ycol = -1;
 		int zcol = -1;
 		int trackcol = -1;
-		for ( int i = 0; i < mandatory.length; i++ )
+		for ( int i = 0; i < index.size(); i++ )
 		{
-			final String current = mandatory[ i ];
+			final String current = index.getName( i );
+			final String key = index.getKey( i );
 
-			if ( current.toLowerCase().startsWith( "x" ) || current.toLowerCase().endsWith( "x" ) )
+			if ( key.startsWith( "x" ) || key.endsWith( "x" ) )
 			{
-				if ( xcol < 0 || ( current.length() < mandatory[ xcol ].length() ) )
+				if ( xcol < 0 || ( current.length() < index.getName( xcol ).length() ) )
 					xcol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "y" ) || current.toLowerCase().endsWith( "y" ) )
+			if ( key.startsWith( "y" ) || key.endsWith( "y" ) )
 			{
-				if ( ycol < 0 || ( current.length() < mandatory[ ycol ].length() ) )
+				if ( ycol < 0 || ( current.length() < index.getName( ycol ).length() ) )
 					ycol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "frame" )
-					|| current.toLowerCase().startsWith( "time" )
-					|| current.toLowerCase().startsWith( "t" ) )
+			if ( key.startsWith( "frame" )
+					|| key.startsWith( "time" )
+					|| key.startsWith( "t" ) )
 			{
 				if ( tcol < 0 || current.equals( "frame" ) )
 					tcol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "track" ) || current.toLowerCase().startsWith( "traj" ) )
+			if ( key.startsWith( "track" ) || key.startsWith( "traj" ) )
 			{
 				if ( trackcol < 0 || current.equals( "track" ) )
 					trackcol = i;
@@ -414,49 +649,48 @@ public class ImporterController
 		}
 
 		if ( tcol < 0 )
-			tcol = 0 % ( mandatory.length - 1 );
+			tcol = 0 % ( index.size() - 1 );
 		if ( xcol < 0 )
-			xcol = 1 % ( mandatory.length - 1 );
+			xcol = 1 % ( index.size() - 1 );
 		if ( ycol < 0 )
-			ycol = 2 % ( mandatory.length - 1 );
+			ycol = 2 % ( index.size() - 1 );
 		if ( zcol < 0 )
-			zcol = 3 % ( mandatory.length - 1 );
+			zcol = 3 % ( index.size() - 1 );
 		if ( trackcol < 0 )
-			trackcol = 4 % ( mandatory.length - 1 );
+			trackcol = 4 % ( index.size() - 1 );
 
 		view.comboBoxXCol.setSelectedIndex( xcol );
 		view.comboBoxYCol.setSelectedIndex( ycol );
 		view.comboBoxFrameCol.setSelectedIndex( tcol );
 		view.comboBoxTrackCol.setSelectedIndex( trackcol );
 
-		// Add a NONE for non mandatory columns
-		headers.add( NONE_COLUMN );
-		final String[] nonMandatory = headers.toArray( new String[] {} );
-		view.comboBoxZCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-		view.comboBoxQualityCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-		view.comboBoxNameCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-		view.comboBoxIDCol.setModel( new DefaultComboBoxModel<>( nonMandatory ) );
-
-		int idcol = headers.indexOf( NONE_COLUMN );
-		int qualitycol = headers.indexOf( NONE_COLUMN );
-		int namecol = headers.indexOf( NONE_COLUMN );
-		for ( int i = 0; i < nonMandatory.length; i++ )
+		// Add a NONE for non mandatory columns, at the end of the list.
+		ColumnComboBoxModel.setModel( view.comboBoxZCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+		ColumnComboBoxModel.setModel( view.comboBoxQualityCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+		ColumnComboBoxModel.setModel( view.comboBoxNameCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+		ColumnComboBoxModel.setModel( view.comboBoxIDCol, new ColumnComboBoxModel( index, NONE_COLUMN ) );
+
+		int idcol = index.size();
+		int qualitycol = index.size();
+		int namecol = index.size();
+		for ( int i = 0; i < index.size(); i++ )
 		{
-			final String current = nonMandatory[ i ];
+			final String current = index.getName( i );
+			final String key = index.getKey( i );
 
-			if ( current.toLowerCase().startsWith( "z" ) || current.toLowerCase().endsWith( "z" ) )
+			if ( key.startsWith( "z" ) || key.endsWith( "z" ) )
 			{
-				if ( zcol < 0 || ( current.length() < mandatory[ zcol ].length() ) )
+				if ( zcol < 0 || ( current.length() < index.getName( zcol ).length() ) )
 					zcol = i;
 			}
 
-			if ( current.toLowerCase().startsWith( "id" ) )
+			if ( key.startsWith( "id" ) )
 				idcol = i;
 
-			if ( current.toLowerCase().startsWith( "name" ) )
+			if ( key.startsWith( "name" ) )
 				namecol = i;
 
-			if ( current.toLowerCase().startsWith( "q" ) )
+			if ( key.startsWith( "q" ) )
 				qualitycol = i;
 		}
 
@@ -464,19 +698,16 @@ public class ImporterController
 		view.comboBoxIDCol.setSelectedIndex( idcol );
 		view.comboBoxQualityCol.setSelectedIndex( qualitycol );
 		view.comboBoxNameCol.setSelectedIndex( namecol );
-		try
-		{
-			in.close();
-		}
-		catch ( final IOException e )
-		{
-			error( "Problem closing the CSV file:\n" + e.getMessage() + '\n' );
-			e.printStackTrace();
-		}
 		return true;
 	}
 
 	private void clearComboBoxes()
+	{
+		for ( final JComboBox< String > cb : getColumnComboBoxes() )
+			cb.setModel( new DefaultComboBoxModel<>() );
+	}
+
+	private List< JComboBox< String > > getColumnComboBoxes()
 	{
 		final ArrayList< JComboBox< String > > comboBoxes = new ArrayList<>();
 		comboBoxes.add( view.comboBoxXCol );
@@ -487,8 +718,7 @@ public class ImporterController
 		comboBoxes.add( view.comboBoxNameCol );
 		comboBoxes.add( view.comboBoxIDCol );
 		comboBoxes.add( view.comboBoxTrackCol );
-		for ( final JComboBox< String > cb : comboBoxes )
-			cb.setModel( new DefaultComboBoxModel<>() );
+		return comboBoxes;
 	}
 
 	private void error( final String string )
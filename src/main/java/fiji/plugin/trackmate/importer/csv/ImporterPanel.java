@@ -23,6 +23,7 @@ package fiji.plugin.trackmate.importer.csv;
 
 import java.awt.BorderLayout;
 import java.awt.Color;
+import java.awt.Component;
 import java.awt.Dimension;
 import java.awt.FlowLayout;
 import java.awt.Font;
@@ -42,12 +43,16 @@ import javax.swing.JProgressBar;
 import javax.swing.JScrollPane;
 import javax.swing.JSeparator;
 import javax.swing.JSplitPane;
+import javax.swing.JTabbedPane;
+import javax.swing.JTable;
 import javax.swing.JTextField;
 import javax.swing.JTextPane;
 import javax.swing.SwingConstants;
 import javax.swing.SwingUtilities;
 import javax.swing.border.LineBorder;
 import javax.swing.border.TitledBorder;
+import javax.swing.table.DefaultTableCellRenderer;
+import javax.swing.table.TableCellRenderer;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
 import javax.swing.text.Document;
@@ -66,6 +71,8 @@ public class ImporterPanel extends JPanel
 
 	static final ImageIcon ICON = new ImageIcon( ImporterPanel.class.getResource( "TrackMateCSVImporterLogo.png" ) );
 
+	private static final Color PREVIEW_HIGHLIGHT = new Color( 255, 243, 200 );
+
 	final JTextField textFieldFile;
 
 	final JButton btnBrowse;
@@ -94,10 +101,18 @@ public class ImporterPanel extends JPanel
 
 	final JCheckBox chckbxComputeFeatures;
 
+	final JCheckBox chckbxDeferFeatures;
+
+	final JButton btnCancel;
+
+	final JButton btnScan;
+
 	final JLabel labelRadiusUnit;
 
 	final JFormattedTextField ftfRadius;
 
+	final JTable tablePreview;
+
 	private final JTextPane jTextPaneLog;
 
 	private final ImporterLogger logger;
@@ -120,7 +135,7 @@ public class ImporterPanel extends JPanel
 		panelControl.setBorder( null );
 		splitPane.setLeftComponent( panelControl );
 		final GridBagLayout layout = new GridBagLayout();
-		layout.rowHeights = new int[] { 5, 5, 5, 5, 0, 5, 5, 0, 5, 5, 5, 5, 5, 5, 5, 5 };
+		layout.rowHeights = new int[] { 5, 5, 5, 5, 0, 0, 5, 5, 0, 5, 5, 5, 5, 5, 5, 5, 5 };
 		layout.columnWeights = new double[] { 1.0, 1.0, 0.0, 1.0, 1.0 };
 		layout.columnWidths = new int[] { 79, 50, 30, 50, 30 };
 		panelControl.setLayout( layout );
@@ -179,13 +194,23 @@ public class ImporterPanel extends JPanel
 		gbc_chckbxComputeFeatures.gridy = 4;
 		panelControl.add( chckbxComputeFeatures, gbc_chckbxComputeFeatures );
 
+		chckbxDeferFeatures = new JCheckBox( "Show GUI before computing features?" );
+		chckbxDeferFeatures.setSelected( false );
+		final GridBagConstraints gbc_chckbxDeferFeatures = new GridBagConstraints();
+		gbc_chckbxDeferFeatures.anchor = GridBagConstraints.EAST;
+		gbc_chckbxDeferFeatures.gridwidth = 5;
+		gbc_chckbxDeferFeatures.insets = new Insets( 0, 0, 5, 0 );
+		gbc_chckbxDeferFeatures.gridx = 0;
+		gbc_chckbxDeferFeatures.gridy = 5;
+		panelControl.add( chckbxDeferFeatures, gbc_chckbxDeferFeatures );
+
 		chckbxImportTracks = new JCheckBox( "Import tracks?" );
 		final GridBagConstraints gbc_chckbxImportTracks = new GridBagConstraints();
 		gbc_chckbxImportTracks.anchor = GridBagConstraints.EAST;
 		gbc_chckbxImportTracks.gridwidth = 5;
 		gbc_chckbxImportTracks.insets = new Insets( 5, 5, 5, 0 );
 		gbc_chckbxImportTracks.gridx = 0;
-		gbc_chckbxImportTracks.gridy = 5;
+		gbc_chckbxImportTracks.gridy = 6;
 		panelControl.add( chckbxImportTracks, gbc_chckbxImportTracks );
 
 		final JSeparator separator = new JSeparator();
@@ -194,7 +219,7 @@ public class ImporterPanel extends JPanel
 		gbc_separator.gridwidth = 3;
 		gbc_separator.insets = new Insets( 5, 5, 5, 5 );
 		gbc_separator.gridx = 0;
-		gbc_separator.gridy = 6;
+		gbc_separator.gridy = 7;
 		panelControl.add( separator, gbc_separator );
 
 		final JLabel lblRadius = new JLabel( "Radius:" );
@@ -202,7 +227,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblRadius.anchor = GridBagConstraints.EAST;
 		gbc_lblRadius.insets = new Insets( 0, 0, 5, 5 );
 		gbc_lblRadius.gridx = 0;
-		gbc_lblRadius.gridy = 7;
+		gbc_lblRadius.gridy = 8;
 		panelControl.add( lblRadius, gbc_lblRadius );
 
 		ftfRadius = new JFormattedTextField( NumberFormat.getNumberInstance() );
@@ -212,7 +237,7 @@ public class ImporterPanel extends JPanel
 		gbc_ftfRadius.insets = new Insets( 5, 5, 5, 5 );
 		gbc_ftfRadius.fill = GridBagConstraints.HORIZONTAL;
 		gbc_ftfRadius.gridx = 1;
-		gbc_ftfRadius.gridy = 7;
+		gbc_ftfRadius.gridy = 8;
 		panelControl.add( ftfRadius, gbc_ftfRadius );
 
 		labelRadiusUnit = new JLabel();
@@ -220,7 +245,7 @@ public class ImporterPanel extends JPanel
 		gbc_labelRadiusUnitl.anchor = GridBagConstraints.WEST;
 		gbc_labelRadiusUnitl.insets = new Insets( 0, 0, 5, 5 );
 		gbc_labelRadiusUnitl.gridx = 3;
-		gbc_labelRadiusUnitl.gridy = 7;
+		gbc_labelRadiusUnitl.gridy = 8;
 		panelControl.add( labelRadiusUnit, gbc_labelRadiusUnitl );
 
 		final JLabel lblXColumn = new JLabel( "X column:" );
@@ -228,7 +253,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblXColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblXColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblXColumn.gridx = 0;
-		gbc_lblXColumn.gridy = 8;
+		gbc_lblXColumn.gridy = 9;
 		panelControl.add( lblXColumn, gbc_lblXColumn );
 
 		comboBoxXCol = new JComboBox<>();
@@ -237,7 +262,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxX.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxX.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxX.gridx = 1;
-		gbc_comboBoxX.gridy = 8;
+		gbc_comboBoxX.gridy = 9;
 		panelControl.add( comboBoxXCol, gbc_comboBoxX );
 
 		final JLabel lblYColumn = new JLabel( "Y column:" );
@@ -245,7 +270,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblYColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblYColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblYColumn.gridx = 0;
-		gbc_lblYColumn.gridy = 9;
+		gbc_lblYColumn.gridy = 10;
 		panelControl.add( lblYColumn, gbc_lblYColumn );
 
 		comboBoxYCol = new JComboBox<>();
@@ -254,7 +279,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxY.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxY.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxY.gridx = 1;
-		gbc_comboBoxY.gridy = 9;
+		gbc_comboBoxY.gridy = 10;
 		panelControl.add( comboBoxYCol, gbc_comboBoxY );
 
 		final JLabel lblZColumn = new JLabel( "Z column:" );
@@ -262,7 +287,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblZColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblZColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblZColumn.gridx = 0;
-		gbc_lblZColumn.gridy = 10;
+		gbc_lblZColumn.gridy = 11;
 		panelControl.add( lblZColumn, gbc_lblZColumn );
 
 		comboBoxZCol = new JComboBox<>();
@@ -271,7 +296,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxZ.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxZ.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxZ.gridx = 1;
-		gbc_comboBoxZ.gridy = 10;
+		gbc_comboBoxZ.gridy = 11;
 		panelControl.add( comboBoxZCol, gbc_comboBoxZ );
 
 		final JLabel lblFrameColumn = new JLabel( "Frame column:" );
@@ -279,7 +304,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblFrameColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblFrameColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblFrameColumn.gridx = 0;
-		gbc_lblFrameColumn.gridy = 11;
+		gbc_lblFrameColumn.gridy = 12;
 		panelControl.add( lblFrameColumn, gbc_lblFrameColumn );
 
 		comboBoxFrameCol = new JComboBox<>();
@@ -288,7 +313,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxFrame.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxFrame.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxFrame.gridx = 1;
-		gbc_comboBoxFrame.gridy = 11;
+		gbc_comboBoxFrame.gridy = 12;
 		panelControl.add( comboBoxFrameCol, gbc_comboBoxFrame );
 
 		final JLabel lblTrackColumn = new JLabel( "Track column:" );
@@ -296,7 +321,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblTrackColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblTrackColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblTrackColumn.gridx = 0;
-		gbc_lblTrackColumn.gridy = 12;
+		gbc_lblTrackColumn.gridy = 13;
 		panelControl.add( lblTrackColumn, gbc_lblTrackColumn );
 
 		comboBoxTrackCol = new JComboBox<>();
@@ -305,7 +330,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxTrackCol.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxTrackCol.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxTrackCol.gridx = 1;
-		gbc_comboBoxTrackCol.gridy = 12;
+		gbc_comboBoxTrackCol.gridy = 13;
 		panelControl.add( comboBoxTrackCol, gbc_comboBoxTrackCol );
 		chckbxImportTracks.addActionListener( ( e ) -> comboBoxTrackCol.setEnabled( chckbxImportTracks.isSelected() ) );
 		comboBoxTrackCol.setEnabled( chckbxImportTracks.isSelected() );
@@ -315,7 +340,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblQualityColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblQualityColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblQualityColumn.gridx = 0;
-		gbc_lblQualityColumn.gridy = 13;
+		gbc_lblQualityColumn.gridy = 14;
 		panelControl.add( lblQualityColumn, gbc_lblQualityColumn );
 
 		comboBoxQualityCol = new JComboBox<>();
@@ -324,7 +349,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxQuality.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxQuality.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxQuality.gridx = 1;
-		gbc_comboBoxQuality.gridy = 13;
+		gbc_comboBoxQuality.gridy = 14;
 		panelControl.add( comboBoxQualityCol, gbc_comboBoxQuality );
 
 		final JLabel lblNameColumn = new JLabel( "Name column:" );
@@ -332,7 +357,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblNameColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblNameColumn.insets = new Insets( 5, 5, 5, 5 );
 		gbc_lblNameColumn.gridx = 0;
-		gbc_lblNameColumn.gridy = 14;
+		gbc_lblNameColumn.gridy = 15;
 		panelControl.add( lblNameColumn, gbc_lblNameColumn );
 
 		comboBoxNameCol = new JComboBox<>();
@@ -341,7 +366,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxName.insets = new Insets( 5, 5, 5, 0 );
 		gbc_comboBoxName.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxName.gridx = 1;
-		gbc_comboBoxName.gridy = 14;
+		gbc_comboBoxName.gridy = 15;
 		panelControl.add( comboBoxNameCol, gbc_comboBoxName );
 
 		final JLabel lblIdColumn = new JLabel( "ID column:" );
@@ -349,7 +374,7 @@ public class ImporterPanel extends JPanel
 		gbc_lblIdColumn.anchor = GridBagConstraints.EAST;
 		gbc_lblIdColumn.insets = new Insets( 5, 5, 0, 5 );
 		gbc_lblIdColumn.gridx = 0;
-		gbc_lblIdColumn.gridy = 15;
+		gbc_lblIdColumn.gridy = 16;
 		panelControl.add( lblIdColumn, gbc_lblIdColumn );
 
 		comboBoxIDCol = new JComboBox<>();
@@ -358,7 +383,7 @@ public class ImporterPanel extends JPanel
 		gbc_comboBoxID.gridwidth = 4;
 		gbc_comboBoxID.fill = GridBagConstraints.HORIZONTAL;
 		gbc_comboBoxID.gridx = 1;
-		gbc_comboBoxID.gridy = 15;
+		gbc_comboBoxID.gridy = 16;
 		panelControl.add( comboBoxIDCol, gbc_comboBoxID );
 
 		final JPanel panelLog = new JPanel();
@@ -376,14 +401,37 @@ public class ImporterPanel extends JPanel
 		final JScrollPane scrollPane = new JScrollPane( jTextPaneLog );
 		scrollPane.setOpaque( false );
 		scrollPane.setBorder( new TitledBorder( new LineBorder( new Color( 128, 128, 128 ) ), "Import log.", TitledBorder.LEADING, TitledBorder.TOP, null, null ) );
-		panelLog.add( scrollPane, BorderLayout.CENTER );
 		jTextPaneLog.setBackground( getBackground() );
 
+		tablePreview = new JTable();
+		tablePreview.setFont( smallFont );
+		tablePreview.setAutoResizeMode( JTable.AUTO_RESIZE_OFF );
+		tablePreview.setDefaultRenderer( Object.class, new PreviewCellRenderer() );
+		tablePreview.getTableHeader().setDefaultRenderer( new PreviewHeaderRenderer( tablePreview.getTableHeader().getDefaultRenderer() ) );
+		tablePreview.getTableHeader().setReorderingAllowed( false );
+		final JScrollPane scrollPanePreview = new JScrollPane( tablePreview );
+		scrollPanePreview.setBorder( new TitledBorder( new LineBorder( new Color( 128, 128, 128 ) ), "Data preview. Imported columns are highlighted.", TitledBorder.LEADING, TitledBorder.TOP, null, null ) );
+
+		final JTabbedPane tabbedPane = new JTabbedPane();
+		tabbedPane.addTab( "Log", scrollPane );
+		tabbedPane.addTab( "Preview", scrollPanePreview );
+		panelLog.add( tabbedPane, BorderLayout.CENTER );
+
 		final JPanel panelButtonImport = new JPanel();
 		final FlowLayout flowLayout = ( FlowLayout ) panelButtonImport.getLayout();
 		flowLayout.setAlignment( FlowLayout.RIGHT );
 		panelLog.add( panelButtonImport, BorderLayout.SOUTH );
 
+		btnCancel = new JButton( "Cancel" );
+		btnCancel.setEnabled( false );
+		panelButtonImport.add( btnCancel );
+
+		btnScan = new JButton( "Scan" );
+		btnScan.setToolTipText( "<html>Reads the whole CSV file and reports statistics on<br>"
+				+ "the spots and tracks it contains, without importing them.</html>" );
+		btnScan.setEnabled( false );
+		panelButtonImport.add( btnScan );
+
 		btnImport = new JButton( "Import" );
 		panelButtonImport.add( btnImport );
 
@@ -436,6 +484,55 @@ public class ImporterPanel extends JPanel
 		}
 	}
 
+	/**
+	 * Highlights the cells of the imported columns in the preview.
+	 */
+	private static class PreviewCellRenderer extends DefaultTableCellRenderer
+	{
+
+		private static final long serialVersionUID = 1L;
+
+		@Override
+		public Component getTableCellRendererComponent( final JTable table, final Object value, final boolean isSelected, final boolean hasFocus, final int row, final int column )
+		{
+			super.getTableCellRendererComponent( table, value, isSelected, hasFocus, row, column );
+			if ( !isSelected )
+			{
+				final boolean imported = ( table.getModel() instanceof CSVPreviewTableModel )
+						&& null != ( ( CSVPreviewTableModel ) table.getModel() ).getRole( table.convertColumnIndexToModel( column ) );
+				setBackground( imported ? PREVIEW_HIGHLIGHT : table.getBackground() );
+			}
+			return this;
+		}
+	}
+
+	/**
+	 * Shows the role of the imported columns in the preview header.
+	 */
+	private static class PreviewHeaderRenderer implements TableCellRenderer
+	{
+
+		private final TableCellRenderer renderer;
+
+		private PreviewHeaderRenderer( final TableCellRenderer renderer )
+		{
+			this.renderer = renderer;
+		}
+
+		@Override
+		public Component getTableCellRendererComponent( final JTable table, final Object value, final boolean isSelected, final boolean hasFocus, final int row, final int column )
+		{
+			Object text = value;
+			if ( table.getModel() instanceof CSVPreviewTableModel )
+			{
+				final String role = ( ( CSVPreviewTableModel ) table.getModel() ).getRole( table.convertColumnIndexToModel( column ) );
+				if ( null != role )
+					text = "<html><b>" + value + "</b> (" + role + ")</html>";
+			}
+			return renderer.getTableCellRendererComponent( table, text, isSelected, hasFocus, row, column );
+		}
+	}
+
 	private void log( final String message, final Color color )
 	{
 		SwingUtilities.invokeLater( new Runnable()
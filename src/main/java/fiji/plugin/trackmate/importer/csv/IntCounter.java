@@ -0,0 +1,165 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.Arrays;
+
+/**
+ * Counts occurrences of int keys, without boxing. Open addressing with linear
+ * probing.
+ */
+class IntCounter
+{
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+
+	private long[] counts;
+
+	private int size;
+
+	IntCounter()
+	{
+		this( 64 );
+	}
+
+	IntCounter( final int expected )
+	{
+		int capacity = 16;
+		while ( capacity < 2 * expected )
+			capacity <<= 1;
+		keys = new int[ capacity ];
+		Arrays.fill( keys, FREE );
+		counts = new long[ capacity ];
+	}
+
+	/**
+	 * Adds the specified count to the key. The key must not be
+	 * {@link Integer#MIN_VALUE}.
+	 */
+	void add( final int key, final long count )
+	{
+		int i = index( key, keys.length );
+		while ( keys[ i ] != FREE && keys[ i ] != key )
+			i = ( i + 1 ) & ( keys.length - 1 );
+		if ( keys[ i ] == FREE )
+		{
+			keys[ i ] = key;
+			if ( ++size > keys.length / 2 )
+			{
+				counts[ i ] = count;
+				grow();
+				return;
+			}
+		}
+		counts[ i ] += count;
+	}
+
+	void increment( final int key )
+	{
+		add( key, 1 );
+	}
+
+	/**
+	 * Adds all the counts of the other counter to this one.
+	 */
+	void addAll( final IntCounter other )
+	{
+		for ( int i = 0; i < other.keys.length; i++ )
+			if ( other.keys[ i ] != FREE )
+				add( other.keys[ i ], other.counts[ i ] );
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Returns the keys, sorted.
+	 */
+	int[] sortedKeys()
+	{
+		final int[] out = new int[ size ];
+		int j = 0;
+		for ( int i = 0; i < keys.length; i++ )
+			if ( keys[ i ] != FREE )
+				out[ j++ ] = keys[ i ];
+		Arrays.sort( out );
+		return out;
+	}
+
+	/**
+	 * Returns the counts, in no particular order.
+	 */
+	long[] counts()
+	{
+		final long[] out = new long[ size ];
+		int j = 0;
+		for ( int i = 0; i < keys.length; i++ )
+			if ( keys[ i ] != FREE )
+				out[ j++ ] = counts[ i ];
+		return out;
+	}
+
+	long get( final int key )
+	{
+		int i = index( key, keys.length );
+		while ( keys[ i ] != FREE )
+		{
+			if ( keys[ i ] == key )
+				return counts[ i ];
+			i = ( i + 1 ) & ( keys.length - 1 );
+		}
+		return 0;
+	}
+
+	private void grow()
+	{
+		final int[] oldKeys = keys;
+		final long[] oldCounts = counts;
+		keys = new int[ oldKeys.length * 2 ];
+		Arrays.fill( keys, FREE );
+		counts = new long[ keys.length ];
+		for ( int j = 0; j < oldKeys.length; j++ )
+		{
+			if ( oldKeys[ j ] == FREE )
+				continue;
+			int i = index( oldKeys[ j ], keys.length );
+			while ( keys[ i ] != FREE )
+				i = ( i + 1 ) & ( keys.length - 1 );
+			keys[ i ] = oldKeys[ j ];
+			counts[ i ] = oldCounts[ j ];
+		}
+	}
+
+	private static int index( final int key, final int length )
+	{
+		// Murmur3 finalizer, so that consecutive keys spread.
+		int h = key;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h & ( length - 1 );
+	}
+}
@@ -0,0 +1,143 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.Arrays;
+
+/**
+ * Maps int keys to non-negative int values, without boxing. Open addressing
+ * with linear probing. {@link Integer#MIN_VALUE} marks the free slots, so
+ * this key is stored apart.
+ */
+class IntIndex
+{
+
+	private static final int FREE = Integer.MIN_VALUE;
+
+	private int[] keys;
+
+	private int[] values;
+
+	private int size;
+
+	/**
+	 * The value of the key {@link Integer#MIN_VALUE}, or -1 if it is not
+	 * mapped.
+	 */
+	private int freeKeyValue = -1;
+
+	IntIndex()
+	{
+		this( 64 );
+	}
+
+	IntIndex( final int expected )
+	{
+		int capacity = 16;
+		while ( capacity < 2 * expected )
+			capacity <<= 1;
+		keys = new int[ capacity ];
+		Arrays.fill( keys, FREE );
+		values = new int[ capacity ];
+	}
+
+	/**
+	 * Maps the key to the value, if the key is not mapped yet.
+	 *
+	 * @return the value the key was already mapped to, or -1 if it was not
+	 *         mapped and is now mapped to the specified value.
+	 */
+	int putIfAbsent( final int key, final int value )
+	{
+		if ( key == FREE )
+		{
+			if ( freeKeyValue >= 0 )
+				return freeKeyValue;
+			freeKeyValue = value;
+			size++;
+			return -1;
+		}
+		int i = index( key, keys.length );
+		while ( keys[ i ] != FREE )
+		{
+			if ( keys[ i ] == key )
+				return values[ i ];
+			i = ( i + 1 ) & ( keys.length - 1 );
+		}
+		keys[ i ] = key;
+		values[ i ] = value;
+		if ( ++size > keys.length / 2 )
+			grow();
+		return -1;
+	}
+
+	/**
+	 * Returns the value mapped to the key, or -1 if the key is not mapped.
+	 */
+	int get( final int key )
+	{
+		if ( key == FREE )
+			return freeKeyValue;
+		int i = index( key, keys.length );
+		while ( keys[ i ] != FREE )
+		{
+			if ( keys[ i ] == key )
+				return values[ i ];
+			i = ( i + 1 ) & ( keys.length - 1 );
+		}
+		return -1;
+	}
+
+	int size()
+	{
+		return size;
+	}
+
+	private void grow()
+	{
+		final int[] oldKeys = keys;
+		final int[] oldValues = values;
+		keys = new int[ oldKeys.length * 2 ];
+		Arrays.fill( keys, FREE );
+		values = new int[ keys.length ];
+		for ( int j = 0; j < oldKeys.length; j++ )
+		{
+			if ( oldKeys[ j ] == FREE )
+				continue;
+			int i = index( oldKeys[ j ], keys.length );
+			while ( keys[ i ] != FREE )
+				i = ( i + 1 ) & ( keys.length - 1 );
+			keys[ i ] = oldKeys[ j ];
+			values[ i ] = oldValues[ j ];
+		}
+	}
+
+	private static int index( final int key, final int length )
+	{
+		// Murmur3 finalizer, so that consecutive keys spread.
+		int h = key;
+		h ^= h >>> 16;
+		h *= 0x85ebca6b;
+		h ^= h >>> 13;
+		return h & ( length - 1 );
+	}
+}
@@ -0,0 +1,381 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.jgrapht.graph.DefaultWeightedEdge;
+import org.jgrapht.graph.SimpleWeightedGraph;
+import org.scijava.Cancelable;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Builds the tracks of a model from explicit links between spots, so that
+ * lineages with divisions and merges can be imported.
+ * <p>
+ * Links are given either by a parent ID column in the spot file, or by an
+ * edge file with a source and a target spot ID per row. The spots are
+ * indexed by their ID in a primitive hash table while they are imported,
+ * and links are stored as pairs of spot indices. Once all the links are
+ * read, the graph and the connected components are built at once, with a
+ * union-find, and handed to the track model in one call instead of adding
+ * the edges one by one.
+ */
+final class LinkBuilder
+{
+
+	/**
+	 * Parent ID of spots that have no parent.
+	 */
+	static final int NO_PARENT = Integer.MIN_VALUE;
+
+	/**
+	 * Number of edge records read between two checks for cancellation and
+	 * two progress updates.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	private final boolean hasParents;
+
+	private final Logger logger;
+
+	private final Cancelable cancelable;
+
+	private final IntIndex ids = new IntIndex( 1024 );
+
+	private final List< Spot > spots = new ArrayList<>();
+
+	/**
+	 * ID of each indexed spot, to merge builders.
+	 */
+	private int[] spotIDs = new int[ 1024 ];
+
+	private int[] parents;
+
+	private int[] sources = new int[ 1024 ];
+
+	private int[] targets = new int[ 1024 ];
+
+	private int nLinks;
+
+	private long duplicateIDs;
+
+	private long unknownIDs;
+
+	private long selfLinks;
+
+	private long duplicateLinks;
+
+	private long malformedRows;
+
+	/**
+	 * Creates a link builder.
+	 *
+	 * @param hasParents
+	 *            whether the spots are added with the ID of their parent.
+	 * @param logger
+	 *            the logger to report progress to.
+	 * @param cancelable
+	 *            checked while reading the edge file.
+	 */
+	LinkBuilder( final boolean hasParents, final Logger logger, final Cancelable cancelable )
+	{
+		this.hasParents = hasParents;
+		this.logger = logger;
+		this.cancelable = cancelable;
+		this.parents = hasParents ? new int[ 1024 ] : null;
+	}
+
+	/**
+	 * Indexes a spot by its ID. Spots with an ID already used are not
+	 * indexed, and cannot be linked.
+	 *
+	 * @param parentID
+	 *            the ID of the parent of the spot, or {@link #NO_PARENT}.
+	 *            Ignored if this builder does not use parent IDs.
+	 */
+	void addSpot( final int id, final Spot spot, final int parentID )
+	{
+		final int index = spots.size();
+		if ( ids.putIfAbsent( id, index ) >= 0 )
+		{
+			duplicateIDs++;
+			return;
+		}
+		spots.add( spot );
+		if ( index == spotIDs.length )
+			spotIDs = Arrays.copyOf( spotIDs, 2 * spotIDs.length );
+		spotIDs[ index ] = id;
+		if ( hasParents )
+		{
+			if ( index == parents.length )
+				parents = Arrays.copyOf( parents, 2 * parents.length );
+			parents[ index ] = parentID;
+		}
+	}
+
+	/**
+	 * Adds the spots of another builder, with their parent IDs, as when the
+	 * spots are read from several files. Spots with an ID already used here
+	 * are not indexed. To call before linking.
+	 */
+	void addAll( final LinkBuilder other )
+	{
+		for ( int i = 0; i < other.spots.size(); i++ )
+			addSpot( other.spotIDs[ i ], other.spots.get( i ), other.hasParents ? other.parents[ i ] : NO_PARENT );
+		duplicateIDs += other.duplicateIDs;
+	}
+
+	/**
+	 * Links each spot to its parent. To call once all the spots are added.
+	 */
+	void linkParents()
+	{
+		if ( !hasParents )
+			return;
+		for ( int i = 0; i < spots.size(); i++ )
+		{
+			final int parentID = parents[ i ];
+			if ( parentID == NO_PARENT )
+				continue;
+			final int parent = ids.get( parentID );
+			if ( parent < 0 )
+				unknownIDs++;
+			else
+				addLink( parent, i );
+		}
+		parents = null;
+	}
+
+	/**
+	 * Reads the links of an edge file, with a header line and one link per
+	 * row. To call once all the spots are added.
+	 *
+	 * @param edgeFilePath
+	 *            the path to the edge file.
+	 * @param sourceCol
+	 *            the column of the source spot IDs.
+	 * @param targetCol
+	 *            the column of the target spot IDs.
+	 * @return <code>false</code> if the import was canceled while reading.
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	boolean readEdges( final String edgeFilePath, final int sourceCol, final int targetCol ) throws IOException
+	{
+		final File file = new File( edgeFilePath );
+		final long nBytes = Math.max( 1, file.length() );
+		final CSVDialect dialect = CSVDialect.sniff( edgeFilePath );
+		final CountingInputStream counter = new CountingInputStream( new FileInputStream( file ) );
+		final CSVFormat csvFormat = dialect.getFormat()
+				.builder()
+				.setHeader()
+				.setCommentMarker( '#' )
+				.get();
+		final Logger progressLogger = new RateLimitedLogger( logger );
+		try (final CSVParser records = csvFormat.parse( dialect.newReader( counter ) ))
+		{
+			long nRecords = 0;
+			for ( final CSVRecord record : records )
+			{
+				if ( ++nRecords % CHUNK_SIZE == 0 )
+				{
+					if ( cancelable.isCanceled() )
+						return false;
+					progressLogger.setProgress( ( double ) counter.getCount() / nBytes );
+				}
+
+				final int sourceID;
+				final int targetID;
+				try
+				{
+					sourceID = Integer.parseInt( record.get( sourceCol ) );
+					targetID = Integer.parseInt( record.get( targetCol ) );
+				}
+				catch ( final NumberFormatException | ArrayIndexOutOfBoundsException e )
+				{
+					malformedRows++;
+					continue;
+				}
+
+				final int source = ids.get( sourceID );
+				final int target = ids.get( targetID );
+				if ( source < 0 || target < 0 )
+					unknownIDs++;
+				else
+					addLink( source, target );
+			}
+		}
+		return true;
+	}
+
+	private void addLink( final int source, final int target )
+	{
+		if ( source == target )
+		{
+			selfLinks++;
+			return;
+		}
+		if ( nLinks == sources.length )
+		{
+			sources = Arrays.copyOf( sources, 2 * sources.length );
+			targets = Arrays.copyOf( targets, 2 * targets.length );
+		}
+		sources[ nLinks ] = source;
+		targets[ nLinks ] = target;
+		nLinks++;
+	}
+
+	/**
+	 * Builds the graph and the tracks of the links, and sets them in the
+	 * track model of the specified model. Spots without links are not part
+	 * of any track.
+	 *
+	 * @return the number of tracks.
+	 */
+	int link( final Model model )
+	{
+		final SimpleWeightedGraph< Spot, DefaultWeightedEdge > graph = new SimpleWeightedGraph<>( DefaultWeightedEdge.class );
+
+		// Union-find over spot indices. -1 for spots not in the graph.
+		final int[] roots = new int[ spots.size() ];
+		Arrays.fill( roots, -1 );
+		final DefaultWeightedEdge[] edges = new DefaultWeightedEdge[ nLinks ];
+		for ( int e = 0; e < nLinks; e++ )
+		{
+			final int s = sources[ e ];
+			final int t = targets[ e ];
+			final Spot source = spots.get( s );
+			final Spot target = spots.get( t );
+			if ( roots[ s ] < 0 )
+			{
+				graph.addVertex( source );
+				roots[ s ] = s;
+			}
+			if ( roots[ t ] < 0 )
+			{
+				graph.addVertex( target );
+				roots[ t ] = t;
+			}
+
+			final DefaultWeightedEdge edge = graph.addEdge( source, target );
+			if ( null == edge )
+			{
+				duplicateLinks++;
+				continue;
+			}
+			graph.setEdgeWeight( edge, source.squareDistanceTo( target ) );
+			edges[ e ] = edge;
+
+			final int rs = find( roots, s );
+			final int rt = find( roots, t );
+			if ( rs != rt )
+				roots[ Math.max( rs, rt ) ] = Math.min( rs, rt );
+		}
+
+		// One track per connected component.
+		final IntIndex trackIDs = new IntIndex();
+		final Map< Integer, Set< Spot > > trackSpots = new HashMap<>();
+		final Map< Integer, Set< DefaultWeightedEdge > > trackEdges = new HashMap<>();
+		for ( int i = 0; i < roots.length; i++ )
+		{
+			if ( roots[ i ] < 0 )
+				continue;
+			final int root = find( roots, i );
+			int trackID = trackIDs.putIfAbsent( root, trackSpots.size() );
+			if ( trackID < 0 )
+			{
+				trackID = trackSpots.size();
+				trackSpots.put( Integer.valueOf( trackID ), new HashSet<>() );
+				trackEdges.put( Integer.valueOf( trackID ), new HashSet<>() );
+			}
+			trackSpots.get( Integer.valueOf( trackID ) ).add( spots.get( i ) );
+		}
+		for ( int e = 0; e < nLinks; e++ )
+		{
+			if ( null == edges[ e ] )
+				continue;
+			final int trackID = trackIDs.get( find( roots, sources[ e ] ) );
+			trackEdges.get( Integer.valueOf( trackID ) ).add( edges[ e ] );
+		}
+
+		final Map< Integer, Boolean > visibility = new HashMap<>( 2 * trackSpots.size() );
+		final Map< Integer, String > names = new HashMap<>( 2 * trackSpots.size() );
+		for ( final Integer trackID : trackSpots.keySet() )
+		{
+			visibility.put( trackID, Boolean.TRUE );
+			names.put( trackID, "Track_" + trackID );
+		}
+		model.getTrackModel().from( graph, trackSpots, trackEdges, visibility, names );
+		return trackSpots.size();
+	}
+
+	int getNLinks()
+	{
+		return nLinks;
+	}
+
+	/**
+	 * Returns a summary of the links that could not be imported.
+	 */
+	String summary()
+	{
+		final StringBuilder str = new StringBuilder();
+		if ( duplicateIDs > 0 )
+			str.append( String.format( "%d spots with a duplicate ID could not be linked.\n", duplicateIDs ) );
+		if ( unknownIDs > 0 )
+			str.append( String.format( "%d links to unknown spot IDs were skipped.\n", unknownIDs ) );
+		if ( selfLinks > 0 )
+			str.append( String.format( "%d links from a spot to itself were skipped.\n", selfLinks ) );
+		if ( duplicateLinks > 0 )
+			str.append( String.format( "%d duplicate links were skipped.\n", duplicateLinks ) );
+		if ( malformedRows > 0 )
+			str.append( String.format( "%d malformed rows of the edge file were skipped.\n", malformedRows ) );
+		return str.toString();
+	}
+
+	private static int find( final int[] roots, int i )
+	{
+		// Path halving.
+		while ( roots[ i ] != i )
+		{
+			roots[ i ] = roots[ roots[ i ] ];
+			i = roots[ i ];
+		}
+		return i;
+	}
+}
@@ -0,0 +1,373 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aggregates the rows that could not be parsed during an import, so that they
+ * can be reported once at the end instead of one log line per row.
+ * <p>
+ * Malformed rows are counted by cause and by column, and the first ones are
+ * kept as examples. The report can also be given an error budget, as an
+ * absolute number of malformed rows and as a fraction of the rows parsed.
+ * Importers check the budget with {@link #isBudgetExceeded(long)} and stop
+ * early once it is exceeded.
+ * <p>
+ * The report is thread-safe, so that several files parsed concurrently can
+ * share it. Line numbers are then those of the file each row comes from.
+ */
+public class MalformedRowReport
+{
+
+	/**
+	 * The default number of malformed rows kept as examples.
+	 */
+	public static final int DEFAULT_MAX_EXAMPLES = 10;
+
+	/**
+	 * The minimal number of rows to parse before the fraction budget is
+	 * checked, so that a few bad rows at the top of a file do not abort the
+	 * import.
+	 */
+	public static final long MIN_ROWS_FOR_FRACTION = 1000;
+
+	/**
+	 * Why a row could not be parsed.
+	 */
+	public enum Cause
+	{
+		MISSING_COLUMN( "missing column" ),
+		EMPTY_VALUE( "empty value" ),
+		NOT_FINITE( "NaN or infinite value" ),
+		DECIMAL_COMMA( "decimal comma" ),
+		NOT_AN_INTEGER( "not an integer" ),
+		MALFORMED_NUMBER( "malformed number" ),
+		NO_FRAME( "timestamp without frame" );
+
+		private final String description;
+
+		private Cause( final String description )
+		{
+			this.description = description;
+		}
+
+		@Override
+		public String toString()
+		{
+			return description;
+		}
+	}
+
+	/**
+	 * A malformed row kept as example.
+	 */
+	public static class Example
+	{
+
+		private final long lineNumber;
+
+		private final int column;
+
+		private final Cause cause;
+
+		private final String value;
+
+		private Example( final long lineNumber, final int column, final Cause cause, final String value )
+		{
+			this.lineNumber = lineNumber;
+			this.column = column;
+			this.cause = cause;
+			this.value = value;
+		}
+
+		public long getLineNumber()
+		{
+			return lineNumber;
+		}
+
+		public int getColumn()
+		{
+			return column;
+		}
+
+		public Cause getCause()
+		{
+			return cause;
+		}
+
+		/**
+		 * Returns the offending value, or <code>null</code> if the column is
+		 * missing from the row.
+		 */
+		public String getValue()
+		{
+			return value;
+		}
+	}
+
+	private static final Cause[] CAUSES = Cause.values();
+
+	private final int maxExamples;
+
+	private final List< Example > examples;
+
+	/**
+	 * Column index -> counts per cause.
+	 */
+	private final Map< Integer, long[] > counts = new TreeMap<>();
+
+	private long count;
+
+	private long maxCount = -1;
+
+	private double maxFraction = -1.;
+
+	private String[] columnNames;
+
+	public MalformedRowReport()
+	{
+		this( DEFAULT_MAX_EXAMPLES );
+	}
+
+	public MalformedRowReport( final int maxExamples )
+	{
+		this.maxExamples = maxExamples;
+		this.examples = new ArrayList<>( maxExamples );
+	}
+
+	/**
+	 * Sets the error budget.
+	 *
+	 * @param maxCount
+	 *            the maximal number of malformed rows. Negative values mean
+	 *            no limit.
+	 * @param maxFraction
+	 *            the maximal fraction of malformed rows over the rows parsed,
+	 *            from 0 to 1. Negative values mean no limit.
+	 */
+	public synchronized void setBudget( final long maxCount, final double maxFraction )
+	{
+		this.maxCount = maxCount;
+		this.maxFraction = maxFraction;
+	}
+
+	/**
+	 * Sets the names of the columns, used to print the report.
+	 */
+	public synchronized void setColumnNames( final String[] columnNames )
+	{
+		this.columnNames = columnNames;
+	}
+
+	/**
+	 * Records a row for which a column could not be parsed. The cause is
+	 * determined from the value.
+	 *
+	 * @param lineNumber
+	 *            the record number of the row in the file.
+	 * @param column
+	 *            the index of the column that could not be parsed.
+	 * @param value
+	 *            the value that could not be parsed, or <code>null</code> if
+	 *            the column is missing from the row.
+	 * @param integer
+	 *            whether the column holds integers, such as frames and IDs,
+	 *            rather than decimal numbers.
+	 */
+	public void add( final long lineNumber, final int column, final String value, final boolean integer )
+	{
+		add( lineNumber, column, classify( value, integer ), value );
+	}
+
+	/**
+	 * Records a row that could not be parsed.
+	 *
+	 * @param lineNumber
+	 *            the record number of the row in the file.
+	 * @param column
+	 *            the index of the column that could not be parsed.
+	 * @param cause
+	 *            why the row could not be parsed.
+	 * @param value
+	 *            the value that could not be parsed.
+	 */
+	public synchronized void add( final long lineNumber, final int column, final Cause cause, final String value )
+	{
+		count++;
+		long[] columnCounts = counts.get( Integer.valueOf( column ) );
+		if ( null == columnCounts )
+		{
+			columnCounts = new long[ CAUSES.length ];
+			counts.put( Integer.valueOf( column ), columnCounts );
+		}
+		columnCounts[ cause.ordinal() ]++;
+
+		if ( examples.size() < maxExamples )
+			examples.add( new Example( lineNumber, column, cause, value ) );
+	}
+
+	/**
+	 * Returns <code>true</code> if the malformed rows recorded so far exceed
+	 * the error budget.
+	 *
+	 * @param nRows
+	 *            the number of rows parsed so far.
+	 */
+	public synchronized boolean isBudgetExceeded( final long nRows )
+	{
+		if ( maxCount >= 0 && count > maxCount )
+			return true;
+		if ( maxFraction >= 0. && nRows >= MIN_ROWS_FOR_FRACTION && count > maxFraction * nRows )
+			return true;
+		return false;
+	}
+
+	/**
+	 * Returns the number of malformed rows recorded.
+	 */
+	public synchronized long getCount()
+	{
+		return count;
+	}
+
+	/**
+	 * Returns the number of malformed rows recorded for the specified cause.
+	 */
+	public synchronized long getCount( final Cause cause )
+	{
+		long n = 0;
+		for ( final long[] columnCounts : counts.values() )
+			n += columnCounts[ cause.ordinal() ];
+		return n;
+	}
+
+	/**
+	 * Returns the number of malformed rows recorded for the specified cause
+	 * and column.
+	 */
+	public synchronized long getCount( final Cause cause, final int column )
+	{
+		final long[] columnCounts = counts.get( Integer.valueOf( column ) );
+		return ( null == columnCounts ) ? 0 : columnCounts[ cause.ordinal() ];
+	}
+
+	/**
+	 * Returns the indices of the columns for which malformed values were
+	 * recorded, in ascending order.
+	 */
+	public synchronized List< Integer > getColumns()
+	{
+		return new ArrayList<>( counts.keySet() );
+	}
+
+	/**
+	 * Returns the first malformed rows recorded.
+	 */
+	public synchronized List< Example > getExamples()
+	{
+		return Collections.unmodifiableList( new ArrayList<>( examples ) );
+	}
+
+	public synchronized boolean isEmpty()
+	{
+		return count == 0;
+	}
+
+	@Override
+	public synchronized String toString()
+	{
+		if ( count == 0 )
+			return "No malformed rows.\n";
+
+		final StringBuilder str = new StringBuilder();
+		str.append( String.format( "Skipped %d malformed rows:\n", count ) );
+		for ( final Integer column : counts.keySet() )
+		{
+			final long[] columnCounts = counts.get( column );
+			for ( final Cause cause : CAUSES )
+				if ( columnCounts[ cause.ordinal() ] > 0 )
+					str.append( String.format( " - %s: %d x %s\n", columnName( column.intValue() ), columnCounts[ cause.ordinal() ], cause ) );
+		}
+		str.append( "First malformed rows:\n" );
+		for ( final Example example : examples )
+		{
+			str.append( String.format( " - line %d, %s: %s", example.lineNumber, columnName( example.column ), example.cause ) );
+			if ( null != example.value )
+				str.append( " '" + example.value + "'" );
+			str.append( '\n' );
+		}
+		return str.toString();
+	}
+
+	private String columnName( final int column )
+	{
+		if ( null != columnNames && column >= 0 && column < columnNames.length )
+			return "column '" + columnNames[ column ] + "'";
+		return "column " + column;
+	}
+
+	/**
+	 * Determines why a value could not be parsed as a number, by inspecting
+	 * its characters rather than by trying several parsers. A plain decimal
+	 * number is only a cause in an integer column.
+	 */
+	static Cause classify( final String value, final boolean integer )
+	{
+		if ( null == value )
+			return Cause.MISSING_COLUMN;
+
+		final String str = value.trim();
+		if ( str.isEmpty() )
+			return Cause.EMPTY_VALUE;
+
+		final String lower = str.toLowerCase();
+		final String unsigned = ( lower.charAt( 0 ) == '-' || lower.charAt( 0 ) == '+' ) ? lower.substring( 1 ) : lower;
+		if ( unsigned.equals( "nan" ) || unsigned.equals( "inf" ) || unsigned.equals( "infinity" ) )
+			return Cause.NOT_FINITE;
+
+		int nCommas = 0;
+		int nDots = 0;
+		boolean numeric = true;
+		for ( int i = 0; i < unsigned.length(); i++ )
+		{
+			final char c = unsigned.charAt( i );
+			if ( c == ',' )
+				nCommas++;
+			else if ( c == '.' )
+				nDots++;
+			else if ( !( ( c >= '0' && c <= '9' ) || c == 'e' || c == '-' || c == '+' ) )
+				numeric = false;
+		}
+		if ( !numeric )
+			return Cause.MALFORMED_NUMBER;
+		if ( nCommas == 1 && nDots == 0 )
+			return Cause.DECIMAL_COMMA;
+		if ( integer && nCommas == 0 && nDots <= 1 )
+			return Cause.NOT_AN_INTEGER;
+		return Cause.MALFORMED_NUMBER;
+	}
+}
@@ -0,0 +1,116 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Deduplicates the spot names of an import, so that the memory taken by the
+ * name column scales with its distinct values rather than with its rows.
+ * <p>
+ * The pool is bounded. Once it holds its maximal number of names, new names
+ * are returned as they are and only the names already pooled are shared, so
+ * that a column of unique names does not fill the heap twice. Not
+ * thread-safe: use one pool per parsing thread.
+ */
+public final class NamePool
+{
+
+	/**
+	 * Default maximal number of distinct names pooled.
+	 */
+	public static final int DEFAULT_MAX_SIZE = 1 << 16;
+
+	private final int maxSize;
+
+	private final Map< String, String > names = new HashMap<>();
+
+	private long shared;
+
+	private long lookups;
+
+	public NamePool()
+	{
+		this( DEFAULT_MAX_SIZE );
+	}
+
+	public NamePool( final int maxSize )
+	{
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Returns the pooled instance equal to the specified name, pooling it if
+	 * there is room.
+	 *
+	 * @return the pooled name, or the name itself if it is not pooled.
+	 */
+	public String intern( final String name )
+	{
+		if ( null == name )
+			return null;
+		lookups++;
+		final String pooled = names.get( name );
+		if ( null != pooled )
+		{
+			shared++;
+			return pooled;
+		}
+		if ( names.size() < maxSize )
+			names.put( name, name );
+		return name;
+	}
+
+	/**
+	 * Returns the number of distinct names pooled.
+	 */
+	public int size()
+	{
+		return names.size();
+	}
+
+	/**
+	 * Returns the number of names that were replaced by a pooled instance.
+	 */
+	public long getShared()
+	{
+		return shared;
+	}
+
+	/**
+	 * Returns the number of names looked up.
+	 */
+	public long getLookups()
+	{
+		return lookups;
+	}
+
+	/**
+	 * Returns <code>true</code> if the pool holds its maximal number of
+	 * names, so that new names are not pooled anymore.
+	 */
+	public boolean isFull()
+	{
+		return names.size() >= maxSize;
+	}
+}
@@ -0,0 +1,111 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.awt.Color;
+
+import fiji.plugin.trackmate.Logger;
+
+/**
+ * A logger that forwards progress and status updates to another logger at
+ * most once per time interval. Messages and errors are forwarded as they
+ * come.
+ * <p>
+ * Meant to be used in the hot loop of an import, where updating the progress
+ * bar of a GUI logger at every record costs more than parsing the record.
+ */
+public class RateLimitedLogger extends Logger
+{
+
+	/**
+	 * The default interval between two progress updates, in milliseconds.
+	 */
+	public static final long DEFAULT_INTERVAL = 100;
+
+	private final Logger logger;
+
+	private final long interval;
+
+	private long lastProgress;
+
+	private long lastStatus;
+
+	public RateLimitedLogger( final Logger logger )
+	{
+		this( logger, DEFAULT_INTERVAL );
+	}
+
+	/**
+	 * Creates a rate-limited logger.
+	 *
+	 * @param logger
+	 *            the logger to forward to.
+	 * @param interval
+	 *            the minimal interval between two progress or status updates,
+	 *            in milliseconds.
+	 */
+	public RateLimitedLogger( final Logger logger, final long interval )
+	{
+		this.logger = logger;
+		this.interval = interval * 1_000_000L;
+		this.lastProgress = System.nanoTime() - this.interval;
+		this.lastStatus = lastProgress;
+	}
+
+	@Override
+	public void log( final String message, final Color color )
+	{
+		logger.log( message, color );
+	}
+
+	@Override
+	public void error( final String message )
+	{
+		logger.error( message );
+	}
+
+	/**
+	 * Forwards the progress if the time interval has elapsed since the last
+	 * update. A progress of 0 or 1 is always forwarded.
+	 */
+	@Override
+	public void setProgress( final double val )
+	{
+		final long now = System.nanoTime();
+		if ( val <= 0. || val >= 1. || now - lastProgress >= interval )
+		{
+			lastProgress = now;
+			logger.setProgress( val );
+		}
+	}
+
+	@Override
+	public void setStatus( final String status )
+	{
+		final long now = System.nanoTime();
+		if ( now - lastStatus >= interval )
+		{
+			lastStatus = now;
+			logger.setStatus( status );
+		}
+	}
+}
@@ -0,0 +1,196 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.Arrays;
+
+/**
+ * A chunk of parsed CSV rows, stored column by column in primitive arrays.
+ * <p>
+ * Importers parse a chunk of rows into this table, then build the spots of
+ * the whole chunk, so that the two stages can be measured separately. The
+ * table has a fixed capacity and is reused from one chunk to the next.
+ * <p>
+ * Extra feature columns are stored in one primitive array each. Their
+ * values are set for the row being parsed with
+ * {@link #setFeature(int, double)}, before the row is appended with
+ * {@link #add}. So is the parent ID, with {@link #setParent(int)}.
+ */
+public final class RowChunk
+{
+
+	private final double[] x;
+
+	private final double[] y;
+
+	private final double[] z;
+
+	private final double[] quality;
+
+	private final double[] radius;
+
+	private final int[] frame;
+
+	private final int[] id;
+
+	private final int[] track;
+
+	private final String[] name;
+
+	private final double[][] features;
+
+	private final int[] parent;
+
+	private int size;
+
+	public RowChunk( final int capacity )
+	{
+		this( capacity, 0 );
+	}
+
+	public RowChunk( final int capacity, final int nFeatures )
+	{
+		this.x = new double[ capacity ];
+		this.y = new double[ capacity ];
+		this.z = new double[ capacity ];
+		this.quality = new double[ capacity ];
+		this.radius = new double[ capacity ];
+		this.frame = new int[ capacity ];
+		this.id = new int[ capacity ];
+		this.track = new int[ capacity ];
+		this.name = new String[ capacity ];
+		this.features = new double[ nFeatures ][ capacity ];
+		this.parent = new int[ capacity ];
+	}
+
+	/**
+	 * Sets the value of an extra feature for the row that will be appended
+	 * next. The table must not be full.
+	 */
+	public void setFeature( final int feature, final double value )
+	{
+		features[ feature ][ size ] = value;
+	}
+
+	/**
+	 * Sets the parent ID of the row that will be appended next. The table
+	 * must not be full.
+	 */
+	public void setParent( final int parentID )
+	{
+		parent[ size ] = parentID;
+	}
+
+	/**
+	 * Appends a row. The table must not be full.
+	 */
+	public void add( final double x, final double y, final double z, final int frame, final double quality, final double radius, final String name, final int id, final int track )
+	{
+		this.x[ size ] = x;
+		this.y[ size ] = y;
+		this.z[ size ] = z;
+		this.frame[ size ] = frame;
+		this.quality[ size ] = quality;
+		this.radius[ size ] = radius;
+		this.name[ size ] = name;
+		this.id[ size ] = id;
+		this.track[ size ] = track;
+		size++;
+	}
+
+	public int size()
+	{
+		return size;
+	}
+
+	public boolean isFull()
+	{
+		return size == x.length;
+	}
+
+	public void clear()
+	{
+		// Release the names of the previous chunk.
+		Arrays.fill( name, 0, size, null );
+		size = 0;
+	}
+
+	public double x( final int row )
+	{
+		return x[ row ];
+	}
+
+	public double y( final int row )
+	{
+		return y[ row ];
+	}
+
+	public double z( final int row )
+	{
+		return z[ row ];
+	}
+
+	public int frame( final int row )
+	{
+		return frame[ row ];
+	}
+
+	public double quality( final int row )
+	{
+		return quality[ row ];
+	}
+
+	public double radius( final int row )
+	{
+		return radius[ row ];
+	}
+
+	public String name( final int row )
+	{
+		return name[ row ];
+	}
+
+	public int id( final int row )
+	{
+		return id[ row ];
+	}
+
+	public int track( final int row )
+	{
+		return track[ row ];
+	}
+
+	public int parent( final int row )
+	{
+		return parent[ row ];
+	}
+
+	public int nFeatures()
+	{
+		return features.length;
+	}
+
+	public double feature( final int feature, final int row )
+	{
+		return features[ feature ][ row ];
+	}
+}
@@ -0,0 +1,213 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.util.Arrays;
+
+/**
+ * Statistics on the content of a CSV file, as returned by a
+ * {@link CSVScanner}: rows, frames, tracks, coordinate ranges, spots per frame
+ * and track lengths.
+ */
+public class ScanReport
+{
+
+	private final String csvFilePath;
+
+	private final long bytes;
+
+	private final long rows;
+
+	private final long malformedRows;
+
+	private final double[] min;
+
+	private final double[] max;
+
+	private final int[] frames;
+
+	private final long[] spotsPerFrame;
+
+	private final int[] trackLengths;
+
+	private final long[] tracksPerLength;
+
+	private final long nTracks;
+
+	private final long elapsedMillis;
+
+	private final int nThreads;
+
+	ScanReport( final String csvFilePath, final long bytes, final long rows, final long malformedRows, final double[] min, final double[] max, final IntCounter frameCounts, final IntCounter trackCounts, final long elapsedMillis, final int nThreads )
+	{
+		this.csvFilePath = csvFilePath;
+		this.bytes = bytes;
+		this.rows = rows;
+		this.malformedRows = malformedRows;
+		this.min = min;
+		this.max = max;
+		this.elapsedMillis = elapsedMillis;
+		this.nThreads = nThreads;
+
+		this.frames = frameCounts.sortedKeys();
+		this.spotsPerFrame = new long[ frames.length ];
+		for ( int i = 0; i < frames.length; i++ )
+			spotsPerFrame[ i ] = frameCounts.get( frames[ i ] );
+
+		// Histogram of track lengths.
+		final IntCounter lengths = new IntCounter();
+		for ( final long length : trackCounts.counts() )
+			lengths.increment( ( int ) Math.min( Integer.MAX_VALUE - 1, length ) );
+		this.nTracks = trackCounts.size();
+		this.trackLengths = lengths.sortedKeys();
+		this.tracksPerLength = new long[ trackLengths.length ];
+		for ( int i = 0; i < trackLengths.length; i++ )
+			tracksPerLength[ i ] = lengths.get( trackLengths[ i ] );
+	}
+
+	public String getCsvFilePath()
+	{
+		return csvFilePath;
+	}
+
+	public long getBytes()
+	{
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of data rows, malformed rows included.
+	 */
+	public long getRows()
+	{
+		return rows;
+	}
+
+	public long getMalformedRows()
+	{
+		return malformedRows;
+	}
+
+	/**
+	 * Returns the minimal X, Y and Z of the well-formed rows. Z is 0 if no Z
+	 * column was scanned.
+	 */
+	public double[] getMin()
+	{
+		return min.clone();
+	}
+
+	/**
+	 * Returns the maximal X, Y and Z of the well-formed rows.
+	 */
+	public double[] getMax()
+	{
+		return max.clone();
+	}
+
+	/**
+	 * Returns the frames that have at least one spot, in increasing order.
+	 */
+	public int[] getFrames()
+	{
+		return frames.clone();
+	}
+
+	/**
+	 * Returns the number of spots in each frame, in the order of
+	 * {@link #getFrames()}.
+	 */
+	public long[] getSpotsPerFrame()
+	{
+		return spotsPerFrame.clone();
+	}
+
+	/**
+	 * Returns the number of tracks, or 0 if no track column was scanned.
+	 */
+	public long getNTracks()
+	{
+		return nTracks;
+	}
+
+	/**
+	 * Returns the distinct track lengths, in spots, in increasing order.
+	 */
+	public int[] getTrackLengths()
+	{
+		return trackLengths.clone();
+	}
+
+	/**
+	 * Returns the number of tracks of each length, in the order of
+	 * {@link #getTrackLengths()}.
+	 */
+	public long[] getTracksPerLength()
+	{
+		return tracksPerLength.clone();
+	}
+
+	public long getElapsedMillis()
+	{
+		return elapsedMillis;
+	}
+
+	@Override
+	public String toString()
+	{
+		final StringBuilder str = new StringBuilder();
+		str.append( String.format( "Scan of %s: %.1f MB in %.1f s with %d threads (%.1f MB/s).\n",
+				csvFilePath, bytes / 1e6, elapsedMillis / 1000., nThreads,
+				( elapsedMillis == 0 ) ? 0. : bytes / 1e3 / elapsedMillis ) );
+		str.append( String.format( " - %d rows, %d malformed.\n", rows, malformedRows ) );
+		if ( rows > malformedRows )
+			str.append( String.format( " - X from %g to %g, Y from %g to %g, Z from %g to %g.\n",
+					min[ 0 ], max[ 0 ], min[ 1 ], max[ 1 ], min[ 2 ], max[ 2 ] ) );
+		if ( frames.length > 0 )
+		{
+			final long[] sorted = spotsPerFrame.clone();
+			Arrays.sort( sorted );
+			long sum = 0;
+			for ( final long n : sorted )
+				sum += n;
+			str.append( String.format( " - %d frames, from %d to %d. Spots per frame: min %d, median %d, mean %.1f, max %d.\n",
+					frames.length, frames[ 0 ], frames[ frames.length - 1 ],
+					sorted[ 0 ], sorted[ sorted.length / 2 ], ( double ) sum / sorted.length, sorted[ sorted.length - 1 ] ) );
+		}
+		if ( nTracks > 0 )
+		{
+			long sum = 0;
+			long median = -1;
+			long seen = 0;
+			for ( int i = 0; i < trackLengths.length; i++ )
+			{
+				sum += ( long ) trackLengths[ i ] * tracksPerLength[ i ];
+				seen += tracksPerLength[ i ];
+				if ( median < 0 && seen > nTracks / 2 )
+					median = trackLengths[ i ];
+			}
+			str.append( String.format( " - %d tracks. Spots per track: min %d, median %d, mean %.1f, max %d.\n",
+					nTracks, trackLengths[ 0 ], median, ( double ) sum / nTracks, trackLengths[ trackLengths.length - 1 ] ) );
+		}
+		return str.toString();
+	}
+}
@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * A block of contiguous spot IDs reserved in the global {@link Spot} ID
+ * counter, so that an import can give its spots IDs from their position in
+ * the file, whatever the order in which they are created. Spots created
+ * elsewhere meanwhile get IDs after the block.
+ * <p>
+ * The IDs are only reproducible relative to the start of the block: importing
+ * the same files twice gives the same IDs up to an offset, which depends on
+ * the spots created before in the session.
+ * <p>
+ * A sharded import reserves one block for the number of lines of the files,
+ * counted with {@link #maxSpots(String)}, an upper bound of their number of
+ * spots that is only exceeded by the header, comment and malformed lines. The
+ * IDs left unused at its end are given back if no ID was taken after the
+ * block in the meantime. The IDs of the skipped lines are lost, as are those
+ * of the last shard if another import reserved a block after this one. A
+ * single file is parsed in row order, and reserves one block per chunk of
+ * rows instead.
+ */
+public final class SpotIDBlock
+{
+
+	private static final int BUFFER_SIZE = 1024 * 1024;
+
+	private final int first;
+
+	private final long size;
+
+	private SpotIDBlock( final int first, final long size )
+	{
+		this.first = first;
+		this.size = size;
+	}
+
+	/**
+	 * Reserves a block of IDs.
+	 *
+	 * @param size
+	 *            the number of IDs to reserve.
+	 * @return the block, or <code>null</code> if there are not enough IDs
+	 *         left.
+	 */
+	static SpotIDBlock reserve( final long size )
+	{
+		while ( true )
+		{
+			final int last = Spot.IDcounter.get();
+			final long end = ( long ) last + size;
+			if ( end > Integer.MAX_VALUE )
+				return null;
+			if ( Spot.IDcounter.compareAndSet( last, ( int ) end ) )
+				return new SpotIDBlock( last + 1, size );
+		}
+	}
+
+	/**
+	 * Makes sure the global counter is past the specified ID, so that spots
+	 * created later do not get an ID that was imported.
+	 */
+	public static void reserveUpTo( final int id )
+	{
+		Spot.IDcounter.accumulateAndGet( id, Math::max );
+	}
+
+	/**
+	 * Returns the first ID of the block.
+	 */
+	int getFirst()
+	{
+		return first;
+	}
+
+	long size()
+	{
+		return size;
+	}
+
+	/**
+	 * Gives back the IDs of the block after the specified number of IDs used,
+	 * if no ID was taken after the block.
+	 *
+	 * @return <code>true</code> if the IDs were given back.
+	 */
+	boolean release( final long used )
+	{
+		return Spot.IDcounter.compareAndSet( ( int ) ( first + size - 1 ), ( int ) ( first + used - 1 ) );
+	}
+
+	/**
+	 * Returns an upper bound of the number of spots a CSV file can hold: its
+	 * number of lines, less the header. Every row ends with a line feed byte,
+	 * whatever the charset, except maybe the last one.
+	 *
+	 * @throws IOException
+	 *             if the file cannot be read.
+	 */
+	static long maxSpots( final String path ) throws IOException
+	{
+		long lines = 0;
+		byte last = '\n';
+		try (final FileChannel channel = FileChannel.open( Paths.get( path ), StandardOpenOption.READ ))
+		{
+			final ByteBuffer buffer = ByteBuffer.allocate( BUFFER_SIZE );
+			final byte[] bytes = buffer.array();
+			int n;
+			while ( ( n = channel.read( buffer ) ) >= 0 )
+			{
+				for ( int i = 0; i < n; i++ )
+					if ( bytes[ i ] == '\n' )
+						lines++;
+				if ( n > 0 )
+					last = bytes[ n - 1 ];
+				buffer.clear();
+			}
+		}
+		if ( last != '\n' )
+			lines++;
+		return Math.max( 0, lines - 1 );
+	}
+}
@@ -21,15 +21,22 @@
  */
 package fiji.plugin.trackmate.importer.csv;
 
+import java.io.Closeable;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.LineNumberReader;
 import java.io.Reader;
-import java.text.DateFormat;
+import java.nio.file.DirectoryStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -37,14 +44,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.NavigableSet;
-import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
+import org.scijava.Cancelable;
 import org.scijava.util.VersionUtils;
 
+import fiji.plugin.trackmate.Dimension;
 import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.Settings;
@@ -56,36 +71,119 @@ import fiji.plugin.trackmate.features.edges.EdgeTargetAnalyzer;
 import fiji.plugin.trackmate.features.edges.EdgeTimeLocationAnalyzer;
 import fiji.plugin.trackmate.features.manual.ManualEdgeColorAnalyzer;
 import fiji.plugin.trackmate.features.manual.ManualSpotColorAnalyzerFactory;
+import fiji.plugin.trackmate.features.spot.SpotAnalyzerFactoryBase;
 import fiji.plugin.trackmate.features.track.TrackDurationAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackIndexAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackLocationAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackSpeedStatisticsAnalyzer;
 import fiji.plugin.trackmate.features.track.TrackSpotQualityFeatureAnalyzer;
 import fiji.plugin.trackmate.gui.wizard.descriptors.ConfigureViewsDescriptor;
+import fiji.plugin.trackmate.importer.csv.ImportEvents.Type;
+import fiji.plugin.trackmate.importer.csv.ImportStats.Phase;
 import fiji.plugin.trackmate.io.TmXmlWriter;
 import fiji.plugin.trackmate.tracking.manual.ManualTrackerFactory;
 import ij.ImagePlus;
-import loci.common.DebugTools;
 import loci.formats.FormatException;
-import loci.formats.meta.IMetadata;
-import loci.plugins.in.ImportProcess;
-import loci.plugins.in.ImporterOptions;
-import ome.units.UNITS;
-import ome.units.quantity.Length;
-import ome.units.quantity.Time;
-import ome.xml.model.primitives.PositiveInteger;
-
-public class TrackMateImporter
+
+public class TrackMateImporter implements Cancelable
 {
 
-	private static final DateFormat DATE_FORMAT = new SimpleDateFormat( "yyyy-MM-dd --- HH:mm:ss" );
+	/**
+	 * How the track IDs of the shards of a sharded import are merged.
+	 */
+	public enum TrackIDPolicy
+	{
+		/**
+		 * Spots with the same track ID in different shards belong to the
+		 * same track, as when a file is split by frames.
+		 */
+		STITCH,
+		/**
+		 * Track IDs are local to each shard, as when each shard is a
+		 * separate field of view.
+		 */
+		NAMESPACE;
+	}
+
+	/**
+	 * How the timestamps of a time column are converted to frames.
+	 */
+	public enum FrameBinning
+	{
+		/**
+		 * The frame of a timestamp is its value divided by the frame
+		 * interval, rounded. Frame 0 is at time 0.
+		 */
+		INTERVAL,
+		/**
+		 * The frame of a timestamp is its rank among the distinct timestamps
+		 * of the CSV files, which are read in a first pass.
+		 */
+		DISTINCT;
+	}
 
-	private String errorMessage;
+	/**
+	 * Pattern of the import date in the log of the saved file. A new
+	 * {@link SimpleDateFormat} is created for each file, as it is not
+	 * thread-safe.
+	 */
+	private static final String DATE_PATTERN = "yyyy-MM-dd --- HH:mm:ss";
+
+	/**
+	 * Number of records parsed between two checks for cancellation and two
+	 * progress updates.
+	 */
+	private static final int CHUNK_SIZE = 1024;
+
+	/**
+	 * Number of tracks linked between two link batch events.
+	 */
+	private static final int LINK_BATCH_SIZE = 1024;
+
+	private volatile String errorMessage;
+
+	private volatile boolean isCanceled;
+
+	private volatile String cancelReason;
 
 	private final Logger logger;
 
 	private final String csvFilePath;
 
+	/**
+	 * The CSV files parsed, the first one being {@link #csvFilePath}.
+	 */
+	private final List< String > shards;
+
+	private final TrackIDPolicy trackIDPolicy;
+
+	private final int shardThreads;
+
+	/**
+	 * The dialect of the CSV files, or <code>null</code> to sniff the dialect
+	 * of each file.
+	 */
+	private final CSVDialect dialect;
+
+	/**
+	 * The column of the timestamps, used instead of the frame column if
+	 * positive.
+	 */
+	private final int timeCol;
+
+	private final FrameBinning frameBinning;
+
+	/**
+	 * The fixed frame interval of the time column, or NaN to use the one of
+	 * the image.
+	 */
+	private final double timeInterval;
+
+	/**
+	 * Converts the timestamps to the time unit of the model.
+	 */
+	private final double timeScale;
+
 	private final ImagePlus imp;
 
 	private final String imageFilePath;
@@ -112,9 +210,54 @@ public class TrackMateImporter
 
 	private final boolean declareAllFeatures;
 
-	private TrackMateImporter( final String csvFilePath, final ImagePlus imp, final String imageFilePath, final boolean declareAllFeatures, final int xCol, final int yCol, final int zCol, final int radiusCol, final int frameCol, final int qualityCol, final int idCol, final int nameCol, final int trackCol, final double radius, final Logger logger )
+	private final long maxMalformedRows;
+
+	private final double maxMalformedFraction;
+
+	private final List< FeatureColumn > featureColumns;
+
+	private final int parentCol;
+
+	private final String edgeFilePath;
+
+	private final int edgeSourceCol;
+
+	private final int edgeTargetCol;
+
+	/**
+	 * The keys of the extra features, in the order of the feature columns.
+	 */
+	private final String[] featureKeys;
+
+	private volatile MalformedRowReport malformedRows;
+
+	private volatile ImportStats stats = new ImportStats();
+
+	/**
+	 * Serializes the imports run with this instance. A lock rather than
+	 * synchronized methods, so that imports running on virtual threads do not
+	 * pin their carrier thread while they wait on I/O.
+	 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/**
+	 * The permits held around the CPU-bound phases of the current import, or
+	 * <code>null</code> if they run right away. Set under the lock, and read
+	 * by the shard threads it starts.
+	 */
+	private volatile CpuPermits cpuPermits;
+
+	private TrackMateImporter( final String csvFilePath, final ImagePlus imp, final String imageFilePath, final boolean declareAllFeatures, final int xCol, final int yCol, final int zCol, final int radiusCol, final int frameCol, final int qualityCol, final int idCol, final int nameCol, final int trackCol, final double radius, final long maxMalformedRows, final double maxMalformedFraction, final List< FeatureColumn > featureColumns, final int parentCol, final String edgeFilePath, final int edgeSourceCol, final int edgeTargetCol, final List< String > shards, final TrackIDPolicy trackIDPolicy, final int shardThreads, final CSVDialect dialect, final int timeCol, final FrameBinning frameBinning, final double timeInterval, final double timeScale, final Logger logger )
 	{
+		this.dialect = dialect;
+		this.timeCol = timeCol;
+		this.frameBinning = frameBinning;
+		this.timeInterval = timeInterval;
+		this.timeScale = timeScale;
 		this.csvFilePath = csvFilePath;
+		this.shards = Collections.unmodifiableList( new ArrayList<>( shards ) );
+		this.trackIDPolicy = trackIDPolicy;
+		this.shardThreads = shardThreads;
 		this.imp = imp;
 		this.imageFilePath = imageFilePath;
 		this.declareAllFeatures = declareAllFeatures;
@@ -128,14 +271,111 @@ public class TrackMateImporter
 		this.nameCol = nameCol;
 		this.trackCol = trackCol;
 		this.radius = radius;
+		this.maxMalformedRows = maxMalformedRows;
+		this.maxMalformedFraction = maxMalformedFraction;
+		this.featureColumns = Collections.unmodifiableList( new ArrayList<>( featureColumns ) );
+		this.featureKeys = featureColumns.stream().map( FeatureColumn::getFeature ).toArray( String[]::new );
+		this.parentCol = parentCol;
+		this.edgeFilePath = edgeFilePath;
+		this.edgeSourceCol = edgeSourceCol;
+		this.edgeTargetCol = edgeTargetCol;
 		this.logger = logger;
 	}
 
+	/**
+	 * Imports the CSV file and saves the model to a TrackMate XML file.
+	 * <p>
+	 * An importer can be reused for several imports, and shared between
+	 * threads. Imports with the same instance run one after the other; use
+	 * one instance per import to run them concurrently. The error message,
+	 * stats and malformed rows are those of the last import. A
+	 * {@link #cancel(String)} only stops the import in progress, whichever
+	 * thread started it: the next import starts again not canceled.
+	 * <p>
+	 * The {@link #preflight() memory preflight} is logged before the import.
+	 * It is advisory only: an import not expected to fit in the heap is still
+	 * attempted.
+	 *
+	 * @return <code>true</code> if the file was saved.
+	 */
 	public boolean saveTo( final File targetFile )
 	{
+		return saveTo( targetFile, null );
+	}
+
+	/**
+	 * Imports the CSV file and saves the model to a TrackMate XML file,
+	 * running its CPU-bound phases only while holding one of the specified
+	 * permits. A permit is taken for each chunk of spots built, for the model
+	 * build and for the XML writing, but not while reading the CSV file. This
+	 * lets many imports wait on their I/O at once while their CPU work is
+	 * bounded.
+	 *
+	 * @param cpuPermits
+	 *            the permits for the CPU-bound phases, or <code>null</code>
+	 *            to run them right away.
+	 * @return <code>true</code> if the file was saved.
+	 */
+	boolean saveTo( final File targetFile, final CpuPermits cpuPermits )
+	{
+		lock.lock();
+		try
+		{
+			resetCancel();
+			this.cpuPermits = cpuPermits;
+			return doSaveTo( targetFile );
+		}
+		finally
+		{
+			this.cpuPermits = null;
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Waits for a CPU permit, if the current import has permits.
+	 *
+	 * @return <code>false</code> if the thread was interrupted while waiting.
+	 */
+	private boolean acquireCpu()
+	{
+		if ( null == cpuPermits )
+			return true;
+		try
+		{
+			cpuPermits.acquire();
+			return true;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private void releaseCpu()
+	{
+		if ( null != cpuPermits )
+			cpuPermits.release();
+	}
+
+	private boolean doSaveTo( final File targetFile )
+	{
+		stats = new ImportStats();
 		final StringBuilder errorHolder = new StringBuilder();
 
-		final Settings settings = getSettings();
+		// The preflight is advisory: an import that is not expected to fit
+		// is logged as such, but still attempted, since the estimate is
+		// rough.
+		final ImportPreflight.Report preflight = preflight();
+		if ( null != preflight )
+		{
+			logger.log( preflight.toString() );
+			if ( !preflight.fits() )
+				logger.error( "The import may run out of memory.\n" );
+		}
+
+		final Settings settings = readSettings();
 		if ( null == settings )
 			return false;
 
@@ -143,7 +383,11 @@ public class TrackMateImporter
 		String timeUnits;
 		if ( null == imp )
 		{
+			final ImportEvents.Event event = Type.METADATA_PROBE.begin();
+			final ImportStats.Timer timer = stats.start( Phase.METADATA_PROBE );
 			final String[] units = getUnitsFromImageFile( imageFilePath, errorHolder );
+			timer.stop();
+			event.commit( imageFilePath );
 			if ( null == units )
 			{
 				errorMessage = errorHolder.toString();
@@ -158,26 +402,58 @@ public class TrackMateImporter
 			timeUnits = imp.getCalibration().getTimeUnit();
 		}
 
+		// A fixed interval of the time column overrides the one of the image.
+		if ( timeCol >= 0 && !Double.isNaN( timeInterval ) )
+			settings.dt = timeInterval;
 		final double frameInterval = settings.dt;
-		final Model model = getModel( frameInterval, spaceUnits, timeUnits );
+		final Model model = buildModel( frameInterval, spaceUnits, timeUnits );
 		if ( null == model )
 			return false;
 
+		if ( isCanceled() )
+		{
+			errorMessage = "Import canceled before saving: " + getCancelReason();
+			return false;
+		}
+
+		if ( !acquireCpu() )
+		{
+			errorMessage = "Import interrupted before saving.";
+			return false;
+		}
+		try
+		{
+			return writeModel( targetFile, model, settings );
+		}
+		finally
+		{
+			releaseCpu();
+		}
+	}
+
+	private boolean writeModel( final File targetFile, final Model model, final Settings settings )
+	{
 		final TmXmlWriter writer = new TmXmlWriter( targetFile, logger );
 
 		final String log = "Imported into TrackMate from CSV file "
-				+ csvFilePath + '\n'
-				+ "On the " + DATE_FORMAT.format( new Date() ) + '\n'
+				+ ( shards.size() == 1 ? csvFilePath : String.join( ", ", shards ) ) + '\n'
+				+ "On the " + new SimpleDateFormat( DATE_PATTERN ).format( new Date() ) + '\n'
 				+ "By TrackMate CSV Importer v " + VersionUtils.getVersion( TrackMateImporter.class ) + '\n';
 		writer.appendLog( log );
 		writer.appendModel( model );
 		writer.appendSettings( settings );
-		writer.appendGUIState( trackCol >= 0 ? ConfigureViewsDescriptor.KEY : "SpotFilter" );
+		writer.appendGUIState( ( trackCol >= 0 || importsLinks() ) ? ConfigureViewsDescriptor.KEY : "SpotFilter" );
 
+		final ImportEvents.Event event = Type.XML_WRITE.begin();
+		final ImportStats.Timer timer = stats.start( Phase.XML_WRITE );
 		try
 		{
 			writer.writeToFile();
+			final int nSpots = model.getSpots().getNSpots( false );
+			timer.stop( nSpots, 0 );
+			event.commit( targetFile.getAbsolutePath(), nSpots );
 			logger.log( "Data saved to: " + targetFile.toString() + '\n' );
+			logger.log( stats.toString() );
 		}
 		catch ( final FileNotFoundException e )
 		{
@@ -198,11 +474,28 @@ public class TrackMateImporter
 	}
 
 	public Settings getSettings()
+	{
+		lock.lock();
+		try
+		{
+			return readSettings();
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private Settings readSettings()
 	{
 		final StringBuilder errorHolder = new StringBuilder();
+		final ImportEvents.Event event = Type.METADATA_PROBE.begin();
+		final ImportStats.Timer timer = stats.start( Phase.METADATA_PROBE );
 		final Settings settings = ( imp == null )
 				? createSettingsFromImageFile( imageFilePath, errorHolder, logger )
 				: createSettingsFromImp( imp, logger );
+		timer.stop();
+		event.commit( imp == null ? imageFilePath : imp.getTitle() );
 
 		if ( null == settings )
 		{
@@ -242,17 +535,151 @@ public class TrackMateImporter
 			settings.addTrackAnalyzer( new TrackSpotQualityFeatureAnalyzer() );
 		}
 
+		final String collision = checkFeatureColumns( settings );
+		if ( null != collision )
+		{
+			logger.error( collision );
+			errorMessage = collision;
+			return null;
+		}
+
 		logger.log( "Added the following features to be computed:\n" + settings.toStringFeatureAnalyzersInfo() );
 		return settings;
 	}
 
+	/**
+	 * Checks that the extra feature columns do not import a feature that one
+	 * of the spot analyzers of the settings computes. The keys of these
+	 * analyzers depend on the number of channels of the image, so they can only
+	 * be checked once the settings are read.
+	 *
+	 * @return an error message, or <code>null</code> if there is no collision.
+	 */
+	private String checkFeatureColumns( final Settings settings )
+	{
+		if ( featureColumns.isEmpty() )
+			return null;
+
+		final Set< String > computed = new HashSet<>();
+		for ( final SpotAnalyzerFactoryBase< ? > factory : settings.getSpotAnalyzerFactories() )
+			computed.addAll( factory.getFeatures() );
+
+		for ( final FeatureColumn featureColumn : featureColumns )
+			if ( computed.contains( featureColumn.getFeature() ) )
+				return "Feature " + featureColumn.getFeature() + " of column " + featureColumn.getColumn()
+						+ " is already computed by a spot analyzer. Rename it, or do not declare all features.\n";
+		return null;
+	}
+
+	/**
+	 * Estimates the size of the model this importer would build, and the heap
+	 * it needs, by sampling the head of the CSV file. This is fast whatever
+	 * the size of the file. For a sharded import, the first shard is sampled
+	 * and the estimates are scaled to the total size of the shards.
+	 *
+	 * @return the preflight report, or <code>null</code> if the file could
+	 *         not be read. The error message is then set. It waits for an
+	 *         import in progress, so that it does not overwrite its error.
+	 */
+	public ImportPreflight.Report preflight()
+	{
+		lock.lock();
+		try
+		{
+			return ImportPreflight.builder()
+					.csvFilePaths( shards )
+					.frameCol( frameCol )
+					.trackCol( trackCol )
+					.nameCol( nameCol )
+					.declareAllFeatures( declareAllFeatures )
+					.extraSpotFeatures( featureColumns.size() )
+					.create()
+					.run();
+		}
+		catch ( final IOException e )
+		{
+			errorMessage = "Problem sampling the CSV file " + csvFilePath + ":\n" + e.getMessage();
+			return null;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Scans the whole CSV file and returns statistics on the spots and tracks
+	 * this importer would create, without creating them. The scan runs on all
+	 * processors.
+	 *
+	 * @return the scan report, or <code>null</code> if the file could not be
+	 *         read. The error message is then set. It waits for an import in
+	 *         progress, so that it does not overwrite its error.
+	 * @see CSVScanner
+	 */
+	public ScanReport scan()
+	{
+		lock.lock();
+		try
+		{
+			return CSVScanner.builder()
+					.csvFilePath( csvFilePath )
+					.xCol( xCol )
+					.yCol( yCol )
+					.zCol( zCol )
+					.frameCol( frameCol )
+					.trackCol( trackCol )
+					.create()
+					.scan();
+		}
+		catch ( final IOException e )
+		{
+			errorMessage = "Problem scanning the CSV file " + csvFilePath + ":\n" + e.getMessage();
+			return null;
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * Imports the CSV file into a new model.
+	 * <p>
+	 * This resets the stats returned by {@link #getStats()}. The metrics of
+	 * the following calls to {@link #getSettings()} are added to the same
+	 * stats.
+	 */
 	public Model getModel( final double frameInterval, final String spaceUnit, final String timeUnit )
 	{
+		lock.lock();
+		try
+		{
+			resetCancel();
+			stats = new ImportStats();
+			return buildModel( frameInterval, spaceUnit, timeUnit );
+		}
+		finally
+		{
+			lock.unlock();
+		}
+	}
+
+	private Model buildModel( final double frameInterval, final String spaceUnit, final String timeUnit )
+	{
+		final ImportStats stats = this.stats;
 		@SuppressWarnings( "unused" )
 		CSVMetadata csvMetadata = null;
+		final List< CSVDialect > dialects = new ArrayList<>( shards.size() );
+		final ImportEvents.Event probeEvent = Type.METADATA_PROBE.begin();
+		final ImportStats.Timer probeTimer = stats.start( Phase.METADATA_PROBE );
 		try
 		{
-			csvMetadata = CSVMetadata.parse( csvFilePath );
+			for ( final String shard : shards )
+				dialects.add( ( null == this.dialect ) ? CSVDialect.sniff( shard ) : this.dialect );
+			csvMetadata = CSVMetadata.parse( csvFilePath, dialects.get( 0 ) );
+			probeTimer.stop();
+			probeEvent.commit( csvFilePath );
 		}
 		catch ( final IOException e )
 		{
@@ -262,204 +689,1023 @@ public class TrackMateImporter
 		}
 
 		/*
-		 * Prepare spot & track Collections.
+		 * Convert timestamps to frames.
+		 */
+
+		final double dt = ( timeCol >= 0 && !Double.isNaN( timeInterval ) ) ? timeInterval : frameInterval;
+		final FrameBinner binner;
+		if ( timeCol < 0 )
+		{
+			binner = null;
+		}
+		else if ( frameBinning == FrameBinning.DISTINCT )
+		{
+			logger.log( "Collecting the distinct timestamps." );
+			final double[] times;
+			try
+			{
+				times = FrameBinner.distinctTimes( shards, dialects, timeCol, this );
+			}
+			catch ( final IOException e )
+			{
+				errorMessage = "Problem reading the timestamps:\n" + e.getMessage();
+				e.printStackTrace();
+				return null;
+			}
+			if ( null == times )
+			{
+				errorMessage = "Import canceled while reading the timestamps: " + getCancelReason();
+				logger.log( errorMessage + '\n' );
+				return null;
+			}
+			binner = FrameBinner.distinct( times );
+			logger.log( String.format( " Found %d frames.\n", binner.nFrames() ) );
+		}
+		else
+		{
+			try
+			{
+				binner = FrameBinner.interval( dt, timeScale );
+			}
+			catch ( final IllegalArgumentException e )
+			{
+				errorMessage = e.getMessage();
+				return null;
+			}
+		}
+
+		/*
+		 * Parse the shards, concurrently if there are several.
+		 */
+
+		final boolean importTrack = trackCol >= 0;
+		final boolean importLinks = importsLinks();
+		// Explicit links replace the chaining of the spots of each track.
+		final boolean chainTracks = importTrack && !importLinks;
+
+		final MalformedRowReport malformedRows = new MalformedRowReport();
+		malformedRows.setBudget( maxMalformedRows, maxMalformedFraction );
+		this.malformedRows = malformedRows;
+
+		logger.log( String.format( "Parsing records, %s.\n", dialects.get( 0 ) ) );
+		final ParseState state = new ParseState( dt, dialects, binner, malformedRows, chainTracks );
+		// Without ID column, spot IDs follow the position of the rows.
+		if ( idCol < 0 && !state.reserveIDs() )
+			logger.log( "Spot IDs will depend on the parsing order.\n" );
+		final List< ShardParser > parsed = parseShards( state );
+		if ( null == parsed )
+		{
+			state.releaseIDs( 0 );
+			logger.setProgress( 0. );
+			return null;
+		}
+
+		/*
+		 * Merge the frames and tracks of the shards.
 		 */
 
 		final Map< Integer, Set< Spot > > spots = new HashMap<>();
 		final Map< Integer, List< Spot > > tracks = new HashMap<>();
+		final LinkBuilder links;
+		if ( !importLinks )
+			links = null;
+		else if ( parsed.size() == 1 )
+			links = parsed.get( 0 ).links;
+		else
+			links = new LinkBuilder( parentCol >= 0, logger, this );
+		long nRecords = 0;
+		long nNames = 0;
+		long nSharedNames = 0;
+		int maxID = -1;
+		for ( final ShardParser shard : parsed )
+		{
+			nRecords += shard.nRecords;
+			maxID = Math.max( maxID, shard.maxID );
+			nNames += shard.names.getLookups();
+			nSharedNames += shard.names.getShared();
+			shard.spots.forEach( ( frame, frameSpots ) -> spots.merge( frame, frameSpots, ( a, b ) -> {
+				a.addAll( b );
+				return a;
+			} ) );
+			if ( trackIDPolicy == TrackIDPolicy.NAMESPACE )
+			{
+				for ( final List< Spot > track : shard.tracks.values() )
+					tracks.put( Integer.valueOf( tracks.size() ), track );
+			}
+			else
+			{
+				shard.tracks.forEach( ( trackID, track ) -> tracks.merge( trackID, track, ( a, b ) -> {
+					a.addAll( b );
+					return a;
+				} ) );
+			}
+			if ( null != links && links != shard.links )
+				links.addAll( shard.links );
+		}
+
+		// Keep the ID counter past the imported IDs, and give back the
+		// reserved IDs left unused.
+		if ( idCol >= 0 )
+			SpotIDBlock.reserveUpTo( maxID );
+		else
+			state.releaseIDs( parsed.get( parsed.size() - 1 ).nSpots );
+
+		if ( shards.size() == 1 )
+			logger.log( String.format( "Parsing done. Iterated over %d records.\n", nRecords ) );
+		else
+			logger.log( String.format( "Parsing done. Iterated over %d records in %d shards.\n", nRecords, shards.size() ) );
+		if ( !malformedRows.isEmpty() )
+			logger.log( malformedRows.toString() );
+		if ( nameCol >= 0 )
+			logger.log( String.format( "Shared %d of %d spot names with a previous spot of the same name.\n", nSharedNames, nNames ) );
+		if ( chainTracks )
+			logger.log( String.format( "Found %d tracks.\n", tracks.size() ) );
 
 		/*
-		 * Open and parse file.
+		 * Generate a Model object.
 		 */
 
-		Reader in;
-		CSVParser records;
+		if ( !acquireCpu() )
+			return interrupted();
+		final ImportEvents.Event collectionEvent = Type.COLLECTION_BUILD.begin();
+		ImportStats.Timer timer = stats.start( Phase.COLLECTION_BUILD );
+		final SpotCollection sc;
+		final Model model = new Model();
 		try
 		{
-			in = new FileReader( csvFilePath );
+			sc = SpotCollection.fromMap( spots );
+			sc.setVisible( true );
+			model.setPhysicalUnits( spaceUnit, timeUnit );
+			model.setLogger( logger );
+			model.setSpots( sc, false );
+			declareFeatures( model );
 		}
-		catch ( final FileNotFoundException e )
+		finally
 		{
-			e.printStackTrace();
-			errorMessage = e.getMessage();
-			return null;
+			releaseCpu();
+		}
+		final int nSpots = sc.getNSpots( true );
+		timer.stop( nSpots, 0 );
+		collectionEvent.commit( csvFilePath, nSpots, sc.keySet().size() );
+		logger.log( String.format( "Found %d spots.\n", nSpots ) );
+		logger.log( summarizeSpotsPerFrame( sc ) );
+
+		if ( importLinks )
+		{
+			logger.log( "Importing links." );
+			timer = stats.start( Phase.LINKING );
+			final ImportEvents.Event linkEvent = Type.LINK_BATCH.begin();
+			if ( !acquireCpu() )
+				return interrupted();
+			try
+			{
+				links.linkParents();
+			}
+			finally
+			{
+				releaseCpu();
+			}
+			// Reading the edge file is I/O, it does not hold a permit.
+			if ( null != edgeFilePath )
+			{
+				try
+				{
+					if ( !links.readEdges( edgeFilePath, edgeSourceCol, edgeTargetCol ) )
+					{
+						errorMessage = "Import canceled while reading links: " + getCancelReason();
+						logger.log( errorMessage + '\n' );
+						logger.setProgress( 0. );
+						return null;
+					}
+				}
+				catch ( final IOException e )
+				{
+					errorMessage = "Problem reading the edge file " + edgeFilePath + ":\n" + e.getMessage();
+					logger.error( errorMessage + '\n' );
+					logger.setProgress( 0. );
+					return null;
+				}
+			}
+			if ( !acquireCpu() )
+				return interrupted();
+			final int nTracks;
+			try
+			{
+				nTracks = links.link( model );
+			}
+			finally
+			{
+				releaseCpu();
+			}
+			timer.stop( nSpots, 0 );
+			linkEvent.commit( csvFilePath, nTracks, links.getNLinks() );
+			logger.log( String.format( " Done. Found %d tracks.\n", nTracks ) );
+			logger.log( links.summary() );
 		}
+		else if ( chainTracks )
+		{
+			logger.log( "Importing tracks." );
+			timer = stats.start( Phase.LINKING );
+			if ( !acquireCpu() )
+				return interrupted();
+			final boolean linked;
+			try
+			{
+				linked = linkTracks( model, tracks );
+			}
+			finally
+			{
+				releaseCpu();
+			}
+			timer.stop( nSpots, 0 );
+			if ( !linked )
+			{
+				errorMessage = "Import canceled while importing tracks: " + getCancelReason();
+				logger.log( errorMessage + '\n' );
+				logger.setProgress( 0. );
+				return null;
+			}
+			logger.log( " Done.\n" );
+
+		}
+		logger.setProgress( 0. );
+		return model;
+	}
 
+	/**
+	 * Stops a model build interrupted while waiting for a CPU permit.
+	 *
+	 * @return <code>null</code>.
+	 */
+	private Model interrupted()
+	{
+		errorMessage = "Import interrupted while building the model.";
+		logger.log( errorMessage + '\n' );
+		logger.setProgress( 0. );
+		return null;
+	}
+
+	/**
+	 * Parses the shards, in the calling thread if there is only one, and
+	 * concurrently otherwise. At most {@link #shardThreads} shards are parsed
+	 * at once, by workers that take the shards in turn. In a batch import,
+	 * the workers run on the shard pool of the CPU permits, shared by all the
+	 * imports of the batch. Otherwise they run on a pool of this import.
+	 *
+	 * @return the parsed shards, in the order of the shard list, or
+	 *         <code>null</code> if the import failed or was canceled. The
+	 *         error message is then set.
+	 */
+	private List< ShardParser > parseShards( final ParseState state )
+	{
+		final ImportStats.Section section = stats.startSection();
 		try
 		{
-			final CSVFormat csvFormat = CSVFormat.EXCEL
-					.builder()
-					.setHeader()
-					.setCommentMarker( '#' )
-					.get();
-			records = csvFormat.parse( in );
+			return parseShards( state, section );
 		}
-		catch ( final IOException e )
+		finally
 		{
-			e.printStackTrace();
-			errorMessage = "Problem accessing file " + csvFilePath + ":\n" + e.getMessage();
+			section.stop();
+		}
+	}
+
+	private List< ShardParser > parseShards( final ParseState state, final ImportStats.Section section )
+	{
+		final List< ShardParser > parsers = new ArrayList<>( shards.size() );
+		for ( int i = 0; i < shards.size(); i++ )
+			parsers.add( new ShardParser( i, shards.get( i ), state, section ) );
+		if ( parsers.size() == 1 )
+			return parsers.get( 0 ).parse() ? parsers : null;
+
+		final int nWorkers = Math.min( shardThreads, parsers.size() );
+		// Parsing is CPU work too: a batch parses the shards of all its
+		// imports on one pool, with as many threads as CPU permits.
+		final boolean shared = null != cpuPermits;
+		final ExecutorService executor = shared
+				? cpuPermits.shardExecutor()
+				: Executors.newFixedThreadPool( nWorkers, r -> {
+					final Thread thread = new Thread( r, "TrackMate CSV importer shard thread" );
+					thread.setDaemon( true );
+					return thread;
+				} );
+		final AtomicInteger next = new AtomicInteger();
+		final List< Future< Boolean > > futures = new ArrayList<>( nWorkers );
+		try
+		{
+			for ( int i = 0; i < nWorkers; i++ )
+				futures.add( executor.submit( () -> {
+					boolean ok = true;
+					int shard;
+					while ( ( shard = next.getAndIncrement() ) < parsers.size() )
+						ok &= parsers.get( shard ).parse();
+					return Boolean.valueOf( ok );
+				} ) );
+
+			// Wait for all the shards, so that none is still running.
+			boolean ok = true;
+			for ( final Future< Boolean > future : futures )
+				ok &= future.get().booleanValue();
+			return ok ? parsers : null;
+		}
+		catch ( final InterruptedException e )
+		{
+			Thread.currentThread().interrupt();
+			state.fail( "Import interrupted while parsing." );
 			return null;
 		}
+		catch ( final ExecutionException e )
+		{
+			e.getCause().printStackTrace();
+			state.fail( "Problem parsing the CSV shards:\n" + e.getCause() );
+			return null;
+		}
+		finally
+		{
+			if ( shared )
+				futures.forEach( future -> future.cancel( true ) );
+			else
+				executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * The state shared by the shards parsed concurrently.
+	 */
+	private final class ParseState
+	{
+
+		private final double frameInterval;
+
+		/**
+		 * The dialect of each shard.
+		 */
+		private final List< CSVDialect > dialects;
+
+		/**
+		 * Converts the timestamps to frames, or <code>null</code> if frames
+		 * are read from the frame column.
+		 */
+		private final FrameBinner binner;
+
+		private final MalformedRowReport malformedRows;
+
+		private final boolean chainTracks;
+
+		private final long totalBytes;
+
+		private final Logger progressLogger = new RateLimitedLogger( logger );
+
+		private final AtomicLong bytesRead = new AtomicLong();
+
+		private final AtomicLong records = new AtomicLong();
+
+		private List< String > headerNames;
+
+		/**
+		 * Set when a shard fails, to stop the others.
+		 */
+		private volatile boolean failed;
+
+		/**
+		 * The spot IDs reserved for all the shards, or <code>null</code> to
+		 * use the global counter.
+		 */
+		private SpotIDBlock idBlock;
+
+		/**
+		 * Position of the ID range of each shard in the block, and end of
+		 * the last range.
+		 */
+		private long[] idOffsets;
+
+		private ParseState( final double frameInterval, final List< CSVDialect > dialects, final FrameBinner binner, final MalformedRowReport malformedRows, final boolean chainTracks )
+		{
+			this.frameInterval = frameInterval;
+			this.dialects = dialects;
+			this.binner = binner;
+			this.malformedRows = malformedRows;
+			this.chainTracks = chainTracks;
+			long total = 0;
+			for ( final String shard : shards )
+				total += new File( shard ).length();
+			this.totalBytes = Math.max( 1, total );
+		}
+
+		/**
+		 * Checks that the header of a shard is the same as the header of the
+		 * shards opened before.
+		 */
+		private synchronized boolean checkHeader( final List< String > names )
+		{
+			if ( null == headerNames )
+			{
+				headerNames = names;
+				malformedRows.setColumnNames( names.toArray( new String[] {} ) );
+				return true;
+			}
+			return headerNames.equals( names );
+		}
+
+		/**
+		 * Stops the import with the specified error message, unless another
+		 * shard already did.
+		 *
+		 * @return <code>true</code> if this is the first failure.
+		 */
+		private synchronized boolean fail( final String message )
+		{
+			if ( failed )
+				return false;
+			failed = true;
+			errorMessage = message;
+			return true;
+		}
+
+		private boolean isStopped()
+		{
+			return failed || isCanceled();
+		}
+
+		/**
+		 * Reserves the spot IDs of all the shards, one range per shard sized
+		 * from its number of lines, so that the ID of a spot only depends on
+		 * the start of the block, the shard and the position of its row.
+		 * <p>
+		 * Counting the lines reads all the shards, so it is only done for
+		 * sharded imports. A single shard is parsed in row order, and its
+		 * IDs are reserved chunk by chunk by {@link #firstID(int, long, int)}.
+		 *
+		 * @return <code>false</code> if there are not enough IDs left or if a
+		 *         shard could not be read. The reason is logged.
+		 */
+		private boolean reserveIDs()
+		{
+			if ( shards.size() == 1 )
+				return true;
+
+			idOffsets = new long[ shards.size() + 1 ];
+			final ImportStats.Timer timer = stats.start( Phase.ID_RESERVATION );
+			try
+			{
+				for ( int i = 0; i < shards.size(); i++ )
+					idOffsets[ i + 1 ] = idOffsets[ i ] + SpotIDBlock.maxSpots( shards.get( i ) );
+			}
+			catch ( final IOException e )
+			{
+				timer.stop();
+				logger.log( "Could not count the rows to reserve their spot IDs: " + e.getMessage() + '\n' );
+				return false;
+			}
+			timer.stop( idOffsets[ shards.size() ], totalBytes );
+			idBlock = SpotIDBlock.reserve( idOffsets[ shards.size() ] );
+			if ( null == idBlock )
+				logger.log( "Too many rows to reserve their spot IDs.\n" );
+			return null != idBlock;
+		}
+
+		/**
+		 * Gives back the reserved IDs after the spots of the last shard.
+		 */
+		private void releaseIDs( final long nSpotsLastShard )
+		{
+			if ( null != idBlock )
+				idBlock.release( idOffsets[ shards.size() - 1 ] + nSpotsLastShard );
+		}
+
+		/**
+		 * Returns the ID of the first spot of a chunk, from its position in
+		 * its shard, or -1 if the IDs were not reserved. For a single shard,
+		 * the IDs of the chunk are reserved now.
+		 */
+		private int firstID( final int shard, final long nSpots, final int chunkSize )
+		{
+			if ( shards.size() == 1 )
+			{
+				final SpotIDBlock block = SpotIDBlock.reserve( chunkSize );
+				return ( null == block ) ? -1 : block.getFirst();
+			}
+			if ( null == idBlock || nSpots + chunkSize > idOffsets[ shard + 1 ] - idOffsets[ shard ] )
+				return -1;
+			return ( int ) ( idBlock.getFirst() + idOffsets[ shard ] + nSpots );
+		}
+	}
 
-		/*
-		 * Flags.
+	/**
+	 * Parses one shard of the CSV file into its own frame and track maps.
+	 */
+	private final class ShardParser
+	{
+
+		private final int index;
+
+		private final String path;
+
+		private final ParseState state;
+
+		/**
+		 * Measures the phases of the shards parsed concurrently.
 		 */
+		private final ImportStats.Section section;
 
-		final boolean importZ = zCol >= 0;
-		final boolean importQuality = qualityCol >= 0;
-		final boolean importRadius = radiusCol >= 0;
-		final boolean importName = nameCol >= 0;
-		final boolean importID = idCol >= 0;
-		final boolean importTrack = trackCol >= 0;
+		private final Map< Integer, Set< Spot > > spots = new HashMap<>();
 
-		/*
-		 * Get the number of lines to have a crude estimate of how many records
-		 * we have to parse.
+		private final Map< Integer, List< Spot > > tracks = new HashMap<>();
+
+		private final LinkBuilder links;
+
+		/**
+		 * Shares the repeated spot names of the shard.
 		 */
+		private final NamePool names = new NamePool();
 
-		final long nLines = countLineNumber( csvFilePath );
+		private long nRecords;
 
-		/*
-		 * Iterate over records.
+		/**
+		 * Number of spots created so far, which is the position of the next
+		 * one in the shard.
 		 */
+		private long nSpots;
 
-		logger.log( String.format( "Parsing records.\n" ) );
-		long nRecords = 0;
-		for ( final CSVRecord record : records )
+		/**
+		 * The largest spot ID imported from the ID column.
+		 */
+		private int maxID = -1;
+
+		private ShardParser( final int index, final String path, final ParseState state, final ImportStats.Section section )
+		{
+			this.index = index;
+			this.path = path;
+			this.state = state;
+			this.section = section;
+			this.links = importsLinks() ? new LinkBuilder( parentCol >= 0, logger, TrackMateImporter.this ) : null;
+		}
+
+		/**
+		 * @return <code>false</code> if the import failed or was canceled.
+		 */
+		private Boolean parse()
 		{
-			logger.setProgress( ( double ) nRecords / nLines );
-			nRecords++;
+			final File file = new File( path );
+			final long nBytes = file.length();
+			final CountingInputStream counter;
+			final Reader in;
+			final CSVParser records;
+			final ImportEvents.Event openEvent = Type.FILE_OPEN.begin();
+			final CSVDialect dialect = state.dialects.get( index );
+			try
+			{
+				counter = new CountingInputStream( new FileInputStream( file ) );
+				in = dialect.newReader( counter );
+			}
+			catch ( final IOException e )
+			{
+				e.printStackTrace();
+				state.fail( e.getMessage() );
+				return Boolean.FALSE;
+			}
+
 			try
 			{
-				final double x = Double.parseDouble( record.get( xCol ) );
-				final double y = Double.parseDouble( record.get( yCol ) );
-				final double z = ( importZ ) ? Double.parseDouble( record.get( zCol ) ) : 0.;
+				final CSVFormat csvFormat = dialect.getFormat()
+						.builder()
+						.setHeader()
+						.setCommentMarker( '#' )
+						.get();
+				records = csvFormat.parse( in );
+			}
+			catch ( final IOException e )
+			{
+				close( in );
+				e.printStackTrace();
+				state.fail( "Problem accessing file " + path + ":\n" + e.getMessage() );
+				return Boolean.FALSE;
+			}
+			openEvent.commit( path, nBytes );
 
-				// 1-based to 0-based.
-				final int t = Integer.parseInt( record.get( frameCol ) );
+			if ( !state.checkHeader( records.getHeaderNames() ) )
+			{
+				close( records );
+				if ( state.fail( "The header of the CSV file " + path + " differs from the header of the other shards." ) )
+					logger.error( errorMessage + '\n' );
+				return Boolean.FALSE;
+			}
 
-				double q = 1.;
-				if ( importQuality )
-					q = Double.parseDouble( record.get( qualityCol ) );
+			/*
+			 * Flags.
+			 */
 
-				double r = radius;
-				if ( importRadius )
-					r = Double.parseDouble( record.get( radiusCol ) );
+			final boolean importZ = zCol >= 0;
+			final boolean importQuality = qualityCol >= 0;
+			final boolean importRadius = radiusCol >= 0;
+			final boolean importName = nameCol >= 0;
+			final boolean importID = idCol >= 0;
+			final boolean importTrack = trackCol >= 0;
+			final boolean importParent = parentCol >= 0;
+			final FrameBinner binner = state.binner;
+			final int nFeatures = featureColumns.size();
+			final int[] featureCols = new int[ nFeatures ];
+			for ( int f = 0; f < nFeatures; f++ )
+				featureCols[ f ] = featureColumns.get( f ).getColumn();
 
-				String name = null;
-				if ( importName )
-					name = record.get( nameCol );
+			/*
+			 * Iterate over records.
+			 */
 
-				final Spot spot;
-				if ( importID )
+			final MalformedRowReport malformedRows = state.malformedRows;
+			final RowChunk chunk = new RowChunk( CHUNK_SIZE, nFeatures );
+			long bytesParsed = 0;
+			long bytesCounted = 0;
+			long recordsCounted = 0;
+			ImportStats.Timer timer = section.start( Phase.PARSE );
+			ImportEvents.Event chunkEvent = Type.PARSE_CHUNK.begin();
+			for ( final CSVRecord record : records )
+			{
+				if ( ++nRecords % CHUNK_SIZE == 0 )
 				{
-					// Hijack spot IDs: we force ID to match ID provided.
-					final int id = Integer.parseInt( record.get( idCol ) );
-					spot = new Spot( id );
-					spot.putFeature( Spot.POSITION_X, x );
-					spot.putFeature( Spot.POSITION_Y, y );
-					spot.putFeature( Spot.POSITION_Z, z );
-					spot.putFeature( Spot.QUALITY, q );
-					spot.putFeature( Spot.RADIUS, r );
-					spot.setName( name );
+					final long count = counter.getCount();
+					final long read = state.bytesRead.addAndGet( count - bytesCounted );
+					bytesCounted = count;
+					state.records.addAndGet( nRecords - recordsCounted );
+					recordsCounted = nRecords;
+					if ( state.isStopped() )
+					{
+						// Free the partial data right away.
+						spots.clear();
+						tracks.clear();
+						close( records );
+						if ( isCanceled() && state.fail( String.format( "Import canceled after %d records (%d of %d bytes, %.1f%%): %s",
+								state.records.get(), read, state.totalBytes, 100. * read / state.totalBytes, getCancelReason() ) ) )
+							logger.log( errorMessage + '\n' );
+						return Boolean.FALSE;
+					}
+					state.progressLogger.setProgress( ( double ) read / state.totalBytes );
 				}
-				else
+				// Index of the column being parsed, to report malformed values.
+				int col = -1;
+				try
 				{
-					spot = new Spot( x, y, z, r, q, name );
-				}
-				spot.putFeature( Spot.FRAME, ( double ) t );
-				spot.putFeature( Spot.POSITION_T, frameInterval * t );
+					final double x = dialect.parseDouble( record.get( col = xCol ) );
+					final double y = dialect.parseDouble( record.get( col = yCol ) );
+					final double z = ( importZ ) ? dialect.parseDouble( record.get( col = zCol ) ) : 0.;
 
-				if ( importTrack )
-				{
-					final int trackID = Integer.parseInt( record.get( trackCol ) );
-					List< Spot > track = tracks.get( Integer.valueOf( trackID ) );
-					if ( null == track )
+					final int t;
+					if ( null != binner )
+					{
+						final String value = record.get( col = timeCol );
+						final double time = dialect.parseDouble( value );
+						t = binner.frame( time );
+						if ( t < 0 )
+						{
+							malformedRows.add( record.getRecordNumber(), timeCol, Double.isFinite( time )
+									? MalformedRowReport.Cause.NO_FRAME : MalformedRowReport.Cause.NOT_FINITE, value );
+							if ( isBudgetExceeded( recordsCounted ) )
+								return budgetExceeded( records, recordsCounted );
+							continue;
+						}
+					}
+					else
+					{
+						// 1-based to 0-based.
+						t = Integer.parseInt( record.get( col = frameCol ) );
+					}
+
+					double q = 1.;
+					if ( importQuality )
+						q = dialect.parseDouble( record.get( col = qualityCol ) );
+
+					double r = radius;
+					if ( importRadius )
+						r = dialect.parseDouble( record.get( col = radiusCol ) );
+
+					String name = null;
+					if ( importName )
+						name = names.intern( record.get( col = nameCol ) );
+
+					final int trackID = ( importTrack ) ? Integer.parseInt( record.get( col = trackCol ) ) : -1;
+
+					// Spots without a finite position cannot be displayed.
+					final int nonFiniteCol = !Double.isFinite( x ) ? xCol : !Double.isFinite( y ) ? yCol : !Double.isFinite( z ) ? zCol : -1;
+					if ( nonFiniteCol >= 0 )
+					{
+						malformedRows.add( record.getRecordNumber(), nonFiniteCol, MalformedRowReport.Cause.NOT_FINITE, record.get( nonFiniteCol ) );
+						if ( isBudgetExceeded( recordsCounted ) )
+							return budgetExceeded( records, recordsCounted );
+						continue;
+					}
+
+					final int id = ( importID ) ? Integer.parseInt( record.get( col = idCol ) ) : -1;
+
+					// Extra features. Empty values are missing values.
+					for ( int f = 0; f < nFeatures; f++ )
 					{
-						track = new ArrayList<>();
-						tracks.put( Integer.valueOf( trackID ), track );
+						final String value = record.get( col = featureCols[ f ] );
+						chunk.setFeature( f, value.isEmpty() ? Double.NaN : dialect.parseDouble( value ) );
 					}
-					track.add( spot );
+					if ( importParent )
+						chunk.setParent( parseParentID( record.get( col = parentCol ) ) );
+					chunk.add( x, y, z, t, q, r, name, id, trackID );
+					if ( id > maxID )
+						maxID = id;
+				}
+				catch ( final NumberFormatException nfe )
+				{
+					malformedRows.add( record.getRecordNumber(), col, record.get( col ), isIntegerColumn( col ) );
+					if ( isBudgetExceeded( recordsCounted ) )
+						return budgetExceeded( records, recordsCounted );
+					continue;
+				}
+				catch ( final ArrayIndexOutOfBoundsException e )
+				{
+					malformedRows.add( record.getRecordNumber(), col, MalformedRowReport.Cause.MISSING_COLUMN, null );
+					if ( isBudgetExceeded( recordsCounted ) )
+						return budgetExceeded( records, recordsCounted );
+					continue;
 				}
 
-				Set< Spot > list = spots.get( Integer.valueOf( t ) );
-				if ( null == list )
+				if ( chunk.isFull() )
 				{
-					list = new HashSet<>();
-					spots.put( Integer.valueOf( t ), list );
+					timer.stop( chunk.size(), counter.getCount() - bytesParsed );
+					chunkEvent.commit( path, bytesParsed, counter.getCount(), chunk.size() );
+					bytesParsed = counter.getCount();
+					if ( !buildSpots( chunk, importID ) )
+					{
+						close( records );
+						return Boolean.FALSE;
+					}
+					timer = section.start( Phase.PARSE );
+					chunkEvent = Type.PARSE_CHUNK.begin();
 				}
-				list.add( spot );
+			}
+			close( records );
+			state.bytesRead.addAndGet( counter.getCount() - bytesCounted );
+			state.records.addAndGet( nRecords - recordsCounted );
+			timer.stop( chunk.size(), counter.getCount() - bytesParsed );
+			chunkEvent.commit( path, bytesParsed, counter.getCount(), chunk.size() );
+			return Boolean.valueOf( buildSpots( chunk, importID ) );
+		}
 
+		/**
+		 * Creates the spots of a chunk, with IDs following their position in
+		 * the shard if they were reserved, while holding a CPU permit.
+		 *
+		 * @return <code>false</code> if the thread was interrupted while
+		 *         waiting for the permit.
+		 */
+		private boolean buildSpots( final RowChunk chunk, final boolean importID )
+		{
+			if ( !acquireCpu() )
+			{
+				state.fail( "Import interrupted while parsing." );
+				return false;
+			}
+			try
+			{
+				final int firstID = importID ? -1 : state.firstID( index, nSpots, chunk.size() );
+				nSpots += chunk.size();
+				final ImportStats.Timer timer = section.start( Phase.SPOT_BUILD );
+				final int nRows = chunk.size();
+				TrackMateImporter.this.buildSpots( chunk, state.frameInterval, importID, firstID, state.chainTracks, spots, tracks, links );
+				timer.stop( nRows, 0 );
+				return true;
 			}
-			catch ( final NumberFormatException nfe )
+			finally
 			{
-				logger.log( " Could not parse line " + record.getRecordNumber() + ". Malformed number, skipping.\n" + nfe.getMessage() );
-				continue;
+				releaseCpu();
 			}
 		}
-		logger.log( String.format( "Parsing done. Iterated over %d records.\n", nRecords ) );
-		if ( importTrack )
-			logger.log( String.format( "Found %d tracks.\n", tracks.size() ) );
 
-		/*
-		 * Generate a Model object.
+		/**
+		 * Checks the error budget against all the records parsed so far, in
+		 * all the shards.
 		 */
+		private boolean isBudgetExceeded( final long recordsCounted )
+		{
+			return state.malformedRows.isBudgetExceeded( state.records.get() + nRecords - recordsCounted );
+		}
 
-		final SpotCollection sc = SpotCollection.fromMap( spots );
-		sc.setVisible( true );
-		logger.log( String.format( "Found %d spots.\n", sc.getNSpots( true ) ) );
-
-		final NavigableSet< Integer > frames = sc.keySet();
-		for ( final Integer frame : frames )
-			logger.log( String.format( "- frame %4d, n spots = %d\n", frame, sc.getNSpots( frame, true ) ) );
-
-		final Model model = new Model();
-		model.setPhysicalUnits( spaceUnit, timeUnit );
-		model.setLogger( logger );
-		model.setSpots( sc, false );
+		private Boolean budgetExceeded( final CSVParser records, final long recordsCounted )
+		{
+			spots.clear();
+			tracks.clear();
+			close( records );
+			final long nRecordsTotal = state.records.get() + nRecords - recordsCounted;
+			if ( state.fail( String.format( "Import aborted after %d records: too many malformed rows.\n", nRecordsTotal ) + state.malformedRows.toString() ) )
+				logger.error( errorMessage );
+			return Boolean.FALSE;
+		}
+	}
 
-		if ( importTrack )
+	/**
+	 * Creates the spots of a chunk of parsed rows, adds them to the spot and
+	 * track maps and to the link builder if there is one, and clears the
+	 * chunk.
+	 *
+	 * @param firstID
+	 *            the ID of the first spot of the chunk, the others following
+	 *            in row order, or -1 to take IDs from the ID column or from
+	 *            the global counter.
+	 */
+	private void buildSpots( final RowChunk chunk, final double frameInterval, final boolean importID, final int firstID, final boolean importTrack, final Map< Integer, Set< Spot > > spots, final Map< Integer, List< Spot > > tracks, final LinkBuilder links )
+	{
+		for ( int i = 0; i < chunk.size(); i++ )
 		{
-			logger.log( "Importing tracks." );
-			final Set< Integer > trackIDs = tracks.keySet();
-			for ( final Integer trackID : trackIDs )
-			{
-				final List< Spot > track = tracks.get( trackID );
-				track.sort( Spot.frameComparator );
-				final Iterator< Spot > it = track.iterator();
-				Spot source = it.next();
-				while ( it.hasNext() )
+			final Spot spot;
+			if ( importID || firstID >= 0 )
+			{
+				// Hijack spot IDs: we force ID to match ID provided, or the
+				// position of the row.
+				spot = new Spot( importID ? chunk.id( i ) : firstID + i );
+				spot.putFeature( Spot.POSITION_X, chunk.x( i ) );
+				spot.putFeature( Spot.POSITION_Y, chunk.y( i ) );
+				spot.putFeature( Spot.POSITION_Z, chunk.z( i ) );
+				spot.putFeature( Spot.QUALITY, chunk.quality( i ) );
+				spot.putFeature( Spot.RADIUS, chunk.radius( i ) );
+				spot.setName( chunk.name( i ) );
+			}
+			else
+			{
+				spot = new Spot( chunk.x( i ), chunk.y( i ), chunk.z( i ), chunk.radius( i ), chunk.quality( i ), chunk.name( i ) );
+			}
+			final int t = chunk.frame( i );
+			spot.putFeature( Spot.FRAME, ( double ) t );
+			spot.putFeature( Spot.POSITION_T, frameInterval * t );
+			for ( int f = 0; f < chunk.nFeatures(); f++ )
+				spot.putFeature( featureKeys[ f ], Double.valueOf( chunk.feature( f, i ) ) );
+
+			if ( importTrack )
+			{
+				final Integer trackID = Integer.valueOf( chunk.track( i ) );
+				List< Spot > track = tracks.get( trackID );
+				if ( null == track )
 				{
-					final Spot target = it.next();
-					final double weight = source.squareDistanceTo( target );
-					model.addEdge( source, target, weight );
-					source = target;
+					track = new ArrayList<>();
+					tracks.put( trackID, track );
 				}
+				track.add( spot );
 			}
-			logger.log( " Done.\n" );
+			if ( null != links )
+				links.addSpot( chunk.id( i ), spot, chunk.parent( i ) );
 
+			Set< Spot > list = spots.get( Integer.valueOf( t ) );
+			if ( null == list )
+			{
+				list = new HashSet<>();
+				spots.put( Integer.valueOf( t ), list );
+			}
+			list.add( spot );
 		}
-		logger.setProgress( 0. );
-		return model;
+		chunk.clear();
+	}
+
+	/**
+	 * Returns whether the specified column is parsed as integers.
+	 */
+	private boolean isIntegerColumn( final int col )
+	{
+		return col == frameCol || col == trackCol || col == idCol || col == parentCol;
 	}
 
-	private static final long countLineNumber( final String file )
+	/**
+	 * Returns whether tracks are built from a parent ID column or an edge
+	 * file.
+	 */
+	private boolean importsLinks()
 	{
-		long nLines = 0;
-		try (final LineNumberReader lineNumberReader = new LineNumberReader( new FileReader( file ) ))
+		return parentCol >= 0 || null != edgeFilePath;
+	}
+
+	/**
+	 * Parses a parent ID. Empty and negative values mean no parent.
+	 */
+	private static int parseParentID( final String value )
+	{
+		if ( value.isEmpty() )
+			return LinkBuilder.NO_PARENT;
+		final int parentID = Integer.parseInt( value );
+		return ( parentID < 0 ) ? LinkBuilder.NO_PARENT : parentID;
+	}
+
+	/**
+	 * Declares the extra features in the feature model, all at once.
+	 */
+	private void declareFeatures( final Model model )
+	{
+		if ( featureColumns.isEmpty() )
+			return;
+
+		final List< String > features = new ArrayList<>( featureColumns.size() );
+		final Map< String, String > names = new HashMap<>();
+		final Map< String, String > shortNames = new HashMap<>();
+		final Map< String, Dimension > dimensions = new HashMap<>();
+		final Map< String, Boolean > isInts = new HashMap<>();
+		for ( final FeatureColumn featureColumn : featureColumns )
 		{
-			lineNumberReader.skip( Long.MAX_VALUE );
-			nLines = lineNumberReader.getLineNumber();
+			final String feature = featureColumn.getFeature();
+			features.add( feature );
+			names.put( feature, featureColumn.getName() );
+			shortNames.put( feature, featureColumn.getShortName() );
+			dimensions.put( feature, featureColumn.getDimension() );
+			isInts.put( feature, Boolean.valueOf( featureColumn.isInt() ) );
 		}
-		catch ( final FileNotFoundException e )
+		model.getFeatureModel().declareSpotFeatures( features, names, shortNames, dimensions, isInts );
+		logger.log( String.format( "Imported %d extra spot features: %s.\n", features.size(), features ) );
+	}
+
+	/**
+	 * Links the spots of each track in the model, in frame order.
+	 *
+	 * @return <code>false</code> if the import was canceled while linking.
+	 */
+	boolean linkTracks( final Model model, final Map< Integer, List< Spot > > tracks )
+	{
+		ImportEvents.Event event = Type.LINK_BATCH.begin();
+		int nTracks = 0;
+		long nEdges = 0;
+		for ( final List< Spot > track : tracks.values() )
+		{
+			if ( isCanceled() )
+				return false;
+
+			if ( nTracks == LINK_BATCH_SIZE )
+			{
+				event.commit( csvFilePath, nTracks, nEdges );
+				event = Type.LINK_BATCH.begin();
+				nTracks = 0;
+				nEdges = 0;
+			}
+			nTracks++;
+			nEdges += track.size() - 1;
+
+			track.sort( Spot.frameComparator );
+			final Iterator< Spot > it = track.iterator();
+			Spot source = it.next();
+			while ( it.hasNext() )
+			{
+				final Spot target = it.next();
+				final double weight = source.squareDistanceTo( target );
+				model.addEdge( source, target, weight );
+				source = target;
+			}
+		}
+		event.commit( csvFilePath, nTracks, nEdges );
+		return true;
+	}
+
+	/**
+	 * Returns a short summary of the number of spots per frame, with a coarse
+	 * histogram, instead of one line per frame.
+	 */
+	private static String summarizeSpotsPerFrame( final SpotCollection sc )
+	{
+		final NavigableSet< Integer > frames = sc.keySet();
+		if ( frames.isEmpty() )
+			return "";
+
+		final int[] counts = new int[ frames.size() ];
+		int i = 0;
+		int min = Integer.MAX_VALUE;
+		int max = 0;
+		long sum = 0;
+		for ( final Integer frame : frames )
+		{
+			final int n = sc.getNSpots( frame, true );
+			counts[ i++ ] = n;
+			min = Math.min( min, n );
+			max = Math.max( max, n );
+			sum += n;
+		}
+
+		final StringBuilder str = new StringBuilder();
+		str.append( String.format( "Spots in %d frames, from frame %d to %d: min = %d, mean = %.1f, max = %d spots per frame.\n",
+				counts.length, frames.first(), frames.last(), min, ( double ) sum / counts.length, max ) );
+		if ( max == min )
+			return str.toString();
+
+		final int nBins = Math.min( 8, max - min + 1 );
+		final int[] histogram = new int[ nBins ];
+		for ( final int n : counts )
+			histogram[ ( int ) ( ( long ) ( n - min ) * nBins / ( max - min + 1 ) ) ]++;
+		for ( int bin = 0; bin < nBins; bin++ )
+		{
+			if ( histogram[ bin ] == 0 )
+				continue;
+			final long lo = min + ( ( long ) bin * ( max - min + 1 ) + nBins - 1 ) / nBins;
+			final long hi = min + ( ( long ) ( bin + 1 ) * ( max - min + 1 ) + nBins - 1 ) / nBins - 1;
+			str.append( String.format( " - %d to %d spots: %d frames\n", lo, hi, histogram[ bin ] ) );
+		}
+		return str.toString();
+	}
+
+	private void close( final Closeable closeable )
+	{
+		try
 		{
-			System.out.println( "FileNotFoundException Occurred" + e.getMessage() );
+			closeable.close();
 		}
 		catch ( final IOException e )
 		{
-			System.out.println( "IOException Occurred" + e.getMessage() );
+			logger.error( "Problem closing the CSV file:\n" + e.getMessage() + '\n' );
 		}
-		return nLines;
 	}
 
 	private static Settings createSettingsFromImageFile( final String imageFile, final StringBuilder errorHolder, final Logger logger )
@@ -473,42 +1719,21 @@ public class TrackMateImporter
 		final Settings settings = new Settings();
 		try
 		{
-			DebugTools.setRootLevel( "ERROR" );
-			final ImporterOptions options = new ImporterOptions();
-			options.setId( imageFile );
-			options.setQuiet( true );
-			options.setWindowless( true );
-			final ImportProcess process = new ImportProcess( options );
-			if ( !process.execute() )
+			final ImageMetadata metadata = ImageMetadata.read( imageFile, series );
+			if ( null == metadata )
 			{
 				errorHolder.append( "Error while preparing the import of metadata." );
 				return null;
 			}
 
-			final IMetadata metadata = process.getOMEMetadata();
-			final Length pixelsPhysicalSizeX = metadata.getPixelsPhysicalSizeX( series );
-			final Length pixelsPhysicalSizeY = metadata.getPixelsPhysicalSizeY( series );
-			final Length pixelsPhysicalSizeZ = metadata.getPixelsPhysicalSizeZ( series );
-			final Time timeIncrement = metadata.getPixelsTimeIncrement( series );
-			final PositiveInteger sizeX = metadata.getPixelsSizeX( series );
-			final PositiveInteger sizeY = metadata.getPixelsSizeY( series );
-			final PositiveInteger sizeZ = metadata.getPixelsSizeZ( series );
-			final PositiveInteger sizeT = metadata.getPixelsSizeT( series );
-
-			settings.width = sizeX.getValue().intValue();
-			settings.height = sizeY.getValue().intValue();
-			settings.nslices = sizeZ.getValue().intValue();
-			settings.nframes = sizeT.getValue().intValue();
-			settings.dx = Optional.ofNullable( pixelsPhysicalSizeX )
-					.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
-					.value().doubleValue();
-			settings.dy = Optional.ofNullable( pixelsPhysicalSizeY )
-					.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
-					.value().doubleValue();
-			settings.dz = Optional.ofNullable( pixelsPhysicalSizeZ )
-					.orElse( new Length( Double.valueOf( 1. ), UNITS.PIXEL ) )
-					.value().doubleValue();
-			settings.dt = ( null == timeIncrement) ? 1. : timeIncrement.value().doubleValue();
+			settings.width = metadata.width;
+			settings.height = metadata.height;
+			settings.nslices = metadata.nSlices;
+			settings.nframes = metadata.nFrames;
+			settings.dx = metadata.dx;
+			settings.dy = metadata.dy;
+			settings.dz = metadata.dz;
+			settings.dt = metadata.dt;
 			settings.zstart = 0;
 			settings.zend = settings.nslices - 1;
 			final File file = new File( imageFile );
@@ -532,24 +1757,13 @@ public class TrackMateImporter
 	{
 		try
 		{
-			DebugTools.setRootLevel( "ERROR" );
-			final ImporterOptions options = new ImporterOptions();
-			options.setId( imageFilePath );
-			options.setQuiet( true );
-			options.setWindowless( true );
-			final ImportProcess process = new ImportProcess( options );
-			if ( !process.execute() )
+			final ImageMetadata metadata = ImageMetadata.read( imageFilePath, series );
+			if ( null == metadata )
 			{
 				errorHolder.append( "Error while preparing the import of metadata." );
 				return null;
 			}
-
-			final IMetadata metadata = process.getOMEMetadata();
-			final Length pixelsPhysicalSizeX = metadata.getPixelsPhysicalSizeX( series );
-			final String spaceUnit = ( null == pixelsPhysicalSizeX ) ? "pixels" : pixelsPhysicalSizeX.unit().getSymbol();
-			final Time pixelsTimeIncrement = metadata.getPixelsTimeIncrement( series );
-			final String timeUnit = ( null == pixelsTimeIncrement ) ? "frame" : pixelsTimeIncrement.unit().getSymbol();
-			return new String[] { spaceUnit, timeUnit };
+			return new String[] { metadata.spaceUnit, metadata.timeUnit };
 		}
 		catch ( final IOException | FormatException e )
 		{
@@ -570,6 +1784,90 @@ public class TrackMateImporter
 		return errorMessage;
 	}
 
+	/**
+	 * Returns the per-phase metrics of the last import. They are reset by
+	 * {@link #saveTo(File)} and {@link #getModel(double, String, String)}.
+	 */
+	public ImportStats getStats()
+	{
+		return stats;
+	}
+
+	/**
+	 * Returns the report on the rows that could not be parsed in the last
+	 * import, or <code>null</code> if no import was run.
+	 */
+	public MalformedRowReport getMalformedRows()
+	{
+		return malformedRows;
+	}
+
+	@Override
+	public boolean isCanceled()
+	{
+		return isCanceled;
+	}
+
+	/**
+	 * Cancels the import running. Each import starts not canceled, so that a
+	 * canceled importer can be used again.
+	 */
+	@Override
+	public void cancel( final String reason )
+	{
+		cancelReason = reason;
+		isCanceled = true;
+	}
+
+	/**
+	 * Clears the cancellation of the previous import. Called with the lock
+	 * held, at the start of each import.
+	 */
+	private void resetCancel()
+	{
+		isCanceled = false;
+		cancelReason = null;
+	}
+
+	@Override
+	public String getCancelReason()
+	{
+		return cancelReason;
+	}
+
+	/**
+	 * Returns the paths of the files matching a glob pattern on their name,
+	 * sorted by name.
+	 * <p>
+	 * The folder is split from the name pattern on the last separator before
+	 * making a path of it, because <code>*</code> and <code>?</code> are not
+	 * allowed in paths on Windows.
+	 *
+	 * @throws IllegalArgumentException
+	 *             if no file matches.
+	 */
+	static List< String > listFiles( final String glob )
+	{
+		final int sep = Math.max( glob.lastIndexOf( '/' ), glob.lastIndexOf( '\\' ) );
+		final Path folder = ( sep < 0 ) ? Paths.get( "." ) : Paths.get( glob.substring( 0, sep + 1 ) );
+		final String name = glob.substring( sep + 1 );
+		final PathMatcher matcher = FileSystems.getDefault().getPathMatcher( "glob:" + name );
+		final List< String > paths = new ArrayList<>();
+		try (final DirectoryStream< Path > stream = Files.newDirectoryStream( folder, p -> Files.isRegularFile( p ) && matcher.matches( p.getFileName() ) ))
+		{
+			for ( final Path path : stream )
+				paths.add( path.toString() );
+		}
+		catch ( final IOException e )
+		{
+			throw new IllegalArgumentException( "Cannot list the CSV files matching " + glob + ": " + e.getMessage() );
+		}
+		if ( paths.isEmpty() )
+			throw new IllegalArgumentException( "No CSV file matches " + glob + "." );
+		Collections.sort( paths );
+		return paths;
+	}
+
 	public static Builder builder()
 	{
 		return new Builder();
@@ -609,6 +1907,38 @@ public class TrackMateImporter
 			private Logger logger = Logger.DEFAULT_LOGGER;
 
 			private boolean declareAllFeatures = true;
+
+			private long maxMalformedRows = -1;
+
+			private double maxMalformedFraction = -1.;
+
+			private final List< FeatureColumn > featureColumns = new ArrayList<>();
+
+			private CSVDialect dialect;
+
+			private int parentCol = -1;
+
+			private String edgeFilePath;
+
+			private int edgeSourceCol = -1;
+
+			private int edgeTargetCol = -1;
+
+			private final List< String > csvFilePaths = new ArrayList<>();
+
+			private String csvFileGlob;
+
+			private TrackIDPolicy trackIDPolicy = TrackIDPolicy.STITCH;
+
+			private int shardThreads = Runtime.getRuntime().availableProcessors();
+
+			private int timeCol = -1;
+
+			private FrameBinning frameBinning = FrameBinning.INTERVAL;
+
+			private double timeInterval = Double.NaN;
+
+			private double timeScale = 1.;
 		}
 
 		private final Values values;
@@ -666,6 +1996,50 @@ public class TrackMateImporter
 			return this;
 		}
 
+		/**
+		 * Sets a column of timestamps to read the spot frames from, instead
+		 * of a frame column. The timestamps are converted to frames as set
+		 * by {@link #frameBinning(FrameBinning)}.
+		 */
+		public Builder timeCol( final int timeCol )
+		{
+			values.timeCol = timeCol;
+			return this;
+		}
+
+		/**
+		 * Sets how the timestamps of the time column are converted to frames.
+		 * The default is {@link FrameBinning#INTERVAL}.
+		 */
+		public Builder frameBinning( final FrameBinning frameBinning )
+		{
+			values.frameBinning = frameBinning;
+			return this;
+		}
+
+		/**
+		 * Sets the frame interval used to bin the timestamps of the time
+		 * column, in the time unit of the model. It also replaces the frame
+		 * interval of the image in the saved file. By default the frame
+		 * interval of the image is used.
+		 */
+		public Builder timeInterval( final double timeInterval )
+		{
+			values.timeInterval = timeInterval;
+			return this;
+		}
+
+		/**
+		 * Sets the factor that converts the timestamps of the time column to
+		 * the time unit of the model, such as 0.001 for timestamps in
+		 * milliseconds and an image calibrated in seconds. The default is 1.
+		 */
+		public Builder timeScale( final double timeScale )
+		{
+			values.timeScale = timeScale;
+			return this;
+		}
+
 		public Builder idCol( final int idCol )
 		{
 			values.idCol = idCol;
@@ -708,10 +2082,179 @@ public class TrackMateImporter
 			return this;
 		}
 
+		/**
+		 * Sets the maximal number of malformed rows tolerated. The import is
+		 * aborted as soon as this number is exceeded. Negative values, the
+		 * default, mean no limit.
+		 */
+		public Builder maxMalformedRows( final long maxMalformedRows )
+		{
+			values.maxMalformedRows = maxMalformedRows;
+			return this;
+		}
+
+		/**
+		 * Sets the maximal fraction of malformed rows tolerated, from 0 to 1.
+		 * The import is aborted as soon as this fraction is exceeded, once
+		 * enough rows have been parsed. Negative values, the default, mean no
+		 * limit.
+		 */
+		public Builder maxMalformedFraction( final double maxMalformedFraction )
+		{
+			values.maxMalformedFraction = maxMalformedFraction;
+			return this;
+		}
+
+		/**
+		 * Adds an extra numeric column to import as a spot feature. Its
+		 * values are parsed with the other columns, and empty values are
+		 * imported as NaN.
+		 */
+		public Builder featureColumn( final FeatureColumn featureColumn )
+		{
+			values.featureColumns.add( featureColumn );
+			return this;
+		}
+
+		/**
+		 * Adds extra numeric columns to import as spot features.
+		 *
+		 * @see #featureColumn(FeatureColumn)
+		 */
+		public Builder featureColumns( final Collection< FeatureColumn > featureColumns )
+		{
+			values.featureColumns.addAll( featureColumns );
+			return this;
+		}
+
+		/**
+		 * Sets the column of the ID of the parent of each spot. Spots are
+		 * then linked to their parent, which allows importing lineages with
+		 * divisions and merges, instead of chaining the spots of each track
+		 * in frame order. Empty and negative values mean no parent. Needs the
+		 * spot ID column.
+		 */
+		public Builder parentCol( final int parentCol )
+		{
+			values.parentCol = parentCol;
+			return this;
+		}
+
+		/**
+		 * Sets a CSV file of links between spots, with a header line and one
+		 * link per row, given by the ID of its source and target spots. Spots
+		 * are then linked as specified in this file, which allows importing
+		 * lineages with divisions and merges, instead of chaining the spots
+		 * of each track in frame order. Needs the spot ID column.
+		 *
+		 * @param edgeFilePath
+		 *            the path to the edge file.
+		 * @param sourceCol
+		 *            the column of the source spot IDs in the edge file.
+		 * @param targetCol
+		 *            the column of the target spot IDs in the edge file.
+		 */
+		public Builder edgeFile( final String edgeFilePath, final int sourceCol, final int targetCol )
+		{
+			values.edgeFilePath = edgeFilePath;
+			values.edgeSourceCol = sourceCol;
+			values.edgeTargetCol = targetCol;
+			return this;
+		}
+
+		/**
+		 * Sets several CSV files with the same header to import into one
+		 * model, such as a large file split in shards. The shards are parsed
+		 * concurrently and merged. Replaces the {@link #csvFilePath(String)}.
+		 * The column scan only looks at the first shard, and the memory
+		 * preflight samples it and scales its estimates to all the shards.
+		 *
+		 * @see #trackIDPolicy(TrackIDPolicy)
+		 */
+		public Builder csvFilePaths( final List< String > csvFilePaths )
+		{
+			values.csvFilePaths.clear();
+			values.csvFilePaths.addAll( csvFilePaths );
+			return this;
+		}
+
+		/**
+		 * Sets the CSV files to import into one model with a glob pattern on
+		 * their name, such as <code>/data/tracks/part-*.csv</code>. The
+		 * pattern only applies to the file name, not to the folders. The
+		 * files are imported in name order.
+		 *
+		 * @see #csvFilePaths(List)
+		 */
+		public Builder csvFileGlob( final String csvFileGlob )
+		{
+			values.csvFileGlob = csvFileGlob;
+			return this;
+		}
+
+		/**
+		 * Sets the dialect of the CSV files: delimiter, quoting, decimal
+		 * separator and charset. By default it is sniffed from the start of
+		 * each file.
+		 */
+		public Builder dialect( final CSVDialect dialect )
+		{
+			values.dialect = dialect;
+			return this;
+		}
+
+		/**
+		 * Sets how the track IDs of several CSV files are merged. The default
+		 * is {@link TrackIDPolicy#STITCH}.
+		 */
+		public Builder trackIDPolicy( final TrackIDPolicy trackIDPolicy )
+		{
+			values.trackIDPolicy = trackIDPolicy;
+			return this;
+		}
+
+		/**
+		 * Sets the maximal number of CSV files parsed at once. The default is
+		 * the number of processors. In a batch import, the files are parsed
+		 * on a pool shared by all the imports, with as many threads as CPU
+		 * permits.
+		 */
+		public Builder shardThreads( final int shardThreads )
+		{
+			values.shardThreads = shardThreads;
+			return this;
+		}
+
+		/**
+		 * Creates the importer.
+		 *
+		 * @throws IllegalArgumentException
+		 *             if two extra feature columns have the same feature key,
+		 *             if one has the key of a spot feature the importer
+		 *             already sets, if links are imported without the spot
+		 *             ID column, if both the frame and the time columns are
+		 *             set, or if the glob pattern of the CSV files matches no
+		 *             file.
+		 */
 		public TrackMateImporter create()
 		{
+			final List< String > shards = resolveShards();
+
+			if ( ( values.parentCol >= 0 || null != values.edgeFilePath ) && values.idCol < 0 )
+				throw new IllegalArgumentException( "Importing links between spots needs the spot ID column." );
+			if ( values.frameCol >= 0 && values.timeCol >= 0 )
+				throw new IllegalArgumentException( "Set either the frame column or the time column, not both." );
+			if ( null != values.edgeFilePath && ( values.edgeSourceCol < 0 || values.edgeTargetCol < 0 ) )
+				throw new IllegalArgumentException( "The source and target columns of the edge file are not set." );
+
+			final Set< String > features = new HashSet<>( Spot.FEATURES );
+			for ( final FeatureColumn featureColumn : values.featureColumns )
+				if ( !features.add( featureColumn.getFeature() ) )
+					throw new IllegalArgumentException( "Feature " + featureColumn.getFeature()
+							+ " of column " + featureColumn.getColumn() + " is already imported." );
+
 			return new TrackMateImporter(
-					values.csvFilePath,
+					shards.get( 0 ),
 					values.imp,
 					values.imageFilePath,
 					values.declareAllFeatures,
@@ -725,8 +2268,32 @@ public class TrackMateImporter
 					values.nameCol,
 					values.trackCol,
 					values.radius,
+					values.maxMalformedRows,
+					values.maxMalformedFraction,
+					values.featureColumns,
+					values.parentCol,
+					values.edgeFilePath,
+					values.edgeSourceCol,
+					values.edgeTargetCol,
+					shards,
+					values.trackIDPolicy,
+					Math.max( 1, values.shardThreads ),
+					values.dialect,
+					values.timeCol,
+					values.frameBinning,
+					values.timeInterval,
+					values.timeScale,
 					values.logger );
 		}
 
+		private List< String > resolveShards()
+		{
+			if ( null != values.csvFileGlob )
+				return listFiles( values.csvFileGlob );
+			if ( !values.csvFilePaths.isEmpty() )
+				return new ArrayList<>( values.csvFilePaths );
+			return Collections.singletonList( values.csvFilePath );
+		}
+
 	}
 }
@@ -35,23 +35,35 @@ import static fiji.plugin.trackmate.gui.Icons.TRACKMATE_ICON;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
 
 import javax.swing.JFrame;
+import javax.swing.SwingUtilities;
 
+import org.scijava.Cancelable;
+import org.jgrapht.graph.DefaultWeightedEdge;
 import org.scijava.util.VersionUtils;
 
+import fiji.plugin.trackmate.FeatureModel;
 import fiji.plugin.trackmate.Logger;
 import fiji.plugin.trackmate.Model;
 import fiji.plugin.trackmate.SelectionModel;
 import fiji.plugin.trackmate.Settings;
+import fiji.plugin.trackmate.Spot;
 import fiji.plugin.trackmate.TrackMate;
+import fiji.plugin.trackmate.TrackModel;
 import fiji.plugin.trackmate.gui.GuiUtils;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettings;
 import fiji.plugin.trackmate.gui.displaysettings.DisplaySettingsIO;
 import fiji.plugin.trackmate.gui.wizard.TrackMateWizardSequence;
+import fiji.plugin.trackmate.gui.wizard.WizardPanelDescriptor;
 import fiji.plugin.trackmate.gui.wizard.descriptors.ConfigureViewsDescriptor;
+import fiji.plugin.trackmate.gui.wizard.descriptors.SpotFilterDescriptor;
+import fiji.plugin.trackmate.gui.wizard.descriptors.TrackFilterDescriptor;
+import fiji.plugin.trackmate.importer.csv.ImportStats.Phase;
+import fiji.plugin.trackmate.visualization.TrackMateModelView;
 import fiji.plugin.trackmate.visualization.hyperstack.HyperStackDisplayer;
 import ij.ImagePlus;
 import net.imglib2.algorithm.Algorithm;
@@ -59,10 +71,19 @@ import net.imglib2.algorithm.Algorithm;
 /**
  * Import a CSV file to a TrackMate instance and shows it in the TrackMate GUI
  * wizard.
+ * <p>
+ * If the feature computation is deferred, the GUI and the overlay are shown
+ * as soon as the model is built, and the features are computed afterwards in
+ * the calling thread, one analyzer group after the other. They are computed
+ * on a detached copy of the model, so that the GUI never reads a model being
+ * written. After each group, the new feature values are copied to the model
+ * shown on the event dispatch thread, and the views and filter panels are
+ * refreshed. The computation can be stopped with {@link #cancel(String)}; as
+ * the GUI is already shown, a failure or a cancellation is then only logged.
  *
  * @author Jean-Yves Tinevez
  */
-public class TrackMateToGUIImporter implements Algorithm
+public class TrackMateToGUIImporter implements Algorithm, Cancelable
 {
 
 	private static final DateFormat DATE_FORMAT = new SimpleDateFormat( "yyyy-MM-dd --- HH:mm:ss" );
@@ -81,12 +102,28 @@ public class TrackMateToGUIImporter implements Algorithm
 
 	private final double radius;
 
+	private final boolean deferFeatureComputation;
+
+	private volatile TrackMateImporter importer;
+
+	private volatile TrackMate trackmate;
+
+	private volatile boolean isCanceled;
+
+	private volatile String cancelReason;
+
 	public TrackMateToGUIImporter( final String filePath, final Map< String, Integer > fieldMap, final double radius, final boolean computeAllFeatures, final ImagePlus imp, final Logger logger )
+	{
+		this( filePath, fieldMap, radius, computeAllFeatures, false, imp, logger );
+	}
+
+	public TrackMateToGUIImporter( final String filePath, final Map< String, Integer > fieldMap, final double radius, final boolean computeAllFeatures, final boolean deferFeatureComputation, final ImagePlus imp, final Logger logger )
 	{
 		this.filePath = filePath;
 		this.fieldMap = fieldMap;
 		this.radius = radius;
 		this.computeAllFeatures = computeAllFeatures;
+		this.deferFeatureComputation = deferFeatureComputation;
 		this.imp = imp;
 		this.logger = logger;
 	}
@@ -100,6 +137,9 @@ public class TrackMateToGUIImporter implements Algorithm
 	@Override
 	public boolean process()
 	{
+		isCanceled = false;
+		cancelReason = null;
+		errorMessage = null;
 		final Integer noCol = Integer.valueOf( -1 );
 		final int xCol = Optional.ofNullable( fieldMap.get( KEY_X_COLUMN_NAME ) ).orElse( noCol ).intValue();
 		final int yCol = Optional.ofNullable( fieldMap.get( KEY_Y_COLUMN_NAME ) ).orElse( noCol ).intValue();
@@ -127,6 +167,7 @@ public class TrackMateToGUIImporter implements Algorithm
 				.radius( radius )
 				.logger( logger )
 				.create();
+		this.importer = importer;
 
 		final String log = "Imported into TrackMate from CSV file "
 				+ filePath + '\n'
@@ -144,6 +185,12 @@ public class TrackMateToGUIImporter implements Algorithm
 			this.errorMessage = importer.getErrorMessage();
 			return false;
 		}
+		// Canceled before the importer started.
+		if ( isCanceled() )
+		{
+			this.errorMessage = "Import canceled: " + getCancelReason();
+			return false;
+		}
 
 		final Settings settings = importer.getSettings();
 		if ( null == settings )
@@ -156,12 +203,21 @@ public class TrackMateToGUIImporter implements Algorithm
 		 * Generate a TrackMate object and create TrackMate GUI from it.
 		 */
 
-		logger.log( "Computing features.\n" );
 		final TrackMate trackmate = new TrackMate( model, settings );
-		trackmate.computeSpotFeatures( true );
-		trackmate.computeEdgeFeatures( true );
-		trackmate.computeTrackFeatures( true );
-		logger.log( "Done.\n" );
+		final DeferredFeatures deferred;
+		if ( deferFeatureComputation )
+		{
+			// Copied before the GUI can edit the model.
+			deferred = new DeferredFeatures( model, settings );
+			this.trackmate = deferred.trackmate;
+		}
+		else
+		{
+			deferred = null;
+			this.trackmate = trackmate;
+			if ( !computeFeatures( trackmate, importer.getStats(), null ) )
+				return false;
+		}
 
 		logger.log( "Launching GUI.\n" );
 		final SelectionModel selectionModel = new SelectionModel( model );
@@ -180,14 +236,267 @@ public class TrackMateToGUIImporter implements Algorithm
 		view.render();
 
 		model.getLogger().log( log );
+
+		if ( null != deferred )
+		{
+			deferred.setViews( sequence, view );
+			if ( !computeFeatures( deferred.trackmate, importer.getStats(), deferred ) )
+			{
+				// The import itself succeeded and is shown.
+				logger.log( "Features not computed: " + errorMessage + '\n' );
+				errorMessage = null;
+			}
+		}
+
 		logger.log( "Import complete.\n" );
+		logger.log( importer.getStats().toString() );
 
 		return true;
 	}
 
+	/**
+	 * Computes the spot, edge and track features, in this order. If deferred
+	 * features are specified, each group of features is published to the
+	 * model shown once computed. The time spent is added to the specified
+	 * stats.
+	 */
+	private boolean computeFeatures( final TrackMate trackmate, final ImportStats stats, final DeferredFeatures deferred )
+	{
+		logger.log( "Computing features.\n" );
+		final ImportStats.Timer timer = stats.start( Phase.FEATURES );
+		final boolean ok = computeFeatures( trackmate, deferred );
+		timer.stop( trackmate.getModel().getSpots().getNSpots( false ), 0 );
+		return ok;
+	}
+
+	private boolean computeFeatures( final TrackMate trackmate, final DeferredFeatures deferred )
+	{
+		logger.setStatus( "Computing spot features.\n" );
+		if ( isCanceled() || !trackmate.computeSpotFeatures( true ) )
+			return featureComputationFailed( trackmate );
+		logger.setProgress( 1. / 3. );
+		if ( null != deferred )
+			deferred.publishSpotFeatures();
+
+		logger.setStatus( "Computing edge features.\n" );
+		if ( isCanceled() || !trackmate.computeEdgeFeatures( true ) )
+			return featureComputationFailed( trackmate );
+		logger.setProgress( 2. / 3. );
+		if ( null != deferred )
+			deferred.publishEdgeFeatures();
+
+		logger.setStatus( "Computing track features.\n" );
+		if ( isCanceled() || !trackmate.computeTrackFeatures( true ) )
+			return featureComputationFailed( trackmate );
+		if ( null != deferred )
+			deferred.publishTrackFeatures();
+
+		logger.setProgress( 0. );
+		logger.log( "Done.\n" );
+		return true;
+	}
+
+	private boolean featureComputationFailed( final TrackMate trackmate )
+	{
+		logger.setProgress( 0. );
+		errorMessage = isCanceled()
+				? "Feature computation canceled: " + getCancelReason()
+				: trackmate.getErrorMessage();
+		return false;
+	}
+
+
+	@Override
+	public boolean isCanceled()
+	{
+		return isCanceled;
+	}
+
+	@Override
+	public void cancel( final String reason )
+	{
+		isCanceled = true;
+		cancelReason = reason;
+		final TrackMateImporter current = importer;
+		if ( null != current )
+			current.cancel( reason );
+		final TrackMate tm = trackmate;
+		if ( null != tm )
+			tm.cancel( reason );
+	}
+
+	@Override
+	public String getCancelReason()
+	{
+		return cancelReason;
+	}
+
 	@Override
 	public String getErrorMessage()
 	{
 		return errorMessage;
 	}
+
+	/**
+	 * Returns the per-phase metrics of the import, feature computation
+	 * included, or <code>null</code> if the import was not started.
+	 */
+	public ImportStats getStats()
+	{
+		final TrackMateImporter current = importer;
+		return ( null == current ) ? null : current.getStats();
+	}
+
+	/**
+	 * Features computed on a detached copy of the model shown in the GUI,
+	 * and copied to it on the event dispatch thread.
+	 * <p>
+	 * The copy is only written by the thread computing the features, and a
+	 * group of features is not written anymore once computed, so it can be
+	 * read on the event dispatch thread while the next group is computed.
+	 * The model shown is only written on the event dispatch thread. Spots,
+	 * edges and tracks edited in the GUI meanwhile are skipped.
+	 */
+	private static final class DeferredFeatures
+	{
+
+		private final Model model;
+
+		private final Model copy;
+
+		private final TrackMate trackmate;
+
+		/**
+		 * Maps the spots of the model shown to their copy.
+		 */
+		private final Map< Spot, Spot > copies = new HashMap<>();
+
+		private TrackMateWizardSequence sequence;
+
+		private TrackMateModelView view;
+
+		private DeferredFeatures( final Model model, final Settings settings )
+		{
+			this.model = model;
+			this.copy = new Model();
+			copy.setPhysicalUnits( model.getSpaceUnits(), model.getTimeUnits() );
+			copy.beginUpdate();
+			try
+			{
+				for ( final Spot spot : model.getSpots().iterable( false ) )
+				{
+					final Spot spotCopy = new Spot( spot.ID() );
+					for ( final Map.Entry< String, Double > feature : spot.getFeatures().entrySet() )
+						spotCopy.putFeature( feature.getKey(), feature.getValue() );
+					spotCopy.setName( spot.getName() );
+					copy.addSpotTo( spotCopy, Integer.valueOf( spot.getFeature( Spot.FRAME ).intValue() ) );
+					copies.put( spot, spotCopy );
+				}
+				final TrackModel tm = model.getTrackModel();
+				for ( final DefaultWeightedEdge edge : tm.edgeSet() )
+					copy.addEdge( copies.get( tm.getEdgeSource( edge ) ), copies.get( tm.getEdgeTarget( edge ) ), tm.getEdgeWeight( edge ) );
+			}
+			finally
+			{
+				copy.endUpdate();
+			}
+			this.trackmate = new TrackMate( copy, settings );
+		}
+
+		private void setViews( final TrackMateWizardSequence sequence, final TrackMateModelView view )
+		{
+			this.sequence = sequence;
+			this.view = view;
+		}
+
+		private void publishSpotFeatures()
+		{
+			SwingUtilities.invokeLater( () -> {
+				final FeatureModel fm = copy.getFeatureModel();
+				model.getFeatureModel().declareSpotFeatures( fm.getSpotFeatures(), fm.getSpotFeatureNames(),
+						fm.getSpotFeatureShortNames(), fm.getSpotFeatureDimensions(), fm.getSpotFeatureIsInt() );
+				for ( final Map.Entry< Spot, Spot > entry : copies.entrySet() )
+				{
+					final Spot spot = entry.getKey();
+					for ( final String feature : fm.getSpotFeatures() )
+					{
+						final Double value = entry.getValue().getFeature( feature );
+						if ( null != value )
+							spot.putFeature( feature, value );
+					}
+				}
+				refresh();
+			} );
+		}
+
+		private void publishEdgeFeatures()
+		{
+			SwingUtilities.invokeLater( () -> {
+				final FeatureModel fm = copy.getFeatureModel();
+				final FeatureModel target = model.getFeatureModel();
+				target.declareEdgeFeatures( fm.getEdgeFeatures(), fm.getEdgeFeatureNames(),
+						fm.getEdgeFeatureShortNames(), fm.getEdgeFeatureDimensions(), fm.getEdgeFeatureIsInt() );
+				final TrackModel tm = model.getTrackModel();
+				final TrackModel copyTM = copy.getTrackModel();
+				for ( final DefaultWeightedEdge edge : tm.edgeSet() )
+				{
+					final Spot sourceCopy = copies.get( tm.getEdgeSource( edge ) );
+					final Spot targetCopy = copies.get( tm.getEdgeTarget( edge ) );
+					final DefaultWeightedEdge edgeCopy = ( null == sourceCopy || null == targetCopy ) ? null : copyTM.getEdge( sourceCopy, targetCopy );
+					if ( null == edgeCopy )
+						continue;
+					for ( final String feature : fm.getEdgeFeatures() )
+					{
+						final Double value = fm.getEdgeFeature( edgeCopy, feature );
+						if ( null != value )
+							target.putEdgeFeature( edge, feature, value );
+					}
+				}
+				refresh();
+			} );
+		}
+
+		private void publishTrackFeatures()
+		{
+			SwingUtilities.invokeLater( () -> {
+				final FeatureModel fm = copy.getFeatureModel();
+				final FeatureModel target = model.getFeatureModel();
+				target.declareTrackFeatures( fm.getTrackFeatures(), fm.getTrackFeatureNames(),
+						fm.getTrackFeatureShortNames(), fm.getTrackFeatureDimensions(), fm.getTrackFeatureIsInt() );
+				final TrackModel tm = model.getTrackModel();
+				final TrackModel copyTM = copy.getTrackModel();
+				for ( final Integer trackID : tm.trackIDs( false ) )
+				{
+					// Tracks are matched through one of their spots.
+					final Spot spot = copies.get( tm.trackSpots( trackID ).iterator().next() );
+					final Integer copyID = ( null == spot ) ? null : copyTM.trackIDOf( spot );
+					if ( null == copyID )
+						continue;
+					for ( final String feature : fm.getTrackFeatures() )
+					{
+						final Double value = fm.getTrackFeature( copyID, feature );
+						if ( null != value )
+							target.putTrackFeature( trackID, feature, value );
+					}
+				}
+				refresh();
+			} );
+		}
+
+		/**
+		 * Refreshes the views and the filter panel shown, on the event
+		 * dispatch thread.
+		 */
+		private void refresh()
+		{
+			model.notifyFeaturesComputed();
+			if ( null != view )
+				view.refresh();
+			if ( null == sequence )
+				return;
+			final WizardPanelDescriptor current = sequence.current();
+			if ( current instanceof SpotFilterDescriptor || current instanceof TrackFilterDescriptor )
+				current.aboutToDisplayPanel();
+		}
+	}
 }
@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+
+/**
+ * Checks the heuristics of the dialect sniffer on small samples.
+ */
+public class CSVDialectTest
+{
+
+	private static final Charset WINDOWS_1252 = Charset.forName( "windows-1252" );
+
+	private static CSVDialect sniff( final String text, final Charset charset )
+	{
+		final byte[] bytes = text.getBytes( charset );
+		return CSVDialect.sniff( bytes, bytes.length, true );
+	}
+
+	private static CSVDialect sniff( final String text )
+	{
+		return sniff( text, StandardCharsets.UTF_8 );
+	}
+
+	@Test
+	public void testCommaAndDecimalPoint()
+	{
+		final CSVDialect dialect = sniff( "x,y,t\n1.5,2.5,0\n3.5,4.5,1\n" );
+		assertEquals( ',', dialect.getDelimiter() );
+		assertEquals( '.', dialect.getDecimalSeparator() );
+		assertFalse( dialect.isQuoted() );
+	}
+
+	@Test
+	public void testSemicolonAndDecimalComma()
+	{
+		final CSVDialect dialect = sniff( "x;y;t\n1,5;2,5;0\n3,5;4,5;1\n" );
+		assertEquals( ';', dialect.getDelimiter() );
+		assertEquals( ',', dialect.getDecimalSeparator() );
+		assertEquals( 1.5, dialect.parseDouble( "1,5" ), 0. );
+	}
+
+	@Test
+	public void testTab()
+	{
+		final CSVDialect dialect = sniff( "x\ty\tt\n1.5\t2.5\t0\n3.5\t4.5\t1\n" );
+		assertEquals( '\t', dialect.getDelimiter() );
+		assertEquals( '.', dialect.getDecimalSeparator() );
+	}
+
+	@Test
+	public void testDelimiterInQuotesIsIgnored()
+	{
+		final CSVDialect dialect = sniff( "name;x;y\n\"a,b\";1.5;2.5\n\"c,d\";3.5;4.5\n" );
+		assertEquals( ';', dialect.getDelimiter() );
+		assertTrue( dialect.isQuoted() );
+	}
+
+	@Test
+	public void testCommentLinesAreIgnored()
+	{
+		final CSVDialect dialect = sniff( "# exported; by; a; tool\nx,y,t\n1.5,2.5,0\n3.5,4.5,1\n" );
+		assertEquals( ',', dialect.getDelimiter() );
+	}
+
+	@Test
+	public void testByteOrderMarks()
+	{
+		final CSVDialect utf8 = sniff( "\uFEFFx,y\n1,2\n" );
+		assertEquals( StandardCharsets.UTF_8, utf8.getCharset() );
+		assertEquals( 3, utf8.getBOMLength() );
+
+		final CSVDialect utf16 = sniff( "\uFEFFx,y\n1,2\n", StandardCharsets.UTF_16LE );
+		assertEquals( StandardCharsets.UTF_16LE, utf16.getCharset() );
+		assertEquals( 2, utf16.getBOMLength() );
+		assertFalse( utf16.isASCIICompatible() );
+		assertEquals( ',', utf16.getDelimiter() );
+	}
+
+	@Test
+	public void testCharsetWithoutByteOrderMark()
+	{
+		assertEquals( StandardCharsets.UTF_8, sniff( "name,x\nCaf\u00e9,1\n" ).getCharset() );
+		assertEquals( WINDOWS_1252, sniff( "name,x\nCaf\u00e9,1\n", WINDOWS_1252 ).getCharset() );
+	}
+
+	@Test
+	public void testTruncatedSequenceInIncompleteSample()
+	{
+		final byte[] bytes = "name,x\nCaf\u00e9".getBytes( StandardCharsets.UTF_8 );
+		// Cut the sample in the middle of the last character.
+		assertEquals( StandardCharsets.UTF_8, CSVDialect.sniff( bytes, bytes.length - 1, false ).getCharset() );
+		assertEquals( WINDOWS_1252, CSVDialect.sniff( bytes, bytes.length - 1, true ).getCharset() );
+	}
+
+	@Test
+	public void testFallbackAfterASCIISample() throws IOException
+	{
+		final ByteArrayOutputStream out = new ByteArrayOutputStream();
+		final StringBuilder expected = new StringBuilder();
+		for ( int i = 0; i < 10_000; i++ )
+		{
+			final String line = "spot" + i + ",1.5,2.5\n";
+			out.write( line.getBytes( StandardCharsets.US_ASCII ) );
+			expected.append( line );
+		}
+		final String tail = "Caf\u00e9,1.5,2.5\n";
+		out.write( tail.getBytes( WINDOWS_1252 ) );
+		expected.append( tail );
+		final byte[] bytes = out.toByteArray();
+
+		final CSVDialect dialect = CSVDialect.sniff( bytes, CSVDialect.SAMPLE_SIZE, false );
+		assertEquals( StandardCharsets.UTF_8, dialect.getCharset() );
+
+		final StringBuilder read = new StringBuilder();
+		try (Reader reader = dialect.newReader( new ByteArrayInputStream( bytes ) ))
+		{
+			final char[] buf = new char[ 1000 ];
+			int n;
+			while ( ( n = reader.read( buf, 0, buf.length ) ) >= 0 )
+				read.append( buf, 0, n );
+		}
+		assertEquals( expected.toString(), read.toString() );
+	}
+
+	@Test
+	public void testQuotesAreHandledWithoutQuotesInSample()
+	{
+		final CSVDialect dialect = sniff( "x,y\n1,2\n" );
+		assertFalse( dialect.isQuoted() );
+		assertEquals( Character.valueOf( '"' ), dialect.getFormat().getQuoteCharacter() );
+	}
+}
@@ -0,0 +1,164 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Layout;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Workload;
+
+/**
+ * Follows files appended to while the follower polls them.
+ */
+public class CSVFollowerTest
+{
+
+	private static final long TIMEOUT = 10_000;
+
+	@Test
+	public void testAppendedRowsAreImported() throws Exception
+	{
+		final StringWriter text = new StringWriter();
+		final Workload workload = CSVWorkloadGenerator.builder()
+				.layout( Layout.TRACKMATE )
+				.rows( 5000 )
+				.trackLength( 10 )
+				.create()
+				.write( text );
+		final String csv = text.toString();
+
+		final File file = File.createTempFile( "TrackMateCSVFollowerTest", ".csv" );
+		file.deleteOnExit();
+		final CSVFollower follower = CSVFollower.builder()
+				.csvFilePath( file.getAbsolutePath() )
+				.xCol( workload.getXCol() )
+				.yCol( workload.getYCol() )
+				.frameCol( workload.getFrameCol() )
+				.trackCol( workload.getTrackCol() )
+				.pollInterval( 5 )
+				.logger( Logger.VOID_LOGGER )
+				.create();
+		follower.start();
+		try (OutputStream out = new FileOutputStream( file ))
+		{
+			// Append in pieces that end in the middle of lines.
+			final int nPieces = 7;
+			for ( int i = 0; i < nPieces; i++ )
+			{
+				final int start = ( int ) ( ( long ) csv.length() * i / nPieces );
+				final int end = ( int ) ( ( long ) csv.length() * ( i + 1 ) / nPieces );
+				out.write( csv.substring( start, end ).getBytes( StandardCharsets.US_ASCII ) );
+				out.flush();
+				Thread.sleep( 20 );
+			}
+		}
+		await( () -> follower.getOffset() == file.length() );
+		follower.stop();
+
+		final Model model = follower.getModel();
+		assertEquals( workload.getRows(), model.getSpots().getNSpots( false ) );
+		// Each track is a chain of spots in increasing frames.
+		assertEquals( workload.getRows() - workload.getTracks(), model.getTrackModel().edgeSet().size() );
+	}
+
+	@Test
+	public void testQuotedLineBreakSpansPolls() throws Exception
+	{
+		final File file = File.createTempFile( "TrackMateCSVFollowerTest", ".csv" );
+		file.deleteOnExit();
+		final CSVFollower follower = CSVFollower.builder()
+				.csvFilePath( file.getAbsolutePath() )
+				.xCol( 0 )
+				.yCol( 1 )
+				.frameCol( 2 )
+				.nameCol( 3 )
+				.pollInterval( 5 )
+				.logger( Logger.VOID_LOGGER )
+				.create();
+		follower.start();
+		try (OutputStream out = new FileOutputStream( file ))
+		{
+			write( out, "x,y,t,name\n1.0,2.0,0,\"first\n" );
+			Thread.sleep( 50 );
+			write( out, "line\"\n2.0,3.0,1,second\n" );
+		}
+		await( () -> follower.getOffset() == file.length() );
+		follower.stop();
+
+		final Set< String > names = new HashSet<>();
+		for ( final Spot spot : follower.getModel().getSpots().iterable( false ) )
+			names.add( spot.getName() );
+		assertEquals( 2, names.size() );
+		assertTrue( names.contains( "first\nline" ) );
+		assertTrue( names.contains( "second" ) );
+	}
+
+	@Test( expected = IllegalArgumentException.class )
+	public void testRejectsNonPositivePollInterval()
+	{
+		CSVFollower.builder()
+				.csvFilePath( "unused.csv" )
+				.pollInterval( 0 )
+				.create();
+	}
+
+	@Test
+	public void testRecordsEnd()
+	{
+		final byte[] bytes = "a,b\n1,\"x\ny\"\n2,\"z".getBytes( StandardCharsets.US_ASCII );
+		// The quoted line feed and the unterminated record are not ends.
+		assertEquals( "a,b\n1,\"x\ny\"\n".length(), CSVFollower.recordsEnd( bytes, bytes.length ) );
+		assertEquals( 0, CSVFollower.recordsEnd( bytes, 3 ) );
+	}
+
+	private static void write( final OutputStream out, final String str ) throws IOException
+	{
+		out.write( str.getBytes( StandardCharsets.US_ASCII ) );
+		out.flush();
+	}
+
+	private static void await( final BooleanSupplier condition ) throws InterruptedException
+	{
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		while ( !condition.getAsBoolean() )
+		{
+			assertTrue( "Timed out waiting for the follower.", System.currentTimeMillis() < deadline );
+			Thread.sleep( 10 );
+		}
+	}
+}
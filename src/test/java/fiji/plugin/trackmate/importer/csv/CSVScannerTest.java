@@ -0,0 +1,151 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks the number parsers of the scanner against the JDK ones.
+ */
+public class CSVScannerTest
+{
+
+	/**
+	 * Parses the string inside a larger buffer, to check that the parser
+	 * stays within its bounds.
+	 */
+	private static double parseDouble( final String str, final char decimalSeparator )
+	{
+		final byte[] buf = ( "9" + str + "9" ).getBytes( StandardCharsets.ISO_8859_1 );
+		return CSVScanner.parseDouble( buf, 1, buf.length - 1, ( byte ) decimalSeparator );
+	}
+
+	private static long parseInt( final String str )
+	{
+		final byte[] buf = ( "9" + str + "9" ).getBytes( StandardCharsets.ISO_8859_1 );
+		return CSVScanner.parseInt( buf, 1, buf.length - 1 );
+	}
+
+	private static void assertParsed( final String str, final char decimalSeparator )
+	{
+		double expected;
+		try
+		{
+			expected = Double.parseDouble( str.replace( decimalSeparator, '.' ) );
+		}
+		catch ( final NumberFormatException e )
+		{
+			expected = Double.NaN;
+		}
+		// Double.equals() tells -0 from 0 and NaN equals NaN.
+		assertEquals( str, Double.valueOf( expected ), Double.valueOf( parseDouble( str, decimalSeparator ) ) );
+	}
+
+	private static void assertParsed( final String str )
+	{
+		assertParsed( str, '.' );
+	}
+
+	@Test
+	public void testPlainNumbers()
+	{
+		for ( final String str : new String[] { "0", "1", "42", "0.1", "0.3", "1.5", ".5", "5.", "0.000001",
+				"123456.789", "00012.5000", "3.141592653589793", "999999999999999" } )
+			assertParsed( str );
+	}
+
+	@Test
+	public void testSigns()
+	{
+		for ( final String str : new String[] { "-1.5", "+1.5", "-0", "-0.0", "+0", "-.25", "--1", "+-1", "-", "+" } )
+			assertParsed( str );
+	}
+
+	@Test
+	public void testExponents()
+	{
+		for ( final String str : new String[] { "1e3", "1E3", "1.5e-3", "-2.5E+10", "1e22", "1e23", "1e-22", "1e-23",
+				"123456789012345e22", "4.9e-324", "1e-400", "1.7976931348623157e308", "1e309", "1e", "1e+",
+				"e5", ".e1", "1e5.5", "1e0000000000000000000001" } )
+			assertParsed( str );
+	}
+
+	@Test
+	public void testManyDigits()
+	{
+		for ( final String str : new String[] { "1234567890123456", "12345678901234567890123",
+				"0.12345678901234567890", "9007199254740993", "123456789012345.6",
+				"2.2250738585072011e-308", "0.000000000000000000000000000001234567890123456789" } )
+			assertParsed( str );
+	}
+
+	@Test
+	public void testDecimalComma()
+	{
+		for ( final String str : new String[] { "1,5", "-0,25", ",5", "1,5e3", "12345678901234567,8", "1,2,3" } )
+			assertParsed( str, ',' );
+	}
+
+	@Test
+	public void testSpecialValues()
+	{
+		for ( final String str : new String[] { "NaN", "-NaN", "Infinity", "-Infinity", "+Infinity", "inf", "nan",
+				"", " ", " 1.5 ", "abc", "1.5x", "0x10" } )
+			assertParsed( str );
+	}
+
+	@Test
+	public void testRandomNumbers()
+	{
+		final Random random = new Random( 1l );
+		for ( int i = 0; i < 100_000; i++ )
+		{
+			// Shortest representations of doubles of any magnitude.
+			assertParsed( Double.toString( Double.longBitsToDouble( random.nextLong() ) ) );
+			// Up to 15 significant digits with a small exponent, the exact
+			// fast path.
+			final long mantissa = ( long ) ( random.nextDouble() * 1e15 );
+			final int exponent = random.nextInt( 61 ) - 30;
+			assertParsed( mantissa + "e" + exponent );
+			final String digits = Long.toString( mantissa );
+			final int point = random.nextInt( digits.length() + 1 );
+			assertParsed( digits.substring( 0, point ) + "," + digits.substring( point ), ',' );
+		}
+	}
+
+	@Test
+	public void testParseInt()
+	{
+		for ( final String str : new String[] { "0", "7", "-7", "+7", "007", "-0", "2147483647", "-2147483647",
+				"0000000000012" } )
+			assertEquals( str, Integer.parseInt( str ), parseInt( str ) );
+		// Integer.MIN_VALUE is the missing value of the scanner.
+		for ( final String str : new String[] { "", "-", "+", "1.5", "1e3", " 1", "abc", "2147483648", "-2147483648",
+				"12345678901" } )
+			assertEquals( str, Long.MIN_VALUE, parseInt( str ) );
+	}
+}
@@ -0,0 +1,877 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+import fiji.plugin.trackmate.importer.csv.MalformedRowReport.Cause;
+
+/**
+ * Writes synthetic CSV files to test and benchmark the importers on inputs of
+ * controlled shape and size, from a few kilobytes to tens of gigabytes.
+ * <p>
+ * The output only depends on the parameters and on the seed, so a workload can
+ * be regenerated byte for byte instead of being checked in. Three layouts are
+ * supported:
+ * <ul>
+ * <li>{@link Layout#SMLM}: a localization table as exported by
+ * single-molecule localization software. Many short-lived emitters per frame,
+ * sorted by frame, without tracks.</li>
+ * <li>{@link Layout#TRACKMATE}: a spot table as exported by TrackMate, with
+ * IDs, track IDs and random-walk tracks, sorted by track.</li>
+ * <li>{@link Layout#WIDE}: the TrackMate layout followed by many extra numeric
+ * columns that are not imported.</li>
+ * </ul>
+ * Malformed rows can be injected at a given rate. Each one has a single bad
+ * value in an imported column, whose cause is picked among the {@link Cause}s the importers report,
+ * so that the malformed row counts of an import can be checked against
+ * {@link Workload#getMalformedRows(Cause)}.
+ * <p>
+ * From the command line:
+ *
+ * <pre>
+ * CSVWorkloadGenerator layout size file [seed]
+ * </pre>
+ *
+ * where the size is either a number of rows or a file size such as
+ * <code>500KB</code>, <code>20MB</code> or <code>10GB</code>.
+ */
+public class CSVWorkloadGenerator
+{
+
+	public enum Layout
+	{
+		SMLM, TRACKMATE, WIDE;
+	}
+
+	/**
+	 * The number of extra columns of the {@link Layout#WIDE} layout, if not
+	 * specified.
+	 */
+	public static final int DEFAULT_EXTRA_COLUMNS = 100;
+
+	private static final String[] SMLM_HEADERS = new String[] { "id", "frame", "x [nm]", "y [nm]", "z [nm]", "sigma [nm]", "intensity [photon]", "offset [photon]", "bkgstd [photon]", "uncertainty [nm]" };
+
+	private static final String[] TRACKMATE_HEADERS = new String[] { "LABEL", "ID", "TRACK_ID", "QUALITY", "POSITION_X", "POSITION_Y", "POSITION_Z", "POSITION_T", "FRAME", "RADIUS", "MEAN_INTENSITY_CH1" };
+
+	private static final Cause[] INJECTED_CAUSES = new Cause[] {
+			Cause.MISSING_COLUMN,
+			Cause.EMPTY_VALUE,
+			Cause.NOT_FINITE,
+			Cause.DECIMAL_COMMA,
+			Cause.NOT_AN_INTEGER,
+			Cause.MALFORMED_NUMBER };
+
+	private final Layout layout;
+
+	private final long seed;
+
+	private final long maxRows;
+
+	private final long maxBytes;
+
+	private final int nDims;
+
+	private final int spotsPerFrame;
+
+	private final int nFrames;
+
+	private final int trackLength;
+
+	private final int nExtraColumns;
+
+	private final double malformedRate;
+
+	private final double frameInterval;
+
+	private CSVWorkloadGenerator(
+			final Layout layout,
+			final long seed,
+			final long maxRows,
+			final long maxBytes,
+			final int nDims,
+			final int spotsPerFrame,
+			final int nFrames,
+			final int trackLength,
+			final int nExtraColumns,
+			final double malformedRate,
+			final double frameInterval )
+	{
+		this.layout = layout;
+		this.seed = seed;
+		this.maxRows = maxRows;
+		this.maxBytes = maxBytes;
+		this.nDims = nDims;
+		this.spotsPerFrame = spotsPerFrame;
+		this.nFrames = nFrames;
+		this.trackLength = trackLength;
+		this.nExtraColumns = nExtraColumns;
+		this.malformedRate = malformedRate;
+		this.frameInterval = frameInterval;
+	}
+
+	/**
+	 * Writes the workload to the specified file, overwriting it.
+	 *
+	 * @param file
+	 *            the file to write.
+	 * @return a description of what was written.
+	 * @throws IOException
+	 *             if the file cannot be written.
+	 */
+	public Workload write( final File file ) throws IOException
+	{
+		try (final Writer writer = new BufferedWriter(
+				new OutputStreamWriter( new FileOutputStream( file ), StandardCharsets.UTF_8 ), 1 << 20 ))
+		{
+			return write( writer );
+		}
+	}
+
+	/**
+	 * Writes the workload to the specified writer. The writer is not closed.
+	 */
+	public Workload write( final Writer writer ) throws IOException
+	{
+		final Random random = new Random( seed );
+		final Workload workload = new Workload( layout, headers(), nDims );
+		final StringBuilder line = new StringBuilder( 256 );
+
+		final String[] headers = workload.getHeaders();
+		for ( int c = 0; c < headers.length; c++ )
+		{
+			if ( c > 0 )
+				line.append( ',' );
+			line.append( headers[ c ] );
+		}
+		line.append( '\n' );
+		writer.append( line );
+		workload.bytes += line.length();
+
+		final RowSource source = ( layout == Layout.SMLM )
+				? new SMLMRows( random )
+				: new TrackRows( random );
+		final int[] doubleCols = workload.getImportedColumns( false );
+		final int[] intCols = workload.getImportedColumns( true );
+		final List< String > values = new ArrayList<>( headers.length );
+		while ( workload.rows < maxRows )
+		{
+			values.clear();
+			source.next( values );
+			for ( int c = 0; c < nExtraColumns; c++ )
+				values.add( fixed( 1000. * random.nextDouble(), 4 ) );
+
+			if ( malformedRate > 0. && random.nextDouble() < malformedRate )
+			{
+				final Cause cause = INJECTED_CAUSES[ random.nextInt( INJECTED_CAUSES.length ) ];
+				final int col = pickColumn( cause, doubleCols, intCols, workload, random );
+				corrupt( values, col, cause, random );
+				workload.malformed.merge( cause, 1l, Long::sum );
+			}
+
+			line.setLength( 0 );
+			for ( int c = 0; c < values.size(); c++ )
+			{
+				if ( c > 0 )
+					line.append( ',' );
+				line.append( values.get( c ) );
+			}
+			line.append( '\n' );
+
+			// All characters are ASCII.
+			if ( workload.bytes + line.length() > maxBytes )
+				break;
+			writer.append( line );
+			workload.bytes += line.length();
+			workload.rows++;
+		}
+		workload.frames = source.nFrames();
+		workload.tracks = source.nTracks();
+		return workload;
+	}
+
+	private String[] headers()
+	{
+		final String[] base = ( layout == Layout.SMLM ) ? SMLM_HEADERS : TRACKMATE_HEADERS;
+		final String[] headers = Arrays.copyOf( base, base.length + nExtraColumns );
+		for ( int c = 0; c < nExtraColumns; c++ )
+			headers[ base.length + c ] = "EXTRA_" + ( c + 1 );
+		return headers;
+	}
+
+	/**
+	 * Picks an imported column in which a value with the specified cause is
+	 * rejected by the importers. Only X and Y are checked for non-finite
+	 * values, and only integer columns can hold a value that is not an
+	 * integer.
+	 */
+	private static int pickColumn( final Cause cause, final int[] doubleCols, final int[] intCols, final Workload workload, final Random random )
+	{
+		switch ( cause )
+		{
+		case NOT_FINITE:
+			return random.nextBoolean() ? workload.getXCol() : workload.getYCol();
+		case NOT_AN_INTEGER:
+			return intCols[ random.nextInt( intCols.length ) ];
+		case DECIMAL_COMMA:
+			return doubleCols[ random.nextInt( doubleCols.length ) ];
+		default:
+			final int i = random.nextInt( doubleCols.length + intCols.length );
+			return ( i < doubleCols.length ) ? doubleCols[ i ] : intCols[ i - doubleCols.length ];
+		}
+	}
+
+	/**
+	 * Replaces the value in the specified column by a value that cannot be
+	 * parsed for the specified cause.
+	 */
+	private static void corrupt( final List< String > values, final int col, final Cause cause, final Random random )
+	{
+		switch ( cause )
+		{
+		case MISSING_COLUMN:
+			// Truncate the row before the column.
+			while ( values.size() > col )
+				values.remove( values.size() - 1 );
+			break;
+		case EMPTY_VALUE:
+			values.set( col, "" );
+			break;
+		case NOT_FINITE:
+			values.set( col, random.nextBoolean() ? "NaN" : "Infinity" );
+			break;
+		case DECIMAL_COMMA:
+			values.set( col, '"' + values.get( col ).replace( '.', ',' ) + '"' );
+			break;
+		case NOT_AN_INTEGER:
+			values.set( col, values.get( col ) + ".5" );
+			break;
+		case MALFORMED_NUMBER:
+		default:
+			values.set( col, "n/a" );
+			break;
+		}
+	}
+
+	/*
+	 * ROW SOURCES.
+	 */
+
+	private interface RowSource
+	{
+
+		/**
+		 * Appends the values of the next row.
+		 */
+		void next( List< String > values );
+
+		int nFrames();
+
+		long nTracks();
+	}
+
+	/**
+	 * Emitters that blink on for a few frames at a random position. Rows are
+	 * sorted by frame.
+	 */
+	private final class SMLMRows implements RowSource
+	{
+
+		private final Random random;
+
+		private long id = 0;
+
+		private int frame = 0;
+
+		private int inFrame = 0;
+
+		private int frameSize;
+
+		private SMLMRows( final Random random )
+		{
+			this.random = random;
+			this.frameSize = frameSize();
+		}
+
+		private int frameSize()
+		{
+			// Poisson-like fluctuations around the mean density.
+			final double n = spotsPerFrame + Math.sqrt( spotsPerFrame ) * random.nextGaussian();
+			return Math.max( 1, ( int ) Math.round( n ) );
+		}
+
+		@Override
+		public void next( final List< String > values )
+		{
+			if ( inFrame == frameSize )
+			{
+				frame++;
+				inFrame = 0;
+				frameSize = frameSize();
+			}
+			inFrame++;
+			id++;
+
+			final double sigma = 100. + 30. * random.nextDouble();
+			final double intensity = 200. + 5000. * random.nextDouble();
+			final double bkgstd = 5. + 10. * random.nextDouble();
+			values.add( Long.toString( id ) );
+			values.add( Integer.toString( frame ) );
+			values.add( fixed( 51200. * random.nextDouble(), 1 ) );
+			values.add( fixed( 51200. * random.nextDouble(), 1 ) );
+			values.add( fixed( ( nDims == 3 ) ? 1000. * random.nextGaussian() : 0., 1 ) );
+			values.add( fixed( sigma, 1 ) );
+			values.add( fixed( intensity, 1 ) );
+			values.add( fixed( 100. + 10. * random.nextGaussian(), 1 ) );
+			values.add( fixed( bkgstd, 1 ) );
+			values.add( fixed( sigma / Math.sqrt( intensity ) + bkgstd / 10., 2 ) );
+		}
+
+		@Override
+		public int nFrames()
+		{
+			return id == 0 ? 0 : frame + 1;
+		}
+
+		@Override
+		public long nTracks()
+		{
+			return 0;
+		}
+	}
+
+	/**
+	 * Random-walk tracks of fixed length starting at random frames. Rows are
+	 * sorted by track, as in a TrackMate export.
+	 */
+	private final class TrackRows implements RowSource
+	{
+
+		private final Random random;
+
+		private long id = -1;
+
+		private long track = -1;
+
+		private int inTrack = trackLength;
+
+		private int start;
+
+		private int lastFrame = -1;
+
+		private double x, y, z;
+
+		private TrackRows( final Random random )
+		{
+			this.random = random;
+		}
+
+		@Override
+		public void next( final List< String > values )
+		{
+			if ( inTrack == trackLength )
+			{
+				track++;
+				inTrack = 0;
+				start = random.nextInt( Math.max( 1, nFrames - trackLength + 1 ) );
+				x = 512. * random.nextDouble();
+				y = 512. * random.nextDouble();
+				z = ( nDims == 3 ) ? 50. * random.nextDouble() : 0.;
+			}
+			else
+			{
+				x += random.nextGaussian();
+				y += random.nextGaussian();
+				if ( nDims == 3 )
+					z += random.nextGaussian();
+			}
+			id++;
+			final int frame = start + inTrack;
+			inTrack++;
+			lastFrame = Math.max( lastFrame, frame );
+
+			values.add( "ID" + id );
+			values.add( Long.toString( id ) );
+			values.add( Long.toString( track ) );
+			values.add( fixed( 100. * random.nextDouble(), 3 ) );
+			values.add( fixed( x, 3 ) );
+			values.add( fixed( y, 3 ) );
+			values.add( fixed( z, 3 ) );
+			values.add( fixed( frame * frameInterval, 3 ) );
+			values.add( Integer.toString( frame ) );
+			values.add( fixed( 2.5, 1 ) );
+			values.add( fixed( 1000. * random.nextDouble(), 3 ) );
+		}
+
+		@Override
+		public int nFrames()
+		{
+			return lastFrame + 1;
+		}
+
+		@Override
+		public long nTracks()
+		{
+			return track + 1;
+		}
+	}
+
+	/**
+	 * Formats a double with a fixed number of decimals, without the cost of
+	 * {@link String#format(String, Object...)}, which dominates the writing
+	 * time of large workloads.
+	 */
+	static String fixed( final double value, final int decimals )
+	{
+		long scale = 1;
+		for ( int i = 0; i < decimals; i++ )
+			scale *= 10;
+		final long scaled = Math.round( Math.abs( value ) * scale );
+		final StringBuilder str = new StringBuilder( 24 );
+		if ( value < 0. && scaled != 0 )
+			str.append( '-' );
+		str.append( scaled / scale );
+		if ( decimals > 0 )
+		{
+			str.append( '.' );
+			final String frac = Long.toString( scaled % scale );
+			for ( int i = frac.length(); i < decimals; i++ )
+				str.append( '0' );
+			str.append( frac );
+		}
+		return str.toString();
+	}
+
+	/*
+	 * WORKLOAD.
+	 */
+
+	/**
+	 * What was written by the generator, and where to find the columns to
+	 * import.
+	 */
+	public static final class Workload
+	{
+
+		private final Layout layout;
+
+		private final String[] headers;
+
+		private final int nDims;
+
+		private final Map< Cause, Long > malformed = new EnumMap<>( Cause.class );
+
+		private long rows;
+
+		private long bytes;
+
+		private int frames;
+
+		private long tracks;
+
+		private Workload( final Layout layout, final String[] headers, final int nDims )
+		{
+			this.layout = layout;
+			this.headers = headers;
+			this.nDims = nDims;
+		}
+
+		public Layout getLayout()
+		{
+			return layout;
+		}
+
+		public String[] getHeaders()
+		{
+			return headers;
+		}
+
+		/**
+		 * The number of data rows written, malformed rows included.
+		 */
+		public long getRows()
+		{
+			return rows;
+		}
+
+		/**
+		 * The size of the file in bytes.
+		 */
+		public long getBytes()
+		{
+			return bytes;
+		}
+
+		public int getFrames()
+		{
+			return frames;
+		}
+
+		/**
+		 * The number of tracks. Always 0 for the {@link Layout#SMLM} layout.
+		 */
+		public long getTracks()
+		{
+			return tracks;
+		}
+
+		public long getMalformedRows()
+		{
+			long n = 0;
+			for ( final Long count : malformed.values() )
+				n += count.longValue();
+			return n;
+		}
+
+		public long getMalformedRows( final Cause cause )
+		{
+			return malformed.getOrDefault( cause, Long.valueOf( 0 ) ).longValue();
+		}
+
+		public int getIdCol()
+		{
+			return ( layout == Layout.SMLM ) ? 0 : 1;
+		}
+
+		/**
+		 * The track column, or -1 for the {@link Layout#SMLM} layout.
+		 */
+		public int getTrackCol()
+		{
+			return ( layout == Layout.SMLM ) ? -1 : 2;
+		}
+
+		public int getQualityCol()
+		{
+			return ( layout == Layout.SMLM ) ? 6 : 3;
+		}
+
+		public int getXCol()
+		{
+			return ( layout == Layout.SMLM ) ? 2 : 4;
+		}
+
+		public int getYCol()
+		{
+			return ( layout == Layout.SMLM ) ? 3 : 5;
+		}
+
+		/**
+		 * The Z column, or -1 if the workload is 2D.
+		 */
+		public int getZCol()
+		{
+			if ( nDims < 3 )
+				return -1;
+			return ( layout == Layout.SMLM ) ? 4 : 6;
+		}
+
+		public int getFrameCol()
+		{
+			return ( layout == Layout.SMLM ) ? 1 : 8;
+		}
+
+		/**
+		 * The label column, or -1 for the {@link Layout#SMLM} layout.
+		 */
+		public int getNameCol()
+		{
+			return ( layout == Layout.SMLM ) ? -1 : 0;
+		}
+
+		/**
+		 * Returns the imported columns that hold integers, or the ones that
+		 * hold decimal numbers.
+		 */
+		int[] getImportedColumns( final boolean integers )
+		{
+			if ( integers )
+				return ( getTrackCol() >= 0 )
+						? new int[] { getFrameCol(), getTrackCol(), getIdCol() }
+						: new int[] { getFrameCol(), getIdCol() };
+			return ( getZCol() >= 0 )
+					? new int[] { getXCol(), getYCol(), getZCol(), getQualityCol() }
+					: new int[] { getXCol(), getYCol(), getQualityCol() };
+		}
+
+		/**
+		 * Returns an importer builder configured with the columns of this
+		 * workload.
+		 */
+		public TrackMateImporter.Builder configure( final TrackMateImporter.Builder builder )
+		{
+			builder.xCol( getXCol() )
+					.yCol( getYCol() )
+					.frameCol( getFrameCol() )
+					.idCol( getIdCol() )
+					.qualityCol( getQualityCol() );
+			if ( getZCol() >= 0 )
+				builder.zCol( getZCol() );
+			if ( getTrackCol() >= 0 )
+				builder.trackCol( getTrackCol() );
+			if ( getNameCol() >= 0 )
+				builder.nameCol( getNameCol() );
+			return builder;
+		}
+
+		@Override
+		public String toString()
+		{
+			final StringBuilder str = new StringBuilder();
+			str.append( String.format( Locale.US, "%s workload: %d rows, %d bytes, %d frames, %d tracks, %d malformed rows",
+					layout, rows, bytes, frames, tracks, getMalformedRows() ) );
+			for ( final Map.Entry< Cause, Long > entry : malformed.entrySet() )
+				str.append( String.format( Locale.US, "\n - %s: %d", entry.getKey(), entry.getValue() ) );
+			return str.toString();
+		}
+	}
+
+	/*
+	 * BUILDER.
+	 */
+
+	public static Builder builder()
+	{
+		return new Builder();
+	}
+
+	public static final class Builder
+	{
+
+		private Layout layout = Layout.TRACKMATE;
+
+		private long seed = 1l;
+
+		private long maxRows = -1;
+
+		private long maxBytes = -1;
+
+		private int nDims = 2;
+
+		private int spotsPerFrame = 100;
+
+		private int nFrames = -1;
+
+		private int trackLength = 50;
+
+		private int nExtraColumns = -1;
+
+		private double malformedRate = 0.;
+
+		private double frameInterval = 1.;
+
+		private Builder()
+		{}
+
+		public Builder layout( final Layout layout )
+		{
+			this.layout = layout;
+			return this;
+		}
+
+		public Builder seed( final long seed )
+		{
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * The number of data rows to write.
+		 */
+		public Builder rows( final long maxRows )
+		{
+			this.maxRows = maxRows;
+			return this;
+		}
+
+		/**
+		 * The maximal size of the file, in bytes. If both a number of rows
+		 * and a size are specified, the generator stops at the first limit
+		 * reached.
+		 */
+		public Builder bytes( final long maxBytes )
+		{
+			this.maxBytes = maxBytes;
+			return this;
+		}
+
+		public Builder nDims( final int nDims )
+		{
+			this.nDims = nDims;
+			return this;
+		}
+
+		/**
+		 * The mean number of spots per frame. For track layouts, this sets
+		 * the number of frames from the number of rows.
+		 */
+		public Builder spotsPerFrame( final int spotsPerFrame )
+		{
+			this.spotsPerFrame = spotsPerFrame;
+			return this;
+		}
+
+		/**
+		 * The number of frames over which tracks start, for the track
+		 * layouts. If not specified, it is derived from the number of rows, or
+		 * from the file size, and the number of spots per frame.
+		 */
+		public Builder frames( final int nFrames )
+		{
+			this.nFrames = nFrames;
+			return this;
+		}
+
+		/**
+		 * The number of spots in each track, for the track layouts.
+		 */
+		public Builder trackLength( final int trackLength )
+		{
+			this.trackLength = trackLength;
+			return this;
+		}
+
+		/**
+		 * The number of extra columns appended to each row. Defaults to
+		 * {@value CSVWorkloadGenerator#DEFAULT_EXTRA_COLUMNS} for the
+		 * {@link Layout#WIDE} layout and to 0 otherwise.
+		 */
+		public Builder extraColumns( final int nExtraColumns )
+		{
+			this.nExtraColumns = nExtraColumns;
+			return this;
+		}
+
+		/**
+		 * The fraction of rows written with one malformed value.
+		 */
+		public Builder malformedRate( final double malformedRate )
+		{
+			this.malformedRate = malformedRate;
+			return this;
+		}
+
+		public Builder frameInterval( final double frameInterval )
+		{
+			this.frameInterval = frameInterval;
+			return this;
+		}
+
+		public CSVWorkloadGenerator create()
+		{
+			if ( maxRows < 0 && maxBytes < 0 )
+				throw new IllegalArgumentException( "Either a number of rows or a file size must be specified." );
+			if ( nDims != 2 && nDims != 3 )
+				throw new IllegalArgumentException( "The number of dimensions must be 2 or 3, was " + nDims + "." );
+			if ( spotsPerFrame < 1 || trackLength < 1 )
+				throw new IllegalArgumentException( "The number of spots per frame and the track length must be positive." );
+			if ( malformedRate < 0. || malformedRate > 1. )
+				throw new IllegalArgumentException( "The malformed row rate must be between 0 and 1, was " + malformedRate + "." );
+
+			final int extra = ( nExtraColumns >= 0 )
+					? nExtraColumns
+					: ( layout == Layout.WIDE ) ? DEFAULT_EXTRA_COLUMNS : 0;
+
+			final int frames;
+			if ( nFrames > 0 )
+			{
+				frames = nFrames;
+			}
+			else
+			{
+				// About 80 bytes for the TrackMate columns, and 9 per extra.
+				final long rows = ( maxRows >= 0 ) ? maxRows : maxBytes / ( 80 + 9 * extra );
+				frames = ( int ) Math.min( Integer.MAX_VALUE / 2, Math.max( trackLength, rows / spotsPerFrame ) );
+			}
+			return new CSVWorkloadGenerator(
+					layout,
+					seed,
+					( maxRows < 0 ) ? Long.MAX_VALUE : maxRows,
+					( maxBytes < 0 ) ? Long.MAX_VALUE : maxBytes,
+					nDims,
+					spotsPerFrame,
+					frames,
+					trackLength,
+					extra,
+					malformedRate,
+					frameInterval );
+		}
+	}
+
+	/*
+	 * COMMAND LINE.
+	 */
+
+	/**
+	 * Parses a size such as <code>1000</code> (rows), <code>500KB</code>,
+	 * <code>20MB</code> or <code>10GB</code>, and configures the builder
+	 * accordingly.
+	 */
+	static Builder size( final Builder builder, final String size )
+	{
+		final String str = size.trim().toUpperCase( Locale.ROOT );
+		final String[] units = new String[] { "KB", "MB", "GB", "TB" };
+		long factor = 1;
+		for ( final String unit : units )
+		{
+			factor *= 1024;
+			if ( str.endsWith( unit ) )
+			{
+				final double n = Double.parseDouble( str.substring( 0, str.length() - unit.length() ) );
+				return builder.bytes( ( long ) ( n * factor ) );
+			}
+		}
+		return builder.rows( Long.parseLong( str ) );
+	}
+
+	public static void main( final String[] args ) throws IOException
+	{
+		if ( args.length < 3 )
+		{
+			System.err.println( "Usage: CSVWorkloadGenerator <SMLM|TRACKMATE|WIDE> <rows|size[KB|MB|GB]> <file> [seed]" );
+			return;
+		}
+		final Builder builder = builder().layout( Layout.valueOf( args[ 0 ].toUpperCase( Locale.ROOT ) ) );
+		size( builder, args[ 1 ] );
+		if ( args.length > 3 )
+			builder.seed( Long.parseLong( args[ 3 ] ) );
+
+		final long start = System.currentTimeMillis();
+		final Workload workload = builder.create().write( new File( args[ 2 ] ) );
+		final long end = System.currentTimeMillis();
+		System.out.println( workload );
+		System.out.println( String.format( Locale.US, "Written to %s in %.1f s.", args[ 2 ], ( end - start ) / 1000. ) );
+	}
+}
@@ -0,0 +1,84 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+/**
+ * Checks the primitive hash index of the spot IDs.
+ */
+public class IntIndexTest
+{
+
+	@Test
+	public void testPutAndGet()
+	{
+		final IntIndex index = new IntIndex();
+		assertEquals( -1, index.putIfAbsent( 7, 0 ) );
+		assertEquals( -1, index.putIfAbsent( -3, 1 ) );
+		assertEquals( -1, index.putIfAbsent( 0, 2 ) );
+		assertEquals( 0, index.get( 7 ) );
+		assertEquals( 1, index.get( -3 ) );
+		assertEquals( 2, index.get( 0 ) );
+		assertEquals( -1, index.get( 8 ) );
+		assertEquals( 3, index.size() );
+	}
+
+	@Test
+	public void testPutIfAbsentKeepsTheFirstValue()
+	{
+		final IntIndex index = new IntIndex();
+		assertEquals( -1, index.putIfAbsent( 42, 5 ) );
+		assertEquals( 5, index.putIfAbsent( 42, 6 ) );
+		assertEquals( 5, index.get( 42 ) );
+		assertEquals( 1, index.size() );
+	}
+
+	@Test
+	public void testMinValueKey()
+	{
+		// The key that marks the free slots.
+		final IntIndex index = new IntIndex();
+		assertEquals( -1, index.get( Integer.MIN_VALUE ) );
+		assertEquals( -1, index.putIfAbsent( Integer.MIN_VALUE, 3 ) );
+		assertEquals( 3, index.putIfAbsent( Integer.MIN_VALUE, 4 ) );
+		assertEquals( 3, index.get( Integer.MIN_VALUE ) );
+		assertEquals( -1, index.get( 0 ) );
+		assertEquals( 1, index.size() );
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		final IntIndex index = new IntIndex( 4 );
+		final int n = 100_000;
+		// Consecutive and spread keys, negative ones included.
+		for ( int i = 0; i < n; i++ )
+			assertEquals( -1, index.putIfAbsent( i * 7919 - n, i ) );
+		assertEquals( n, index.size() );
+		for ( int i = 0; i < n; i++ )
+			assertEquals( i, index.get( i * 7919 - n ) );
+		assertEquals( -1, index.get( Integer.MAX_VALUE ) );
+	}
+}
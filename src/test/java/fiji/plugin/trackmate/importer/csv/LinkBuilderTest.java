@@ -0,0 +1,138 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Test;
+import org.scijava.Cancelable;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+
+/**
+ * Checks the tracks built from explicit links: divisions, merges and the
+ * links that cannot be imported.
+ */
+public class LinkBuilderTest
+{
+
+	private static final Cancelable NOT_CANCELED = new Cancelable()
+	{
+		@Override
+		public boolean isCanceled()
+		{
+			return false;
+		}
+
+		@Override
+		public void cancel( final String reason )
+		{}
+
+		@Override
+		public String getCancelReason()
+		{
+			return null;
+		}
+	};
+
+	/**
+	 * Adds spots with IDs 1 to <code>n</code>, with their ID as X position.
+	 */
+	private static Spot[] addSpots( final LinkBuilder links, final int n, final int[] parents )
+	{
+		final Spot[] spots = new Spot[ n + 1 ];
+		for ( int id = 1; id <= n; id++ )
+		{
+			spots[ id ] = new Spot( id, 0., 0., 1., 1., "Spot_" + id );
+			links.addSpot( id, spots[ id ], ( null == parents ) ? LinkBuilder.NO_PARENT : parents[ id ] );
+		}
+		return spots;
+	}
+
+	@Test
+	public void testParentsWithSplitAndUnknownParent()
+	{
+		final LinkBuilder links = new LinkBuilder( true, Logger.VOID_LOGGER, NOT_CANCELED );
+		// 1 divides into 2 and 3, 2 continues to 4. 5 is alone, and the
+		// parent of 6 is unknown.
+		final int none = LinkBuilder.NO_PARENT;
+		final int[] parents = new int[] { none, none, 1, 1, 2, none, 99 };
+		addSpots( links, 6, parents );
+		links.linkParents();
+
+		final Model model = new Model();
+		assertEquals( 1, links.link( model ) );
+		assertEquals( 3, links.getNLinks() );
+		assertEquals( 3, model.getTrackModel().edgeSet().size() );
+		assertTrue( links.summary().contains( "1 links to unknown spot IDs" ) );
+	}
+
+	@Test
+	public void testEdgesWithSplitMergeDuplicateAndUnknownID() throws IOException
+	{
+		final LinkBuilder links = new LinkBuilder( false, Logger.VOID_LOGGER, NOT_CANCELED );
+		final Spot[] spots = addSpots( links, 7, null );
+		// A spot with an ID already used is not indexed.
+		links.addSpot( 3, new Spot( 0., 0., 0., 1., 1., "Duplicate" ), LinkBuilder.NO_PARENT );
+
+		final File edgeFile = File.createTempFile( "TrackMateLinkBuilderTest", ".csv" );
+		edgeFile.deleteOnExit();
+		try (OutputStream out = new FileOutputStream( edgeFile ))
+		{
+			final String edges = "SOURCE,TARGET\n"
+					// Division of 1 into 2 and 3.
+					+ "1,2\n"
+					+ "1,3\n"
+					// Merge of 4 and 5 into 6.
+					+ "4,6\n"
+					+ "5,6\n"
+					// The same link again.
+					+ "1,2\n"
+					// An unknown spot ID.
+					+ "7,99\n";
+			out.write( edges.getBytes( StandardCharsets.US_ASCII ) );
+		}
+		assertTrue( links.readEdges( edgeFile.getAbsolutePath(), 0, 1 ) );
+
+		final Model model = new Model();
+		assertEquals( 2, links.link( model ) );
+		assertEquals( 4, model.getTrackModel().edgeSet().size() );
+		assertTrue( model.getTrackModel().containsEdge( spots[ 1 ], spots[ 3 ] ) );
+		assertTrue( model.getTrackModel().containsEdge( spots[ 5 ], spots[ 6 ] ) );
+		// Spot 7 only has a link to an unknown ID, so it is in no track.
+		assertEquals( null, model.getTrackModel().trackIDOf( spots[ 7 ] ) );
+
+		final String summary = links.summary();
+		assertTrue( summary, summary.contains( "1 spots with a duplicate ID" ) );
+		assertTrue( summary, summary.contains( "1 links to unknown spot IDs" ) );
+		assertTrue( summary, summary.contains( "1 duplicate links" ) );
+	}
+}
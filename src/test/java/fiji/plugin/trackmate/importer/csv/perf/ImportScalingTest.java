@@ -0,0 +1,149 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv.perf;
+
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.bestTime;
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.checkScaling;
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.generate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.detection.CSVImporterDetectorFactory;
+import fiji.plugin.trackmate.detection.SpotDetector;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Layout;
+import fiji.plugin.trackmate.importer.csv.TrackMateImporter;
+import fiji.plugin.trackmate.importer.csv.perf.PerfSupport.Input;
+import net.imglib2.type.numeric.real.FloatType;
+
+/**
+ * Flags per-frame reparsing and superlinear behavior, by checking how the cost
+ * of an import grows with the number of rows, frames and spots per track.
+ * These checks compare two runs on the same machine and do not depend on the
+ * baselines.
+ */
+public class ImportScalingTest
+{
+
+	@Test
+	public void testDetectorParsesOncePerDetection() throws IOException
+	{
+		final int nRows = 50_000;
+		final long few = detectAllFrames( nRows, 5 );
+		final long many = detectAllFrames( nRows, 100 );
+		// Same number of rows: the cost must not depend on the frame count.
+		checkScaling( "CSV detector, frames", 5, few, 100, many, 1. );
+	}
+
+	@Test
+	public void testTrackMateImporterScalesWithRows() throws IOException
+	{
+		final int nRows = 50_000;
+		final long small = importModel( nRows, 100, 10 );
+		final long large = importModel( 4 * nRows, 100, 10 );
+		checkScaling( "TrackMate importer, rows", nRows, small, 4 * nRows, large, 4. );
+	}
+
+	@Test
+	public void testTrackMateImporterScalesWithFrames() throws IOException
+	{
+		final int nRows = 100_000;
+		final long few = importModel( nRows, 20, 10 );
+		final long many = importModel( nRows, 2000, 10 );
+		checkScaling( "TrackMate importer, frames", 20, few, 2000, many, 1. );
+	}
+
+	@Test
+	public void testTrackMateImporterScalesWithTrackLength() throws IOException
+	{
+		final int nRows = 100_000;
+		final long shortTracks = importModel( nRows, 2000, 10 );
+		final long longTracks = importModel( nRows, 2000, 1000 );
+		checkScaling( "TrackMate importer, track length", 10, shortTracks, 1000, longTracks, 1. );
+	}
+
+	/**
+	 * Imports a TrackMate-like workload and returns the best import time.
+	 */
+	private static long importModel( final int nRows, final int nFrames, final int trackLength ) throws IOException
+	{
+		final Input input = generate( CSVWorkloadGenerator.builder()
+				.layout( Layout.TRACKMATE )
+				.rows( nRows )
+				.frames( nFrames )
+				.trackLength( trackLength ) );
+		return bestTime( () -> {
+			final TrackMateImporter importer = input.workload.configure( TrackMateImporter.builder() )
+					.csvFilePath( input.file.getAbsolutePath() )
+					.logger( Logger.VOID_LOGGER )
+					.create();
+			final Model model = importer.getModel( 1., "pixel", "frame" );
+			assertNotNull( importer.getErrorMessage(), model );
+			return model.getSpots().getNSpots( false );
+		} );
+	}
+
+	/**
+	 * Runs the CSV detector on all the frames of an SMLM workload, as
+	 * TrackMate does, and returns the best time for the whole detection.
+	 */
+	private static long detectAllFrames( final int nRows, final int nFrames ) throws IOException
+	{
+		final Input input = generate( CSVWorkloadGenerator.builder()
+				.layout( Layout.SMLM )
+				.rows( nRows )
+				.nDims( 3 )
+				.spotsPerFrame( nRows / nFrames ) );
+		final String[] headers = input.workload.getHeaders();
+		final int lastFrame = input.workload.getFrames();
+
+		final CSVImporterDetectorFactory< FloatType > factory = new CSVImporterDetectorFactory<>();
+		final Map< String, Object > settings = factory.getDefaultSettings();
+		settings.remove( CSVImporterDetectorFactory.KEY_RADIUS_COLUMN_NAME );
+		settings.put( CSVImporterDetectorFactory.KEY_FILE_PATH, input.file.getAbsolutePath() );
+		settings.put( CSVImporterDetectorFactory.KEY_X_COLUMN_NAME, headers[ input.workload.getXCol() ] );
+		settings.put( CSVImporterDetectorFactory.KEY_Y_COLUMN_NAME, headers[ input.workload.getYCol() ] );
+		settings.put( CSVImporterDetectorFactory.KEY_Z_COLUMN_NAME, headers[ input.workload.getZCol() ] );
+		settings.put( CSVImporterDetectorFactory.KEY_FRAME_COLUMN_NAME, headers[ input.workload.getFrameCol() ] );
+
+		return bestTime( () -> {
+			long nSpots = 0;
+			// The CSV detector reads 1-based frames.
+			for ( int frame = -1; frame < lastFrame; frame++ )
+			{
+				final SpotDetector< FloatType > detector = factory.getDetector( null, settings, null, frame );
+				assertTrue( detector.getErrorMessage(), detector.checkInput() && detector.process() );
+				nSpots += detector.getResult().size();
+			}
+			assertEquals( nRows, nSpots );
+			return nSpots;
+		} );
+	}
+}
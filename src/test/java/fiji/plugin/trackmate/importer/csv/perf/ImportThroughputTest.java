@@ -0,0 +1,113 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv.perf;
+
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.bestTime;
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.checkAllocation;
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.checkThroughput;
+import static fiji.plugin.trackmate.importer.csv.perf.PerfSupport.generate;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import fiji.plugin.trackmate.Logger;
+import fiji.plugin.trackmate.Model;
+import fiji.plugin.trackmate.Spot;
+import fiji.plugin.trackmate.detection.CSVImporter;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Layout;
+import fiji.plugin.trackmate.importer.csv.TrackMateImporter;
+import fiji.plugin.trackmate.importer.csv.perf.PerfSupport.Input;
+
+/**
+ * Checks the throughput and the allocation per row of the importers on
+ * medium-size generated inputs, against the stored baselines.
+ */
+public class ImportThroughputTest
+{
+
+	private static final int N_ROWS = 200_000;
+
+	@Test
+	public void testTrackMateImporter() throws IOException
+	{
+		final Input input = generate( CSVWorkloadGenerator.builder()
+				.layout( Layout.TRACKMATE )
+				.rows( N_ROWS )
+				.trackLength( 50 ) );
+
+		final long[] allocated = new long[ 1 ];
+		final long time = bestTime( () -> {
+			final TrackMateImporter importer = input.workload.configure( TrackMateImporter.builder() )
+					.csvFilePath( input.file.getAbsolutePath() )
+					.logger( Logger.VOID_LOGGER )
+					.create();
+			final Model model = importer.getModel( 1., "pixel", "frame" );
+			assertNotNull( importer.getErrorMessage(), model );
+			assertEquals( N_ROWS, model.getSpots().getNSpots( false ) );
+			allocated[ 0 ] = importer.getStats().getTotal().getAllocatedBytes();
+			return model.getSpots().getNSpots( false );
+		} );
+
+		checkThroughput( "trackmate.rowsPerSecond", N_ROWS * 1e9 / time );
+		checkAllocation( "trackmate.allocatedBytesPerRow", allocated[ 0 ] < 0 ? -1 : ( double ) allocated[ 0 ] / N_ROWS );
+	}
+
+	@Test
+	public void testCSVImporter() throws IOException
+	{
+		final Input input = generate( CSVWorkloadGenerator.builder()
+				.layout( Layout.SMLM )
+				.rows( N_ROWS )
+				.nDims( 3 )
+				.spotsPerFrame( 500 ) );
+		final String[] headers = input.workload.getHeaders();
+
+		final long[] allocated = new long[ 1 ];
+		final long time = bestTime( () -> {
+			final CSVImporter importer = new CSVImporter( input.file.getAbsolutePath(), 100.,
+					headers[ input.workload.getXCol() ],
+					headers[ input.workload.getYCol() ],
+					headers[ input.workload.getZCol() ],
+					headers[ input.workload.getFrameCol() ],
+					headers[ input.workload.getQualityCol() ],
+					null, null,
+					0., 0., 0. );
+			assertTrue( importer.getErrorMessage(), importer.checkInput() && importer.process() );
+			long nSpots = 0;
+			for ( final Map.Entry< Integer, List< Spot > > entry : importer.getResult().entrySet() )
+				nSpots += entry.getValue().size();
+			assertEquals( N_ROWS, nSpots );
+			allocated[ 0 ] = importer.getStats().getTotal().getAllocatedBytes();
+			return nSpots;
+		} );
+
+		checkThroughput( "csvimporter.rowsPerSecond", N_ROWS * 1e9 / time );
+		checkAllocation( "csvimporter.allocatedBytesPerRow", allocated[ 0 ] < 0 ? -1 : ( double ) allocated[ 0 ] / N_ROWS );
+	}
+}
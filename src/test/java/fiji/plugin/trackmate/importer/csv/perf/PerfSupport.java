@@ -0,0 +1,198 @@
+/*-
+ * #%L
+ * TrackMate: your buddy for everyday tracking.
+ * %%
+ * Copyright (C) 2017 - 2025 TrackMate developers.
+ * %%
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as
+ * published by the Free Software Foundation, either version 3 of the
+ * License, or (at your option) any later version.
+ * 
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ * 
+ * You should have received a copy of the GNU General Public
+ * License along with this program.  If not, see
+ * <http://www.gnu.org/licenses/gpl-3.0.html>.
+ * #L%
+ */
+package fiji.plugin.trackmate.importer.csv.perf;
+
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator;
+import fiji.plugin.trackmate.importer.csv.CSVWorkloadGenerator.Workload;
+
+/**
+ * Shared helpers of the performance regression tests: generated workloads,
+ * timing and comparison against the stored baselines.
+ * <p>
+ * Baselines are read from <code>baselines.properties</code> next to this
+ * class in the test resources. A measured throughput passes if it is above
+ * the baseline times <code>1 - tolerance</code>, and a measured allocation
+ * passes if it is below the baseline times <code>1 + tolerance</code>. The
+ * tolerance is read from the <code>perf.tolerance</code> system property.
+ * A check with no baseline is skipped, as baselines depend on the machine.
+ * With <code>-Dperf.record=true</code>, the checks are skipped and the
+ * measured values are printed in the format of the baselines file.
+ */
+final class PerfSupport
+{
+
+	static final double TOLERANCE = Double.parseDouble( System.getProperty( "perf.tolerance", "0.25" ) );
+
+	static final boolean RECORD = Boolean.getBoolean( "perf.record" );
+
+	/**
+	 * Margin over the expected growth of the scaling checks, to absorb noise
+	 * and fixed costs.
+	 */
+	static final double SCALING_MARGIN = 1.5;
+
+	/**
+	 * Number of untimed runs before the timed ones.
+	 */
+	static final int WARMUP_RUNS = 2;
+
+	/**
+	 * Number of timed runs. The fastest one is kept.
+	 */
+	static final int TIMED_RUNS = 3;
+
+	private static final Properties BASELINES = loadBaselines();
+
+	private PerfSupport()
+	{}
+
+	/**
+	 * A generated workload and the temporary file it was written to.
+	 */
+	static final class Input
+	{
+
+		final File file;
+
+		final Workload workload;
+
+		private Input( final File file, final Workload workload )
+		{
+			this.file = file;
+			this.workload = workload;
+		}
+	}
+
+	/**
+	 * Writes a workload to a temporary file, deleted on exit.
+	 */
+	static Input generate( final CSVWorkloadGenerator.Builder builder ) throws IOException
+	{
+		final File file = File.createTempFile( "TrackMateCSVImporterPerf", ".csv" );
+		file.deleteOnExit();
+		return new Input( file, builder.create().write( file ) );
+	}
+
+	/**
+	 * Runs the task {@link #WARMUP_RUNS} times, then {@link #TIMED_RUNS}
+	 * times, and returns the shortest time in nanoseconds.
+	 */
+	static long bestTime( final LongSupplier task )
+	{
+		for ( int i = 0; i < WARMUP_RUNS; i++ )
+			task.getAsLong();
+		long best = Long.MAX_VALUE;
+		for ( int i = 0; i < TIMED_RUNS; i++ )
+		{
+			final long start = System.nanoTime();
+			task.getAsLong();
+			best = Math.min( best, System.nanoTime() - start );
+		}
+		return best;
+	}
+
+	static void checkThroughput( final String key, final double rowsPerSecond )
+	{
+		if ( record( key, rowsPerSecond ) )
+			return;
+		final double baseline = baseline( key );
+		final double min = baseline * ( 1. - TOLERANCE );
+		assertTrue( String.format( Locale.US, "%s: %.0f rows/s is below the baseline of %.0f rows/s minus %.0f%%.",
+				key, rowsPerSecond, baseline, 100. * TOLERANCE ), rowsPerSecond >= min );
+	}
+
+	static void checkAllocation( final String key, final double bytesPerRow )
+	{
+		// Allocations cannot be measured on this JVM.
+		if ( bytesPerRow < 0 )
+			return;
+		if ( record( key, bytesPerRow ) )
+			return;
+		final double baseline = baseline( key );
+		final double max = baseline * ( 1. + TOLERANCE );
+		assertTrue( String.format( Locale.US, "%s: %.0f bytes/row is above the baseline of %.0f bytes/row plus %.0f%%.",
+				key, bytesPerRow, baseline, 100. * TOLERANCE ), bytesPerRow <= max );
+	}
+
+	/**
+	 * Checks how the cost of a task grows with its size. The task is run at a
+	 * small and a large size, and the ratio of the times must not exceed the
+	 * expected ratio times {@link #SCALING_MARGIN}.
+	 *
+	 * @param expectedRatio
+	 *            the ratio of the times for the expected growth: the ratio
+	 *            of the sizes for a linear growth, 1 for a cost that does
+	 *            not depend on the size.
+	 */
+	static void checkScaling( final String what, final long smallSize, final long smallTime, final long largeSize, final long largeTime, final double expectedRatio )
+	{
+		final double maxRatio = expectedRatio * SCALING_MARGIN;
+		final double ratio = ( double ) largeTime / smallTime;
+		System.out.println( String.format( Locale.US, "%s: %d -> %d, time %.1f ms -> %.1f ms, ratio %.2f (max %.2f).",
+				what, smallSize, largeSize, smallTime / 1e6, largeTime / 1e6, ratio, maxRatio ) );
+		assertTrue( String.format( Locale.US, "%s: time grew %.1f times from %d to %d, more than %.1f times.",
+				what, ratio, smallSize, largeSize, maxRatio ), ratio <= maxRatio );
+	}
+
+	private static boolean record( final String key, final double value )
+	{
+		System.out.println( String.format( Locale.US, "%s = %.0f", key, value ) );
+		return RECORD;
+	}
+
+	/**
+	 * Returns the baseline of a key. If there is none, the calling test is
+	 * skipped rather than failed.
+	 */
+	private static double baseline( final String key )
+	{
+		final String value = BASELINES.getProperty( key );
+		assumeTrue( "No baseline for " + key + ". Record one with -Dperf.record=true.",
+				null != value && !value.trim().isEmpty() );
+		return Double.parseDouble( value.trim() );
+	}
+
+	private static Properties loadBaselines()
+	{
+		final Properties properties = new Properties();
+		try (InputStream is = PerfSupport.class.getResourceAsStream( "baselines.properties" ))
+		{
+			if ( null != is )
+				properties.load( is );
+		}
+		catch ( final IOException e )
+		{
+			throw new IllegalStateException( "Could not read the performance baselines.", e );
+		}
+		return properties;
+	}
+}